@@ -0,0 +1,602 @@
+package pl.ds.websight.rest.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates {@code RequestBinder} implementation for every REST Action Model annotated with {@code @GeneratedBinder}.
+ * Binder creates model with its no-arguments constructor, sets fields annotated with {@code @RequestParameter} the same
+ * way as request parameters injector does (name, optionality and type conversion) and invokes
+ * {@code @PostConstruct} methods, superclass methods first. Private fields and methods are accessed by method handles
+ * created once per binder class. Models which cannot be bound this way are reported as compilation errors.
+ */
+@SupportedAnnotationTypes(RequestBinderProcessor.GENERATED_BINDER)
+public class RequestBinderProcessor extends AbstractProcessor {
+
+    static final String GENERATED_BINDER = "pl.ds.websight.rest.framework.annotations.GeneratedBinder";
+    static final String BINDER_CLASS_NAME_SUFFIX = "_RestBinder";
+
+    private static final String REQUEST_PARAMETER = "pl.ds.websight.request.parameters.support.annotations.RequestParameter";
+    private static final String MODEL = "org.apache.sling.models.annotations.Model";
+    private static final String REQUIRED = "org.apache.sling.models.annotations.Required";
+    private static final String OPTIONAL = "org.apache.sling.models.annotations.Optional";
+    private static final String DEFAULT = "org.apache.sling.models.annotations.Default";
+    private static final String POST_CONSTRUCT = "javax.annotation.PostConstruct";
+    private static final List<String> INJECTION_ANNOTATION_PACKAGES = Arrays.asList("javax.inject.",
+            "org.apache.sling.models.annotations.");
+    private static final List<String> NUMBER_TYPES = Arrays.asList("java.lang.Integer", "java.lang.Long",
+            "java.lang.Short", "java.lang.Byte", "java.lang.Double", "java.lang.Float");
+    private static final List<String> COLLECTION_TYPES = Arrays.asList("java.util.List", "java.util.Collection");
+    private static final String STRING = "java.lang.String";
+    private static final String BOOLEAN = "java.lang.Boolean";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement generatedBinder = processingEnv.getElementUtils().getTypeElement(GENERATED_BINDER);
+        if (generatedBinder == null) {
+            return false;
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(generatedBinder)) {
+            if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT)) {
+                error(element, "GeneratedBinder can annotate only not abstract model class");
+            } else {
+                TypeElement model = (TypeElement) element;
+                Binder binder = analyze(model);
+                if (binder != null) {
+                    write(model, binder);
+                }
+            }
+        }
+        return false;
+    }
+
+    private Binder analyze(TypeElement model) {
+        boolean valid = true;
+        if (model.getNestingKind() == NestingKind.MEMBER && (!model.getModifiers().contains(Modifier.STATIC)
+                || model.getModifiers().contains(Modifier.PRIVATE))) {
+            error(model, "Model with generated binder cannot be inner or private class");
+            valid = false;
+        }
+        if (!hasAccessibleConstructor(model)) {
+            error(model, "Model with generated binder must have non-private no-arguments constructor");
+            valid = false;
+        }
+        boolean requiredByDefault = !"OPTIONAL".equals(getEnumValue(getAnnotation(model, MODEL), "defaultInjectionStrategy"));
+        Binder binder = new Binder();
+        for (TypeElement type : getHierarchy(model)) {
+            for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                if (!field.getModifiers().contains(Modifier.STATIC)) {
+                    valid &= analyzeField(model, field, requiredByDefault, binder);
+                }
+            }
+            for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+                valid &= analyzeMethod(model, method, binder);
+            }
+        }
+        return valid ? binder : null;
+    }
+
+    private boolean analyzeField(TypeElement model, VariableElement field, boolean requiredByDefault, Binder binder) {
+        AnnotationMirror requestParameter = getAnnotation(field, REQUEST_PARAMETER);
+        if (requestParameter == null) {
+            if (hasInjectionAnnotation(field)) {
+                error(field, "Model with generated binder can have only @RequestParameter injected fields");
+                return false;
+            }
+            return true;
+        }
+        if (field.getModifiers().contains(Modifier.FINAL)) {
+            error(field, "Field injected by generated binder cannot be final");
+            return false;
+        }
+        if (getAnnotation(field, DEFAULT) != null) {
+            error(field, "@Default is not supported by generated binder, initialize field with default value instead");
+            return false;
+        }
+        Conversion conversion = getConversion(field.asType());
+        if (conversion == null) {
+            error(field, String.format("Type %s is not supported by generated binder", field.asType()));
+            return false;
+        }
+        String name = (String) getValue(requestParameter, "name");
+        Parameter parameter = new Parameter(field, name == null || name.trim().isEmpty() ? field.getSimpleName().toString() : name,
+                isRequired(field, requestParameter, requiredByDefault), conversion, isAccessible(model, field));
+        binder.parameters.add(parameter);
+        return true;
+    }
+
+    private boolean analyzeMethod(TypeElement model, ExecutableElement method, Binder binder) {
+        if (getAnnotation(method, REQUEST_PARAMETER) != null) {
+            error(method, "Generated binder supports only @RequestParameter fields");
+            return false;
+        }
+        if (getAnnotation(method, POST_CONSTRUCT) == null) {
+            return true;
+        }
+        if (!method.getParameters().isEmpty() || method.getModifiers().contains(Modifier.STATIC)) {
+            error(method, "PostConstruct method of model with generated binder cannot be static or have parameters");
+            return false;
+        }
+        binder.postConstructs.add(new PostConstruct(method,
+                isAccessible(model, method) && method.getThrownTypes().isEmpty()));
+        return true;
+    }
+
+    /**
+     * Same rules as Sling Models: explicit injection strategy of annotation, otherwise {@code optional} attribute
+     * and {@code @Optional} annotation when model default injection strategy is required, otherwise {@code @Required}
+     * annotation.
+     */
+    private boolean isRequired(VariableElement field, AnnotationMirror requestParameter, boolean requiredByDefault) {
+        String injectionStrategy = getEnumValue(requestParameter, "injectionStrategy");
+        boolean optional = Boolean.TRUE.equals(getValue(requestParameter, "optional"));
+        if ("REQUIRED".equals(injectionStrategy)) {
+            return !optional;
+        }
+        if ("DEFAULT".equals(injectionStrategy) && requiredByDefault) {
+            return !optional && getAnnotation(field, OPTIONAL) == null;
+        }
+        return getAnnotation(field, REQUIRED) != null;
+    }
+
+    private Conversion getConversion(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        DeclaredType declaredType = (DeclaredType) type;
+        TypeElement typeElement = (TypeElement) declaredType.asElement();
+        String typeName = typeElement.getQualifiedName().toString();
+        if (COLLECTION_TYPES.contains(typeName)) {
+            List<? extends TypeMirror> typeArguments = declaredType.getTypeArguments();
+            if (typeArguments.size() != 1) {
+                return null;
+            }
+            Conversion elementConversion = getConversion(typeArguments.get(0));
+            return elementConversion != null && !elementConversion.multiple ? elementConversion.toMultiple() : null;
+        }
+        if (typeElement.getKind() == ElementKind.ENUM || STRING.equals(typeName) || BOOLEAN.equals(typeName)
+                || NUMBER_TYPES.contains(typeName)) {
+            return new Conversion(typeName, typeElement.getKind() == ElementKind.ENUM, false);
+        }
+        return null;
+    }
+
+    private boolean hasAccessibleConstructor(TypeElement model) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(model.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Binder is generated in model package, so it can use fields and methods which are not private and are declared
+     * in the same package or are public.
+     */
+    private boolean isAccessible(TypeElement model, Element member) {
+        Set<Modifier> modifiers = member.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        return modifiers.contains(Modifier.PUBLIC) || processingEnv.getElementUtils().getPackageOf(member)
+                .equals(processingEnv.getElementUtils().getPackageOf(model));
+    }
+
+    private boolean hasInjectionAnnotation(Element element) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            String annotationType = ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+            if (!REQUIRED.equals(annotationType) && !OPTIONAL.equals(annotationType)
+                    && INJECTION_ANNOTATION_PACKAGES.stream().anyMatch(annotationType::startsWith)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return model class and its superclasses, starting from the top one
+     */
+    private List<TypeElement> getHierarchy(TypeElement model) {
+        Deque<TypeElement> hierarchy = new ArrayDeque<>();
+        TypeElement type = model;
+        while (type != null && !"java.lang.Object".contentEquals(type.getQualifiedName())) {
+            hierarchy.push(type);
+            TypeMirror superclass = type.getSuperclass();
+            type = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+        }
+        return new ArrayList<>(hierarchy);
+    }
+
+    private void write(TypeElement model, Binder binder) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(model).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(model).toString();
+        String binderSimpleName = binaryName.substring(packageName.isEmpty() ? 0 : packageName.length() + 1)
+                .replace('$', '_') + BINDER_CLASS_NAME_SUFFIX;
+        String binderName = packageName.isEmpty() ? binderSimpleName : packageName + "." + binderSimpleName;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(binderName, model).openWriter()) {
+            writer.write(new BinderSource(packageName, binderSimpleName, model.getQualifiedName().toString(), binder)
+                    .build());
+        } catch (IOException e) {
+            error(model, "Cannot write generated binder " + binderName + ": " + e);
+        }
+    }
+
+    private AnnotationMirror getAnnotation(Element element, String annotationType) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) annotation.getAnnotationType().asElement();
+            if (annotationType.contentEquals(type.getQualifiedName())) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    private Object getValue(AnnotationMirror annotation, String name) {
+        if (annotation == null) {
+            return null;
+        }
+        Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+                processingEnv.getElementUtils().getElementValuesWithDefaults(annotation);
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : values.entrySet()) {
+            if (name.contentEquals(value.getKey().getSimpleName())) {
+                return value.getValue().getValue();
+            }
+        }
+        return null;
+    }
+
+    private String getEnumValue(AnnotationMirror annotation, String name) {
+        Object value = getValue(annotation, name);
+        return value instanceof Element ? ((Element) value).getSimpleName().toString() : null;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private static final class Binder {
+
+        private final List<Parameter> parameters = new ArrayList<>();
+        private final List<PostConstruct> postConstructs = new ArrayList<>();
+    }
+
+    private static final class Parameter {
+
+        private final VariableElement field;
+        private final String name;
+        private final boolean required;
+        private final Conversion conversion;
+        private final boolean accessible;
+
+        private Parameter(VariableElement field, String name, boolean required, Conversion conversion, boolean accessible) {
+            this.field = field;
+            this.name = name;
+            this.required = required;
+            this.conversion = conversion;
+            this.accessible = accessible;
+        }
+    }
+
+    private static final class PostConstruct {
+
+        private final ExecutableElement method;
+        private final boolean accessible;
+
+        private PostConstruct(ExecutableElement method, boolean accessible) {
+            this.method = method;
+            this.accessible = accessible;
+        }
+    }
+
+    /**
+     * Conversion of request parameter values to field value. Numbers not matching field type result in no value,
+     * like in request parameters injector.
+     */
+    private static final class Conversion {
+
+        private final String type;
+        private final boolean enumType;
+        private final boolean multiple;
+
+        private Conversion(String type, boolean enumType, boolean multiple) {
+            this.type = type;
+            this.enumType = enumType;
+            this.multiple = multiple;
+        }
+
+        private Conversion toMultiple() {
+            return new Conversion(type, enumType, true);
+        }
+
+        private boolean canFail() {
+            return NUMBER_TYPES.contains(type);
+        }
+    }
+
+    /**
+     * Java source of binder class.
+     */
+    private static final class BinderSource {
+
+        private final String packageName;
+        private final String binderSimpleName;
+        private final String modelName;
+        private final Binder binder;
+        private final StringBuilder source = new StringBuilder();
+        private final Set<String> helpers = new HashSet<>();
+
+        private BinderSource(String packageName, String binderSimpleName, String modelName, Binder binder) {
+            this.packageName = packageName;
+            this.binderSimpleName = binderSimpleName;
+            this.modelName = modelName;
+            this.binder = binder;
+        }
+
+        private String build() {
+            if (!packageName.isEmpty()) {
+                line("package %s;", packageName).line("");
+            }
+            line("/**");
+            line(" * Request binder of {@link %s} generated by websight-rest-annotation-processor.", modelName);
+            line(" */");
+            line("public final class %s implements pl.ds.websight.rest.framework.RequestBinder<%s> {", binderSimpleName,
+                    modelName);
+            line("");
+            appendHandles();
+            line("    @Override");
+            line("    public %s bind(org.apache.sling.api.SlingHttpServletRequest request) {", modelName);
+            line("        %s model = new %s();", modelName, modelName);
+            line("        java.lang.String[] values;");
+            for (int i = 0; i < binder.parameters.size(); i++) {
+                appendParameter(i, binder.parameters.get(i));
+            }
+            for (int i = 0; i < binder.postConstructs.size(); i++) {
+                appendPostConstruct(i, binder.postConstructs.get(i));
+            }
+            line("        return model;");
+            line("    }");
+            appendHelpers();
+            line("}");
+            return source.toString();
+        }
+
+        private void appendHandles() {
+            boolean handles = false;
+            for (int i = 0; i < binder.parameters.size(); i++) {
+                Parameter parameter = binder.parameters.get(i);
+                if (!parameter.accessible) {
+                    line("    private static final java.lang.invoke.MethodHandle SETTER_%d = setter(%s.class, \"%s\");", i,
+                            declaringType(parameter.field), parameter.field.getSimpleName());
+                    helpers.add("setter");
+                    handles = true;
+                }
+            }
+            for (int i = 0; i < binder.postConstructs.size(); i++) {
+                PostConstruct postConstruct = binder.postConstructs.get(i);
+                if (!postConstruct.accessible) {
+                    line("    private static final java.lang.invoke.MethodHandle POST_CONSTRUCT_%d = postConstruct(%s.class, \"%s\");",
+                            i, declaringType(postConstruct.method), postConstruct.method.getSimpleName());
+                    helpers.add("postConstruct");
+                    handles = true;
+                }
+            }
+            if (handles) {
+                line("");
+            }
+        }
+
+        private void appendParameter(int index, Parameter parameter) {
+            Conversion conversion = parameter.conversion;
+            String variable = "parameter" + index;
+            line("        %s %s = null;", parameter.field.asType(), variable);
+            line("        values = request.getParameterValues(\"%s\");", escape(parameter.name));
+            line("        if (values != null && values.length > 0) {");
+            if (conversion.canFail()) {
+                line("            try {");
+                line("                %s = %s;", variable, convert(conversion));
+                line("            } catch (java.lang.NumberFormatException e) {");
+                line("                %s = null;", variable);
+                line("            }");
+            } else {
+                line("            %s = %s;", variable, convert(conversion));
+            }
+            line("        }");
+            line("        if (%s != null) {", variable);
+            if (parameter.accessible) {
+                line("            ((%s) model).%s = %s;", declaringType(parameter.field), parameter.field.getSimpleName(),
+                        variable);
+            } else {
+                line("            set(SETTER_%d, model, %s);", index, variable);
+                helpers.add("set");
+            }
+            if (parameter.required) {
+                line("        } else {");
+                line("            throw missingParameter(\"%s\");", escape(parameter.name));
+                helpers.add("missingParameter");
+            }
+            line("        }");
+        }
+
+        private String convert(Conversion conversion) {
+            if (conversion.enumType) {
+                helpers.add(conversion.multiple ? "toEnums" : "toEnum");
+                return String.format(conversion.multiple ? "toEnums(%s.values(), values)" : "toEnum(%s.values(), values[0])",
+                        conversion.type);
+            }
+            String converter;
+            if (STRING.equals(conversion.type)) {
+                converter = null;
+            } else if (BOOLEAN.equals(conversion.type)) {
+                converter = binderSimpleName + "::toBoolean";
+                helpers.add("toBoolean");
+            } else {
+                converter = conversion.type + "::valueOf";
+            }
+            if (conversion.multiple) {
+                helpers.add("toList");
+                return String.format("toList(values, %s)", converter != null ? converter : "value -> value");
+            }
+            return converter != null ? converter.replace("::", ".") + "(values[0])" : "values[0]";
+        }
+
+        private void appendPostConstruct(int index, PostConstruct postConstruct) {
+            if (postConstruct.accessible) {
+                line("        ((%s) model).%s();", declaringType(postConstruct.method), postConstruct.method.getSimpleName());
+            } else {
+                line("        invoke(POST_CONSTRUCT_%d, model);", index);
+                helpers.add("invoke");
+            }
+        }
+
+        private void appendHelpers() {
+            if (helpers.contains("missingParameter")) {
+                line("");
+                line("    private static java.lang.IllegalStateException missingParameter(java.lang.String name) {");
+                line("        return new java.lang.IllegalStateException(\"Missing required request parameter \" + name");
+                line("                + \" of model %s\");", modelName);
+                line("    }");
+            }
+            if (helpers.contains("toBoolean")) {
+                line("");
+                line("    private static java.lang.Boolean toBoolean(java.lang.String value) {");
+                line("        switch (value.toLowerCase(java.util.Locale.ROOT)) {");
+                line("            case \"true\": case \"on\": case \"yes\": case \"y\": case \"t\":");
+                line("                return java.lang.Boolean.TRUE;");
+                line("            case \"false\": case \"off\": case \"no\": case \"n\": case \"f\":");
+                line("                return java.lang.Boolean.FALSE;");
+                line("            default:");
+                line("                return null;");
+                line("        }");
+                line("    }");
+            }
+            if (helpers.contains("toEnum")) {
+                line("");
+                line("    private static <E extends java.lang.Enum<E>> E toEnum(E[] constants, java.lang.String value) {");
+                line("        for (E constant : constants) {");
+                line("            if (constant.toString().equals(value)) {");
+                line("                return constant;");
+                line("            }");
+                line("        }");
+                line("        return null;");
+                line("    }");
+            }
+            if (helpers.contains("toEnums")) {
+                line("");
+                line("    private static <E extends java.lang.Enum<E>> java.util.List<E> toEnums(E[] constants, java.lang.String[] values) {");
+                line("        java.util.List<E> result = new java.util.ArrayList<>();");
+                line("        java.util.List<java.lang.String> valuesList = java.util.Arrays.asList(values);");
+                line("        for (E constant : constants) {");
+                line("            if (valuesList.contains(constant.toString())) {");
+                line("                result.add(constant);");
+                line("            }");
+                line("        }");
+                line("        return result;");
+                line("    }");
+            }
+            if (helpers.contains("toList")) {
+                line("");
+                line("    private static <T> java.util.List<T> toList(java.lang.String[] values,");
+                line("            java.util.function.Function<java.lang.String, T> converter) {");
+                line("        java.util.List<T> result = new java.util.ArrayList<>(values.length);");
+                line("        for (java.lang.String value : values) {");
+                line("            result.add(converter.apply(value));");
+                line("        }");
+                line("        return result;");
+                line("    }");
+            }
+            if (helpers.contains("setter")) {
+                line("");
+                line("    private static java.lang.invoke.MethodHandle setter(java.lang.Class<?> type, java.lang.String name) {");
+                line("        try {");
+                line("            java.lang.reflect.Field field = type.getDeclaredField(name);");
+                line("            field.setAccessible(true);");
+                line("            return java.lang.invoke.MethodHandles.lookup().unreflectSetter(field);");
+                line("        } catch (java.lang.ReflectiveOperationException e) {");
+                line("            throw new java.lang.IllegalStateException(e);");
+                line("        }");
+                line("    }");
+            }
+            if (helpers.contains("postConstruct")) {
+                line("");
+                line("    private static java.lang.invoke.MethodHandle postConstruct(java.lang.Class<?> type, java.lang.String name) {");
+                line("        try {");
+                line("            java.lang.reflect.Method method = type.getDeclaredMethod(name);");
+                line("            method.setAccessible(true);");
+                line("            return java.lang.invoke.MethodHandles.lookup().unreflect(method);");
+                line("        } catch (java.lang.ReflectiveOperationException e) {");
+                line("            throw new java.lang.IllegalStateException(e);");
+                line("        }");
+                line("    }");
+            }
+            if (helpers.contains("set")) {
+                line("");
+                line("    private static void set(java.lang.invoke.MethodHandle setter, java.lang.Object model, java.lang.Object value) {");
+                line("        try {");
+                line("            setter.invoke(model, value);");
+                line("        } catch (java.lang.RuntimeException | java.lang.Error e) {");
+                line("            throw e;");
+                line("        } catch (java.lang.Throwable e) {");
+                line("            throw new java.lang.IllegalStateException(e);");
+                line("        }");
+                line("    }");
+            }
+            if (helpers.contains("invoke")) {
+                line("");
+                line("    private static void invoke(java.lang.invoke.MethodHandle method, java.lang.Object model) {");
+                line("        try {");
+                line("            method.invoke(model);");
+                line("        } catch (java.lang.RuntimeException | java.lang.Error e) {");
+                line("            throw e;");
+                line("        } catch (java.lang.Throwable e) {");
+                line("            throw new java.lang.IllegalStateException(\"PostConstruct method of model %s failed\", e);", modelName);
+                line("        }");
+                line("    }");
+            }
+        }
+
+        private static String declaringType(Element member) {
+            return ((TypeElement) member.getEnclosingElement()).getQualifiedName().toString();
+        }
+
+        private static String escape(String value) {
+            return value.replace("\\", "\\\\").replace("\"", "\\\"");
+        }
+
+        private BinderSource line(String format, Object... args) {
+            source.append(args.length == 0 ? format : String.format(format, args)).append('\n');
+            return this;
+        }
+    }
+}
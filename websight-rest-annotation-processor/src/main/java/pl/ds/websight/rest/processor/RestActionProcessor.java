@@ -0,0 +1,309 @@
+package pl.ds.websight.rest.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Validates WebSight REST action classes (annotated with {@code @SlingAction}) at compile time and writes action
+ * index {@value #INDEX_RESOURCE} with data the framework otherwise reads by reflection when action is registered:
+ * action name, model class, HTTP method, primary types and resource types.
+ * Violations of action rules (see {@code SlingAction} java-doc) are reported as compilation errors.
+ */
+@SupportedAnnotationTypes(RestActionProcessor.SLING_ACTION)
+public class RestActionProcessor extends AbstractProcessor {
+
+    static final String INDEX_RESOURCE = "META-INF/websight-rest/actions.properties";
+
+    static final String SLING_ACTION = "pl.ds.websight.rest.framework.annotations.SlingAction";
+    private static final String PRIMARY_TYPES = "pl.ds.websight.rest.framework.annotations.PrimaryTypes";
+    private static final String RESOURCE_TYPES = "pl.ds.websight.rest.framework.annotations.ResourceTypes";
+    private static final String REST_ACTION = "pl.ds.websight.rest.framework.RestAction";
+    private static final String MODEL = "org.apache.sling.models.annotations.Model";
+    private static final String SLING_HTTP_SERVLET_REQUEST = "org.apache.sling.api.SlingHttpServletRequest";
+    private static final String VOID = "java.lang.Void";
+
+    private static final String REST_ACTION_CLASS_NAME_SUFFIX = "RestAction";
+    private static final String DEFAULT_METHOD = "POST";
+
+    private final Map<String, String> index = new TreeMap<>();
+    private final Set<String> compiledTypes = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getRootElements()) {
+            if (element instanceof TypeElement) {
+                compiledTypes.add(processingEnv.getElementUtils().getBinaryName((TypeElement) element).toString());
+            }
+        }
+        TypeElement slingAction = processingEnv.getElementUtils().getTypeElement(SLING_ACTION);
+        if (slingAction != null) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(slingAction)) {
+                if (element.getKind() == ElementKind.CLASS && !element.getModifiers().contains(Modifier.ABSTRACT)) {
+                    indexAction((TypeElement) element);
+                }
+            }
+        }
+        if (roundEnv.processingOver() && !roundEnv.errorRaised()) {
+            writeIndex();
+        }
+        return false;
+    }
+
+    private void indexAction(TypeElement action) {
+        String actionName = buildActionName(action);
+        String modelClass = getModelClass(action);
+        AnnotationMirror primaryTypes = getAnnotation(action, PRIMARY_TYPES);
+        AnnotationMirror resourceTypes = getAnnotation(action, RESOURCE_TYPES);
+        if (primaryTypes != null && resourceTypes != null) {
+            error(action, "RestAction cannot be annotated with both PrimaryTypes and ResourceTypes annotations");
+            return;
+        }
+        if (actionName == null || modelClass == null) {
+            return;
+        }
+        String key = processingEnv.getElementUtils().getBinaryName(action).toString();
+        index.put(key + ".name", actionName);
+        index.put(key + ".model", modelClass);
+        index.put(key + ".method", getMethod(action));
+        index.put(key + ".primaryTypes", getStrings(primaryTypes));
+        index.put(key + ".resourceTypes", getStrings(resourceTypes));
+    }
+
+    private String buildActionName(TypeElement action) {
+        String className = action.getSimpleName().toString();
+        if (!className.endsWith(REST_ACTION_CLASS_NAME_SUFFIX)) {
+            error(action, String.format("No %s suffix in class name %s", REST_ACTION_CLASS_NAME_SUFFIX, className));
+            return null;
+        }
+        String actionName = className.substring(0, className.length() - REST_ACTION_CLASS_NAME_SUFFIX.length());
+        if (actionName.isEmpty()) {
+            error(action, String.format("No action name before %s suffix in class name %s",
+                    REST_ACTION_CLASS_NAME_SUFFIX, className));
+            return null;
+        }
+        return toLowerHyphen(actionName);
+    }
+
+    /**
+     * Same conversion as Guava {@code CaseFormat.UPPER_CAMEL.to(CaseFormat.LOWER_HYPHEN, name)} used by framework.
+     */
+    static String toLowerHyphen(String upperCamel) {
+        StringBuilder result = new StringBuilder(upperCamel.length() + 4);
+        for (int i = 0; i < upperCamel.length(); i++) {
+            char c = upperCamel.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                if (i > 0) {
+                    result.append('-');
+                }
+                result.append((char) (c + ('a' - 'A')));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    private String getModelClass(TypeElement action) {
+        TypeMirror modelType = findRestActionModelType(action);
+        if (modelType == null) {
+            error(action, "Class annotated with SlingAction must implement " + REST_ACTION + " with model type");
+            return null;
+        }
+        if (modelType.getKind() != TypeKind.DECLARED) {
+            error(action, "Cannot get model type from action " + action.getQualifiedName());
+            return null;
+        }
+        TypeElement model = (TypeElement) ((DeclaredType) modelType).asElement();
+        if (VOID.contentEquals(model.getQualifiedName())) {
+            return VOID;
+        }
+        if (!isAdaptableFromRequest(model)) {
+            error(action, String.format("Model type %s of action %s is not Sling model adaptable from request",
+                    model.getQualifiedName(), action.getQualifiedName()));
+            return null;
+        }
+        return processingEnv.getElementUtils().getBinaryName(model).toString();
+    }
+
+    private TypeMirror findRestActionModelType(TypeElement action) {
+        TypeElement restAction = processingEnv.getElementUtils().getTypeElement(REST_ACTION);
+        if (restAction == null) {
+            return null;
+        }
+        TypeMirror restActionType = processingEnv.getTypeUtils().erasure(restAction.asType());
+        Deque<TypeMirror> types = new ArrayDeque<>(Collections.singleton(action.asType()));
+        while (!types.isEmpty()) {
+            TypeMirror type = types.poll();
+            if (processingEnv.getTypeUtils().isSameType(processingEnv.getTypeUtils().erasure(type), restActionType)) {
+                List<? extends TypeMirror> typeArguments = ((DeclaredType) type).getTypeArguments();
+                return typeArguments.isEmpty() ? null : typeArguments.get(0);
+            }
+            // direct supertypes have type arguments of analyzed type substituted
+            types.addAll(processingEnv.getTypeUtils().directSupertypes(type));
+        }
+        return null;
+    }
+
+    private boolean isAdaptableFromRequest(TypeElement model) {
+        AnnotationMirror modelAnnotation = getAnnotation(model, MODEL);
+        if (modelAnnotation == null) {
+            return false;
+        }
+        Object adaptables = getValue(modelAnnotation, "adaptables");
+        if (adaptables instanceof List) {
+            for (Object adaptable : (List<?>) adaptables) {
+                Object adaptableType = ((AnnotationValue) adaptable).getValue();
+                if (adaptableType instanceof DeclaredType && SLING_HTTP_SERVLET_REQUEST.contentEquals(
+                        ((TypeElement) ((DeclaredType) adaptableType).asElement()).getQualifiedName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private String getMethod(TypeElement action) {
+        Object method = getValue(getAnnotation(action, SLING_ACTION), "value");
+        return method instanceof Element ? ((Element) method).getSimpleName().toString() : DEFAULT_METHOD;
+    }
+
+    private String getStrings(AnnotationMirror annotation) {
+        if (annotation == null) {
+            return "";
+        }
+        Object values = getValue(annotation, "value");
+        if (!(values instanceof List)) {
+            return "";
+        }
+        return ((List<?>) values).stream()
+                .map(value -> String.valueOf(((AnnotationValue) value).getValue()))
+                .collect(Collectors.joining(","));
+    }
+
+    private AnnotationMirror getAnnotation(Element element, String annotationType) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) annotation.getAnnotationType().asElement();
+            if (annotationType.contentEquals(type.getQualifiedName())) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    private Object getValue(AnnotationMirror annotation, String name) {
+        Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+                processingEnv.getElementUtils().getElementValuesWithDefaults(annotation);
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : values.entrySet()) {
+            if (name.contentEquals(value.getKey().getSimpleName())) {
+                return value.getValue().getValue();
+            }
+        }
+        return null;
+    }
+
+    private void writeIndex() {
+        if (index.isEmpty()) {
+            return;
+        }
+        Properties properties = new Properties();
+        properties.putAll(readPreviousIndex());
+        properties.putAll(index);
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+            try (OutputStream output = resource.openOutputStream()) {
+                output.write(toSortedLines(properties));
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write " + INDEX_RESOURCE + ": " + e);
+        }
+        index.clear();
+    }
+
+    /**
+     * Properties in ISO 8859-1 encoding, with escapes as written by {@link Properties#store(OutputStream, String)},
+     * but sorted and without timestamp comment, so index does not change between builds of the same sources.
+     */
+    private static byte[] toSortedLines(Properties properties) throws IOException {
+        ByteArrayOutputStream stored = new ByteArrayOutputStream();
+        properties.store(stored, null);
+        String lines = Arrays.stream(new String(stored.toByteArray(), StandardCharsets.ISO_8859_1).split("\\R"))
+                .filter(line -> !line.startsWith("#"))
+                .sorted()
+                .collect(Collectors.joining("\n", "", "\n"));
+        return lines.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Entries of actions not compiled in this run (incremental compilation) are kept, if action class still exists.
+     * Entries of compiled types (which could be no longer actions) and malformed entries are dropped.
+     */
+    private Map<String, String> readPreviousIndex() {
+        Properties previous = new Properties();
+        try {
+            FileObject resource = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+            try (InputStream input = resource.openInputStream()) {
+                previous.load(input);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> entries = new TreeMap<>();
+        for (String key : previous.stringPropertyNames()) {
+            int separator = key.lastIndexOf('.');
+            if (separator <= 0) {
+                continue;
+            }
+            String actionClass = key.substring(0, separator);
+            if (!isCompiled(actionClass)
+                    && processingEnv.getElementUtils().getTypeElement(actionClass.replace('$', '.')) != null) {
+                entries.put(key, previous.getProperty(key));
+            }
+        }
+        return entries;
+    }
+
+    private boolean isCompiled(String binaryName) {
+        int nested = binaryName.indexOf('$');
+        return compiledTypes.contains(nested < 0 ? binaryName : binaryName.substring(0, nested));
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,332 @@
+package pl.ds.websight.rest.processor;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.models.annotations.Model;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pl.ds.websight.request.parameters.support.annotations.RequestParameter;
+import pl.ds.websight.rest.framework.RequestBinder;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.ServletRequest;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestBinderProcessorTest {
+
+    private static final String PARAMETERS_MODEL_SOURCE = "package test;\n" +
+            "import java.util.*;\n" +
+            "import javax.annotation.PostConstruct;\n" +
+            "import org.apache.sling.api.SlingHttpServletRequest;\n" +
+            "import org.apache.sling.models.annotations.Model;\n" +
+            "import pl.ds.websight.request.parameters.support.annotations.RequestParameter;\n" +
+            "import pl.ds.websight.rest.framework.annotations.GeneratedBinder;\n" +
+            "@GeneratedBinder\n" +
+            "@Model(adaptables = SlingHttpServletRequest.class)\n" +
+            "public class ParametersRestModel extends BaseModel {\n" +
+            "    public enum Color { RED, GREEN, BLUE }\n" +
+            "    @RequestParameter private String name;\n" +
+            "    @RequestParameter(name = \"item-count\") Integer count;\n" +
+            "    @RequestParameter private Boolean enabled;\n" +
+            "    @RequestParameter Long size = 7L;\n" +
+            "    @RequestParameter private Color color;\n" +
+            "    @RequestParameter private List<Integer> numbers;\n" +
+            "    @RequestParameter private Collection<Color> colors;\n" +
+            "    String initializedName;\n" +
+            "    @PostConstruct private void init() { initializedName = name + \"!\"; }\n" +
+            "}\n";
+
+    private static final String BASE_MODEL_SOURCE = "package test;\n" +
+            "import javax.annotation.PostConstruct;\n" +
+            "import pl.ds.websight.request.parameters.support.annotations.RequestParameter;\n" +
+            "public abstract class BaseModel {\n" +
+            "    @RequestParameter protected String path;\n" +
+            "    int postConstructCalls;\n" +
+            "    @PostConstruct void baseInit() { postConstructCalls++; }\n" +
+            "}\n";
+
+    @TempDir
+    Path output;
+
+    private final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+
+    @Test
+    void shouldBindRequestParametersWithConversions() throws Exception {
+        assertTrue(compile(BASE_MODEL_SOURCE, PARAMETERS_MODEL_SOURCE), diagnostics.getDiagnostics()::toString);
+        Map<String, String[]> parameters = new HashMap<>();
+        parameters.put("name", new String[] { "Hello" });
+        parameters.put("item-count", new String[] { "12", "13" });
+        parameters.put("enabled", new String[] { "on" });
+        parameters.put("color", new String[] { "GREEN" });
+        parameters.put("numbers", new String[] { "1", "2", "3" });
+        parameters.put("colors", new String[] { "BLUE", "PINK", "RED" });
+        parameters.put("path", new String[] { "/content" });
+
+        Object model = bind("test.ParametersRestModel", parameters);
+
+        assertEquals("Hello", get(model, "name"));
+        assertEquals(12, get(model, "count"));
+        assertEquals(Boolean.TRUE, get(model, "enabled"));
+        assertEquals(7L, get(model, "size"));
+        assertEquals("GREEN", String.valueOf(get(model, "color")));
+        assertEquals(Arrays.asList(1, 2, 3), get(model, "numbers"));
+        assertEquals("[RED, BLUE]", String.valueOf(get(model, "colors")));
+        assertEquals("/content", get(model, "path"));
+        assertEquals("Hello!", get(model, "initializedName"));
+        assertEquals(1, get(model, "postConstructCalls"));
+    }
+
+    @Test
+    void shouldSkipValuesNotMatchingFieldType() throws Exception {
+        assertTrue(compile(BASE_MODEL_SOURCE, PARAMETERS_MODEL_SOURCE), diagnostics.getDiagnostics()::toString);
+        Map<String, String[]> parameters = new HashMap<>();
+        parameters.put("size", new String[] { "big" });
+        parameters.put("numbers", new String[] { "1", "two" });
+        parameters.put("enabled", new String[] { "maybe" });
+        parameters.put("color", new String[] { "PINK" });
+
+        Object model = bind("test.ParametersRestModel", parameters);
+
+        assertEquals(7L, get(model, "size"));
+        assertNull(get(model, "numbers"));
+        assertNull(get(model, "enabled"));
+        assertNull(get(model, "color"));
+        assertNull(get(model, "name"));
+    }
+
+    @Test
+    void shouldFailOnMissingRequiredParameter() throws Exception {
+        assertTrue(compile("package test;\n" +
+                "import org.apache.sling.api.SlingHttpServletRequest;\n" +
+                "import org.apache.sling.models.annotations.Model;\n" +
+                "import org.apache.sling.models.annotations.injectorspecific.InjectionStrategy;\n" +
+                "import pl.ds.websight.request.parameters.support.annotations.RequestParameter;\n" +
+                "import pl.ds.websight.rest.framework.annotations.GeneratedBinder;\n" +
+                "@GeneratedBinder\n" +
+                "@Model(adaptables = SlingHttpServletRequest.class)\n" +
+                "public class RequiredRestModel {\n" +
+                "    @RequestParameter(injectionStrategy = InjectionStrategy.REQUIRED, optional = false) String name;\n" +
+                "}\n"), diagnostics.getDiagnostics()::toString);
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> bind("test.RequiredRestModel", Collections.emptyMap()));
+        assertTrue(exception.getMessage().contains("Missing required request parameter name"));
+    }
+
+    @Test
+    void shouldNotRequireOptionalParameter() throws Exception {
+        assertTrue(compile("package test;\n" +
+                "import org.apache.sling.api.SlingHttpServletRequest;\n" +
+                "import org.apache.sling.models.annotations.Model;\n" +
+                "import org.apache.sling.models.annotations.Optional;\n" +
+                "import org.apache.sling.models.annotations.injectorspecific.InjectionStrategy;\n" +
+                "import pl.ds.websight.request.parameters.support.annotations.RequestParameter;\n" +
+                "import pl.ds.websight.rest.framework.annotations.GeneratedBinder;\n" +
+                "@GeneratedBinder\n" +
+                "@Model(adaptables = SlingHttpServletRequest.class)\n" +
+                "public class OptionalRestModel {\n" +
+                "    @RequestParameter(injectionStrategy = InjectionStrategy.DEFAULT, optional = false)\n" +
+                "    @Optional String name;\n" +
+                "    @RequestParameter(injectionStrategy = InjectionStrategy.DEFAULT, optional = false) String path;\n" +
+                "}\n"), diagnostics.getDiagnostics()::toString);
+
+        Map<String, String[]> parameters = new HashMap<>();
+        parameters.put("path", new String[] { "/content" });
+        Object model = bind("test.OptionalRestModel", parameters);
+        assertNull(get(model, "name"));
+        assertEquals("/content", get(model, "path"));
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> bind("test.OptionalRestModel", Collections.emptyMap()));
+        assertTrue(exception.getMessage().contains("Missing required request parameter path"));
+    }
+
+    @Test
+    void shouldFailOnDefaultValue() {
+        assertFalse(compile("package test;\n" +
+                "import org.apache.sling.api.SlingHttpServletRequest;\n" +
+                "import org.apache.sling.models.annotations.Default;\n" +
+                "import org.apache.sling.models.annotations.Model;\n" +
+                "import pl.ds.websight.request.parameters.support.annotations.RequestParameter;\n" +
+                "import pl.ds.websight.rest.framework.annotations.GeneratedBinder;\n" +
+                "@GeneratedBinder\n" +
+                "@Model(adaptables = SlingHttpServletRequest.class)\n" +
+                "public class DefaultRestModel {\n" +
+                "    @RequestParameter @Default(intValues = 10) Integer limit;\n" +
+                "}\n"));
+
+        assertError("@Default is not supported by generated binder");
+    }
+
+    @Test
+    void shouldFailOnUnsupportedFieldType() {
+        assertFalse(compile("package test;\n" +
+                "import org.apache.sling.api.SlingHttpServletRequest;\n" +
+                "import org.apache.sling.models.annotations.Model;\n" +
+                "import pl.ds.websight.request.parameters.support.annotations.RequestParameter;\n" +
+                "import pl.ds.websight.rest.framework.annotations.GeneratedBinder;\n" +
+                "@GeneratedBinder\n" +
+                "@Model(adaptables = SlingHttpServletRequest.class)\n" +
+                "public class PrimitiveRestModel {\n" +
+                "    @RequestParameter int count;\n" +
+                "}\n"));
+
+        assertError("Type int is not supported by generated binder");
+    }
+
+    @Test
+    void shouldFailOnOtherInjectors() {
+        assertFalse(compile("package test;\n" +
+                "import org.apache.sling.api.SlingHttpServletRequest;\n" +
+                "import org.apache.sling.models.annotations.Model;\n" +
+                "import org.apache.sling.models.annotations.injectorspecific.ValueMapValue;\n" +
+                "import pl.ds.websight.rest.framework.annotations.GeneratedBinder;\n" +
+                "@GeneratedBinder\n" +
+                "@Model(adaptables = SlingHttpServletRequest.class)\n" +
+                "public class InjectRestModel {\n" +
+                "    @ValueMapValue String name;\n" +
+                "}\n"));
+
+        assertError("can have only @RequestParameter injected fields");
+    }
+
+    @Test
+    void shouldFailOnModelWithoutNoArgumentsConstructor() {
+        assertFalse(compile("package test;\n" +
+                "import org.apache.sling.api.SlingHttpServletRequest;\n" +
+                "import org.apache.sling.models.annotations.Model;\n" +
+                "import pl.ds.websight.rest.framework.annotations.GeneratedBinder;\n" +
+                "@GeneratedBinder\n" +
+                "@Model(adaptables = SlingHttpServletRequest.class)\n" +
+                "public class ConstructorRestModel {\n" +
+                "    public ConstructorRestModel(String name) {}\n" +
+                "}\n"));
+
+        assertError("must have non-private no-arguments constructor");
+    }
+
+    private Object bind(String modelClass, Map<String, String[]> parameters) throws Exception {
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { output.toUri().toURL() },
+                getClass().getClassLoader())) {
+            Class<?> binderClass = classLoader.loadClass(modelClass + RequestBinderProcessor.BINDER_CLASS_NAME_SUFFIX);
+            RequestBinder<?> binder = (RequestBinder<?>) binderClass.getConstructor().newInstance();
+            return binder.bind(request(parameters));
+        }
+    }
+
+    private static SlingHttpServletRequest request(Map<String, String[]> parameters) {
+        return (SlingHttpServletRequest) Proxy.newProxyInstance(RequestBinderProcessorTest.class.getClassLoader(),
+                new Class<?>[] { SlingHttpServletRequest.class }, (proxy, method, args) -> {
+                    if ("getParameterValues".equals(method.getName())) {
+                        return parameters.get((String) args[0]);
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static Object get(Object model, String fieldName) throws ReflectiveOperationException {
+        Class<?> type = model.getClass();
+        while (type != null) {
+            try {
+                Field field = type.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                return field.get(model);
+            } catch (NoSuchFieldException e) {
+                type = type.getSuperclass();
+            }
+        }
+        throw new NoSuchFieldException(fieldName);
+    }
+
+    private boolean compile(String... sources) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+        try {
+            fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singleton(output.toFile()));
+            fileManager.setLocation(StandardLocation.SOURCE_OUTPUT, Collections.singleton(output.toFile()));
+            fileManager.setLocation(StandardLocation.CLASS_PATH, classPath());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        List<JavaFileObject> compilationUnits = Arrays.stream(sources).map(Source::new).collect(Collectors.toList());
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, null, null,
+                compilationUnits);
+        task.setProcessors(Collections.singletonList(new RequestBinderProcessor()));
+        return task.call();
+    }
+
+    private static List<File> classPath() {
+        List<File> classPath = new ArrayList<>();
+        for (Class<?> dependency : Arrays.asList(RequestBinder.class, Model.class, SlingHttpServletRequest.class,
+                RequestParameter.class, PostConstruct.class, ServletRequest.class)) {
+            try {
+                classPath.add(new File(dependency.getProtectionDomain().getCodeSource().getLocation().toURI()));
+            } catch (URISyntaxException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return classPath;
+    }
+
+    private void assertError(String message) {
+        assertTrue(diagnostics.getDiagnostics().stream()
+                        .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                        .anyMatch(diagnostic -> diagnostic.getMessage(null).contains(message)),
+                () -> "No error containing: " + message + " in " + diagnostics.getDiagnostics());
+    }
+
+    private static class Source extends SimpleJavaFileObject {
+
+        private static final Pattern CLASS_NAME = Pattern.compile("class\\s+(\\w+)");
+
+        private final String code;
+
+        Source(String code) {
+            super(URI.create("string:///" + className(code).replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        private static String className(String code) {
+            String packageName = code.substring("package ".length(), code.indexOf(';'));
+            Matcher simpleName = CLASS_NAME.matcher(code);
+            if (!simpleName.find()) {
+                throw new IllegalStateException("No class in source " + code);
+            }
+            return packageName + "." + simpleName.group(1);
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package pl.ds.websight.rest.processor;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.models.annotations.Model;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.osgi.service.component.annotations.ComponentPropertyType;
+import pl.ds.websight.rest.framework.RestAction;
+import pl.ds.websight.rest.framework.annotations.SlingAction;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RestActionProcessorTest {
+
+    private static final String MODEL_SOURCE = "package test;\n" +
+            "import org.apache.sling.api.SlingHttpServletRequest;\n" +
+            "import org.apache.sling.models.annotations.Model;\n" +
+            "@Model(adaptables = SlingHttpServletRequest.class)\n" +
+            "public class HelloRestModel {}\n";
+
+    @TempDir
+    Path output;
+
+    private final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+
+    @Test
+    void shouldIndexPathAction() throws IOException {
+        assertTrue(compile(MODEL_SOURCE, "package test;\n" +
+                "import pl.ds.websight.rest.framework.*;\n" +
+                "import pl.ds.websight.rest.framework.annotations.*;\n" +
+                "@SlingAction(SlingAction.HttpMethod.GET)\n" +
+                "public class SayHTMLHelloRestAction implements RestAction<HelloRestModel, String> {\n" +
+                "    public RestActionResult<String> perform(HelloRestModel model) { return null; }\n" +
+                "}\n"));
+
+        Properties index = readIndex();
+        assertEquals("say-h-t-m-l-hello", index.getProperty("test.SayHTMLHelloRestAction.name"));
+        assertEquals("test.HelloRestModel", index.getProperty("test.SayHTMLHelloRestAction.model"));
+        assertEquals("GET", index.getProperty("test.SayHTMLHelloRestAction.method"));
+        assertEquals("", index.getProperty("test.SayHTMLHelloRestAction.primaryTypes"));
+    }
+
+    @Test
+    void shouldIndexPrimaryTypesAndModelOfGenericSuperclass() throws IOException {
+        assertTrue(compile(MODEL_SOURCE, "package test;\n" +
+                "import pl.ds.websight.rest.framework.*;\n" +
+                "public abstract class BaseRestAction<T> implements RestAction<HelloRestModel, T> {}\n", "package test;\n" +
+                "import pl.ds.websight.rest.framework.*;\n" +
+                "import pl.ds.websight.rest.framework.annotations.*;\n" +
+                "@SlingAction\n" +
+                "@PrimaryTypes({ \"nt:folder\", \"sling:Folder\" })\n" +
+                "public class FolderRestAction extends BaseRestAction<Void> {\n" +
+                "    public RestActionResult<Void> perform(HelloRestModel model) { return null; }\n" +
+                "}\n"));
+
+        Properties index = readIndex();
+        assertEquals("test.HelloRestModel", index.getProperty("test.FolderRestAction.model"));
+        assertEquals("POST", index.getProperty("test.FolderRestAction.method"));
+        assertEquals("nt:folder,sling:Folder", index.getProperty("test.FolderRestAction.primaryTypes"));
+        assertFalse(index.containsKey("test.BaseRestAction.name"));
+    }
+
+    @Test
+    void shouldIndexVoidModel() throws IOException {
+        assertTrue(compile("package test;\n" +
+                "import pl.ds.websight.rest.framework.*;\n" +
+                "import pl.ds.websight.rest.framework.annotations.*;\n" +
+                "@SlingAction\n" +
+                "@ResourceTypes(\"some/type\")\n" +
+                "public class NoModelRestAction implements RestAction<Void, Void> {\n" +
+                "    public RestActionResult<Void> perform(Void model) { return null; }\n" +
+                "}\n"));
+
+        Properties index = readIndex();
+        assertEquals("java.lang.Void", index.getProperty("test.NoModelRestAction.model"));
+        assertEquals("some/type", index.getProperty("test.NoModelRestAction.resourceTypes"));
+    }
+
+    @Test
+    void shouldFailOnClassNameWithoutSuffix() {
+        assertFalse(compile(MODEL_SOURCE, "package test;\n" +
+                "import pl.ds.websight.rest.framework.*;\n" +
+                "import pl.ds.websight.rest.framework.annotations.*;\n" +
+                "@SlingAction\n" +
+                "public class HelloAction implements RestAction<HelloRestModel, Void> {\n" +
+                "    public RestActionResult<Void> perform(HelloRestModel model) { return null; }\n" +
+                "}\n"));
+
+        assertError("No RestAction suffix in class name HelloAction");
+    }
+
+    @Test
+    void shouldFailOnModelNotAdaptableFromRequest() {
+        assertFalse(compile("package test;\n" +
+                "import org.apache.sling.api.resource.Resource;\n" +
+                "import org.apache.sling.models.annotations.Model;\n" +
+                "@Model(adaptables = Resource.class)\n" +
+                "public class HelloRestModel {}\n", "package test;\n" +
+                "import pl.ds.websight.rest.framework.*;\n" +
+                "import pl.ds.websight.rest.framework.annotations.*;\n" +
+                "@SlingAction\n" +
+                "public class HelloRestAction implements RestAction<HelloRestModel, Void> {\n" +
+                "    public RestActionResult<Void> perform(HelloRestModel model) { return null; }\n" +
+                "}\n"));
+
+        assertError("is not Sling model adaptable from request");
+    }
+
+    @Test
+    void shouldFailOnBothPrimaryTypesAndResourceTypes() {
+        assertFalse(compile(MODEL_SOURCE, "package test;\n" +
+                "import pl.ds.websight.rest.framework.*;\n" +
+                "import pl.ds.websight.rest.framework.annotations.*;\n" +
+                "@SlingAction\n" +
+                "@PrimaryTypes(\"nt:folder\")\n" +
+                "@ResourceTypes(\"some/type\")\n" +
+                "public class HelloRestAction implements RestAction<HelloRestModel, Void> {\n" +
+                "    public RestActionResult<Void> perform(HelloRestModel model) { return null; }\n" +
+                "}\n"));
+
+        assertError("cannot be annotated with both PrimaryTypes and ResourceTypes");
+    }
+
+    @Test
+    void shouldDropPreviousEntriesOfCompiledTypesAndMalformedKeys() throws IOException {
+        writePreviousIndex("test.FormerRestAction.name=former\ntest.FormerRestAction$Nested.name=nested\nmalformed=1\n");
+
+        assertTrue(compile(MODEL_SOURCE, "package test;\n" +
+                "public class FormerRestAction {\n" +
+                "    public static class Nested {}\n" +
+                "}\n", "package test;\n" +
+                "import pl.ds.websight.rest.framework.*;\n" +
+                "import pl.ds.websight.rest.framework.annotations.*;\n" +
+                "@SlingAction\n" +
+                "public class HelloRestAction implements RestAction<HelloRestModel, String> {\n" +
+                "    public RestActionResult<String> perform(HelloRestModel model) { return null; }\n" +
+                "}\n"), diagnostics.getDiagnostics()::toString);
+
+        Properties index = readIndex();
+        assertEquals("hello", index.getProperty("test.HelloRestAction.name"));
+        assertFalse(index.containsKey("test.FormerRestAction.name"));
+        assertFalse(index.containsKey("test.FormerRestAction$Nested.name"));
+        assertFalse(index.containsKey("malformed"));
+    }
+
+    @Test
+    void shouldConvertNamesLikeGuavaCaseFormat() {
+        assertEquals("hello-path", RestActionProcessor.toLowerHyphen("HelloPath"));
+        assertEquals("get-user2-groups", RestActionProcessor.toLowerHyphen("GetUser2Groups"));
+        assertEquals("a-b-c", RestActionProcessor.toLowerHyphen("ABC"));
+    }
+
+    private boolean compile(String... sources) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+        try {
+            fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singleton(output.toFile()));
+            fileManager.setLocation(StandardLocation.CLASS_PATH, classPath());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        List<JavaFileObject> compilationUnits = Arrays.stream(sources).map(Source::new).collect(Collectors.toList());
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                Collections.singletonList("-proc:only"), null, compilationUnits);
+        task.setProcessors(Collections.singletonList(new RestActionProcessor()));
+        return task.call();
+    }
+
+    private static List<File> classPath() {
+        List<File> classPath = new ArrayList<>();
+        for (Class<?> dependency : Arrays.asList(RestAction.class, SlingAction.class, Model.class,
+                SlingHttpServletRequest.class, ComponentPropertyType.class)) {
+            try {
+                classPath.add(new File(dependency.getProtectionDomain().getCodeSource().getLocation().toURI()));
+            } catch (URISyntaxException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return classPath;
+    }
+
+    private void writePreviousIndex(String entries) throws IOException {
+        Path index = output.resolve(RestActionProcessor.INDEX_RESOURCE);
+        Files.createDirectories(index.getParent());
+        Files.write(index, entries.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private Properties readIndex() throws IOException {
+        Properties index = new Properties();
+        try (InputStream input = Files.newInputStream(output.resolve(RestActionProcessor.INDEX_RESOURCE))) {
+            index.load(input);
+        }
+        return index;
+    }
+
+    private void assertError(String message) {
+        assertTrue(diagnostics.getDiagnostics().stream()
+                        .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                        .anyMatch(diagnostic -> diagnostic.getMessage(null).contains(message)),
+                () -> "No error containing: " + message + " in " + diagnostics.getDiagnostics());
+    }
+
+    private static class Source extends SimpleJavaFileObject {
+
+        private static final Pattern CLASS_NAME = Pattern.compile("class\\s+(\\w+)");
+
+        private final String code;
+
+        Source(String code) {
+            super(URI.create("string:///" + className(code).replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        private static String className(String code) {
+            String packageName = code.substring("package ".length(), code.indexOf(';'));
+            Matcher simpleName = CLASS_NAME.matcher(code);
+            if (!simpleName.find()) {
+                throw new IllegalStateException("No class in source " + code);
+            }
+            return packageName + "." + simpleName.group(1);
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+}
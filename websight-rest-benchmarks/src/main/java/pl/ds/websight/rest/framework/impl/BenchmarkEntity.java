@@ -0,0 +1,66 @@
+package pl.ds.websight.rest.framework.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Response entity used by benchmark actions, shaped like a typical listing item (path, title, flags, tags).
+ */
+public class BenchmarkEntity {
+
+    private final String path;
+    private final String title;
+    private final long lastModified;
+    private final boolean hasChildren;
+    private final List<String> tags;
+
+    BenchmarkEntity(int index) {
+        this.path = "/content/websight/benchmark/page-" + index;
+        this.title = "Benchmark page " + index;
+        this.lastModified = 1_600_000_000_000L + index;
+        this.hasChildren = index % 2 == 0;
+        this.tags = Arrays.asList("tag-a", "tag-b", "tag-" + index);
+    }
+
+    static Object create(EntitySize size) {
+        if (size == EntitySize.SMALL) {
+            return new BenchmarkEntity(0);
+        }
+        List<BenchmarkEntity> entities = new ArrayList<>(size.count);
+        for (int i = 0; i < size.count; i++) {
+            entities.add(new BenchmarkEntity(i));
+        }
+        return entities;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public boolean isHasChildren() {
+        return hasChildren;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public enum EntitySize {
+        SMALL(1), LIST_10K(10_000);
+
+        private final int count;
+
+        EntitySize(int count) {
+            this.count = count;
+        }
+    }
+}
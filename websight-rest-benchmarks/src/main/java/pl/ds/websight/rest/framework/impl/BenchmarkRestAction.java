@@ -0,0 +1,21 @@
+package pl.ds.websight.rest.framework.impl;
+
+import pl.ds.websight.rest.framework.RestAction;
+import pl.ds.websight.rest.framework.RestActionResult;
+
+/**
+ * Returns prepared entity, so benchmarks measure framework overhead and not the action itself.
+ */
+class BenchmarkRestAction implements RestAction<Object, Object> {
+
+    private final Object entity;
+
+    BenchmarkRestAction(Object entity) {
+        this.entity = entity;
+    }
+
+    @Override
+    public RestActionResult<Object> perform(Object model) {
+        return RestActionResult.success(entity);
+    }
+}
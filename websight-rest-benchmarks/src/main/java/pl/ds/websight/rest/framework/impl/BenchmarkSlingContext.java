@@ -0,0 +1,23 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.apache.sling.testing.mock.sling.context.SlingContextImpl;
+
+/**
+ * Sling mock context usable outside of JUnit, so JMH states can control its lifecycle.
+ */
+final class BenchmarkSlingContext extends SlingContextImpl {
+
+    BenchmarkSlingContext() {
+        setResourceResolverType(ResourceResolverType.JCR_MOCK);
+        setRegisterSlingModelsFromClassPath(false);
+    }
+
+    void start() {
+        setUp();
+    }
+
+    void stop() {
+        tearDown();
+    }
+}
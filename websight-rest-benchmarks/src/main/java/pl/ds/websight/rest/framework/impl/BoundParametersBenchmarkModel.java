@@ -0,0 +1,35 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.models.annotations.Model;
+import pl.ds.websight.request.parameters.support.annotations.RequestParameter;
+import pl.ds.websight.rest.framework.annotations.GeneratedBinder;
+
+import java.util.List;
+
+/**
+ * The same fields as {@link ParametersBenchmarkModel}, created by binder generated at compile time.
+ */
+@GeneratedBinder
+@Model(adaptables = SlingHttpServletRequest.class)
+public class BoundParametersBenchmarkModel {
+
+    @RequestParameter
+    private String name;
+
+    @RequestParameter
+    private String title;
+
+    @RequestParameter
+    private String description;
+
+    @RequestParameter
+    private Long size;
+
+    @RequestParameter
+    private List<String> tags;
+
+    public String getName() {
+        return name;
+    }
+}
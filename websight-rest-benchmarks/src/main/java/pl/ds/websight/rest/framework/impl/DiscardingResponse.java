@@ -0,0 +1,142 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.api.wrappers.SlingHttpServletResponseWrapper;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletResponse;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * Response which discards written body and headers, reusable between benchmark invocations, so only allocations made
+ * by the code writing the response are measured.
+ */
+final class DiscardingResponse extends SlingHttpServletResponseWrapper {
+
+    private final CountingWriter body = new CountingWriter();
+    private final PrintWriter writer = new PrintWriter(body);
+    private final CountingOutputStream outputStream = new CountingOutputStream();
+
+    DiscardingResponse() {
+        super(new MockSlingHttpServletResponse());
+    }
+
+    long getWrittenChars() {
+        return body.count;
+    }
+
+    long getWrittenBytes() {
+        return outputStream.count;
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+        return writer;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        // discarded
+    }
+
+    @Override
+    public void setContentType(String type) {
+        // discarded
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+        // discarded
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        // discarded
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        // discarded
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        // discarded
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return false;
+    }
+
+    @Override
+    public void resetBuffer() {
+        // nothing buffered
+    }
+
+    private static final class CountingWriter extends Writer {
+
+        private long count;
+
+        @Override
+        public void write(int c) {
+            count++;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+            // nothing to flush
+        }
+
+        @Override
+        public void close() {
+            // stays open, reused by next invocation
+        }
+    }
+
+    private static final class CountingOutputStream extends ServletOutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            // blocking stream
+        }
+
+        @Override
+        public void close() {
+            // stays open, reused by next invocation
+        }
+    }
+}
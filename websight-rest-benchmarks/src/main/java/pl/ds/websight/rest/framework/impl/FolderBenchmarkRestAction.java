@@ -0,0 +1,16 @@
+package pl.ds.websight.rest.framework.impl;
+
+import pl.ds.websight.rest.framework.RestAction;
+import pl.ds.websight.rest.framework.RestActionResult;
+import pl.ds.websight.rest.framework.annotations.PrimaryTypes;
+import pl.ds.websight.rest.framework.annotations.SlingAction;
+
+@SlingAction
+@PrimaryTypes({ "nt:folder", "sling:Folder" })
+class FolderBenchmarkRestAction implements RestAction<Void, Void> {
+
+    @Override
+    public RestActionResult<Void> perform(Void model) {
+        return RestActionResult.success();
+    }
+}
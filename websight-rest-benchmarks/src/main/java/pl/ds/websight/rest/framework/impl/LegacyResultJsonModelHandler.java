@@ -0,0 +1,98 @@
+package pl.ds.websight.rest.framework.impl;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.net.HttpHeaders;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import pl.ds.websight.rest.framework.RestActionResult;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Response envelope serialization as done by {@link RestResponseHandler} up to version 1.0.3: {@code ResultJsonModel}
+ * and {@code AuthContext} beans introspected by Jackson. Kept as a baseline for {@link ResponseEnvelopeBenchmark}.
+ */
+final class LegacyResultJsonModelHandler {
+
+    private static final ObjectWriter JSON_WRITER = new ObjectMapper()
+            .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false)
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .writer();
+
+    void handle(SlingHttpServletRequest request, SlingHttpServletResponse response, RestActionResult<?> restActionResult)
+            throws IOException {
+        ResultJsonModel result = new ResultJsonModel(restActionResult);
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+        result.setAuthContext(createAuthContext(request));
+        JSON_WRITER.writeValue(response.getWriter(), result);
+    }
+
+    private AuthContext createAuthContext(SlingHttpServletRequest request) {
+        boolean authenticated = request.getAuthType() != null;
+        String userId = "anonymous";
+        if (authenticated && request.getUserPrincipal() != null) {
+            userId = request.getUserPrincipal().getName();
+        }
+        return new AuthContext(userId);
+    }
+
+    private static class ResultJsonModel {
+
+        private final String status;
+        private final String message;
+        private final String messageDetails;
+        private final Object entity;
+        private AuthContext authContext;
+
+        ResultJsonModel(RestActionResult<?> restActionResult) {
+            status = restActionResult.getStatus().toString();
+            message = restActionResult.getMessage();
+            messageDetails = restActionResult.getMessageDetails();
+            entity = restActionResult.getEntity();
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public String getMessageDetails() {
+            return messageDetails;
+        }
+
+        public Object getEntity() {
+            return entity;
+        }
+
+        public AuthContext getAuthContext() {
+            return authContext;
+        }
+
+        public void setAuthContext(AuthContext authContext) {
+            this.authContext = authContext;
+        }
+    }
+
+    private static class AuthContext {
+
+        private final String userId;
+
+        AuthContext(String userId) {
+            this.userId = userId;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+    }
+}
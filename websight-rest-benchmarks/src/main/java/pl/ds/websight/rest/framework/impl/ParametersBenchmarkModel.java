@@ -0,0 +1,33 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.models.annotations.Model;
+import pl.ds.websight.request.parameters.support.annotations.RequestParameter;
+
+import java.util.List;
+
+/**
+ * Parameters only model adapted by {@code ModelFactory}, see {@link BoundParametersBenchmarkModel}.
+ */
+@Model(adaptables = SlingHttpServletRequest.class)
+public class ParametersBenchmarkModel {
+
+    @RequestParameter
+    private String name;
+
+    @RequestParameter
+    private String title;
+
+    @RequestParameter
+    private String description;
+
+    @RequestParameter
+    private Long size;
+
+    @RequestParameter
+    private List<String> tags;
+
+    public String getName() {
+        return name;
+    }
+}
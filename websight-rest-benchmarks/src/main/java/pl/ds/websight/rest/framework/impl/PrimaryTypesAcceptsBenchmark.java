@@ -0,0 +1,75 @@
+package pl.ds.websight.rest.framework.impl;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@code OptingServlet.accepts} of {@code @PrimaryTypes} actions. All such actions are registered on
+ * sling/servlet/default, so Sling asks every candidate with matching selectors; {@code candidates} simulates number of
+ * primary type bound actions scanned per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrimaryTypesAcceptsBenchmark {
+
+    private static final String FOLDER_PATH = "/content/benchmark-folder";
+    private static final String UNSTRUCTURED_PATH = "/content/benchmark-unstructured";
+
+    @Param({ "nt:folder", "nt:unstructured" })
+    public String resourcePrimaryType;
+
+    @Param({ "1", "40" })
+    public int candidates;
+
+    private MockSlingHttpServletRequest request;
+    private RestActionsServlet[] servlets;
+
+    @Setup(Level.Trial)
+    public void setUp(SlingBenchmarkState sling) {
+        String path = "nt:folder".equals(resourcePrimaryType) ? FOLDER_PATH : UNSTRUCTURED_PATH;
+        if (sling.context.resourceResolver().getResource(path) == null) {
+            sling.context.create().resource(path, ImmutableMap.<String, Object>of("jcr:primaryType", resourcePrimaryType));
+        }
+        request = sling.newRequest(path);
+        servlets = new RestActionsServlet[candidates];
+        ActionMetrics actionMetrics = sling.restActionMetrics.forAction(FolderBenchmarkRestAction.class.getName());
+        for (int i = 0; i < candidates; i++) {
+            servlets[i] = new RestActionsServlet(new FolderBenchmarkRestAction(), Void.class,
+                    RequestBinders.forModel(Void.class, sling.modelFactory), ValidationPlan.of(Void.class, sling.validator),
+                    sling.restResponseHandler, sling.nodeTypeMatcher, sling.restActionExecutor,
+                    sling.restActionJobManager, actionMetrics, sling.requestTracing, sling.concurrencyLimiter,
+                    sling.rateLimiter, sling.responseCache);
+        }
+    }
+
+    @Benchmark
+    public int accepts() {
+        // every invocation simulates new request
+        request.removeAttribute(NodeTypeMatcher.DECISIONS_ATTRIBUTE);
+        int accepted = 0;
+        for (RestActionsServlet servlet : servlets) {
+            if (servlet.accepts(request)) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+}
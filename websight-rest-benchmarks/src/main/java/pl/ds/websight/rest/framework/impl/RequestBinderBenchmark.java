@@ -0,0 +1,61 @@
+package pl.ds.websight.rest.framework.impl;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.ds.websight.rest.framework.RequestBinder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares model with five request parameters adapted by {@code ModelFactory} with the same model created by binder
+ * generated at compile time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestBinderBenchmark {
+
+    private MockSlingHttpServletRequest request;
+    private RequestBinder<?> modelFactoryBinder;
+    private RequestBinder<?> generatedBinder;
+
+    @Setup(Level.Trial)
+    public void setUp(SlingBenchmarkState sling) {
+        request = sling.newRequest(SlingBenchmarkState.CONTENT_PATH);
+        request.setParameterMap(ImmutableMap.<String, Object>of(
+                "name", "Benchmark",
+                "title", "Benchmark title",
+                "description", "Content used by WebSight Rest Framework benchmarks",
+                "size", "42",
+                "tags", new String[] { "tag-a", "tag-b" }));
+        modelFactoryBinder = RequestBinders.forModel(ParametersBenchmarkModel.class, sling.modelFactory);
+        generatedBinder = RequestBinders.forModel(BoundParametersBenchmarkModel.class, sling.modelFactory);
+        if (!generatedBinder.getClass().getName().endsWith(RequestBinders.BINDER_CLASS_NAME_SUFFIX)) {
+            throw new IllegalStateException("No generated binder, benchmarks have to be compiled with annotation processor");
+        }
+    }
+
+    @Benchmark
+    public Object modelFactory() {
+        return modelFactoryBinder.bind(request);
+    }
+
+    @Benchmark
+    public Object generatedBinder() {
+        return generatedBinder.bind(request);
+    }
+}
@@ -0,0 +1,141 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.ds.websight.rest.framework.Errors;
+import pl.ds.websight.rest.framework.RestAction;
+import pl.ds.websight.rest.framework.RestActionResult;
+import pl.ds.websight.rest.framework.Validatable;
+
+import javax.validation.ConstraintViolation;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures every stage of {@code RestActionsServlet.handle} separately and the whole pipeline together.
+ * Model stages vary by number of constraint annotations, response stages by entity size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestPipelineBenchmark {
+
+    public enum ModelConstraints {
+        NONE(UnconstrainedBenchmarkModel.class),
+        SINGLE(SingleConstraintBenchmarkModel.class),
+        TEN(TenConstraintsBenchmarkModel.class);
+
+        private final Class<?> modelClass;
+
+        ModelConstraints(Class<?> modelClass) {
+            this.modelClass = modelClass;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ModelState {
+
+        @Param
+        public ModelConstraints constraints;
+
+        Class<?> modelClass;
+        MockSlingHttpServletRequest request;
+        Object model;
+        ValidationPlan validationPlan;
+
+        @Setup(Level.Trial)
+        public void setUp(SlingBenchmarkState sling) {
+            modelClass = constraints.modelClass;
+            request = sling.newRequest(SlingBenchmarkState.CONTENT_PATH);
+            model = sling.modelFactory.createModel(request, modelClass);
+            validationPlan = ValidationPlan.of(modelClass, sling.validator);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class EntityState {
+
+        @Param
+        public BenchmarkEntity.EntitySize entitySize;
+
+        RestAction<Object, Object> restAction;
+        RestActionResult<Object> result;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            restAction = new BenchmarkRestAction(BenchmarkEntity.create(entitySize));
+            result = restAction.perform(null);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class PipelineState {
+
+        RestActionsServlet servlet;
+
+        @Setup(Level.Trial)
+        public void setUp(SlingBenchmarkState sling, ModelState modelState, EntityState entityState) {
+            ActionMetrics actionMetrics = sling.restActionMetrics.forAction(entityState.restAction.getClass().getName());
+            servlet = new RestActionsServlet(entityState.restAction, modelState.modelClass,
+                    RequestBinders.forModel(modelState.modelClass, sling.modelFactory), modelState.validationPlan,
+                    sling.restResponseHandler, sling.nodeTypeMatcher, sling.restActionExecutor,
+                    sling.restActionJobManager, actionMetrics, sling.requestTracing, sling.concurrencyLimiter,
+                    sling.rateLimiter, sling.responseCache);
+        }
+    }
+
+    @Benchmark
+    public Object createModel(SlingBenchmarkState sling, ModelState modelState) {
+        return sling.modelFactory.createModel(modelState.request, modelState.modelClass);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Object>> beanValidation(SlingBenchmarkState sling, ModelState modelState) {
+        return sling.validator.validate(modelState.model);
+    }
+
+    @Benchmark
+    public Errors validationPlan(ModelState modelState) {
+        return modelState.validationPlan.validate(modelState.model);
+    }
+
+    @Benchmark
+    public Errors validatableValidate(ModelState modelState) {
+        return ((Validatable) modelState.model).validate();
+    }
+
+    @Benchmark
+    public RestActionResult<Object> perform(ModelState modelState, EntityState entityState) {
+        return entityState.restAction.perform(modelState.model);
+    }
+
+    @Benchmark
+    public MockSlingHttpServletResponse serializeResponse(SlingBenchmarkState sling, ModelState modelState,
+            EntityState entityState) throws IOException {
+        MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        sling.restResponseHandler.handle(modelState.request, response, entityState.result);
+        return response;
+    }
+
+    @Benchmark
+    public MockSlingHttpServletResponse handle(ModelState modelState, PipelineState pipelineState) throws IOException {
+        MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        pipelineState.servlet.doGet(modelState.request, response);
+        return response;
+    }
+}
@@ -0,0 +1,156 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.ds.websight.rest.framework.RestActionResult;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU cost of response compression by {@link RestResponseHandler} compared with not compressed response, for listing
+ * entities of typical sizes. Not compressed response (client not accepting compression) is measured once per listing
+ * size, compressed ones per encoding and level. Size of response written by every variant is printed once per trial,
+ * so time spent can be compared with bytes saved.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseCompressionBenchmark {
+
+    public enum Encoding {
+        GZIP, DEFLATE
+    }
+
+    @State(Scope.Benchmark)
+    public static class ListingState {
+
+        @Param({ "10", "100", "1000" })
+        public int entities;
+
+        RestActionResult<?> result;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            List<BenchmarkEntity> entityList = new ArrayList<>(entities);
+            for (int i = 0; i < entities; i++) {
+                entityList.add(new BenchmarkEntity(i));
+            }
+            result = RestActionResult.success(entityList);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class UncompressedState {
+
+        final RestResponseHandler restResponseHandler = new RestResponseHandler();
+        final DiscardingResponse response = new DiscardingResponse();
+        MockSlingHttpServletRequest request;
+
+        @Setup(Level.Trial)
+        public void setUp(SlingBenchmarkState sling, ListingState listing) throws IOException {
+            restResponseHandler.activate(config(1));
+            request = sling.newRequest(SlingBenchmarkState.CONTENT_PATH);
+            printSize("Not compressed", listing, restResponseHandler, request, response);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class CompressedState {
+
+        @Param
+        public Encoding encoding;
+
+        @Param({ "1", "6" })
+        public int level;
+
+        final RestResponseHandler restResponseHandler = new RestResponseHandler();
+        final DiscardingResponse response = new DiscardingResponse();
+        MockSlingHttpServletRequest request;
+
+        @Setup(Level.Trial)
+        public void setUp(SlingBenchmarkState sling, ListingState listing) throws IOException {
+            restResponseHandler.activate(config(level));
+            request = sling.newRequest(SlingBenchmarkState.CONTENT_PATH);
+            request.addHeader("Accept-Encoding", encoding.name().toLowerCase(Locale.ROOT));
+            printSize(encoding + " level " + level, listing, restResponseHandler, request, response);
+        }
+    }
+
+    @Benchmark
+    public long uncompressed(ListingState listing, UncompressedState state) throws IOException {
+        state.restResponseHandler.handle(state.request, state.response, listing.result);
+        return state.response.getWrittenBytes();
+    }
+
+    @Benchmark
+    public long compressed(ListingState listing, CompressedState state) throws IOException {
+        state.restResponseHandler.handle(state.request, state.response, listing.result);
+        return state.response.getWrittenBytes();
+    }
+
+    private static void printSize(String variant, ListingState listing, RestResponseHandler restResponseHandler,
+            MockSlingHttpServletRequest request, DiscardingResponse response) throws IOException {
+        long before = response.getWrittenBytes();
+        restResponseHandler.handle(request, response, listing.result);
+        System.out.printf("%n%s response of %d entities: %d bytes%n", variant, listing.entities,
+                response.getWrittenBytes() - before);
+    }
+
+    private static RestResponseHandler.Config config(int level) {
+        return new RestResponseHandler.Config() {
+
+            @Override
+            public int buffer_size() {
+                return DEFAULT_BUFFER_SIZE;
+            }
+
+            @Override
+            public int buffer_pool_size() {
+                return DEFAULT_BUFFER_POOL_SIZE;
+            }
+
+            @Override
+            public boolean compression_enabled() {
+                return true;
+            }
+
+            @Override
+            public int compression_min_size() {
+                return 0;
+            }
+
+            @Override
+            public int compression_level() {
+                return level;
+            }
+
+            @Override
+            public int ndjson_flush_size() {
+                return DEFAULT_NDJSON_FLUSH_SIZE;
+            }
+
+            @Override
+            public Class<? extends Annotation> annotationType() {
+                return RestResponseHandler.Config.class;
+            }
+        };
+    }
+}
@@ -0,0 +1,73 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.ds.websight.rest.framework.RestActionResult;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares envelope serialization of small responses (like {@code CheckAuthenticationRestAction}) by the legacy
+ * {@code ResultJsonModel} bean serialization and the current {@link RestResponseHandler}. Run with {@code -prof gc}
+ * and compare {@code gc.alloc.rate.norm} to get bytes allocated per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseEnvelopeBenchmark {
+
+    public enum Payload {
+        NO_ENTITY, MESSAGE, SMALL_ENTITY
+    }
+
+    @Param
+    public Payload payload;
+
+    private final LegacyResultJsonModelHandler legacyHandler = new LegacyResultJsonModelHandler();
+    private final RestResponseHandler restResponseHandler = new RestResponseHandler();
+    private final DiscardingResponse response = new DiscardingResponse();
+    private MockSlingHttpServletRequest request;
+    private RestActionResult<?> result;
+
+    @Setup(Level.Trial)
+    public void setUp(SlingBenchmarkState sling) {
+        request = sling.newRequest(SlingBenchmarkState.CONTENT_PATH);
+        switch (payload) {
+            case MESSAGE:
+                result = RestActionResult.success("Greetings saved", "Hello World!");
+                break;
+            case SMALL_ENTITY:
+                result = RestActionResult.success(BenchmarkEntity.create(BenchmarkEntity.EntitySize.SMALL));
+                break;
+            default:
+                result = RestActionResult.success();
+        }
+    }
+
+    @Benchmark
+    public long legacyResultJsonModel() throws IOException {
+        legacyHandler.handle(request, response, result);
+        return response.getWrittenChars();
+    }
+
+    @Benchmark
+    public long envelopeWriter() throws IOException {
+        restResponseHandler.handle(request, response, result);
+        return response.getWrittenBytes();
+    }
+}
@@ -0,0 +1,75 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.ds.websight.rest.framework.RestActionResult;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding time of response envelope by {@link RestResponseHandler} in formats negotiated by {@code Accept} header,
+ * for listing entities of typical sizes. Size of response written in every format is printed once per trial. Only
+ * formats which data format modules are on classpath are compared (CBOR module requires newer Jackson version).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseFormatBenchmark {
+
+    public enum Format {
+        JSON, SMILE
+    }
+
+    @Param({ "1", "10", "100", "1000" })
+    public int entities;
+
+    @Param
+    public Format format;
+
+    private final RestResponseHandler restResponseHandler = new RestResponseHandler();
+    private final DiscardingResponse response = new DiscardingResponse();
+    private MockSlingHttpServletRequest request;
+    private RestActionResult<?> result;
+
+    @Setup(Level.Trial)
+    public void setUp(SlingBenchmarkState sling) throws IOException {
+        ResponseFormat responseFormat = ResponseFormat.valueOf(format.name());
+        if (!ResponseFormat.getAvailable().contains(responseFormat)) {
+            throw new IllegalStateException("Response format not available: " + responseFormat);
+        }
+        request = sling.newRequest(SlingBenchmarkState.CONTENT_PATH);
+        request.addHeader("Accept", responseFormat.getMediaType());
+        List<BenchmarkEntity> entityList = new ArrayList<>(entities);
+        for (int i = 0; i < entities; i++) {
+            entityList.add(new BenchmarkEntity(i));
+        }
+        result = RestActionResult.success(entityList);
+        long before = response.getWrittenBytes();
+        restResponseHandler.handle(request, response, result);
+        System.out.printf("%n%s response of %d entities: %d bytes%n", format, entities,
+                response.getWrittenBytes() - before);
+    }
+
+    @Benchmark
+    public long handle() throws IOException {
+        restResponseHandler.handle(request, response, result);
+        return response.getWrittenBytes();
+    }
+}
@@ -0,0 +1,54 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.models.annotations.Model;
+import org.apache.sling.models.annotations.Optional;
+import org.apache.sling.models.annotations.Via;
+import pl.ds.websight.rest.framework.Errors;
+import pl.ds.websight.rest.framework.Validatable;
+
+import javax.inject.Inject;
+import javax.validation.constraints.NotNull;
+
+@Model(adaptables = SlingHttpServletRequest.class)
+public class SingleConstraintBenchmarkModel implements Validatable {
+
+    @NotNull
+    @Optional
+    @Inject
+    @Via("resource")
+    private String name;
+
+    @Optional
+    @Inject
+    @Via("resource")
+    private String title;
+
+    @Optional
+    @Inject
+    @Via("resource")
+    private String description;
+
+    @Optional
+    @Inject
+    @Via("resource")
+    private Long size;
+
+    @Optional
+    @Inject
+    @Via("resource")
+    private String[] tags;
+
+    @Override
+    public Errors validate() {
+        Errors errors = Errors.createErrors();
+        if (Character.isLowerCase(name.charAt(0))) {
+            errors.add("name", name, "Name should not start lower case");
+        }
+        return errors;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
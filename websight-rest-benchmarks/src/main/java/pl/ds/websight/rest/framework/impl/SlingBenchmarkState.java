@@ -0,0 +1,87 @@
+package pl.ds.websight.rest.framework.impl;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.models.factory.ModelFactory;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
+import org.hibernate.validator.messageinterpolation.ParameterMessageInterpolator;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import pl.ds.websight.request.parameters.support.impl.injectors.RequestParameterInjector;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.Map;
+
+/**
+ * Sling environment shared by all benchmarks: JCR mock repository with Sling Models, bean validator and stubbed
+ * request pointing to a content resource with properties valid for every benchmark model.
+ */
+@State(Scope.Benchmark)
+public class SlingBenchmarkState {
+
+    static final String CONTENT_PATH = "/content/benchmark";
+
+    private static final Map<String, Object> CONTENT_PROPERTIES = ImmutableMap.<String, Object>builder()
+            .put("jcr:primaryType", "nt:unstructured")
+            .put("name", "Benchmark")
+            .put("title", "Benchmark title")
+            .put("description", "Content used by WebSight Rest Framework benchmarks")
+            .put("size", 42L)
+            .put("tags", new String[] { "tag-a", "tag-b" })
+            .build();
+
+    BenchmarkSlingContext context;
+    ModelFactory modelFactory;
+    Validator validator;
+    RestResponseHandler restResponseHandler;
+    NodeTypeMatcher nodeTypeMatcher;
+    RestActionExecutor restActionExecutor;
+    RestActionJobManager restActionJobManager;
+    RestActionMetrics restActionMetrics;
+    RequestTracing requestTracing;
+    ConcurrencyLimiter concurrencyLimiter;
+    RateLimiter rateLimiter;
+    ResponseCache responseCache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new BenchmarkSlingContext();
+        context.start();
+        context.registerInjectActivateService(new RequestParameterInjector());
+        context.addModelsForClasses(UnconstrainedBenchmarkModel.class, SingleConstraintBenchmarkModel.class,
+                TenConstraintsBenchmarkModel.class, ParametersBenchmarkModel.class, BoundParametersBenchmarkModel.class);
+        context.create().resource(CONTENT_PATH, CONTENT_PROPERTIES);
+        modelFactory = context.getService(ModelFactory.class);
+        validator = Validation.byDefaultProvider()
+                .configure()
+                .messageInterpolator(new ParameterMessageInterpolator())
+                .buildValidatorFactory()
+                .getValidator();
+        restResponseHandler = new RestResponseHandler();
+        nodeTypeMatcher = new NodeTypeMatcher();
+        restActionExecutor = context.registerInjectActivateService(new RestActionExecutor());
+        restActionJobManager = context.registerInjectActivateService(new RestActionJobManager());
+        restActionMetrics = context.registerInjectActivateService(new RestActionMetrics());
+        requestTracing = context.registerInjectActivateService(new RequestTracing());
+        concurrencyLimiter = context.registerInjectActivateService(new ConcurrencyLimiter());
+        rateLimiter = context.registerInjectActivateService(new RateLimiter());
+        responseCache = context.registerInjectActivateService(new ResponseCache());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.stop();
+    }
+
+    MockSlingHttpServletRequest newRequest(String path) {
+        Resource resource = context.resourceResolver().getResource(path);
+        MockSlingHttpServletRequest request = new MockSlingHttpServletRequest(context.resourceResolver(), context.bundleContext());
+        request.setResource(resource);
+        request.setMethod("GET");
+        return request;
+    }
+}
@@ -0,0 +1,69 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.models.annotations.Model;
+import org.apache.sling.models.annotations.Optional;
+import org.apache.sling.models.annotations.Via;
+import pl.ds.websight.rest.framework.Errors;
+import pl.ds.websight.rest.framework.Validatable;
+
+import javax.inject.Inject;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Size;
+
+@Model(adaptables = SlingHttpServletRequest.class)
+public class TenConstraintsBenchmarkModel implements Validatable {
+
+    @NotNull
+    @NotBlank
+    @Size(max = 64)
+    @Pattern(regexp = "[A-Za-z ]+")
+    @Optional
+    @Inject
+    @Via("resource")
+    private String name;
+
+    @NotNull
+    @Size(min = 1, max = 256)
+    @Optional
+    @Inject
+    @Via("resource")
+    private String title;
+
+    @Size(max = 4096)
+    @Optional
+    @Inject
+    @Via("resource")
+    private String description;
+
+    @Min(0)
+    @Max(Integer.MAX_VALUE)
+    @Optional
+    @Inject
+    @Via("resource")
+    private Long size;
+
+    @NotEmpty
+    @Optional
+    @Inject
+    @Via("resource")
+    private String[] tags;
+
+    @Override
+    public Errors validate() {
+        Errors errors = Errors.createErrors();
+        if (Character.isLowerCase(name.charAt(0))) {
+            errors.add("name", name, "Name should not start lower case");
+        }
+        return errors;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -1,4 +1,21 @@
-const VALID_REST_RESPONSE_STATUSES = ['SUCCESS', 'FAILURE', 'VALIDATION_FAILURE', 'ERROR'];
+const VALID_REST_RESPONSE_STATUSES = ['SUCCESS', 'FAILURE', 'VALIDATION_FAILURE', 'ERROR', 'RATE_LIMITED'];
+
+const BATCH_ACTION_URL = '/apps/websight-rest-framework/bin/batch.action';
+const JOB_STATUS_ACTION_URL = '/apps/websight-rest-framework/bin/job-status.action';
+const JOB_RESULT_ACTION_URL = '/apps/websight-rest-framework/bin/job-result.action';
+const CANCEL_JOB_ACTION_URL = '/apps/websight-rest-framework/bin/cancel-job.action';
+const WATCH_ACTION_URL = '/apps/websight-rest-framework/bin/watch.action';
+
+const FINISHED_JOB_STATES = ['SUCCEEDED', 'FAILED', 'CANCELLED'];
+
+const OVERLOAD_RETRIES = 3;
+const OVERLOAD_RETRY_DELAY = 250;
+
+const CONDITIONAL_CACHE_SIZE = 100;
+
+const NDJSON_ACCEPT = 'application/x-ndjson, application/json;q=0.9';
+
+const EVENT_STREAM_ACCEPT = 'text/event-stream, application/json;q=0.9';
 
 const REQUEST_HEADER_EXTENDERS = {
     Accept: {
@@ -6,6 +23,12 @@ const REQUEST_HEADER_EXTENDERS = {
         value: () => {
             return 'application/json';
         }
+    },
+    'X-Correlation-ID': {
+        methods: ['POST', 'GET'],
+        value: () => {
+            return generateCorrelationId();
+        }
     }
 };
 
@@ -28,6 +51,19 @@ class RestClient {
      * @param {Response|any} data
      */
 
+    /**
+     * Handler of streamed entity element.
+     * @callback RestClient~itemHandler
+     * @param {any} item
+     * @param {number} index
+     */
+
+    /**
+     * Handler of streamed entity elements received in one chunk.
+     * @callback RestClient~chunkHandler
+     * @param {any[]} items
+     */
+
     /**
      * Executes action as a GET request.
      *
@@ -53,6 +89,14 @@ class RestClient {
      *             <li>`action.onFailure`</li>
      *             <li>`RestClient.handlers.failureHandler`</li>
      *         </ul>
+     * @param {RestClient~frameworkResponseHandler} action.onRateLimited - Action rate limit handler executed when response JSON
+     *         `status` field is `RATE_LIMITED` (request was rejected, `429` status). If not set, then first defined handler
+     *         of the following is executed:
+     *         <ul>
+     *             <li>`RestClient.handlers.rateLimitedHandler`</li>
+     *             <li>`action.onFailure`</li>
+     *             <li>`RestClient.handlers.failureHandler`</li>
+     *         </ul>
      * @param {RestClient~nonFrameworkErrorResponseHandler} action.onNonFrameworkError - Non framework error handler executed when response
      *         is unsupported by `RestClient`. If not set, then `RestClient.handlers.nonFrameworkErrorHandler(data)` will be used by default.
      *         Response is unsupported when:
@@ -61,7 +105,13 @@ class RestClient {
      *             <li>is JSON, but `status` field is missing or is not in: `SUCCESS`, `FAILURE`, `VALIDATION_FAILURE`, `ERROR`</li>
      *             <li>is JSON, but doesn't have required properties (`status`, `authContext`, `authContext.userId`)</li>
      *             <li>communication error occurred</li>
+     *             <li>newline delimited JSON body is truncated (its last line is missing)</li>
      *         </ul>
+     * @param {RestClient~itemHandler} action.onItem - Handler of elements of streamed entity (see `RestActionResult.successStream`),
+     *         executed for every element as soon as it is received. If `onItem` or `onChunk` is set, entity is requested
+     *         as newline delimited JSON and envelope passed to other handlers has no entity, after all elements are handled.
+     * @param {RestClient~chunkHandler} action.onChunk - Handler of elements of streamed entity, executed with array of
+     *         elements received in one chunk of response body.
      */
     get(action) {
         if (action.data) {
@@ -84,7 +134,7 @@ class RestClient {
             url: prepareUrl(action.action, action.resourcePath, this.bundleName) + buildQueryString(action.parameters),
             options: {
                 method: 'GET',
-                headers: getHeaders('GET'),
+                headers: getStreamingHeaders('GET', action),
                 credentials: getCredentialsConfig(),
                 signal: action.signal
             }
@@ -98,7 +148,9 @@ class RestClient {
      * @param {string} action.action - Action name. Ignored if `action.resourcePath` is present.
      * @param {string} action.resourcePath - Sling resource path.
      * @param {(HTMLFormElement|FormData|Object)} action.data - An HTML `<form>` element or `FormData`
-     *         or plain object, eg. `{ key1: value1, key2: value2 }`.
+     *         or plain object, eg. `{ key1: value1, key2: value2 }`. Ignored if `action.json` is present.
+     * @param {Object} action.json - Object sent as `application/json` request body, eg. `{ items: [{ key1: value1 }] }`.
+     *         Action model must be annotated with `@JsonRequestBody`.
      * @param {RestClient~frameworkResponseHandler} action.onSuccess - Action success handler executed when response JSON `status` field
      *         is `SUCCESS`. If not set, then `RestClient.handlers.successHandler(data)` will be used by default.
      * @param {RestClient~frameworkResponseHandler} action.onFailure - Action failure handler executed when response JSON `status` field
@@ -117,6 +169,14 @@ class RestClient {
      *             <li>`action.onFailure`</li>
      *             <li>`RestClient.handlers.failureHandler`</li>
      *         </ul>
+     * @param {RestClient~frameworkResponseHandler} action.onRateLimited - Action rate limit handler executed when response JSON
+     *         `status` field is `RATE_LIMITED` (request was rejected, `429` status). If not set, then first defined handler
+     *         of the following is executed:
+     *         <ul>
+     *             <li>`RestClient.handlers.rateLimitedHandler`</li>
+     *             <li>`action.onFailure`</li>
+     *             <li>`RestClient.handlers.failureHandler`</li>
+     *         </ul>
      * @param {RestClient~nonFrameworkErrorResponseHandler} action.onNonFrameworkError - Non framework error handler executed when response
      *         is unsupported by `RestClient`. If not set, then `RestClient.handlers.nonFrameworkErrorHandler(data)` will be used by default.
      *         Response is unsupported when:
@@ -125,7 +185,10 @@ class RestClient {
      *             <li>is JSON, but `status` field is missing or is not in: `SUCCESS`, `FAILURE`, `VALIDATION_FAILURE`, `ERROR`</li>
      *             <li>is JSON, but doesn't have required properties (`status`, `authContext`, `authContext.userId`)</li>
      *             <li>communication error occurred</li>
+     *             <li>newline delimited JSON body is truncated (its last line is missing)</li>
      *         </ul>
+     * @param {RestClient~itemHandler} action.onItem - Handler of elements of streamed entity, see `get` method.
+     * @param {RestClient~chunkHandler} action.onChunk - Handler of chunks of elements of streamed entity, see `get` method.
      */
     post(action) {
         request(action, this.buildPostFetchParameters(action), this.bundleName, this.handlers);
@@ -138,22 +201,348 @@ class RestClient {
      * @param {string} action.action - Action name. Ignored if `action.resourcePath` is present.
      * @param {Object} action.resourcePath - Sling resource path.
      * @param {(HTMLFormElement|FormData|Object)} action.data - An HTML `<form>` element or `FormData`
-     *         or plain object, eg. `{ key1: value1, key2: value2 }`.
+     *         or plain object, eg. `{ key1: value1, key2: value2 }`. Ignored if `action.json` is present.
+     * @param {Object} action.json - Object sent as `application/json` request body, eg. `{ items: [{ key1: value1 }] }`.
+     *         Action model must be annotated with `@JsonRequestBody`.
      * @returns {Object} - Object with `url` and `options` parameters ready for use in `fetch(result.url, result.options)`.
      */
     buildPostFetchParameters(action) {
+        const headers = getStreamingHeaders('POST', action);
+        let body;
+        if (action.json !== undefined) {
+            if (action.data) {
+                console.warn('The data value is ignored (json value is sent in request body)');
+            }
+            headers['Content-Type'] = 'application/json';
+            body = JSON.stringify(action.json);
+        } else {
+            body = buildFormData(action.data);
+        }
         return {
             url: prepareUrl(action.action, action.resourcePath, this.bundleName),
             options: {
                 method: 'POST',
-                headers: getHeaders('POST'),
-                body: buildFormData(action.data),
+                headers: headers,
+                body: body,
                 credentials: getCredentialsConfig(),
                 signal: action.signal
             }
         };
     }
 
+    /**
+     * Executes many actions in one POST request, by framework batch action. Every action is processed on server as if
+     * it was sent separately and its result is passed to handlers of that action, as for `get` and `post` methods.
+     * If batch request itself fails, its response (or error) is passed to handlers of every action.
+     *
+     * @param {Object[]} actions - Actions to execute. Every action is defined as for `get` method (`action`,
+     *         `resourcePath`, `parameters`, handlers) or, with `method: 'POST'`, as for `post` method (`data` has to be
+     *         a plain object, `json` is supported). Optional `bundleName` overrides bundle name of this client.
+     *         Action `always` handler is executed also when action was skipped.
+     * @param {Object} options - Batch options.
+     * @param {boolean} options.parallel - Execute actions in parallel on server (each with own resource resolver).
+     * @param {boolean} options.stopOnFailure - Skip actions following the first action without `SUCCESS` status
+     *         (in parallel mode actions not yet started when failure happens are skipped). Handlers of skipped actions
+     *         are not executed.
+     * @param {AbortSignal} options.signal - Signal of batch request.
+     */
+    batch(actions, options = {}) {
+        const handleBatchFailure = data => actions.forEach(action => handleResponseData(action, data, this.handlers));
+        const batchAction = {
+            onSuccess: data => (data.entity || []).forEach((result, index) => {
+                if (result !== null && index < actions.length) {
+                    handleResponseData(actions[index], Object.freeze(result), this.handlers);
+                }
+            }),
+            onFailure: handleBatchFailure,
+            onValidationFailure: handleBatchFailure,
+            onError: handleBatchFailure,
+            onRateLimited: handleBatchFailure,
+            onNonFrameworkError: error => actions.forEach(action => {
+                const handler = action.onNonFrameworkError || this.handlers.nonFrameworkErrorHandler;
+                handler(error);
+            }),
+            always: () => actions.forEach(action => {
+                try {
+                    if (action.always) {
+                        action.always();
+                    }
+                } catch (error) {
+                    console.error(error);
+                }
+            })
+        };
+        request(batchAction, this.buildBatchFetchParameters(actions, options), this.bundleName, this.handlers);
+    }
+
+    /**
+     * Builds `fetch()` method parameters for a batch request.
+     *
+     * @param {Object[]} actions - Actions to execute, see `batch` method.
+     * @param {Object} options - Batch options, see `batch` method.
+     * @returns {Object} - Object with `url` and `options` parameters ready for use in `fetch(result.url, result.options)`.
+     */
+    buildBatchFetchParameters(actions, options = {}) {
+        const requests = actions.map(action => {
+            const method = action.method === 'POST' ? 'POST' : 'GET';
+            if (method === 'POST' && (action.data instanceof FormData || action.data instanceof HTMLFormElement)) {
+                console.warn('The data value of batch action need to be plain object (FormData and forms are not supported)');
+            }
+            return {
+                path: prepareUrl(action.action, action.resourcePath, action.bundleName || this.bundleName),
+                method: method,
+                parameters: method === 'POST' ? action.data : action.parameters,
+                json: action.json
+            };
+        });
+        const headers = getHeaders('POST');
+        headers['Content-Type'] = 'application/json';
+        return {
+            url: BATCH_ACTION_URL,
+            options: {
+                method: 'POST',
+                headers: headers,
+                body: JSON.stringify({
+                    requests: requests,
+                    parallel: !!options.parallel,
+                    stopOnFailure: !!options.stopOnFailure
+                }),
+                credentials: getCredentialsConfig(),
+                signal: options.signal
+            }
+        };
+    }
+
+    /**
+     * Executes job action (implementing `JobRestAction`) and polls its status, with growing delay, until the job is
+     * finished. Result of the job is passed to action handlers, as for `get` and `post` methods. If job was not
+     * accepted (e.g. validation failed), response is passed to action handlers instead.
+     *
+     * @param {Object} action - Action to execute, defined as for `post` method or, with `method: 'GET'`, as for `get`
+     *         method. Action `always` handler is executed once, after final response.
+     * @param {Object} options - Polling options.
+     * @param {number} options.initialDelay - Delay of the first status request in milliseconds (default 500).
+     * @param {number} options.maxDelay - Maximal delay between status requests in milliseconds (default 10000).
+     * @param {number} options.backoffFactor - Factor by which delay grows after every status request (default 1.5).
+     * @param {function(Object)} options.onProgress - Called with job status entity (`id`, `state`, `completed`,
+     *         `total`, `message`) after every status request.
+     * @param {AbortSignal} options.signal - Signal stopping polling (job is not cancelled, see `cancelJob`).
+     * @returns {Promise<Object>} - Promise resolved with final response data passed to action handlers, or rejected
+     *         with non framework error (after `onNonFrameworkError` handler is executed).
+     */
+    job(action, options = {}) {
+        const fetchParameters = action.method === 'GET'
+            ? this.buildGetFetchParameters(action) : this.buildPostFetchParameters(action);
+        const initialDelay = options.initialDelay || 500;
+        const maxDelay = options.maxDelay || 10000;
+        const backoffFactor = options.backoffFactor || 1.5;
+        const pollOptions = {
+            method: 'GET',
+            headers: getHeaders('GET'),
+            credentials: getCredentialsConfig(),
+            signal: options.signal
+        };
+        const poll = (jobId, delay) => wait(delay, options.signal)
+            .then(() => fetchJson(JOB_STATUS_ACTION_URL + buildQueryString({ id: jobId }), pollOptions))
+            .then(data => {
+                if (data.status !== 'SUCCESS') {
+                    return data;
+                }
+                if (options.onProgress) {
+                    options.onProgress(data.entity);
+                }
+                if (FINISHED_JOB_STATES.includes(data.entity.state)) {
+                    return fetchJson(JOB_RESULT_ACTION_URL + buildQueryString({ id: jobId }), pollOptions);
+                }
+                return poll(jobId, Math.min(delay * backoffFactor, maxDelay));
+            });
+        const always = () => {
+            try {
+                if (action.always) {
+                    action.always();
+                }
+            } catch (error) {
+                console.error(error);
+            }
+        };
+        return fetchJson(fetchParameters.url, fetchParameters.options)
+            .then(data => {
+                if (data.status === 'SUCCESS' && data.entity && data.entity.id && data.entity.state) {
+                    return poll(data.entity.id, initialDelay);
+                }
+                return data;
+            })
+            .then(data => {
+                always();
+                handleResponseData(action, data, this.handlers);
+                return data;
+            }, error => {
+                always();
+                const handler = action.onNonFrameworkError || this.handlers.nonFrameworkErrorHandler;
+                handler(error);
+                throw error;
+            });
+    }
+
+    /**
+     * Walks pages of paged action result (`RestActionResult.page`) on demand: every step of the returned async
+     * iterator requests the next page with `cursor` parameter (`nextCursor` of the previous page) and yields its items.
+     * Iteration ends after the last page (without `nextCursor`) or after response other than `SUCCESS`, which is
+     * passed to action handlers. Example: `for await (const items of client.pages({ action: 'list' })) { ... }`
+     *
+     * @param {Object} action - Action to execute, defined as for `get` method. Its `onSuccess` handler, if set, is
+     *         executed for response of every page.
+     * @param {number} limit - Number of items of page (`limit` parameter), server default if not set.
+     * @returns {AsyncIterator<Array>} - Async iterator of arrays of items of pages. Its `next` promise is rejected with
+     *         non framework error (after `onNonFrameworkError` handler is executed).
+     */
+    pages(action, limit) {
+        const client = this;
+        let cursor = null;
+        let done = false;
+        return {
+            [Symbol.asyncIterator]() {
+                return this;
+            },
+            next() {
+                if (done) {
+                    return Promise.resolve({ done: true, value: undefined });
+                }
+                const parameters = Object.assign({}, action.parameters);
+                if (limit) {
+                    parameters.limit = limit;
+                }
+                if (cursor) {
+                    parameters.cursor = cursor;
+                }
+                const fetchParameters = client.buildGetFetchParameters(Object.assign({}, action, { parameters }));
+                return fetchJson(fetchParameters.url, fetchParameters.options).then(data => {
+                    if (data.status !== 'SUCCESS') {
+                        done = true;
+                        handleResponseData(action, data, client.handlers);
+                        return { done: true, value: undefined };
+                    }
+                    if (action.onSuccess) {
+                        handleResponseData(action, data, client.handlers);
+                    } else {
+                        setAuthContext(data.authContext);
+                    }
+                    cursor = data.nextCursor || null;
+                    done = !cursor;
+                    return { done: false, value: data.entity || [] };
+                }, error => {
+                    done = true;
+                    const handler = action.onNonFrameworkError || client.handlers.nonFrameworkErrorHandler;
+                    handler(error);
+                    throw error;
+                });
+            },
+            return() {
+                done = true;
+                return Promise.resolve({ done: true, value: undefined });
+            }
+        };
+    }
+
+    /**
+     * Cancels job started by `job` method.
+     *
+     * @param {string} jobId - Id of the job (`id` of job status passed to `onProgress`).
+     * @param {Object} action - Optional handlers of cancel response, as for `post` method.
+     */
+    cancelJob(jobId, action = {}) {
+        const fetchParameters = this.buildPostFetchParameters({ data: { id: jobId } });
+        fetchParameters.url = CANCEL_JOB_ACTION_URL;
+        request(action, fetchParameters, this.bundleName, this.handlers);
+    }
+
+    /**
+     * Watches resources for changes pushed by server as server-sent events, instead of polling them. Connection is
+     * reopened when it is closed or lost (with growing delay, also when server is overloaded), sending id of the last
+     * received event, so changes made while client was disconnected are reported too.
+     *
+     * @param {Object} action - Watched resources and handlers of changes.
+     * @param {string[]} action.paths - Paths of watched resources.
+     * @param {string[]} action.prefixes - Paths of watched subtrees (resource and all its descendants).
+     * @param {function(Object)} action.onChange - Called with `paths` and `prefixes` under which resources changed.
+     *         Changes are coalesced by server, so it is called at most a few times per second.
+     * @param {function()} action.onOpen - Called every time connection is opened. Changes made before connection
+     *         was opened for the first time are not reported.
+     * @param {RestClient~frameworkResponseHandler} action.onValidationFailure - Handler of response to invalid watch
+     *         request (e.g. not readable resource), which is not retried. Other framework handlers (`onFailure`,
+     *         `onError`) and `onNonFrameworkError` are used as for `get` method.
+     * @param {Object} options - Reconnecting options.
+     * @param {number} options.initialDelay - Delay of reconnecting in milliseconds (default 1000).
+     * @param {number} options.maxDelay - Maximal delay of reconnecting in milliseconds (default 30000).
+     * @param {AbortSignal} options.signal - Signal closing the connection and stopping watching.
+     * @returns {Promise} - Promise resolved when watching is stopped by signal or by response other than event
+     *         stream (after its handler is executed).
+     */
+    watch(action, options = {}) {
+        const url = WATCH_ACTION_URL + buildQueryString({ path: action.paths || [], prefix: action.prefixes || [] });
+        const initialDelay = options.initialDelay || 1000;
+        const maxDelay = options.maxDelay || 30000;
+        let lastEventId = null;
+        let delay = initialDelay;
+        const handleEvent = event => {
+            if (event.id) {
+                lastEventId = event.id;
+            }
+            if (event.type === 'open') {
+                delay = initialDelay;
+                if (action.onOpen) {
+                    action.onOpen();
+                }
+            } else if (event.type === 'change' && action.onChange) {
+                action.onChange(JSON.parse(event.data));
+            }
+        };
+        const connect = () => {
+            const headers = getHeaders('GET');
+            headers.Accept = EVENT_STREAM_ACCEPT;
+            if (lastEventId) {
+                headers['Last-Event-ID'] = lastEventId;
+            }
+            return fetch(url, { method: 'GET', headers, credentials: getCredentialsConfig(), signal: options.signal })
+                .then(response => {
+                    const contentType = response.headers.get('content-type');
+                    if (contentType && contentType.startsWith('text/event-stream')) {
+                        return readEvents(response, handleEvent).then(() => true);
+                    }
+                    const retryAfter = response.headers.get('retry-after');
+                    if (response.status === 503 && retryAfter !== null) {
+                        delay = Math.max(delay, (parseInt(retryAfter, 10) || 0) * 1000);
+                        return true;
+                    }
+                    if (contentType && contentType.startsWith('application/json')) {
+                        return response.json().then(data => {
+                            handleResponseData(action, Object.freeze(data), this.handlers);
+                            return false;
+                        });
+                    }
+                    throw response;
+                })
+                .catch(error => {
+                    if (error instanceof Error) {
+                        // connection lost or aborted
+                        return true;
+                    }
+                    const handler = action.onNonFrameworkError || this.handlers.nonFrameworkErrorHandler;
+                    handler(error);
+                    return false;
+                })
+                .then(reconnect => {
+                    if (!reconnect || (options.signal && options.signal.aborted)) {
+                        return undefined;
+                    }
+                    const currentDelay = delay * (1 + Math.random() / 2);
+                    delay = Math.min(delay * 2, maxDelay);
+                    return wait(currentDelay, options.signal).then(connect, () => undefined);
+                });
+        };
+        return connect();
+    }
+
     setGlobalOnSuccess(value) {
         this.handlers.successHandler = value;
     }
@@ -170,6 +559,10 @@ class RestClient {
         this.handlers.errorHandler = value;
     }
 
+    setGlobalOnRateLimited(value) {
+        this.handlers.rateLimitedHandler = value;
+    }
+
     setGlobalOnNonFrameworkError(value) {
         this.handlers.nonFrameworkErrorHandler = value;
     }
@@ -186,6 +579,7 @@ class Handlers {
         }
         this.validationFailureHandler = null;
         this.errorHandler = null;
+        this.rateLimitedHandler = null;
         this.nonFrameworkErrorHandler = function (error) {
             console.warn('RestClient default non framework error handler: ignoring error: %o', error);
         };
@@ -194,6 +588,9 @@ class Handlers {
 
 const handlersInstance = new Handlers();
 
+// last tagged response data by URL of GET request, in least recently used order
+const conditionalCache = new Map();
+
 function request(action, fetchParams, bundleName, handlers) {
     const always = () => {
         try {
@@ -204,31 +601,30 @@ function request(action, fetchParams, bundleName, handlers) {
             console.error(error);
         }
     };
-    fetch(fetchParams.url, fetchParams.options)
+    fetchConditional(fetchParams.url, fetchParams.options)
         .then(response => {
-            always();
             let handler = null;
             const contentType = response.headers.get('content-type'); // fetch api returns headers names with lowercase
+            if (contentType && contentType.startsWith('application/x-ndjson')) {
+                readItems(response, action).then(data => {
+                    always();
+                    handleResponseData(action, data, handlers);
+                }).catch(error => {
+                    always();
+                    handler = action.onNonFrameworkError || handlers.nonFrameworkErrorHandler;
+                    handler(error);
+                });
+                return;
+            }
+            always();
             // header contains also encoding: application/json;charset=utf-8
             if (contentType && contentType.startsWith('application/json')) {
                 response.json().then(data => {
                     Object.freeze(data);
-                    if (isValidRestResponse(data)) {
-                        if (data.status === 'SUCCESS') {
-                            handler = action.onSuccess || handlers.successHandler;
-                        } else if (data.status === 'FAILURE') {
-                            handler = action.onFailure || handlers.failureHandler;
-                        } else if (data.status === 'VALIDATION_FAILURE') {
-                            handler = action.onValidationFailure || handlers.validationFailureHandler || action.onFailure || handlers.failureHandler;
-                        } else if (data.status === 'ERROR') {
-                            handler = action.onError || handlers.errorHandler || action.onFailure || handlers.failureHandler;
-                        }
-                        setAuthContext(data.authContext);
-                        handler(data);
-                    } else {
-                        handler = action.onNonFrameworkError || handlers.nonFrameworkErrorHandler;
-                        handler(data);
+                    if (data.status === 'SUCCESS' && Array.isArray(data.entity)) {
+                        handleItems(action, data.entity, 0);
                     }
+                    handleResponseData(action, data, handlers);
                 }).catch(error => {
                     handler = action.onNonFrameworkError || handlers.nonFrameworkErrorHandler;
                     handler(error);
@@ -245,6 +641,251 @@ function request(action, fetchParams, bundleName, handlers) {
         });
 }
 
+/**
+ * Reads newline delimited JSON response as chunks of its body arrive. The first line is response envelope (without
+ * entity), next lines are elements of streamed entity, passed to item handlers of action. The last line is
+ * `{"complete":true}`, or error envelope if the stream failed on server. Resolves with envelope (the first one or
+ * the error one) once the whole body is read, rejects if the body is truncated. Line which can be the last one is held
+ * until the next line arrives (then it was an element) or the body ends.
+ */
+function readItems(response, action) {
+    const reader = response.body.getReader();
+    const decoder = new TextDecoder();
+    let envelope = null;
+    let last = null;
+    let pending = '';
+    let index = 0;
+    const handleLines = lines => {
+        const items = [];
+        lines.filter(line => line.trim()).forEach(line => {
+            const value = JSON.parse(line);
+            if (envelope === null) {
+                if (!isValidRestResponse(value)) {
+                    throw value;
+                }
+                envelope = Object.freeze(value);
+                return;
+            }
+            if (last !== null) {
+                items.push(last);
+                last = null;
+            }
+            if (isLastLine(value)) {
+                last = value;
+            } else {
+                items.push(value);
+            }
+        });
+        index = handleItems(action, items, index);
+    };
+    const read = () => reader.read().then(({ done, value }) => {
+        if (done) {
+            handleLines([pending + decoder.decode()]);
+            if (envelope === null || last === null) {
+                throw response;
+            }
+            return last.complete === true ? envelope : Object.freeze(last);
+        }
+        const lines = (pending + decoder.decode(value, { stream: true })).split('\n');
+        pending = lines.pop();
+        handleLines(lines);
+        return read();
+    });
+    return read().catch(error => {
+        reader.cancel().catch(() => {});
+        throw error;
+    });
+}
+
+function isLastLine(value) {
+    return value !== null && typeof value === 'object'
+        && ((value.complete === true && Object.keys(value).length === 1)
+            || (isValidRestResponse(value) && value.status === 'ERROR'));
+}
+
+/**
+ * Passes elements of streamed entity to item handlers of action.
+ *
+ * @returns {number} - Index of the next element.
+ */
+function handleItems(action, items, index) {
+    if (!items.length) {
+        return index;
+    }
+    if (action.onItem) {
+        items.forEach((item, offset) => action.onItem(item, index + offset));
+    }
+    if (action.onChunk) {
+        action.onChunk(items);
+    }
+    return index + items.length;
+}
+
+/**
+ * Reads server-sent events as chunks of response body arrive, passing every event (`type`, `data` and `id`) to the
+ * handler. Comments (keep-alive) are skipped. Resolves when the response ends.
+ */
+function readEvents(response, handler) {
+    const reader = response.body.getReader();
+    const decoder = new TextDecoder();
+    let pending = '';
+    let event = { type: 'message', data: [], id: null };
+    const handleLine = line => {
+        if (!line) {
+            if (event.data.length) {
+                handler({ type: event.type, data: event.data.join('\n'), id: event.id });
+            }
+            event = { type: 'message', data: [], id: null };
+            return;
+        }
+        if (line.startsWith(':')) {
+            return;
+        }
+        const separator = line.indexOf(':');
+        const field = separator < 0 ? line : line.substring(0, separator);
+        const value = separator < 0 ? '' : line.substring(separator + 1).replace(/^ /, '');
+        if (field === 'event') {
+            event.type = value;
+        } else if (field === 'data') {
+            event.data.push(value);
+        } else if (field === 'id') {
+            event.id = value;
+        }
+    };
+    const read = () => reader.read().then(({ done, value }) => {
+        if (done) {
+            return undefined;
+        }
+        const lines = (pending + decoder.decode(value, { stream: true })).split(/\r?\n/);
+        pending = lines.pop();
+        lines.forEach(handleLine);
+        return read();
+    });
+    return read().catch(error => {
+        reader.cancel().catch(() => {});
+        throw error;
+    });
+}
+
+/**
+ * Fetches framework response, rejects if response is not a valid framework response.
+ */
+function fetchJson(url, options) {
+    return fetchConditional(url, options).then(response => {
+        const contentType = response.headers.get('content-type');
+        if (!contentType || !contentType.startsWith('application/json')) {
+            throw response;
+        }
+        return response.json();
+    }).then(data => {
+        if (!isValidRestResponse(data)) {
+            throw data;
+        }
+        return Object.freeze(data);
+    });
+}
+
+/**
+ * Fetches resource, retrying with exponential backoff (but not sooner than `Retry-After`) requests rejected by
+ * overloaded server with `503` status and `Retry-After` header. Such requests were not handled by the action.
+ */
+function fetchWithRetry(url, options, attempt = 0) {
+    return fetch(url, options).then(response => {
+        const retryAfter = response.headers.get('retry-after');
+        if (response.status !== 503 || retryAfter === null || attempt >= OVERLOAD_RETRIES) {
+            return response;
+        }
+        const backoff = OVERLOAD_RETRY_DELAY * Math.pow(2, attempt) * (1 + Math.random() / 2);
+        const delay = Math.max((parseInt(retryAfter, 10) || 0) * 1000, backoff);
+        return wait(delay, options.signal).then(() => fetchWithRetry(url, options, attempt + 1));
+    });
+}
+
+/**
+ * Fetches resource, sending `If-None-Match` header with `ETag` of last response to GET request of the URL. Tagged
+ * JSON responses are remembered and replayed when server responds with `304 Not Modified`, so callers always get
+ * response with body.
+ */
+function fetchConditional(url, options) {
+    if (options.method !== 'GET') {
+        return fetchWithRetry(url, options);
+    }
+    const cached = conditionalCache.get(url);
+    const conditionalOptions = cached
+        ? Object.assign({}, options, { headers: Object.assign({}, options.headers, { 'If-None-Match': cached.etag }) })
+        : options;
+    return fetchWithRetry(url, conditionalOptions).then(response => {
+        if (response.status === 304 && cached) {
+            conditionalCache.delete(url);
+            conditionalCache.set(url, cached);
+            return replayResponse(response, cached.data);
+        }
+        const etag = response.headers.get('etag');
+        const contentType = response.headers.get('content-type');
+        if (!response.ok || !etag || !contentType || !contentType.startsWith('application/json')) {
+            return response;
+        }
+        return response.json().then(data => {
+            conditionalCache.delete(url);
+            conditionalCache.set(url, { etag: etag, data: data });
+            if (conditionalCache.size > CONDITIONAL_CACHE_SIZE) {
+                conditionalCache.delete(conditionalCache.keys().next().value);
+            }
+            return replayResponse(response, data);
+        });
+    });
+}
+
+function replayResponse(response, data) {
+    return {
+        status: 200,
+        ok: true,
+        url: response.url,
+        headers: {
+            get: name => name.toLowerCase() === 'content-type' ? 'application/json' : response.headers.get(name)
+        },
+        json: () => Promise.resolve(data)
+    };
+}
+
+function wait(delay, signal) {
+    return new Promise((resolve, reject) => {
+        if (signal && signal.aborted) {
+            reject(new DOMException('Waiting aborted', 'AbortError'));
+            return;
+        }
+        const timeout = setTimeout(resolve, delay);
+        if (signal) {
+            signal.addEventListener('abort', () => {
+                clearTimeout(timeout);
+                reject(new DOMException('Waiting aborted', 'AbortError'));
+            }, { once: true });
+        }
+    });
+}
+
+function handleResponseData(action, data, handlers) {
+    let handler = null;
+    if (isValidRestResponse(data)) {
+        if (data.status === 'SUCCESS') {
+            handler = action.onSuccess || handlers.successHandler;
+        } else if (data.status === 'FAILURE') {
+            handler = action.onFailure || handlers.failureHandler;
+        } else if (data.status === 'VALIDATION_FAILURE') {
+            handler = action.onValidationFailure || handlers.validationFailureHandler || action.onFailure || handlers.failureHandler;
+        } else if (data.status === 'ERROR') {
+            handler = action.onError || handlers.errorHandler || action.onFailure || handlers.failureHandler;
+        } else if (data.status === 'RATE_LIMITED') {
+            handler = action.onRateLimited || handlers.rateLimitedHandler || action.onFailure || handlers.failureHandler;
+        }
+        setAuthContext(data.authContext);
+        handler(data);
+    } else {
+        handler = action.onNonFrameworkError || handlers.nonFrameworkErrorHandler;
+        handler(data);
+    }
+}
+
 function prepareUrl(action, resourcePath, bundleName) {
     if (resourcePath) {
         return `${resourcePath}.${bundleName}.${action}.action`;
@@ -323,6 +964,28 @@ function getHeaders(method) {
     return result;
 }
 
+/**
+ * Headers of request, accepting newline delimited JSON if action has item handlers.
+ */
+function getStreamingHeaders(method, action) {
+    const headers = getHeaders(method);
+    if (action.onItem || action.onChunk) {
+        headers.Accept = NDJSON_ACCEPT;
+    }
+    return headers;
+}
+
+function generateCorrelationId() {
+    if (typeof crypto !== 'undefined' && crypto.randomUUID) {
+        return crypto.randomUUID();
+    }
+    let result = '';
+    for (let i = 0; i < 4; i++) {
+        result += Math.floor(Math.random() * 0x100000000).toString(16).padStart(8, '0');
+    }
+    return result;
+}
+
 function isValidRestResponse(data) {
     return data && VALID_REST_RESPONSE_STATUSES.includes(data.status) && data.authContext && data.authContext.userId;
 }
@@ -57,6 +57,280 @@ test("Post success request with HTML form and resource type", () => {
     });
 });
 
+test("Post request with JSON body", () => {
+    const client = new RestClient("websight-rest-exampleactions");
+
+    const fetchParameters = client.buildPostFetchParameters({
+        action: "hello",
+        json: { items: [{ name: "Test" }] }
+    });
+
+    expect(fetchParameters.options.headers["Content-Type"]).toEqual("application/json");
+    expect(fetchParameters.options.body).toEqual('{"items":[{"name":"Test"}]}');
+});
+
+test("Requests send unique correlation ids", () => {
+    const client = new RestClient("websight-rest-exampleactions");
+
+    const first = client.buildPostFetchParameters({ action: "hello" });
+    const second = client.buildPostFetchParameters({ action: "hello" });
+
+    expect(first.options.headers["X-Correlation-ID"]).toMatch(/^[A-Za-z0-9-]{1,64}$/);
+    expect(first.options.headers["X-Correlation-ID"]).not.toEqual(second.options.headers["X-Correlation-ID"]);
+});
+
+test("Batch request with results routed to action handlers", async () => {
+    fetch.mockResolvedValue(new Response(JSON.stringify({
+        status: "SUCCESS",
+        entity: [
+            { status: "SUCCESS", message: "Hello Test", authContext: { userId: "admin" } },
+            { status: "FAILURE", message: "Name is not valid", authContext: { userId: "admin" } },
+            null
+        ],
+        authContext: { userId: "admin" }
+    }), {
+        status: 200,
+        headers: {
+            "Content-Type": "application/json"
+        }
+    }));
+    const onSuccess = jest.fn();
+    const onFailure = jest.fn();
+    const onSkippedSuccess = jest.fn();
+    const client = new RestClient("websight-rest-exampleactions");
+
+    client.batch([
+        { action: "hello", parameters: { name: "Test" }, onSuccess: onSuccess },
+        { action: "hello", method: "POST", data: { name: "" }, onFailure: onFailure },
+        { action: "hello", resourcePath: "/content/page", onSuccess: onSkippedSuccess }
+    ], { stopOnFailure: true });
+    await new Promise(resolve => setTimeout(resolve, 0));
+
+    const body = JSON.parse(fetch.mock.calls[0][1].body);
+    expect(fetch.mock.calls[0][0]).toEqual("/apps/websight-rest-framework/bin/batch.action");
+    expect(body.stopOnFailure).toEqual(true);
+    expect(body.requests[0]).toEqual({
+        path: "/apps/websight-rest-exampleactions/bin/hello.action",
+        method: "GET",
+        parameters: { name: "Test" }
+    });
+    expect(body.requests[2].path).toEqual("/content/page.websight-rest-exampleactions.hello.action");
+    expect(onSuccess).toHaveBeenCalledTimes(1);
+    expect(onFailure).toHaveBeenCalledTimes(1);
+    expect(onSkippedSuccess).not.toHaveBeenCalled();
+});
+
+test("Job request polled until result is available", async () => {
+    const jsonResponse = (data, status = 200) => new Response(JSON.stringify(
+        Object.assign({ authContext: { userId: "admin" } }, data)), {
+        status: status,
+        headers: {
+            "Content-Type": "application/json"
+        }
+    });
+    fetch
+        .mockResolvedValueOnce(jsonResponse({ status: "SUCCESS", entity: { id: "job-1", state: "QUEUED" } }, 202))
+        .mockResolvedValueOnce(jsonResponse({ status: "SUCCESS", entity: { id: "job-1", state: "RUNNING" } }))
+        .mockResolvedValueOnce(jsonResponse({ status: "SUCCESS", entity: { id: "job-1", state: "SUCCEEDED" } }))
+        .mockResolvedValueOnce(jsonResponse({ status: "SUCCESS", message: "Imported" }));
+    const onSuccess = jest.fn();
+    const onProgress = jest.fn();
+    const client = new RestClient("websight-rest-exampleactions");
+
+    const result = await client.job({ action: "import", data: { path: "/content" }, onSuccess: onSuccess },
+        { initialDelay: 1, onProgress: onProgress });
+
+    expect(result.message).toEqual("Imported");
+    expect(onSuccess).toHaveBeenCalledWith(result);
+    expect(onProgress).toHaveBeenCalledTimes(2);
+    expect(fetch.mock.calls[1][0]).toEqual("/apps/websight-rest-framework/bin/job-status.action?id=job-1");
+    expect(fetch.mock.calls[3][0]).toEqual("/apps/websight-rest-framework/bin/job-result.action?id=job-1");
+});
+
+test("Request rejected by overloaded server is retried", async () => {
+    const jsonResponse = (data, status, headers) => new Response(JSON.stringify(
+        Object.assign({ authContext: { userId: "admin" } }, data)), {
+        status: status,
+        headers: Object.assign({ "Content-Type": "application/json" }, headers)
+    });
+    fetch
+        .mockResolvedValueOnce(jsonResponse({ status: "ERROR", message: "Server overloaded" }, 503, { "Retry-After": "0" }))
+        .mockResolvedValueOnce(jsonResponse({ status: "SUCCESS", message: "Hello Test" }, 200));
+    const client = new RestClient("websight-rest-exampleactions");
+
+    const data = await new Promise(resolve => client.get({ action: "hello", onSuccess: resolve }));
+
+    expect(data.message).toEqual("Hello Test");
+    expect(fetch).toHaveBeenCalledTimes(2);
+});
+
+test("Rate limited request handled by rate limit handler", async () => {
+    fetch.mockResolvedValueOnce(new Response(JSON.stringify({
+        status: "RATE_LIMITED",
+        message: "Too many requests",
+        authContext: { userId: "admin" }
+    }), {
+        status: 429,
+        headers: {
+            "Content-Type": "application/json",
+            "Retry-After": "5"
+        }
+    }));
+    const onError = jest.fn();
+    const client = new RestClient("websight-rest-exampleactions");
+
+    const data = await new Promise(resolve => client.get({ action: "search", onRateLimited: resolve, onError: onError }));
+
+    expect(data.message).toEqual("Too many requests");
+    expect(onError).not.toHaveBeenCalled();
+    expect(fetch).toHaveBeenCalledTimes(1);
+});
+
+test("Not modified response replayed from last tagged response", async () => {
+    fetch
+        .mockResolvedValueOnce(new Response(JSON.stringify({
+            status: "SUCCESS",
+            entity: { title: "Home" },
+            authContext: { userId: "admin" }
+        }), {
+            status: 200,
+            headers: {
+                "Content-Type": "application/json",
+                "ETag": "\"abc\""
+            }
+        }))
+        .mockResolvedValueOnce(new Response(null, { status: 304, headers: { "ETag": "\"abc\"" } }));
+    const client = new RestClient("websight-rest-exampleactions");
+
+    const first = await new Promise(resolve => client.get({ action: "page-info", onSuccess: resolve }));
+    const second = await new Promise(resolve => client.get({ action: "page-info", onSuccess: resolve }));
+
+    expect(second.entity.title).toEqual("Home");
+    expect(second).toEqual(first);
+    expect(fetch.mock.calls[0][1].headers["If-None-Match"]).toBeUndefined();
+    expect(fetch.mock.calls[1][1].headers["If-None-Match"]).toEqual("\"abc\"");
+});
+
+test("Streamed entity elements handled as response chunks arrive", async () => {
+    if (typeof TextDecoder === "undefined") {
+        global.TextDecoder = require("util").TextDecoder;
+    }
+    fetch.mockResolvedValueOnce(mockNdjsonResponse([
+        '{"status":"SUCCESS","authContext":{"userId":"admin"}}\n{"title":"Fir',
+        'st"}\n{"complete":true}\n{"title":"Second"}\n{"compl',
+        'ete":true}\n'
+    ]));
+    const onItem = jest.fn();
+    const onChunk = jest.fn();
+    const client = new RestClient("websight-rest-exampleactions");
+
+    const data = await new Promise(resolve => client.get({
+        action: "export",
+        onItem: onItem,
+        onChunk: onChunk,
+        onSuccess: resolve
+    }));
+
+    expect(data.status).toEqual("SUCCESS");
+    expect(data.entity).toBeUndefined();
+    expect(onItem.mock.calls).toEqual([[{ title: "First" }, 0], [{ complete: true }, 1], [{ title: "Second" }, 2]]);
+    expect(onChunk).toHaveBeenCalledTimes(1);
+    expect(fetch.mock.calls[0][1].headers["Accept"]).toEqual("application/x-ndjson, application/json;q=0.9");
+});
+
+test("Truncated streamed entity handled as non framework error", async () => {
+    if (typeof TextDecoder === "undefined") {
+        global.TextDecoder = require("util").TextDecoder;
+    }
+    fetch.mockResolvedValueOnce(mockNdjsonResponse([
+        '{"status":"SUCCESS","authContext":{"userId":"admin"}}\n{"title":"First"}\n'
+    ]));
+    const onItem = jest.fn();
+    const onSuccess = jest.fn();
+    const client = new RestClient("websight-rest-exampleactions");
+
+    const error = await new Promise(resolve => client.get({
+        action: "export",
+        onItem: onItem,
+        onSuccess: onSuccess,
+        onNonFrameworkError: resolve
+    }));
+
+    expect(error.status).toEqual(200);
+    expect(onItem.mock.calls).toEqual([[{ title: "First" }, 0]]);
+    expect(onSuccess).not.toHaveBeenCalled();
+});
+
+test("Streamed entity failed on server handled as error", async () => {
+    if (typeof TextDecoder === "undefined") {
+        global.TextDecoder = require("util").TextDecoder;
+    }
+    fetch.mockResolvedValueOnce(mockNdjsonResponse([
+        '{"status":"SUCCESS","authContext":{"userId":"admin"}}\n{"title":"First"}\n',
+        '{"status":"ERROR","message":"Unexpected server error","authContext":{"userId":"admin"}}\n'
+    ]));
+    const onItem = jest.fn();
+    const onSuccess = jest.fn();
+    const client = new RestClient("websight-rest-exampleactions");
+
+    const data = await new Promise(resolve => client.get({
+        action: "export",
+        onItem: onItem,
+        onSuccess: onSuccess,
+        onError: resolve
+    }));
+
+    expect(data.message).toEqual("Unexpected server error");
+    expect(onItem.mock.calls).toEqual([[{ title: "First" }, 0]]);
+    expect(onSuccess).not.toHaveBeenCalled();
+});
+
+test("Watched resources changes pushed as events and reconnected with last event id", async () => {
+    if (typeof TextDecoder === "undefined") {
+        global.TextDecoder = require("util").TextDecoder;
+    }
+    fetch.mockResolvedValueOnce(mockStreamResponse("text/event-stream;charset=utf-8", [
+        "retry: 5000\nid: e-1\nevent: open\ndata: {}\n\n: keep-",
+        "alive\n\nid: e-2\nevent: change\ndata: {\"paths\":[\"/content/a\"],",
+        "\"prefixes\":[]}\n\n"
+    ]));
+    fetch.mockResolvedValueOnce(mock200ResponseValidationFailure());
+    const onOpen = jest.fn();
+    const onChange = jest.fn();
+    const onValidationFailure = jest.fn();
+    const client = new RestClient("websight-rest-exampleactions");
+
+    await client.watch({
+        paths: ["/content/a"],
+        onOpen: onOpen,
+        onChange: onChange,
+        onValidationFailure: onValidationFailure
+    }, { initialDelay: 1 });
+
+    expect(onOpen).toHaveBeenCalledTimes(1);
+    expect(onChange.mock.calls).toEqual([[{ paths: ["/content/a"], prefixes: [] }]]);
+    expect(onValidationFailure).toHaveBeenCalledTimes(1);
+    expect(fetch.mock.calls[0][0]).toEqual("/apps/websight-rest-framework/bin/watch.action?path=/content/a");
+    expect(fetch.mock.calls[0][1].headers["Last-Event-ID"]).toBeUndefined();
+    expect(fetch.mock.calls[1][1].headers["Last-Event-ID"]).toEqual("e-2");
+});
+
+test("Pages of paged result walked on demand by cursor", async () => {
+    fetch.mockResolvedValueOnce(mockPageResponse([1, 2], "next"));
+    fetch.mockResolvedValueOnce(mockPageResponse([3]));
+    const client = new RestClient("websight-rest-exampleactions");
+
+    const pages = [];
+    for await (const items of client.pages({ action: "list", parameters: { type: "page" } }, 2)) {
+        pages.push(items);
+    }
+
+    expect(pages).toEqual([[1, 2], [3]]);
+    expect(fetch.mock.calls[0][0]).toEqual("/apps/websight-rest-exampleactions/bin/list.action?type=page&limit=2");
+    expect(fetch.mock.calls[1][0]).toEqual(
+        "/apps/websight-rest-exampleactions/bin/list.action?type=page&limit=2&cursor=next");
+});
+
 test("Get success request with resource type", () => {
     const client = new RestClient("websight-rest-exampleactions");
     fetch.mockResolvedValue(mock200Response("Test"));
@@ -289,6 +563,45 @@ function mock400ResponseNonFrameworkError() {
     })
 }
 
+function mockPageResponse(items, nextCursor) {
+    return new Response(JSON.stringify({
+        status: "SUCCESS",
+        entity: items,
+        nextCursor: nextCursor,
+        authContext: { userId: "admin" }
+    }), {
+        status: 200,
+        statusText: "OK",
+        headers: {
+            "Content-Type": "application/json"
+        }
+    })
+}
+
+function mockNdjsonResponse(chunks) {
+    return mockStreamResponse("application/x-ndjson;charset=utf-8", chunks);
+}
+
+function mockStreamResponse(contentType, chunks) {
+    const encoder = new (require("util").TextEncoder)();
+    const remaining = chunks.map(chunk => encoder.encode(chunk));
+    return {
+        status: 200,
+        ok: true,
+        headers: {
+            get: name => name.toLowerCase() === "content-type" ? contentType : null
+        },
+        body: {
+            getReader: () => ({
+                read: () => Promise.resolve(remaining.length
+                    ? { done: false, value: remaining.shift() }
+                    : { done: true, value: undefined }),
+                cancel: () => Promise.resolve()
+            })
+        }
+    };
+}
+
 function prepareFormData(name) {
     const formData = new FormData();
     formData.append("name", name);
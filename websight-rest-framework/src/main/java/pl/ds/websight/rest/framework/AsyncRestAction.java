@@ -0,0 +1,41 @@
+package pl.ds.websight.rest.framework;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * Rest action which result is computed asynchronously, so request thread is not blocked while action waits for slow
+ * work (e.g. repository queries, replication, external services). Response is written when returned stage completes,
+ * or with error, when it does not complete in configured timeout. When request does not support asynchronous
+ * processing, servlet waits for the stage in request thread.
+ * <p>Model (and request it was created from) must not be used concurrently by tasks started by action and must not be
+ * used after returned stage completes.</p>
+ *
+ * @param <T> REST Action Model type
+ * @param <R> REST Action Result entity type
+ */
+public interface AsyncRestAction<T, R> extends RestAction<T, R> {
+
+    /**
+     * @param model    validated REST Action Model
+     * @param executor bounded executor managed by framework, to be used for blocking work of action
+     * @return stage completed with action result
+     */
+    CompletionStage<RestActionResult<R>> performAsync(T model, Executor executor);
+
+    /**
+     * Performs action synchronously, running all tasks in calling thread.
+     */
+    @Override
+    default RestActionResult<R> perform(T model) {
+        try {
+            return performAsync(model, Runnable::run).toCompletableFuture().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
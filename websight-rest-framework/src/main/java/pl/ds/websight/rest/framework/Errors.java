@@ -9,22 +9,33 @@ import java.util.stream.Collectors;
 
 public final class Errors {
 
-    private final List<Error> errorsList = new ArrayList<>();
+    private static final Errors EMPTY = new Errors(Collections.emptyList());
 
-    private Errors() {
-        // no direct instances
+    private final List<Error> errorsList;
+
+    private Errors(List<Error> errorsList) {
+        this.errorsList = errorsList;
     }
 
     public static Errors createErrors() {
-        return new Errors();
+        return new Errors(new ArrayList<>());
+    }
+
+    /**
+     * Shared instance without errors. It cannot be modified, adding errors to it throws
+     * {@link UnsupportedOperationException}; use {@link #createErrors()} to collect errors.
+     * @return empty errors
+     */
+    public static Errors empty() {
+        return EMPTY;
     }
 
     public static Errors of(String path, Object invalidValue, String message) {
-        return new Errors().add(path, invalidValue, message);
+        return createErrors().add(path, invalidValue, message);
     }
 
     public static Errors of(Error... errors) {
-        return new Errors().add(errors);
+        return createErrors().add(errors);
     }
 
     public Errors add(String path, Object invalidValue, String message) {
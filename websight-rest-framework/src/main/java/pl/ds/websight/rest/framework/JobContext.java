@@ -0,0 +1,34 @@
+package pl.ds.websight.rest.framework;
+
+import org.apache.sling.api.resource.ResourceResolver;
+
+/**
+ * Context of {@link JobRestAction} job, used to access repository and report progress of the job.
+ */
+public interface JobContext {
+
+    /**
+     * @return id of the job, returned to client when the job was accepted
+     */
+    String getId();
+
+    /**
+     * @return resource resolver of user who submitted the job, valid until job is finished (closed by framework)
+     */
+    ResourceResolver getResourceResolver();
+
+    /**
+     * Reports progress of the job, returned to client polling job status.
+     *
+     * @param completed number of completed work units
+     * @param total     total number of work units, or 0 if unknown
+     * @param message   optional message describing current step
+     */
+    void setProgress(long completed, long total, String message);
+
+    /**
+     * @return true if job was cancelled by client; long-running jobs should check it and stop as soon as possible
+     *         (thread running cancelled job is not interrupted)
+     */
+    boolean isCancelled();
+}
@@ -0,0 +1,43 @@
+package pl.ds.websight.rest.framework;
+
+/**
+ * Rest action which takes too long to be performed while client waits for response (e.g. bulk moves, reindexing,
+ * imports). Request is responded immediately with status {@code 202 Accepted} and SUCCESS result, which entity
+ * contains job {@code id} and state, while action is performed as job by bounded executor managed by framework.
+ * Job status (with progress), final result and cancellation are available by framework actions:
+ * <ul>
+ *     <li>{@code GET /apps/websight-rest-framework/bin/job-status.action?id=<id>}</li>
+ *     <li>{@code GET /apps/websight-rest-framework/bin/job-result.action?id=<id>} - response of action result</li>
+ *     <li>{@code POST /apps/websight-rest-framework/bin/cancel-job.action} with {@code id} parameter</li>
+ * </ul>
+ * Jobs are available only to user who submitted them. Results of finished jobs are kept in memory for limited time.
+ * Result entity is read into JSON tree when job finishes (streamed entity is consumed then), so it can be returned more
+ * than once; paged results are not supported.
+ * <p>Model must not keep references to request or its resource resolver, as job is performed after request is
+ * completed; {@link JobContext#getResourceResolver()} should be used instead.</p>
+ *
+ * @param <T> REST Action Model type
+ * @param <R> REST Action Result entity type
+ */
+public interface JobRestAction<T, R> extends RestAction<T, R> {
+
+    /**
+     * @param model   validated REST Action Model
+     * @param context context of the job
+     * @return action result, available by job result action
+     */
+    RestActionResult<R> perform(T model, JobContext context);
+
+    /**
+     * Job actions are performed by framework with {@link #perform(Object, JobContext)} only: requests (including
+     * sub-requests of batch action, which are dispatched as any other request) are submitted as jobs and never reach
+     * this method. It can be reached only by code calling {@link RestAction#perform} directly, e.g. benchmarks or
+     * tests, which have to call {@link #perform(Object, JobContext)} with their own context instead.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    default RestActionResult<R> perform(T model) {
+        throw new UnsupportedOperationException("Job action has to be performed with job context");
+    }
+}
@@ -0,0 +1,51 @@
+package pl.ds.websight.rest.framework;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+
+/**
+ * Page of {@link PagedResult} requested by {@code limit} (number of items, 20 by default) and {@code cursor}
+ * (continuation cursor returned as {@code nextCursor} of the previous page) parameters. It is a mixin of models of
+ * paged actions: inject it with {@code @Self PageRequest page} (or get it by {@link #of}) and start model
+ * validation with its errors ({@code Errors errors = page.validate()}).
+ * <p>
+ * Action paging by offset returns iterator of all items, items of previous pages are skipped by framework (by
+ * {@link javax.jcr.RangeIterator#skip}, if possible). Action paging by key (e.g. query ordered by path) starts
+ * iteration after {@link #getAfter()} key, so previous pages are not iterated at all.
+ */
+public interface PageRequest extends Validatable {
+
+    String CURSOR_PARAMETER = "cursor";
+    String LIMIT_PARAMETER = "limit";
+    int DEFAULT_LIMIT = 20;
+    int MAX_LIMIT = 1000;
+
+    static PageRequest of(SlingHttpServletRequest request) {
+        return request.adaptTo(PageRequest.class);
+    }
+
+    String getCursor();
+
+    /**
+     * @return requested number of items, default limit if it is not requested or invalid
+     */
+    int getLimit();
+
+    /**
+     * @return number of items of previous pages, 0 for the first page
+     */
+    long getOffset();
+
+    /**
+     * @return key of the last item of previous page, null for the first page or if action pages by offset
+     */
+    String getAfter();
+
+    /**
+     * Used by framework to write cursor of the next page.
+     *
+     * @param offset number of items before the next page
+     * @param after  key of the last item of the page, null if action pages by offset
+     * @return signed continuation cursor of the next page
+     */
+    String nextCursor(long offset, String after);
+}
@@ -0,0 +1,74 @@
+package pl.ds.websight.rest.framework;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.jcr.RangeIterator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Entity of result created by {@link RestActionResult#page}: one page of lazily iterated items. Framework pulls only
+ * items of the requested page and checks if the next item exists, writes them as entity array and continuation cursor
+ * of the next page as {@code nextCursor} field of response (omitted on the last page).
+ *
+ * @param <E> type of items
+ */
+public final class PagedResult<E> {
+
+    private final Iterator<? extends E> items;
+    private final PageRequest pageRequest;
+    private final Function<? super E, String> keyFunction;
+    private boolean positioned;
+
+    PagedResult(@NotNull Iterator<? extends E> items, @NotNull PageRequest pageRequest,
+            Function<? super E, String> keyFunction) {
+        this.items = items;
+        this.pageRequest = pageRequest;
+        this.keyFunction = keyFunction;
+    }
+
+    public int getLimit() {
+        return pageRequest.getLimit();
+    }
+
+    /**
+     * @return iterator positioned at the first item of the page
+     */
+    public Iterator<? extends E> getItems() {
+        if (!positioned) {
+            positioned = true;
+            if (keyFunction == null) {
+                skip(pageRequest.getOffset());
+            }
+        }
+        return items;
+    }
+
+    /**
+     * @param count number of items of the page
+     * @param last the last item of the page
+     * @return cursor of page following the page
+     */
+    public String nextCursor(int count, E last) {
+        return pageRequest.nextCursor(pageRequest.getOffset() + count,
+                keyFunction != null ? keyFunction.apply(last) : null);
+    }
+
+    private void skip(long offset) {
+        if (offset <= 0) {
+            return;
+        }
+        if (items instanceof RangeIterator) {
+            try {
+                ((RangeIterator) items).skip(offset);
+            } catch (NoSuchElementException e) {
+                // page after the last item is empty
+            }
+            return;
+        }
+        for (long i = 0; i < offset && items.hasNext(); i++) {
+            items.next();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package pl.ds.websight.rest.framework;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+
+/**
+ * Creates REST Action Model from request. Implementations are generated at compile time by
+ * {@code websight-rest-annotation-processor} for models annotated with
+ * {@link pl.ds.websight.rest.framework.annotations.GeneratedBinder}.
+ *
+ * @param <T> REST Action Model type
+ */
+public interface RequestBinder<T> {
+
+    T bind(SlingHttpServletRequest request);
+}
@@ -4,6 +4,9 @@ import org.apache.sling.api.SlingHttpServletResponse;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 public class RestActionResult<R> {
 
@@ -62,6 +65,67 @@ public class RestActionResult<R> {
         return new RestActionResult<>(Status.SUCCESS, message, messageDetails, entity, null);
     }
 
+    /**
+     * Creates result with status SUCCESS and entity written as JSON array. Elements are serialized one by one while
+     * the stream is consumed, so the whole result does not have to be kept in memory. Stream is closed when
+     * the response is written. Clients accepting {@code application/x-ndjson} get elements as newline delimited JSON,
+     * flushed while the stream is consumed.
+     *
+     * @param <E> type of streamed elements
+     * @param entities stream of objects mapped to json and used as elements of entity array in response
+     * @return Rest action result
+     */
+    public static <E> RestActionResult<Stream<E>> successStream(@NotNull Stream<E> entities) {
+        return new RestActionResult<>(Status.SUCCESS, null, null, entities, null);
+    }
+
+    /**
+     * Creates result with status SUCCESS and entity written as JSON array. Elements are serialized one by one while
+     * the iterator is consumed, so the whole result does not have to be kept in memory. Clients accepting
+     * {@code application/x-ndjson} get elements as newline delimited JSON, flushed while the iterator is consumed.
+     *
+     * @param <E> type of iterated elements
+     * @param entities iterator of objects mapped to json and used as elements of entity array in response
+     * @return Rest action result
+     */
+    public static <E> RestActionResult<Iterator<E>> successStream(@NotNull Iterator<E> entities) {
+        return new RestActionResult<>(Status.SUCCESS, null, null, entities, null);
+    }
+
+    /**
+     * Creates result with status SUCCESS and entity written as JSON array of one page of items requested by
+     * {@code cursor} and {@code limit} parameters. Items are pulled from the iterator lazily, only until the page is
+     * full and the next item is known to exist. Items of previous pages are skipped, continuation cursor of the next
+     * page is written as {@code nextCursor} field of response.
+     *
+     * @param <E> type of items
+     * @param items iterator of all items (from the first one)
+     * @param page requested page
+     * @return Rest action result
+     */
+    public static <E> RestActionResult<PagedResult<E>> page(@NotNull Iterator<? extends E> items,
+            @NotNull PageRequest page) {
+        return new RestActionResult<>(Status.SUCCESS, null, null, new PagedResult<>(items, page, null), null);
+    }
+
+    /**
+     * Creates result with status SUCCESS and entity written as JSON array of one page of items requested by
+     * {@code cursor} and {@code limit} parameters, paged by key. Iterator starts after {@link PageRequest#getAfter()}
+     * key (with the first item, if it is null) and items are pulled from it lazily, only until the page is full and
+     * the next item is known to exist. Continuation cursor of the next page, with key of the last item, is written
+     * as {@code nextCursor} field of response.
+     *
+     * @param <E> type of items
+     * @param items iterator of items following the previous page
+     * @param page requested page
+     * @param key function returning key of item, by which items are ordered
+     * @return Rest action result
+     */
+    public static <E> RestActionResult<PagedResult<E>> page(@NotNull Iterator<? extends E> items,
+            @NotNull PageRequest page, @NotNull Function<? super E, String> key) {
+        return new RestActionResult<>(Status.SUCCESS, null, null, new PagedResult<>(items, page, key), null);
+    }
+
     /**
      * Creates result with status FAILURE.
      *
@@ -0,0 +1,15 @@
+package pl.ds.websight.rest.framework;
+
+/**
+ * Rest Actions annotated with {@link pl.ds.websight.rest.framework.annotations.ConditionalGet} may optionally
+ * implement this interface to provide version of result (e.g. last modification date of resource) for bound and
+ * validated model. Version is used as {@code ETag} of response, so request with matching {@code If-None-Match} header
+ * is responded with {@code 304 Not Modified} without performing the action.
+ */
+public interface Versioned<T> {
+
+    /**
+     * @return version of result of action performed for the model, {@code null} if it is not known
+     */
+    String getVersion(T model);
+}
@@ -0,0 +1,24 @@
+package pl.ds.websight.rest.framework.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>Use to annotate REST Action class requested by GET, to cache its {@code SUCCESS} responses in memory. Cached
+ * response is returned (without binding model and performing action) for the same action, resource, request
+ * parameters and user, until it expires or any resource under paths configured for the cache changes.</p>
+ * <p>Only synchronous actions (not {@link pl.ds.websight.rest.framework.AsyncRestAction} or
+ * {@link pl.ds.websight.rest.framework.JobRestAction}) are cached. Response is serialized to memory before it is sent,
+ * so cached actions should not stream large entities.</p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Cacheable {
+
+    /**
+     * @return time in seconds after which cached response expires
+     */
+    int ttlSeconds() default 60;
+}
@@ -0,0 +1,21 @@
+package pl.ds.websight.rest.framework.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>Use to annotate REST Action class requested by GET, to send its {@code SUCCESS} responses with strong
+ * {@code ETag} header (hash of response body) and {@code Cache-Control: no-cache} instead of {@code no-store}.
+ * Request with {@code If-None-Match} header matching the tag is responded with {@code 304 Not Modified} without
+ * body.</p>
+ * <p>Action implementing {@link pl.ds.websight.rest.framework.Versioned} provides version of its result instead,
+ * so not modified result is not performed at all. Only synchronous actions (not
+ * {@link pl.ds.websight.rest.framework.AsyncRestAction} or {@link pl.ds.websight.rest.framework.JobRestAction})
+ * support conditional requests.</p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ConditionalGet {
+}
@@ -0,0 +1,28 @@
+package pl.ds.websight.rest.framework.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>Use to annotate REST Action Model class to create model with {@link pl.ds.websight.rest.framework.RequestBinder}
+ * generated at compile time by {@code websight-rest-annotation-processor}, instead of adapting request with
+ * {@link org.apache.sling.models.factory.ModelFactory}.</p>
+ * <p>Binder sets model fields annotated with {@code @RequestParameter} using the same names, optionality and
+ * type conversions as request parameters injector and invokes {@link javax.annotation.PostConstruct} methods.
+ * Model class annotated with {@code GeneratedBinder}:</p>
+ * <ul>
+ *     <li>must be class with non-private no-arguments constructor</li>
+ *     <li>
+ *         can have only {@code @RequestParameter} injected fields of type String, Boolean, Integer, Long, Short,
+ *         Byte, Double, Float, enum or List / Collection of these types
+ *     </li>
+ * </ul>
+ * <p>When binder class is not found (annotation processor was not run), model is adapted with
+ * {@link org.apache.sling.models.factory.ModelFactory}.</p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface GeneratedBinder {
+}
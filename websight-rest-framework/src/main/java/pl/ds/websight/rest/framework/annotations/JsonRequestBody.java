@@ -0,0 +1,23 @@
+package pl.ds.websight.rest.framework.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>Use to annotate REST Action Model class to create model from JSON request body, when action is requested by POST
+ * with {@code application/json} content type. Other requests create model from request parameters, as for model
+ * without this annotation.</p>
+ * <p>Body is deserialized by Jackson, in streaming fashion, directly to the model type. Only fields, setters and
+ * creator parameters annotated with {@code @JsonProperty} are bound, unknown properties are ignored. Model class must
+ * have no-arguments constructor (may be private) or {@code @JsonCreator}. Sling Models injection (including
+ * {@link javax.annotation.PostConstruct} methods) is not used for such model. Current request can be injected into
+ * {@code SlingHttpServletRequest} member annotated with {@code @JacksonInject}.</p>
+ * <p>Model is validated the same way as model created from request parameters. Body which is not valid JSON or cannot
+ * be converted to model type fails with {@code VALIDATION_FAILURE} response.</p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface JsonRequestBody {
+}
@@ -0,0 +1,21 @@
+package pl.ds.websight.rest.framework.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Use to annotate REST Action class to limit number of its requests handled at the same time. Requests over the limit
+ * are not queued, but responded immediately with {@code 503 Service Unavailable}, {@code Retry-After} header and
+ * {@code ERROR} status. The limit applies in addition to instance wide concurrency limit, if it is enabled.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface MaxConcurrency {
+
+    /**
+     * @return maximal number of requests of the action handled at the same time
+     */
+    int value();
+}
@@ -0,0 +1,27 @@
+package pl.ds.websight.rest.framework.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Use to annotate REST Action class to limit rate of its requests sent by single user (all anonymous requests share
+ * one limit). User can send {@link #requests()} requests at once, then one request every {@link #seconds()} divided by
+ * {@link #requests()}. Requests over the limit are responded with {@code 429 Too Many Requests}, {@code Retry-After}
+ * header and {@code RATE_LIMITED} status. Annotation overrides default limit configured for all actions.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface RateLimit {
+
+    /**
+     * @return number of requests allowed in {@link #seconds()}
+     */
+    int requests();
+
+    /**
+     * @return period in which {@link #requests()} are allowed
+     */
+    int seconds() default 1;
+}
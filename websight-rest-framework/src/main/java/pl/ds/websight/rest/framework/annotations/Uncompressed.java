@@ -0,0 +1,16 @@
+package pl.ds.websight.rest.framework.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Use to annotate REST Action class which responses should not be compressed, even if response compression is
+ * enabled and accepted by client (e.g. action with entity of already compressed data or streamed to client which
+ * should receive its parts as soon as possible).
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Uncompressed {
+}
@@ -0,0 +1,170 @@
+package pl.ds.websight.rest.framework.impl;
+
+import pl.ds.websight.rest.framework.RestActionResult;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request counts by result status and by negotiated response format, in-flight requests and latency histogram of
+ * single rest action. Recording uses only {@link LongAdder}s, so it does not contend when action is requested
+ * concurrently.
+ */
+public final class ActionMetrics implements ActionMetricsMBean {
+
+    public enum Outcome {
+        SUCCESS, FAILURE, VALIDATION_FAILURE, ERROR, FREE_FORM_RESPONSE, REJECTED;
+
+        static Outcome of(RestActionResult.Status status) {
+            switch (status) {
+                case SUCCESS:
+                    return SUCCESS;
+                case FAILURE:
+                    return FAILURE;
+                default:
+                    return FREE_FORM_RESPONSE;
+            }
+        }
+    }
+
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private final String action;
+    private final Map<Outcome, LongAdder> counts = new EnumMap<>(Outcome.class);
+    private final Map<ResponseFormat, LongAdder> formatCounts = new EnumMap<>(ResponseFormat.class);
+    private final LongAdder inFlight = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    ActionMetrics(String action) {
+        this.action = action;
+        for (Outcome outcome : Outcome.values()) {
+            counts.put(outcome, new LongAdder());
+        }
+        for (ResponseFormat format : ResponseFormat.values()) {
+            formatCounts.put(format, new LongAdder());
+        }
+    }
+
+    /**
+     * Starts recording of request, which has to be stopped exactly once (later stops are ignored).
+     */
+    Recording start() {
+        inFlight.increment();
+        return new Recording(System.nanoTime());
+    }
+
+    /**
+     * Counts request rejected before it was handled, it is not included in latency.
+     */
+    void reject() {
+        counts.get(Outcome.REJECTED).increment();
+    }
+
+    /**
+     * Counts request by format of its response, rejected requests included.
+     */
+    void countFormat(ResponseFormat format) {
+        formatCounts.get(format).increment();
+    }
+
+    @Override
+    public String getAction() {
+        return action;
+    }
+
+    @Override
+    public long getRequestCount() {
+        return counts.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    @Override
+    public long getSuccessCount() {
+        return counts.get(Outcome.SUCCESS).sum();
+    }
+
+    @Override
+    public long getFailureCount() {
+        return counts.get(Outcome.FAILURE).sum();
+    }
+
+    @Override
+    public long getValidationFailureCount() {
+        return counts.get(Outcome.VALIDATION_FAILURE).sum();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return counts.get(Outcome.ERROR).sum();
+    }
+
+    @Override
+    public long getFreeFormResponseCount() {
+        return counts.get(Outcome.FREE_FORM_RESPONSE).sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return counts.get(Outcome.REJECTED).sum();
+    }
+
+    @Override
+    public long getJsonResponseCount() {
+        return formatCounts.get(ResponseFormat.JSON).sum();
+    }
+
+    @Override
+    public long getSmileResponseCount() {
+        return formatCounts.get(ResponseFormat.SMILE).sum();
+    }
+
+    @Override
+    public long getCborResponseCount() {
+        return formatCounts.get(ResponseFormat.CBOR).sum();
+    }
+
+    @Override
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    @Override
+    public double getLatencyP50Millis() {
+        return latency.getPercentile(0.5) / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public double getLatencyP90Millis() {
+        return latency.getPercentile(0.9) / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public double getLatencyP99Millis() {
+        return latency.getPercentile(0.99) / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public double getLatencyMaxMillis() {
+        return latency.getMax() / MICROS_PER_MILLI;
+    }
+
+    final class Recording {
+
+        private final long startNanos;
+        private volatile boolean stopped;
+
+        private Recording(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        void stop(Outcome outcome) {
+            if (stopped) {
+                return;
+            }
+            stopped = true;
+            latency.record(System.nanoTime() - startNanos);
+            counts.get(outcome).increment();
+            inFlight.decrement();
+        }
+    }
+}
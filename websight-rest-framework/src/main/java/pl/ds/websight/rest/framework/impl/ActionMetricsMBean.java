@@ -0,0 +1,40 @@
+package pl.ds.websight.rest.framework.impl;
+
+/**
+ * Metrics of single rest action, registered in platform MBean server as
+ * {@code pl.ds.websight.rest:type=ActionMetrics,name=<action class>}.
+ */
+public interface ActionMetricsMBean {
+
+    String getAction();
+
+    long getRequestCount();
+
+    long getSuccessCount();
+
+    long getFailureCount();
+
+    long getValidationFailureCount();
+
+    long getErrorCount();
+
+    long getFreeFormResponseCount();
+
+    long getRejectedCount();
+
+    long getJsonResponseCount();
+
+    long getSmileResponseCount();
+
+    long getCborResponseCount();
+
+    long getInFlight();
+
+    double getLatencyP50Millis();
+
+    double getLatencyP90Millis();
+
+    double getLatencyP99Millis();
+
+    double getLatencyMaxMillis();
+}
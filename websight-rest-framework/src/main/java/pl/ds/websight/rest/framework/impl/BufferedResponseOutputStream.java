@@ -0,0 +1,79 @@
+package pl.ds.websight.rest.framework.impl;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Response body buffered in pooled buffer and written to servlet output stream at once, with {@code Content-Length},
+ * when stream is closed. Body larger than buffer is streamed: buffered bytes are written to servlet output stream
+ * (and buffer is returned to pool) when buffer overflows. Servlet output stream is obtained only when something is
+ * written to it, so response can still be replaced by error response before that.
+ */
+final class BufferedResponseOutputStream extends OutputStream {
+
+    private final HttpServletResponse response;
+    private final ResponseBufferPool pool;
+    private byte[] buffer;
+    private int count;
+    private OutputStream out;
+
+    BufferedResponseOutputStream(HttpServletResponse response, ResponseBufferPool pool) {
+        this.response = response;
+        this.pool = pool;
+        this.buffer = pool.borrow();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (out == null && count < buffer.length) {
+            buffer[count++] = (byte) b;
+            return;
+        }
+        startStreaming();
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (out == null && length <= buffer.length - count) {
+            System.arraycopy(bytes, offset, buffer, count, length);
+            count += length;
+            return;
+        }
+        startStreaming();
+        out.write(bytes, offset, length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out == null) {
+            response.setContentLength(count);
+            out = response.getOutputStream();
+            out.write(buffer, 0, count);
+            releaseBuffer();
+        }
+        out.close();
+    }
+
+    private void startStreaming() throws IOException {
+        if (out != null) {
+            return;
+        }
+        out = response.getOutputStream();
+        out.write(buffer, 0, count);
+        releaseBuffer();
+    }
+
+    private void releaseBuffer() {
+        pool.release(buffer);
+        buffer = null;
+    }
+}
@@ -0,0 +1,177 @@
+package pl.ds.websight.rest.framework.impl;
+
+import com.google.common.net.HttpHeaders;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Response body compressed once it is larger than minimal size. Bytes are buffered until the size is exceeded (then
+ * {@code Content-Encoding} header is set and compression starts, so the rest of body is streamed) or stream is closed
+ * (then body is written uncompressed, with {@code Content-Length}). Servlet output stream is obtained only when
+ * something is written to it, so response can still be replaced by error response before that.
+ */
+final class CompressingOutputStream extends OutputStream {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    enum Encoding {
+        GZIP("gzip"), DEFLATE("deflate");
+
+        private final String token;
+
+        Encoding(String token) {
+            this.token = token;
+        }
+
+        String getToken() {
+            return token;
+        }
+
+        /**
+         * @return encoding with given {@code Content-Encoding} token, null if it is not supported
+         */
+        static Encoding of(String token) {
+            for (Encoding encoding : values()) {
+                if (encoding.token.equalsIgnoreCase(token)) {
+                    return encoding;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return encoding preferred by {@code Accept-Encoding} header (gzip over deflate, if client accepts both
+         * with the same quality), null if client does not accept any
+         */
+        static Encoding negotiate(String acceptEncoding) {
+            if (acceptEncoding == null) {
+                return null;
+            }
+            Encoding result = null;
+            float resultQuality = 0;
+            for (String element : acceptEncoding.split(",")) {
+                String[] parts = element.split(";");
+                String token = parts[0].trim().toLowerCase(Locale.ROOT);
+                float quality = QualityValues.of(parts);
+                Encoding encoding = "*".equals(token) ? GZIP : of(token);
+                if (encoding != null && (quality > resultQuality
+                        || (quality == resultQuality && quality > 0 && encoding.ordinal() < result.ordinal()))) {
+                    result = encoding;
+                    resultQuality = quality;
+                }
+            }
+            return result;
+        }
+
+        private DeflaterOutputStream open(OutputStream out, int level, boolean syncFlush) throws IOException {
+            if (this == GZIP) {
+                return new GZIPOutputStream(out, BUFFER_SIZE, syncFlush) {
+                    {
+                        def.setLevel(level);
+                    }
+                };
+            }
+            Deflater deflater = new Deflater(level);
+            return new DeflaterOutputStream(out, deflater, BUFFER_SIZE, syncFlush) {
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        deflater.end();
+                    }
+                }
+            };
+        }
+    }
+
+    private final HttpServletResponse response;
+    private final Encoding encoding;
+    private final int level;
+    private final boolean syncFlush;
+    private final byte[] buffer;
+    private int count;
+    private OutputStream out;
+
+    /**
+     * @param syncFlush flush compressed data written so far when stream is flushed, for responses read by client
+     *         while they are written
+     */
+    CompressingOutputStream(HttpServletResponse response, Encoding encoding, int level, int minSize,
+            boolean syncFlush) {
+        this.response = response;
+        this.encoding = encoding;
+        this.level = level;
+        this.syncFlush = syncFlush;
+        this.buffer = new byte[Math.max(0, minSize)];
+    }
+
+    Encoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * @return true if body of given size is compressed
+     */
+    boolean compresses(int size) {
+        return size > buffer.length;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (out == null && count < buffer.length) {
+            buffer[count++] = (byte) b;
+            return;
+        }
+        startCompression();
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (out == null && count + length <= buffer.length) {
+            System.arraycopy(bytes, offset, buffer, count, length);
+            count += length;
+            return;
+        }
+        startCompression();
+        out.write(bytes, offset, length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // without sync flush body is flushed when it is closed, flushing compressed stream would only make it larger
+        if (syncFlush) {
+            startCompression();
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            out.close();
+            return;
+        }
+        response.setContentLength(count);
+        OutputStream servletOut = response.getOutputStream();
+        servletOut.write(buffer, 0, count);
+        servletOut.close();
+    }
+
+    private void startCompression() throws IOException {
+        if (out != null) {
+            return;
+        }
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding.token);
+        out = encoding.open(response.getOutputStream(), level, syncFlush);
+        out.write(buffer, 0, count);
+    }
+}
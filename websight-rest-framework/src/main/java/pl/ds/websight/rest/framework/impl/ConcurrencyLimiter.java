@@ -0,0 +1,189 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import pl.ds.websight.rest.framework.annotations.MaxConcurrency;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits number of rest action requests handled at the same time. Instance wide limit (if enabled) is adjusted to
+ * observed latency by gradient algorithm: it grows while latency stays close to its long term average and shrinks
+ * when latency rises, e.g. because requests wait for shared resources. Limits of single actions are set by
+ * {@link MaxConcurrency}. Requests over any limit are rejected immediately instead of queued. Latency samples are
+ * taken without locking, limit and long term latency are updated by compare-and-set of their bits.
+ */
+@Component(service = ConcurrencyLimiter.class)
+@Designate(ocd = ConcurrencyLimiter.Config.class)
+public class ConcurrencyLimiter {
+
+    /**
+     * Ratio of long term and current latency at which limit stops growing.
+     */
+    private static final double TOLERANCE = 1.5;
+
+    private static final double MIN_GRADIENT = 0.5;
+
+    private static final double SMOOTHING = 0.2;
+
+    /**
+     * Number of samples over which long term latency is averaged.
+     */
+    private static final int LONG_WINDOW = 100;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong limitBits = new AtomicLong();
+    private final AtomicLong longLatencyNanosBits = new AtomicLong();
+    private volatile boolean enabled;
+    private volatile int retryAfterSeconds;
+    private volatile int minLimit;
+    private volatile int maxLimit;
+
+    @Activate
+    @Modified
+    synchronized void activate(Config config) {
+        this.minLimit = Math.max(1, config.min_limit());
+        this.maxLimit = Math.max(minLimit, config.max_limit());
+        this.limitBits.set(Double.doubleToLongBits(Math.min(maxLimit, Math.max(minLimit, config.initial_limit()))));
+        this.retryAfterSeconds = Math.max(0, config.retry_after_seconds());
+        this.longLatencyNanosBits.set(Double.doubleToLongBits(0));
+        this.enabled = config.enabled();
+    }
+
+    /**
+     * @param actionPermits permits of action annotated with {@link MaxConcurrency}, null for other actions
+     * @return permit to be released when request is handled, null if request has to be rejected
+     */
+    Permit tryAcquire(Semaphore actionPermits) {
+        if (actionPermits != null && !actionPermits.tryAcquire()) {
+            return null;
+        }
+        if (!enabled) {
+            return actionPermits != null ? new Permit(null, actionPermits, 0, 0) : Permit.NONE;
+        }
+        int currentLimit = getLimit();
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= currentLimit) {
+                if (actionPermits != null) {
+                    actionPermits.release();
+                }
+                return null;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return new Permit(this, actionPermits, System.nanoTime(), current + 1);
+    }
+
+    int getLimit() {
+        return (int) Double.longBitsToDouble(limitBits.get());
+    }
+
+    int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * Samples taken while less than half of the limit is used do not show whether limit is too high or too low, so
+     * they only update long term latency. Concurrent samples retry their updates, so none of them is lost.
+     */
+    void onSample(long latencyNanos, int inFlightAtStart) {
+        double longLatencyNanos = updateLongLatency(latencyNanos);
+        long currentBits;
+        double newLimit;
+        do {
+            currentBits = limitBits.get();
+            double currentLimit = Double.longBitsToDouble(currentBits);
+            if (inFlightAtStart < currentLimit / 2) {
+                return;
+            }
+            double ratio = TOLERANCE * longLatencyNanos / Math.max(1, latencyNanos);
+            double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, ratio));
+            newLimit = currentLimit * gradient + Math.sqrt(currentLimit);
+            newLimit = currentLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+            newLimit = Math.min(maxLimit, Math.max(minLimit, newLimit));
+        } while (!limitBits.compareAndSet(currentBits, Double.doubleToLongBits(newLimit)));
+    }
+
+    private double updateLongLatency(long latencyNanos) {
+        long currentBits;
+        double longLatencyNanos;
+        do {
+            currentBits = longLatencyNanosBits.get();
+            double current = Double.longBitsToDouble(currentBits);
+            longLatencyNanos = current == 0 ? latencyNanos : current + (latencyNanos - current) / LONG_WINDOW;
+        } while (!longLatencyNanosBits.compareAndSet(currentBits, Double.doubleToLongBits(longLatencyNanos)));
+        return longLatencyNanos;
+    }
+
+    static final class Permit {
+
+        static final Permit NONE = new Permit(null, null, 0, 0);
+
+        private final ConcurrencyLimiter limiter;
+        private final Semaphore actionPermits;
+        private final long startNanos;
+        private final int inFlightAtStart;
+        private volatile boolean released;
+
+        private Permit(ConcurrencyLimiter limiter, Semaphore actionPermits, long startNanos, int inFlightAtStart) {
+            this.limiter = limiter;
+            this.actionPermits = actionPermits;
+            this.startNanos = startNanos;
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /**
+         * Releases permit, later calls are ignored.
+         */
+        void release() {
+            if (released || this == NONE) {
+                return;
+            }
+            released = true;
+            if (actionPermits != null) {
+                actionPermits.release();
+            }
+            if (limiter != null) {
+                limiter.inFlight.decrementAndGet();
+                limiter.onSample(System.nanoTime() - startNanos, inFlightAtStart);
+            }
+        }
+    }
+
+    @ObjectClassDefinition(name = "WebSight Rest Framework Concurrency Limiter")
+    public @interface Config {
+
+        @AttributeDefinition(
+                name = "Enabled",
+                description = "Limit number of rest action requests handled at the same time by the instance. Limit " +
+                        "is adjusted to observed latency, requests over the limit are responded with 503 status.")
+        boolean enabled() default false;
+
+        @AttributeDefinition(
+                name = "Initial limit",
+                description = "Limit of requests handled at the same time before it is adjusted.")
+        int initial_limit() default 20;
+
+        @AttributeDefinition(
+                name = "Minimal limit",
+                description = "Limit is never decreased below this value.")
+        int min_limit() default 4;
+
+        @AttributeDefinition(
+                name = "Maximal limit",
+                description = "Limit is never increased above this value.")
+        int max_limit() default 500;
+
+        @AttributeDefinition(
+                name = "Retry after",
+                description = "Seconds sent in Retry-After header of rejected requests.")
+        int retry_after_seconds() default 1;
+    }
+}
@@ -0,0 +1,80 @@
+package pl.ds.websight.rest.framework.impl;
+
+import com.google.common.base.Splitter;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Strong entity tags of responses to conditional requests.
+ */
+final class ETags {
+
+    private static final String ANY = "*";
+
+    private static final String WEAK_PREFIX = "W/";
+
+    private static final String ENCODING_SEPARATOR = "-";
+
+    private static final Splitter TAGS_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
+    private ETags() {
+        // no instances
+    }
+
+    /**
+     * @return tag of serialized response body
+     */
+    static String of(byte[] body) {
+        return quote(Hashing.murmur3_128().hashBytes(body).toString());
+    }
+
+    /**
+     * @return tag of action result version, specific to user as response contains user id, and to response format
+     */
+    static String ofVersion(String userId, String version, ResponseFormat format) {
+        Hasher hasher = Hashing.murmur3_128().newHasher()
+                .putString(userId, StandardCharsets.UTF_8)
+                .putByte((byte) 0)
+                .putString(version, StandardCharsets.UTF_8);
+        if (format.isBinary()) {
+            hasher.putByte((byte) 0).putString(format.name(), StandardCharsets.UTF_8);
+        }
+        return quote("v" + hasher.hash());
+    }
+
+    /**
+     * @return tag of response with given content encoding
+     */
+    static String encoded(String etag, String encoding) {
+        return etag.substring(0, etag.length() - 1) + ENCODING_SEPARATOR + encoding + '"';
+    }
+
+    /**
+     * Compares tags using weak comparison, as required for {@code If-None-Match} header. Content encoding appended
+     * to tags (of request or response) is ignored, compressed and not compressed responses are considered equivalent.
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String identityTag = withoutEncoding(etag);
+        for (String tag : TAGS_SPLITTER.split(ifNoneMatch)) {
+            if (ANY.equals(tag) || identityTag.equals(withoutEncoding(tag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String withoutEncoding(String tag) {
+        String opaqueTag = tag.startsWith(WEAK_PREFIX) ? tag.substring(WEAK_PREFIX.length()) : tag;
+        int separator = opaqueTag.lastIndexOf(ENCODING_SEPARATOR);
+        return separator > 0 ? opaqueTag.substring(0, separator) + '"' : opaqueTag;
+    }
+
+    private static String quote(String tag) {
+        return '"' + tag + '"';
+    }
+}
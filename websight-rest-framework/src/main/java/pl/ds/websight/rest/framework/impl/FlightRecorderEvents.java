@@ -0,0 +1,68 @@
+package pl.ds.websight.rest.framework.impl;
+
+import jdk.jfr.EventType;
+
+/**
+ * The only class using flight recorder events directly. It is loaded by {@link RestActionEvents} only when
+ * {@code jdk.jfr} is available, so events are passed to and from it as objects. Event is created only if its type is
+ * enabled in running recording, otherwise allocation of event (escaping when it is recorded) would not be eliminated.
+ */
+final class FlightRecorderEvents {
+
+    private static final EventType EXECUTION_EVENT_TYPE = EventType.getEventType(RestActionExecutionEvent.class);
+    private static final EventType SERIALIZATION_EVENT_TYPE =
+            EventType.getEventType(RestActionSerializationEvent.class);
+
+    private FlightRecorderEvents() {
+        // no instances
+    }
+
+    static Object beginExecution() {
+        if (!EXECUTION_EVENT_TYPE.isEnabled()) {
+            return null;
+        }
+        RestActionExecutionEvent event = new RestActionExecutionEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitExecution(Object executionEvent, Class<?> actionClass, String method, String status,
+            Class<?> modelClass, long[] phaseDurations) {
+        RestActionExecutionEvent event = (RestActionExecutionEvent) executionEvent;
+        event.end();
+        if (event.shouldCommit()) {
+            event.actionClass = actionClass;
+            event.method = method;
+            event.status = status;
+            event.modelClass = modelClass;
+            if (phaseDurations != null) {
+                event.bindDuration = phaseDurations[RequestTrace.Phase.BIND.ordinal()];
+                event.validateDuration = phaseDurations[RequestTrace.Phase.VALIDATE.ordinal()];
+                event.validatableDuration = phaseDurations[RequestTrace.Phase.VALIDATABLE.ordinal()];
+                event.performDuration = phaseDurations[RequestTrace.Phase.PERFORM.ordinal()];
+                event.writeDuration = phaseDurations[RequestTrace.Phase.WRITE.ordinal()];
+            }
+            event.commit();
+        }
+    }
+
+    static Object beginSerialization() {
+        if (!SERIALIZATION_EVENT_TYPE.isEnabled()) {
+            return null;
+        }
+        RestActionSerializationEvent event = new RestActionSerializationEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitSerialization(Object serializationEvent, String status, Class<?> entityClass, long responseBytes) {
+        RestActionSerializationEvent event = (RestActionSerializationEvent) serializationEvent;
+        event.end();
+        if (event.shouldCommit()) {
+            event.status = status;
+            event.entityClass = entityClass;
+            event.responseBytes = responseBytes;
+            event.commit();
+        }
+    }
+}
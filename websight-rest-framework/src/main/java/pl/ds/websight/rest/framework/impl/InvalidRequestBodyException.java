@@ -0,0 +1,21 @@
+package pl.ds.websight.rest.framework.impl;
+
+import pl.ds.websight.rest.framework.Errors;
+
+/**
+ * Thrown by {@link pl.ds.websight.rest.framework.RequestBinder} when request body cannot be converted to REST Action
+ * Model. Reported to client as model validation failure.
+ */
+class InvalidRequestBodyException extends RuntimeException {
+
+    private final transient Errors errors;
+
+    InvalidRequestBodyException(Errors errors, Throwable cause) {
+        super("Invalid request body", cause);
+        this.errors = errors;
+    }
+
+    Errors getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,72 @@
+package pl.ds.websight.rest.framework.impl;
+
+/**
+ * Snapshot of job state and progress, returned as entity of job accepted response and job status action.
+ */
+public final class JobStatus {
+
+    public enum State {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED
+    }
+
+    private final String id;
+    private final State state;
+    private final long completed;
+    private final long total;
+    private final String message;
+    private final long submitted;
+    private final Long finished;
+
+    JobStatus(String id, State state, long completed, long total, String message, long submitted, Long finished) {
+        this.id = id;
+        this.state = state;
+        this.completed = completed;
+        this.total = total;
+        this.message = message;
+        this.submitted = submitted;
+        this.finished = finished;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return number of completed work units reported by job
+     */
+    public long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return total number of work units reported by job, 0 if unknown
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return progress message reported by job
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return submission time in milliseconds since epoch
+     */
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * @return finish time in milliseconds since epoch, null if job is not finished
+     */
+    public Long getFinished() {
+        return finished;
+    }
+}
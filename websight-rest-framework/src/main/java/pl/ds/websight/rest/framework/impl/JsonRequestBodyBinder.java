@@ -0,0 +1,85 @@
+package pl.ds.websight.rest.framework.impl;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.InjectableValues;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.SlingHttpServletRequest;
+import pl.ds.websight.rest.framework.Errors;
+import pl.ds.websight.rest.framework.RequestBinder;
+import pl.ds.websight.rest.framework.annotations.JsonRequestBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Creates model annotated with {@link JsonRequestBody} from JSON body of POST request and delegates other requests
+ * to parameters binder. {@link ObjectReader} of model type is created once, when binder is created for rest action.
+ */
+final class JsonRequestBodyBinder implements RequestBinder<Object> {
+
+    static final String JSON_CONTENT_TYPE = "application/json";
+
+    private static final String MALFORMED_BODY_MESSAGE = "Malformed JSON request body";
+    private static final String INVALID_VALUE_MESSAGE = "Invalid JSON value";
+
+    // only members annotated with @JsonProperty (and @JsonCreator) are bound, so request cannot set other model state;
+    // getters are not visible either, as visible getter makes field of the same property a mutator
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper()
+            .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final ObjectReader modelReader;
+    private final RequestBinder<?> parametersBinder;
+
+    JsonRequestBodyBinder(Class<?> modelType, RequestBinder<?> parametersBinder) {
+        this.modelReader = JSON_MAPPER.reader(modelType);
+        this.parametersBinder = parametersBinder;
+    }
+
+    @Override
+    public Object bind(SlingHttpServletRequest request) {
+        if (!isJsonBodyRequest(request)) {
+            return parametersBinder.bind(request);
+        }
+        ObjectReader requestReader = modelReader.with(new InjectableValues.Std()
+                .addValue(SlingHttpServletRequest.class, request));
+        try {
+            // reader decodes UTF-8/16/32 from stream itself, explicitly declared encoding is applied by request reader
+            return request.getCharacterEncoding() == null
+                    ? requestReader.readValue(request.getInputStream())
+                    : requestReader.readValue(request.getReader());
+        } catch (JsonMappingException e) {
+            throw new InvalidRequestBodyException(Errors.of(toPath(e), null, INVALID_VALUE_MESSAGE), e);
+        } catch (JsonProcessingException e) {
+            throw new InvalidRequestBodyException(Errors.of("", null, MALFORMED_BODY_MESSAGE), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read request body", e);
+        }
+    }
+
+    static boolean isJsonBodyRequest(SlingHttpServletRequest request) {
+        return "POST".equals(request.getMethod())
+                && StringUtils.startsWithIgnoreCase(request.getContentType(), JSON_CONTENT_TYPE);
+    }
+
+    private static String toPath(JsonMappingException e) {
+        StringBuilder path = new StringBuilder();
+        for (JsonMappingException.Reference reference : e.getPath()) {
+            if (reference.getFieldName() != null) {
+                if (path.length() > 0) {
+                    path.append('.');
+                }
+                path.append(reference.getFieldName());
+            } else if (reference.getIndex() >= 0) {
+                path.append('[').append(reference.getIndex()).append(']');
+            }
+        }
+        return path.toString();
+    }
+}
@@ -0,0 +1,82 @@
+package pl.ds.websight.rest.framework.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies in microseconds. Every power of two range is split into {@value #SUB_BUCKETS}
+ * buckets, so percentiles are reported with error below 12.5%. Buckets are {@link LongAdder}s, so concurrent
+ * recording of similar latencies does not contend on one counter.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final long MAX_MICROS = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKETS = bucket(MAX_MICROS) + 1;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(long nanos) {
+        long micros = Math.min(Math.max(TimeUnit.NANOSECONDS.toMicros(nanos), 0), MAX_MICROS);
+        buckets[bucket(micros)].increment();
+        max.accumulate(micros);
+    }
+
+    /**
+     * @param quantile quantile from 0 to 1
+     * @return upper bound of bucket containing given quantile (not greater than max), in microseconds
+     */
+    long getPercentile(double quantile) {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+}
@@ -0,0 +1,167 @@
+package pl.ds.websight.rest.framework.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.service.component.annotations.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.nodetype.NodeTypeManager;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks node types of resources for {@link pl.ds.websight.rest.framework.annotations.PrimaryTypes} actions.
+ * Decisions are cached per effective node type of resource (primary type with set of mixins) and action node type,
+ * so JCR node type manager is queried only once for every such pair. Node types are read from resource properties,
+ * without adapting resource to JCR node, once per request - decisions for request resource are kept in request
+ * attribute and shared by all candidate actions. Cache is cleared when node type definitions change.
+ */
+@Component(
+        service = { NodeTypeMatcher.class, ResourceChangeListener.class },
+        property = {
+                ResourceChangeListener.PATHS + "=" + NodeTypeMatcher.NODE_TYPES_PATH,
+                ResourceChangeListener.CHANGES + "=ADDED",
+                ResourceChangeListener.CHANGES + "=CHANGED",
+                ResourceChangeListener.CHANGES + "=REMOVED"
+        })
+public class NodeTypeMatcher implements ResourceChangeListener {
+
+    static final String NODE_TYPES_PATH = "/jcr:system/jcr:nodeTypes";
+    static final String DECISIONS_ATTRIBUTE = NodeTypeMatcher.class.getName() + ".decisions";
+
+    private static final Logger LOG = LoggerFactory.getLogger(NodeTypeMatcher.class);
+
+    private static final String JCR_PRIMARY_TYPE = "jcr:primaryType";
+    private static final String JCR_MIXIN_TYPES = "jcr:mixinTypes";
+    private static final int MAX_CACHED_NODE_TYPES = 1000;
+    private static final long CACHE_EXPIRATION_MINUTES = 60;
+
+    // expiration is a safety net for node type changes not reported by resource observation
+    private final Cache<String, ConcurrentMap<String, Boolean>> decisionsByEffectiveType = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_NODE_TYPES)
+            .expireAfterWrite(CACHE_EXPIRATION_MINUTES, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * @return true if request resource primary type or any of its mixins is (or extends) any of given node types
+     */
+    public boolean matchesAny(SlingHttpServletRequest request, String[] nodeTypes) {
+        ResourceNodeTypes resourceNodeTypes = getResourceNodeTypes(request);
+        if (resourceNodeTypes.decisions == null) {
+            return false;
+        }
+        for (String nodeType : nodeTypes) {
+            Boolean matches = resourceNodeTypes.decisions.get(nodeType);
+            if (matches == null) {
+                try {
+                    matches = isNodeType(resourceNodeTypes, nodeType);
+                } catch (RepositoryException e) {
+                    LOG.warn("Failed to check node's primaryType", e);
+                    return false;
+                }
+                resourceNodeTypes.decisions.put(nodeType, matches);
+            }
+            if (matches) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void onChange(@NotNull List<ResourceChange> changes) {
+        LOG.debug("Node type definitions changed, clearing node type decisions");
+        decisionsByEffectiveType.invalidateAll();
+    }
+
+    private ResourceNodeTypes getResourceNodeTypes(SlingHttpServletRequest request) {
+        Resource resource = request.getResource();
+        Object attribute = request.getAttribute(DECISIONS_ATTRIBUTE);
+        if (attribute instanceof ResourceNodeTypes && ((ResourceNodeTypes) attribute).resource == resource) {
+            return (ResourceNodeTypes) attribute;
+        }
+        ValueMap properties = resource.getValueMap();
+        String primaryType = properties.get(JCR_PRIMARY_TYPE, String.class);
+        ResourceNodeTypes resourceNodeTypes;
+        if (primaryType != null) {
+            String[] mixinTypes = properties.get(JCR_MIXIN_TYPES, String[].class);
+            resourceNodeTypes = new ResourceNodeTypes(resource, primaryType, mixinTypes,
+                    getDecisions(primaryType, mixinTypes));
+        } else {
+            LOG.warn("Cannot read primary type of resource {}", resource.getPath());
+            resourceNodeTypes = new ResourceNodeTypes(resource, null, null, null);
+        }
+        request.setAttribute(DECISIONS_ATTRIBUTE, resourceNodeTypes);
+        return resourceNodeTypes;
+    }
+
+    private ConcurrentMap<String, Boolean> getDecisions(String primaryType, String[] mixinTypes) {
+        String effectiveType = toEffectiveType(primaryType, mixinTypes);
+        ConcurrentMap<String, Boolean> decisions = decisionsByEffectiveType.getIfPresent(effectiveType);
+        if (decisions == null) {
+            decisions = new ConcurrentHashMap<>();
+            ConcurrentMap<String, Boolean> existing = decisionsByEffectiveType.asMap().putIfAbsent(effectiveType, decisions);
+            if (existing != null) {
+                decisions = existing;
+            }
+        }
+        return decisions;
+    }
+
+    private static String toEffectiveType(String primaryType, String[] mixinTypes) {
+        if (ArrayUtils.isEmpty(mixinTypes)) {
+            return primaryType;
+        }
+        String[] sortedMixinTypes = mixinTypes.clone();
+        Arrays.sort(sortedMixinTypes);
+        return primaryType + '+' + String.join("+", sortedMixinTypes);
+    }
+
+    private static boolean isNodeType(ResourceNodeTypes resourceNodeTypes, String nodeType) throws RepositoryException {
+        Session session = resourceNodeTypes.resource.getResourceResolver().adaptTo(Session.class);
+        if (session == null) {
+            throw new RepositoryException("Cannot adapt resource resolver to JCR session");
+        }
+        NodeTypeManager nodeTypeManager = session.getWorkspace().getNodeTypeManager();
+        if (nodeTypeManager.getNodeType(resourceNodeTypes.primaryType).isNodeType(nodeType)) {
+            return true;
+        }
+        if (resourceNodeTypes.mixinTypes != null) {
+            for (String mixinType : resourceNodeTypes.mixinTypes) {
+                if (nodeTypeManager.getNodeType(mixinType).isNodeType(nodeType)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static final class ResourceNodeTypes {
+
+        private final Resource resource;
+        private final String primaryType;
+        private final String[] mixinTypes;
+        private final ConcurrentMap<String, Boolean> decisions;
+
+        private ResourceNodeTypes(Resource resource, String primaryType, String[] mixinTypes,
+                ConcurrentMap<String, Boolean> decisions) {
+            this.resource = resource;
+            this.primaryType = primaryType;
+            this.mixinTypes = mixinTypes;
+            this.decisions = decisions;
+        }
+    }
+}
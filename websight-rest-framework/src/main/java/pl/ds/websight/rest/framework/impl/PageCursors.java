@@ -0,0 +1,140 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.AttributeType;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import pl.ds.websight.rest.framework.PagedResult;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Opaque continuation cursors of {@link PagedResult}s. Cursor holds position of the next page (number of items before
+ * it and key of the last item, if action pages by key), signed with HMAC of the position, request path and user id,
+ * so it cannot be forged nor used with another action or by another user. Secret of signatures is random per instance,
+ * unless it is configured to be shared by instances of a cluster. Cursors are encoded and decoded by
+ * {@link PageRequestModel}.
+ */
+@Component(service = PageCursors.class)
+@Designate(ocd = PageCursors.Config.class)
+public class PageCursors {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int SIGNATURE_BYTES = 16;
+    private static final int RANDOM_SECRET_BYTES = 32;
+    private static final char SEPARATOR = '.';
+
+    private volatile SecretKeySpec key = randomKey();
+
+    @Activate
+    @Modified
+    void activate(Config config) {
+        String secret = config.secret();
+        key = StringUtils.isEmpty(secret)
+                ? randomKey()
+                : new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    String encode(SlingHttpServletRequest request, long offset, String after) {
+        byte[] position = (after != null ? offset + "\n" + after : Long.toString(offset))
+                .getBytes(StandardCharsets.UTF_8);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(position) + SEPARATOR + encoder.encodeToString(sign(request, position));
+    }
+
+    /**
+     * @return position of the page, null if cursor is malformed or its signature does not match the request
+     */
+    Position decode(SlingHttpServletRequest request, String cursor) {
+        int separator = cursor.indexOf(SEPARATOR);
+        if (separator < 0) {
+            return null;
+        }
+        byte[] position;
+        byte[] signature;
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            position = decoder.decode(cursor.substring(0, separator));
+            signature = decoder.decode(cursor.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!MessageDigest.isEqual(signature, sign(request, position))) {
+            return null;
+        }
+        String value = new String(position, StandardCharsets.UTF_8);
+        int lineEnd = value.indexOf('\n');
+        try {
+            long offset = Long.parseLong(lineEnd < 0 ? value : value.substring(0, lineEnd));
+            return offset >= 0 ? new Position(offset, lineEnd < 0 ? null : value.substring(lineEnd + 1)) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private byte[] sign(SlingHttpServletRequest request, byte[] position) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            mac.update(StringUtils.defaultString(request.getRequestURI()).getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            mac.update(RestResponseHandler.getUserId(request).getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return Arrays.copyOf(mac.doFinal(position), SIGNATURE_BYTES);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot sign page cursor", e);
+        }
+    }
+
+    private static SecretKeySpec randomKey() {
+        byte[] secret = new byte[RANDOM_SECRET_BYTES];
+        new SecureRandom().nextBytes(secret);
+        return new SecretKeySpec(secret, ALGORITHM);
+    }
+
+    /**
+     * Position of page encoded in cursor.
+     */
+    static final class Position {
+
+        private final long offset;
+        private final String after;
+
+        private Position(long offset, String after) {
+            this.offset = offset;
+            this.after = after;
+        }
+
+        long getOffset() {
+            return offset;
+        }
+
+        String getAfter() {
+            return after;
+        }
+    }
+
+    @ObjectClassDefinition(name = "WebSight Rest Framework Page Cursors")
+    public @interface Config {
+
+        @AttributeDefinition(
+                name = "Secret",
+                description = "Secret of signatures of paged results cursors. Set the same secret on all instances " +
+                        "serving the same clients, so cursors are accepted by any of them. Random per instance if " +
+                        "empty.",
+                type = AttributeType.PASSWORD)
+        String secret() default "";
+    }
+}
@@ -0,0 +1,100 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.models.annotations.Model;
+import org.apache.sling.models.annotations.injectorspecific.OSGiService;
+import org.apache.sling.models.annotations.injectorspecific.Self;
+import pl.ds.websight.rest.framework.Errors;
+import pl.ds.websight.rest.framework.PageRequest;
+
+/**
+ * {@link PageRequest} adapted from request, reading cursor with {@link PageCursors}.
+ */
+@Model(adaptables = SlingHttpServletRequest.class, adapters = PageRequest.class)
+public class PageRequestModel implements PageRequest {
+
+    @Self
+    private SlingHttpServletRequest request;
+
+    @OSGiService
+    private PageCursors pageCursors;
+
+    private PageCursors.Position position;
+    private boolean decoded;
+
+    public PageRequestModel() {
+        // instantiated by Sling Models
+    }
+
+    PageRequestModel(SlingHttpServletRequest request, PageCursors pageCursors) {
+        this.request = request;
+        this.pageCursors = pageCursors;
+    }
+
+    @Override
+    public String getCursor() {
+        return request.getParameter(CURSOR_PARAMETER);
+    }
+
+    @Override
+    public int getLimit() {
+        Integer limit = parseLimit();
+        return limit != null && isValidLimit(limit) ? limit : DEFAULT_LIMIT;
+    }
+
+    @Override
+    public long getOffset() {
+        PageCursors.Position current = getPosition();
+        return current != null ? current.getOffset() : 0;
+    }
+
+    @Override
+    public String getAfter() {
+        PageCursors.Position current = getPosition();
+        return current != null ? current.getAfter() : null;
+    }
+
+    @Override
+    public Errors validate() {
+        Errors errors = Errors.createErrors();
+        String limit = request.getParameter(LIMIT_PARAMETER);
+        Integer parsedLimit = parseLimit();
+        if (limit != null && (parsedLimit == null || !isValidLimit(parsedLimit))) {
+            errors.add(LIMIT_PARAMETER, limit, "Limit has to be a number from 1 to " + MAX_LIMIT);
+        }
+        if (getCursor() != null && getPosition() == null) {
+            errors.add(CURSOR_PARAMETER, getCursor(), "Invalid cursor");
+        }
+        return errors;
+    }
+
+    @Override
+    public String nextCursor(long offset, String after) {
+        return pageCursors.encode(request, offset, after);
+    }
+
+    private PageCursors.Position getPosition() {
+        if (!decoded) {
+            String cursor = getCursor();
+            position = cursor != null ? pageCursors.decode(request, cursor) : null;
+            decoded = true;
+        }
+        return position;
+    }
+
+    private Integer parseLimit() {
+        String limit = request.getParameter(LIMIT_PARAMETER);
+        if (limit == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(limit.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isValidLimit(int limit) {
+        return limit >= 1 && limit <= MAX_LIMIT;
+    }
+}
@@ -0,0 +1,31 @@
+package pl.ds.websight.rest.framework.impl;
+
+/**
+ * Quality values ({@code q} parameter) of elements of {@code Accept} and {@code Accept-Encoding} headers.
+ */
+final class QualityValues {
+
+    private static final String QUALITY_PARAMETER = "q=";
+
+    private QualityValues() {
+        // no instances
+    }
+
+    /**
+     * @param parts header element split by {@code ;} into value and parameters
+     * @return quality of element, 1 if it is not given, 0 if it is invalid
+     */
+    static float of(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith(QUALITY_PARAMETER)) {
+                try {
+                    return Float.parseFloat(parameter.substring(QUALITY_PARAMETER.length()));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
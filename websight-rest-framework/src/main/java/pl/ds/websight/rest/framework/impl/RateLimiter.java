@@ -0,0 +1,170 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import pl.ds.websight.rest.framework.annotations.RateLimit;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits rate of rest action requests per user and action, using token buckets. Buckets are kept in striped maps
+ * (each guarded by own lock) ordered by last access. Buckets idle long enough to be full again are evicted, as they
+ * are equivalent to new ones, and number of buckets in each stripe is bounded by evicting least recently used one.
+ */
+@Component(service = RateLimiter.class)
+@Designate(ocd = RateLimiter.Config.class)
+public class RateLimiter {
+
+    private static final int STRIPES = 16;
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private volatile Limit defaultLimit;
+
+    public RateLimiter() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @Activate
+    @Modified
+    void activate(Config config) {
+        int maxBucketsPerStripe = Math.max(1, config.max_buckets() / STRIPES);
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.maxBuckets = maxBucketsPerStripe;
+                stripe.buckets.clear();
+            }
+        }
+        this.defaultLimit = config.default_requests() > 0
+                ? new Limit(config.default_requests(), config.default_seconds())
+                : null;
+    }
+
+    /**
+     * @param actionLimit limit of the action, null to use default one
+     * @return 0 if request is allowed, otherwise number of seconds after which it will be allowed
+     */
+    long tryAcquire(Class<?> actionClass, Limit actionLimit, String userId) {
+        Limit limit = actionLimit != null ? actionLimit : defaultLimit;
+        if (limit == null) {
+            return 0;
+        }
+        String key = actionClass.getName() + '\n' + userId;
+        Stripe stripe = stripes[(key.hashCode() & Integer.MAX_VALUE) % STRIPES];
+        long now = System.nanoTime();
+        synchronized (stripe) {
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(limit.capacity, now);
+                stripe.buckets.put(key, bucket);
+            }
+            long waitNanos = bucket.tryTake(limit, now);
+            stripe.evictIdle(now);
+            return waitNanos == 0 ? 0 : Math.max(1, (waitNanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND);
+        }
+    }
+
+    static final class Limit {
+
+        private final double capacity;
+        private final double tokensPerNano;
+        private final long refillNanos;
+
+        private Limit(int requests, int seconds) {
+            this.capacity = Math.max(1, requests);
+            this.refillNanos = TimeUnit.SECONDS.toNanos(Math.max(1, seconds));
+            this.tokensPerNano = capacity / refillNanos;
+        }
+
+        /**
+         * @return limit of action class annotated with {@link RateLimit}, null for other actions
+         */
+        static Limit of(Class<?> actionClass) {
+            RateLimit rateLimit = actionClass.getAnnotation(RateLimit.class);
+            return rateLimit != null ? new Limit(rateLimit.requests(), rateLimit.seconds()) : null;
+        }
+    }
+
+    private static final class Bucket {
+
+        private double tokens;
+        private long updated;
+        private long idleAfter;
+
+        private Bucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.updated = now;
+        }
+
+        /**
+         * @return 0 if token was taken, otherwise nanoseconds after which next token will be available
+         */
+        private long tryTake(Limit limit, long now) {
+            tokens = Math.min(limit.capacity, tokens + (now - updated) * limit.tokensPerNano);
+            updated = now;
+            idleAfter = limit.refillNanos;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / limit.tokensPerNano);
+        }
+
+        private boolean isFull(long now) {
+            return now - updated >= idleAfter;
+        }
+    }
+
+    private static final class Stripe {
+
+        private final LinkedHashMap<String, Bucket> buckets = new LinkedHashMap<String, Bucket>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                return size() > maxBuckets;
+            }
+        };
+        private int maxBuckets = Integer.MAX_VALUE;
+
+        /**
+         * Buckets are ordered by last access, so only the eldest ones have to be checked.
+         */
+        private void evictIdle(long now) {
+            Iterator<Bucket> iterator = buckets.values().iterator();
+            while (iterator.hasNext() && iterator.next().isFull(now)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @ObjectClassDefinition(name = "WebSight Rest Framework Rate Limiter")
+    public @interface Config {
+
+        @AttributeDefinition(
+                name = "Default requests",
+                description = "Number of requests which single user can send to action (not annotated with " +
+                        "@RateLimit) in configured period. Set 0 for no default limit.")
+        int default_requests() default 0;
+
+        @AttributeDefinition(
+                name = "Default period",
+                description = "Period in seconds of default limit.")
+        int default_seconds() default 1;
+
+        @AttributeDefinition(
+                name = "Maximal number of buckets",
+                description = "Number of users and actions pairs tracked at the same time, least recently used " +
+                        "ones are forgotten when limit is reached.")
+        int max_buckets() default 10000;
+    }
+}
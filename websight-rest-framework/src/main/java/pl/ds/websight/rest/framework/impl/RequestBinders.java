@@ -0,0 +1,64 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.models.factory.ModelFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.ds.websight.rest.framework.RequestBinder;
+import pl.ds.websight.rest.framework.annotations.GeneratedBinder;
+import pl.ds.websight.rest.framework.annotations.JsonRequestBody;
+
+/**
+ * Chooses how REST Action Model is created from request: by binder generated at compile time for models annotated
+ * with {@link GeneratedBinder} or by {@link ModelFactory}. Models annotated with {@link JsonRequestBody} are created
+ * from JSON body of POST requests.
+ */
+final class RequestBinders {
+
+    static final String BINDER_CLASS_NAME_SUFFIX = "_RestBinder";
+
+    private static final Logger LOG = LoggerFactory.getLogger(RequestBinders.class);
+
+    private RequestBinders() {
+        // no instances
+    }
+
+    static RequestBinder<?> forModel(Class<?> modelType, ModelFactory modelFactory) {
+        RequestBinder<?> parametersBinder = forParameters(modelType, modelFactory);
+        if (modelType.isAnnotationPresent(JsonRequestBody.class)) {
+            return new JsonRequestBodyBinder(modelType, parametersBinder);
+        }
+        return parametersBinder;
+    }
+
+    private static RequestBinder<?> forParameters(Class<?> modelType, ModelFactory modelFactory) {
+        if (modelType.isAnnotationPresent(GeneratedBinder.class)) {
+            RequestBinder<?> generatedBinder = loadGeneratedBinder(modelType);
+            if (generatedBinder != null) {
+                return generatedBinder;
+            }
+        }
+        return request -> modelFactory.createModel(request, modelType);
+    }
+
+    private static RequestBinder<?> loadGeneratedBinder(Class<?> modelType) {
+        String binderClassName = getBinderClassName(modelType);
+        try {
+            Class<?> binderClass = modelType.getClassLoader().loadClass(binderClassName);
+            return (RequestBinder<?>) binderClass.getConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            LOG.warn("Cannot create generated request binder {}, model {} will be adapted by ModelFactory",
+                    binderClassName, modelType.getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Binder is generated in package of model, with nested class names joined by underscore.
+     */
+    static String getBinderClassName(Class<?> modelType) {
+        String modelClassName = modelType.getName();
+        int packageEnd = modelClassName.lastIndexOf('.');
+        return modelClassName.substring(0, packageEnd + 1) + modelClassName.substring(packageEnd + 1).replace('$', '_')
+                + BINDER_CLASS_NAME_SUFFIX;
+    }
+}
@@ -0,0 +1,157 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trace of single rest action request: correlation id (put into {@link MDC} while request is handled) and, for
+ * sampled requests, duration of request phases. Phases measured before response is written are sent in
+ * {@code Server-Timing} header, all phases (including writing) are logged on debug level when request is finished.
+ * Phases are measured also when flight recorder execution event is recorded, see {@link RestActionEvents}.
+ * Trace is used by one thread at a time, asynchronous actions continue it in thread completing their result.
+ */
+final class RequestTrace {
+
+    static final RequestTrace NONE = new RequestTrace(null, false, null, null);
+
+    static final String CORRELATION_ID_MDC_KEY = "correlationId";
+
+    private static final Logger LOG = LoggerFactory.getLogger(RequestTrace.class);
+
+    private static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    enum Phase {
+        BIND, VALIDATE, VALIDATABLE, PERFORM, WRITE;
+
+        private final String metricName = name().toLowerCase(Locale.ROOT);
+    }
+
+    private final String correlationId;
+    private final boolean sampled;
+    private final String method;
+    private final Object executionEvent;
+    private final long[] durations;
+    private final long start;
+    private long last;
+
+    RequestTrace(String correlationId, boolean sampled, String method, Object executionEvent) {
+        this.correlationId = correlationId;
+        this.sampled = sampled;
+        this.method = method;
+        this.executionEvent = executionEvent;
+        boolean timed = sampled || executionEvent != null;
+        this.durations = timed ? new long[Phase.values().length] : null;
+        this.start = timed ? System.nanoTime() : 0;
+        this.last = start;
+    }
+
+    String getCorrelationId() {
+        return correlationId;
+    }
+
+    boolean isSampled() {
+        return sampled;
+    }
+
+    /**
+     * Attributes time since previous mark to given phase.
+     */
+    void mark(Phase phase) {
+        if (durations != null) {
+            long now = System.nanoTime();
+            durations[phase.ordinal()] += now - last;
+            last = now;
+        }
+    }
+
+    /**
+     * Sends {@code Server-Timing} header with phases measured so far, time until {@link #finish} is attributed to
+     * {@link Phase#WRITE}.
+     */
+    void startWrite(HttpServletResponse response) {
+        if (sampled && !response.isCommitted()) {
+            response.setHeader(SERVER_TIMING_HEADER, format(Phase.PERFORM));
+        }
+    }
+
+    /**
+     * Puts correlation id into {@link MDC} of current thread.
+     *
+     * @return correlation id replaced in current thread (e.g. of batch request), to pass to {@link #detach(String)}
+     */
+    String attach() {
+        if (correlationId == null) {
+            return null;
+        }
+        String previous = MDC.get(CORRELATION_ID_MDC_KEY);
+        MDC.put(CORRELATION_ID_MDC_KEY, correlationId);
+        return previous;
+    }
+
+    void detach(String previous) {
+        if (correlationId == null) {
+            return;
+        }
+        if (previous != null) {
+            MDC.put(CORRELATION_ID_MDC_KEY, previous);
+        } else {
+            MDC.remove(CORRELATION_ID_MDC_KEY);
+        }
+    }
+
+    /**
+     * Ends {@link Phase#WRITE}, logs phases of sampled request and commits execution event.
+     */
+    void finish(Class<?> actionClass, Class<?> modelClass, ActionMetrics.Outcome outcome) {
+        if (durations == null) {
+            return;
+        }
+        mark(Phase.WRITE);
+        if (sampled) {
+            LOG.debug("Rest action {} request phases: {}", actionClass.getName(), format(Phase.WRITE));
+        }
+        RestActionEvents.commitExecution(executionEvent, last - start, actionClass, method, outcome.name(),
+                modelClass, durations);
+    }
+
+    /**
+     * Formats phases (up to given one) which were measured, followed by their total, in {@code Server-Timing} syntax.
+     */
+    String format(Phase lastPhase) {
+        StringBuilder result = new StringBuilder();
+        long total = 0;
+        for (Phase phase : Phase.values()) {
+            if (phase.ordinal() > lastPhase.ordinal()) {
+                break;
+            }
+            long duration = durations[phase.ordinal()];
+            if (duration > 0) {
+                total += duration;
+                appendMetric(result, phase.metricName, duration);
+            }
+        }
+        appendMetric(result, "total", total);
+        return result.toString();
+    }
+
+    private static void appendMetric(StringBuilder result, String name, long nanos) {
+        if (result.length() > 0) {
+            result.append(", ");
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        result.append(name).append(";dur=").append(micros / 1000).append('.');
+        long fraction = micros % 1000;
+        if (fraction < 100) {
+            result.append('0');
+        }
+        if (fraction < 10) {
+            result.append('0');
+        }
+        result.append(fraction);
+    }
+}
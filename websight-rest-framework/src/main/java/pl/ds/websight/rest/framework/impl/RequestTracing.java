@@ -0,0 +1,101 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * Starts {@link RequestTrace}s of rest action requests. Correlation id is taken from request header (or generated, if
+ * the header is missing or invalid) and returned in the same response header. Only sampled requests (and requests
+ * recorded by flight recorder) are timed. Component configures also thresholds of {@link RestActionEvents}.
+ */
+@Component(service = RequestTracing.class)
+@Designate(ocd = RequestTracing.Config.class)
+public class RequestTracing {
+
+    private static final Pattern VALID_CORRELATION_ID = Pattern.compile("[A-Za-z0-9._:-]{1,64}");
+
+    private volatile String correlationIdHeader;
+    private volatile boolean serverTimingEnabled;
+    private volatile double sampleRate;
+
+    @Activate
+    @Modified
+    void activate(Config config) {
+        this.correlationIdHeader = StringUtils.trimToNull(config.correlation_id_header());
+        this.serverTimingEnabled = config.server_timing_enabled();
+        this.sampleRate = Math.min(1.0, Math.max(0.0, config.sample_rate()));
+        RestActionEvents.configure(config.flight_recorder_events_enabled(), config.execution_event_threshold_millis(),
+                config.serialization_event_threshold_millis());
+    }
+
+    /**
+     * Starts trace of request, sets correlation id response header. Correlation id is not attached to {@code MDC}
+     * yet, see {@link RequestTrace#attach()}.
+     */
+    RequestTrace start(SlingHttpServletRequest request, HttpServletResponse response) {
+        String header = correlationIdHeader;
+        boolean sampled = serverTimingEnabled
+                && (sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate);
+        Object executionEvent = RestActionEvents.beginExecution();
+        if (header == null && !sampled && executionEvent == null) {
+            return RequestTrace.NONE;
+        }
+        String correlationId = null;
+        if (header != null) {
+            correlationId = request.getHeader(header);
+            if (correlationId == null || !VALID_CORRELATION_ID.matcher(correlationId).matches()) {
+                correlationId = Long.toHexString(ThreadLocalRandom.current().nextLong());
+            }
+            response.setHeader(header, correlationId);
+        }
+        return new RequestTrace(correlationId, sampled, request.getMethod(), executionEvent);
+    }
+
+    @ObjectClassDefinition(name = "WebSight Rest Framework Request Tracing")
+    public @interface Config {
+
+        @AttributeDefinition(
+                name = "Correlation id header",
+                description = "Request header with correlation id, put into logging MDC as 'correlationId' and " +
+                        "returned in response header. Id is generated if request has no valid one. Leave empty to " +
+                        "disable.")
+        String correlation_id_header() default "X-Correlation-ID";
+
+        @AttributeDefinition(
+                name = "Server-Timing",
+                description = "Measure phases of sampled requests (bind, validate, validatable, perform) and send " +
+                        "them in Server-Timing response header. Writing phase is logged on debug level.")
+        boolean server_timing_enabled() default false;
+
+        @AttributeDefinition(
+                name = "Sample rate",
+                description = "Fraction (from 0 to 1) of requests measured when Server-Timing is enabled.")
+        double sample_rate() default 1.0;
+
+        @AttributeDefinition(
+                name = "Flight recorder events",
+                description = "Emit rest action execution and serialization events to Java Flight Recorder, while " +
+                        "recording with them enabled is running.")
+        boolean flight_recorder_events_enabled() default true;
+
+        @AttributeDefinition(
+                name = "Execution event threshold",
+                description = "Minimal duration in milliseconds of recorded rest action execution events.")
+        long execution_event_threshold_millis() default 0;
+
+        @AttributeDefinition(
+                name = "Serialization event threshold",
+                description = "Minimal duration in milliseconds of recorded rest action serialization events.")
+        long serialization_event_threshold_millis() default 0;
+    }
+}
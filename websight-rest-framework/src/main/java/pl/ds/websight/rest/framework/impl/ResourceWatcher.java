@@ -0,0 +1,489 @@
+package pl.ds.websight.rest.framework.impl;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.net.HttpHeaders;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes changes of watched resources to clients as server-sent events ({@code text/event-stream}). Changes are
+ * observed by this single listener and fanned out to subscribers, which watch exact resource paths or whole subtrees
+ * (prefixes). Changes matching a subscriber are coalesced for configured debounce time and sent as one {@code change}
+ * event, listing watched paths and prefixes under which resources changed (not changed paths, which may be not readable
+ * by the subscriber). Connections are held by asynchronous requests, so idle subscribers do not hold request threads.
+ * Events are written with non-blocking output: every subscriber queues a few events not written yet, so a slow client
+ * does not hold the threads writing events of other clients. Subscriber whose queue overflows is closed, its client
+ * reconnects and gets changes it missed.
+ * <p>
+ * Every event has id of the last change batch it covers. Client reconnecting with {@code Last-Event-ID} gets one event
+ * for changes it missed, computed from bounded history of recent changes. If the history does not reach the id (or the
+ * id is from before framework restart), all watched paths and prefixes are reported as changed.
+ */
+@Component(
+        service = { ResourceWatcher.class, ResourceChangeListener.class },
+        property = {
+                ResourceChangeListener.CHANGES + "=ADDED",
+                ResourceChangeListener.CHANGES + "=CHANGED",
+                ResourceChangeListener.CHANGES + "=REMOVED"
+        })
+@Designate(ocd = ResourceWatcher.Config.class)
+public class ResourceWatcher implements ResourceChangeListener {
+
+    static final String EVENT_STREAM_MEDIA_TYPE = "text/event-stream";
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResourceWatcher.class);
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int RETRY_MILLIS = 5000;
+    private static final int SCHEDULER_THREADS = 2;
+    private static final int QUEUE_SIZE = 16;
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Deque<Change> history = new ArrayDeque<>();
+    private long evictedId;
+
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> keepAlive;
+    private volatile int maxConnections;
+    private volatile long debounceMillis;
+    private volatile long timeoutMillis;
+    private volatile int historySize;
+
+    @Activate
+    @Modified
+    synchronized void activate(Config config) {
+        maxConnections = Math.max(0, config.max_connections());
+        debounceMillis = Math.max(0, config.debounce_millis());
+        timeoutMillis = Math.max(0, config.timeout_seconds()) * 1000L;
+        historySize = Math.max(0, config.history_size());
+        if (scheduler == null) {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(SCHEDULER_THREADS,
+                    new ThreadFactoryBuilder().setNameFormat("websight-rest-watch-%d").setDaemon(true).build());
+            executor.setRemoveOnCancelPolicy(true);
+            scheduler = executor;
+        }
+        if (keepAlive != null) {
+            keepAlive.cancel(false);
+        }
+        long keepAliveSeconds = Math.max(1, config.keep_alive_seconds());
+        keepAlive = scheduler.scheduleWithFixedDelay(this::keepAlive, keepAliveSeconds, keepAliveSeconds,
+                TimeUnit.SECONDS);
+    }
+
+    @Deactivate
+    synchronized void deactivate() {
+        scheduler.shutdownNow();
+        subscribers.forEach(Subscriber::close);
+    }
+
+    @Override
+    public void onChange(@NotNull List<ResourceChange> changes) {
+        long id = sequence.incrementAndGet();
+        List<String> paths = new ArrayList<>(changes.size());
+        for (ResourceChange change : changes) {
+            paths.add(change.getPath());
+        }
+        synchronized (history) {
+            for (String path : paths) {
+                history.addLast(new Change(id, path));
+            }
+            while (history.size() > historySize) {
+                evictedId = history.removeFirst().id;
+            }
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.onChange(id, paths);
+        }
+    }
+
+    /**
+     * Starts asynchronous event stream of the request, which pushes changes of resources at given paths and under
+     * given prefixes until client disconnects or connection times out.
+     *
+     * @param lastEventId id of the last event received by reconnecting client, null for new subscription
+     * @return false if limit of connections is reached, response is not written then
+     */
+    public boolean watch(SlingHttpServletRequest request, SlingHttpServletResponse response, Collection<String> paths,
+            Collection<String> prefixes, String lastEventId) throws IOException {
+        if (!reserveConnection()) {
+            LOG.debug("Limit of {} watch connections reached", maxConnections);
+            return false;
+        }
+        Subscriber subscriber;
+        try {
+            response.setContentType(EVENT_STREAM_MEDIA_TYPE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+            response.setHeader("X-Accel-Buffering", "no");
+            ServletOutputStream output = response.getOutputStream();
+            AsyncContext asyncContext = request.startAsync(request, response);
+            asyncContext.setTimeout(timeoutMillis);
+            subscriber = new Subscriber(asyncContext, output, paths, prefixes);
+            asyncContext.addListener(subscriber);
+            output.setWriteListener(subscriber);
+        } catch (IOException | RuntimeException e) {
+            connections.decrementAndGet();
+            throw e;
+        }
+        subscribers.add(subscriber);
+        if (subscriber.closed) {
+            subscribers.remove(subscriber);
+        }
+        long id = sequence.get();
+        subscriber.write("retry: " + RETRY_MILLIS + "\nid: " + eventId(id) + "\nevent: open\ndata: {}\n\n");
+        if (lastEventId != null) {
+            replay(subscriber, lastEventId, id);
+        }
+        return true;
+    }
+
+    /**
+     * @return time in seconds after which client rejected by connections limit should retry
+     */
+    public int getRetryAfterSeconds() {
+        return RETRY_MILLIS / 1000;
+    }
+
+    int getConnections() {
+        return connections.get();
+    }
+
+    private boolean reserveConnection() {
+        int current;
+        do {
+            current = connections.get();
+            if (current >= maxConnections) {
+                return false;
+            }
+        } while (!connections.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private void replay(Subscriber subscriber, String lastEventId, long currentId) {
+        long lastId = parseEventId(lastEventId);
+        List<String> missed = new ArrayList<>();
+        boolean complete;
+        synchronized (history) {
+            complete = lastId >= 0 && lastId >= evictedId;
+            if (complete) {
+                for (Change change : history) {
+                    if (change.id > lastId && change.id <= currentId) {
+                        missed.add(change.path);
+                    }
+                }
+            }
+        }
+        if (complete) {
+            subscriber.onChange(currentId, missed);
+        } else {
+            subscriber.onReset(currentId);
+        }
+    }
+
+    private String eventId(long id) {
+        return epoch + '-' + id;
+    }
+
+    /**
+     * @return sequence number of event id, -1 if id was not sent by this framework instance
+     */
+    private long parseEventId(String eventId) {
+        int separator = eventId.lastIndexOf('-');
+        if (separator < 0 || !epoch.equals(eventId.substring(0, separator))) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void keepAlive() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.write(": keep-alive\n\n");
+        }
+    }
+
+    private static final class Change {
+
+        private final long id;
+        private final String path;
+
+        private Change(long id, String path) {
+            this.id = id;
+            this.path = path;
+        }
+    }
+
+    private final class Subscriber implements AsyncListener, WriteListener {
+
+        private final AsyncContext asyncContext;
+        private final ServletOutputStream output;
+        private final Set<String> paths;
+        private final Set<String> prefixes;
+        private final Set<String> changedPaths = new TreeSet<>();
+        private final Set<String> changedPrefixes = new TreeSet<>();
+        private final Deque<byte[]> queue = new ArrayDeque<>(QUEUE_SIZE);
+        private long changedId;
+        private boolean scheduled;
+        private volatile boolean closed;
+
+        private Subscriber(AsyncContext asyncContext, ServletOutputStream output, Collection<String> paths,
+                Collection<String> prefixes) {
+            this.asyncContext = asyncContext;
+            this.output = output;
+            this.paths = new TreeSet<>(paths);
+            this.prefixes = new TreeSet<>(prefixes);
+        }
+
+        private synchronized void onChange(long id, List<String> changed) {
+            boolean matched = false;
+            for (String path : changed) {
+                if (paths.contains(path) && changedPaths.add(path)) {
+                    matched = true;
+                }
+                for (String prefix : prefixes) {
+                    if (isUnder(path, prefix) && changedPrefixes.add(prefix)) {
+                        matched = true;
+                    }
+                }
+            }
+            if (matched) {
+                schedule(id);
+            }
+        }
+
+        private synchronized void onReset(long id) {
+            changedPaths.addAll(paths);
+            changedPrefixes.addAll(prefixes);
+            schedule(id);
+        }
+
+        private void schedule(long id) {
+            changedId = Math.max(changedId, id);
+            if (scheduled || closed || (changedPaths.isEmpty() && changedPrefixes.isEmpty())) {
+                return;
+            }
+            try {
+                scheduler.schedule(this::flush, debounceMillis, TimeUnit.MILLISECONDS);
+                scheduled = true;
+            } catch (RejectedExecutionException e) {
+                LOG.debug("Watch scheduler is shut down", e);
+            }
+        }
+
+        private void flush() {
+            String event;
+            synchronized (this) {
+                scheduled = false;
+                if (closed || (changedPaths.isEmpty() && changedPrefixes.isEmpty())) {
+                    return;
+                }
+                event = "id: " + eventId(changedId) + "\nevent: change\ndata: " + toJson() + "\n\n";
+                changedPaths.clear();
+                changedPrefixes.clear();
+            }
+            write(event);
+        }
+
+        private String toJson() {
+            StringWriter json = new StringWriter();
+            try (JsonGenerator generator = JSON_FACTORY.createGenerator(json)) {
+                generator.writeStartObject();
+                writeArray(generator, "paths", changedPaths);
+                writeArray(generator, "prefixes", changedPrefixes);
+                generator.writeEndObject();
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot write watch event", e);
+            }
+            return json.toString();
+        }
+
+        private void writeArray(JsonGenerator generator, String name, Set<String> values) throws IOException {
+            generator.writeArrayFieldStart(name);
+            for (String value : values) {
+                generator.writeString(value);
+            }
+            generator.writeEndArray();
+        }
+
+        /**
+         * Queues event and writes queued events as long as output is ready. Subscriber which has too many events
+         * queued (client does not read them) is closed.
+         */
+        private void write(String data) {
+            synchronized (queue) {
+                if (closed) {
+                    return;
+                }
+                if (queue.size() >= QUEUE_SIZE) {
+                    LOG.debug("Watch events queue overflow, closing connection");
+                    close();
+                    return;
+                }
+                queue.addLast(data.getBytes(StandardCharsets.UTF_8));
+                drain();
+            }
+        }
+
+        /**
+         * Output is written only while it is ready, otherwise container calls {@link #onWritePossible()} once
+         * pending data is written.
+         */
+        private void drain() {
+            try {
+                while (!closed && !queue.isEmpty() && output.isReady()) {
+                    output.write(queue.removeFirst());
+                    if (queue.isEmpty() && output.isReady()) {
+                        output.flush();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                LOG.debug("Cannot write watch event, closing connection", e);
+                close();
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            synchronized (queue) {
+                drain();
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            LOG.debug("Cannot write watch event, closing connection", error);
+            close();
+        }
+
+        private void close() {
+            if (release()) {
+                try {
+                    asyncContext.complete();
+                } catch (IllegalStateException e) {
+                    LOG.debug("Watch connection already completed", e);
+                }
+            }
+        }
+
+        /**
+         * @return true if subscriber was released by this call
+         */
+        private boolean release() {
+            synchronized (this) {
+                if (closed) {
+                    return false;
+                }
+                closed = true;
+            }
+            subscribers.remove(this);
+            connections.decrementAndGet();
+            return true;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // listener is registered after asynchronous processing is started
+        }
+    }
+
+    private static boolean isUnder(String path, String prefix) {
+        return path.startsWith(prefix) && (path.length() == prefix.length() || prefix.endsWith("/")
+                || path.charAt(prefix.length()) == '/');
+    }
+
+    @ObjectClassDefinition(name = "WebSight Rest Framework Resource Watcher")
+    public @interface Config {
+
+        @AttributeDefinition(
+                name = "Resource paths",
+                description = "Paths of resources which changes are pushed to watching clients.")
+        String[] resource_paths() default { "/content", "/conf", "/apps", "/libs" };
+
+        @AttributeDefinition(
+                name = "Maximal connections",
+                description = "Number of watch connections open at the same time. Connections over the limit are " +
+                        "responded with 503 error.")
+        int max_connections() default 1000;
+
+        @AttributeDefinition(
+                name = "Debounce",
+                description = "Time in milliseconds for which changes are coalesced before event is sent to client.")
+        long debounce_millis() default 500;
+
+        @AttributeDefinition(
+                name = "Keep alive",
+                description = "Interval in seconds of comments sent to idle connections, which keep proxies from " +
+                        "closing them and detect disconnected clients.")
+        int keep_alive_seconds() default 30;
+
+        @AttributeDefinition(
+                name = "Timeout",
+                description = "Time in seconds after which connection is closed and client reconnects. Set 0 for " +
+                        "no timeout.")
+        int timeout_seconds() default 600;
+
+        @AttributeDefinition(
+                name = "History size",
+                description = "Number of recent changes kept for clients reconnecting with Last-Event-ID.")
+        int history_size() default 1000;
+    }
+}
@@ -0,0 +1,32 @@
+package pl.ds.websight.rest.framework.impl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Bounded pool of buffers of response bodies. Buffer is borrowed for writing of single response and returned once it
+ * is written. When pool is empty (more responses written at the same time than pooled buffers), new buffer is
+ * allocated and it is left for garbage collection if pool is full when it is returned. Buffers are not bound to
+ * threads, so they are reused also by asynchronous actions completed in virtual threads.
+ */
+final class ResponseBufferPool {
+
+    private final int bufferSize;
+    private final BlockingQueue<byte[]> buffers;
+
+    ResponseBufferPool(int bufferSize, int poolSize) {
+        this.bufferSize = Math.max(0, bufferSize);
+        this.buffers = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+    }
+
+    byte[] borrow() {
+        byte[] buffer = buffers.poll();
+        return buffer != null ? buffer : new byte[bufferSize];
+    }
+
+    void release(byte[] buffer) {
+        if (buffer.length == bufferSize) {
+            buffers.offer(buffer);
+        }
+    }
+}
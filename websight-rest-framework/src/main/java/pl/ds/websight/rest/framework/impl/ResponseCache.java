@@ -0,0 +1,178 @@
+package pl.ds.websight.rest.framework.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.ds.websight.rest.framework.annotations.Cacheable;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serialized responses of {@link Cacheable} actions (with their entity tags), keyed by action, resource path, user (responses contain user id),
+ * negotiated response format and sorted request parameters. Cache is bounded by total size of responses and cleared
+ * whenever resource under configured paths changes. Responses computed while cache was cleared are not stored, as they
+ * may be already stale.
+ */
+@Component(
+        service = { ResponseCache.class, ResourceChangeListener.class },
+        property = {
+                ResourceChangeListener.CHANGES + "=ADDED",
+                ResourceChangeListener.CHANGES + "=CHANGED",
+                ResourceChangeListener.CHANGES + "=REMOVED"
+        })
+@Designate(ocd = ResponseCache.Config.class)
+public class ResponseCache implements ResourceChangeListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResponseCache.class);
+
+    private static final int KEY_CHAR_WEIGHT = 2;
+
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Cache<String, CachedResponse> responses = build(Config.DEFAULT_MAX_SIZE_KB);
+
+    @Activate
+    @Modified
+    void activate(Config config) {
+        responses = build(config.max_size_kb());
+    }
+
+    private static Cache<String, CachedResponse> build(long maxSizeKb) {
+        return CacheBuilder.newBuilder()
+                .maximumWeight(Math.max(1, maxSizeKb) * 1024)
+                .<String, CachedResponse>weigher((key, response) -> key.length() * KEY_CHAR_WEIGHT + response.body.length)
+                .build();
+    }
+
+    @Override
+    public void onChange(@NotNull List<ResourceChange> changes) {
+        LOG.debug("{} resources changed, clearing response cache", changes.size());
+        generation.incrementAndGet();
+        responses.invalidateAll();
+    }
+
+    /**
+     * Looks up cached response of the request to given action.
+     */
+    Lookup lookup(Class<?> actionClass, SlingHttpServletRequest request) {
+        String key = key(actionClass, request);
+        long currentGeneration = generation.get();
+        CachedResponse response = responses.getIfPresent(key);
+        if (response != null && response.expiresAt - System.nanoTime() <= 0) {
+            responses.invalidate(key);
+            response = null;
+        }
+        return new Lookup(key, currentGeneration, response);
+    }
+
+    static String key(Class<?> actionClass, SlingHttpServletRequest request) {
+        StringBuilder key = new StringBuilder(actionClass.getName())
+                .append('\n').append(request.getResource().getPath())
+                .append('\n').append(RestResponseHandler.getUserId(request))
+                .append('\n').append(ResponseFormat.of(request))
+                .append('\n');
+        Map<String, String[]> parameters = new TreeMap<>(request.getParameterMap());
+        for (Map.Entry<String, String[]> parameter : parameters.entrySet()) {
+            for (String value : parameter.getValue()) {
+                key.append(encode(parameter.getKey())).append('=').append(encode(value)).append('&');
+            }
+        }
+        return key.toString();
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    final class Lookup {
+
+        private final String key;
+        private final long generation;
+        private final CachedResponse cached;
+
+        private Lookup(String key, long generation, CachedResponse cached) {
+            this.key = key;
+            this.generation = generation;
+            this.cached = cached;
+        }
+
+        /**
+         * @return cached response body, null if response is not cached
+         */
+        byte[] getCached() {
+            return cached != null ? cached.body : null;
+        }
+
+        /**
+         * @return entity tag stored with cached response body, null if response is not cached or has no tag
+         */
+        String getCachedETag() {
+            return cached != null ? cached.etag : null;
+        }
+
+        /**
+         * Stores response body with its entity tag (if any), unless cache was cleared since lookup.
+         */
+        void store(byte[] body, String etag, int ttlSeconds) {
+            if (ResponseCache.this.generation.get() != generation) {
+                return;
+            }
+            long expiresAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.max(1, ttlSeconds));
+            responses.put(key, new CachedResponse(body, etag, expiresAt));
+            if (ResponseCache.this.generation.get() != generation) {
+                responses.invalidate(key);
+            }
+        }
+    }
+
+    private static final class CachedResponse {
+
+        private final byte[] body;
+        private final String etag;
+        private final long expiresAt;
+
+        private CachedResponse(byte[] body, String etag, long expiresAt) {
+            this.body = body;
+            this.etag = etag;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    @ObjectClassDefinition(name = "WebSight Rest Framework Response Cache")
+    public @interface Config {
+
+        long DEFAULT_MAX_SIZE_KB = 16384;
+
+        @AttributeDefinition(
+                name = "Maximal size",
+                description = "Maximal total size in kilobytes of cached responses of @Cacheable actions, least " +
+                        "recently used responses are evicted when it is reached.")
+        long max_size_kb() default DEFAULT_MAX_SIZE_KB;
+
+        @AttributeDefinition(
+                name = "Resource paths",
+                description = "Paths of resources which changes clear the cache.")
+        String[] resource_paths() default { "/content", "/conf", "/apps", "/libs" };
+    }
+}
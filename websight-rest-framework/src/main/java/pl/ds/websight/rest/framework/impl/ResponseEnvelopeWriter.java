@@ -0,0 +1,240 @@
+package pl.ds.websight.rest.framework.impl;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import pl.ds.websight.rest.framework.PagedResult;
+import pl.ds.websight.rest.framework.RestActionResult.Status;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Writes response envelope ({@code status}, {@code message}, {@code messageDetails}, {@code entity},
+ * {@code nextCursor} of paged entity, {@code authContext}) directly to {@link JsonGenerator}. Field names and status
+ * values are pre-encoded, only entity value is serialized by Jackson databind, using {@link ObjectWriter} cached per
+ * entity class. Format of the envelope (JSON or binary one) is the format of mapper's factory.
+ */
+final class ResponseEnvelopeWriter {
+
+    static final SerializableString ERROR_STATUS = new SerializedString("ERROR");
+    static final SerializableString VALIDATION_FAILURE_STATUS = new SerializedString("VALIDATION_FAILURE");
+    static final SerializableString RATE_LIMITED_STATUS = new SerializedString("RATE_LIMITED");
+
+    private static final SerializableString STATUS = new SerializedString("status");
+    private static final SerializableString MESSAGE = new SerializedString("message");
+    private static final SerializableString MESSAGE_DETAILS = new SerializedString("messageDetails");
+    private static final SerializableString ENTITY = new SerializedString("entity");
+    private static final SerializableString NEXT_CURSOR = new SerializedString("nextCursor");
+    private static final SerializableString AUTH_CONTEXT = new SerializedString("authContext");
+    private static final SerializableString USER_ID = new SerializedString("userId");
+    private static final SerializableString COMPLETE = new SerializedString("complete");
+    private static final SerializableString LINE_SEPARATOR = new SerializedString("\n");
+
+    private static final Map<Status, SerializableString> STATUSES = new EnumMap<>(Status.class);
+
+    static {
+        for (Status status : Status.values()) {
+            STATUSES.put(status, new SerializedString(status.toString()));
+        }
+    }
+
+    private final ObjectMapper mapper;
+    private final ClassValue<ObjectWriter> entityWriters = new ClassValue<ObjectWriter>() {
+        @Override
+        protected ObjectWriter computeValue(Class<?> type) {
+            return mapper.writerWithType(type);
+        }
+    };
+
+    ResponseEnvelopeWriter(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    static SerializableString status(Status status) {
+        return STATUSES.get(status);
+    }
+
+    /**
+     * @return generator of mapper's format, writing text formats as UTF-8
+     */
+    JsonGenerator createGenerator(OutputStream out) throws IOException {
+        return mapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+    }
+
+    /**
+     * Writes whole envelope. {@link Stream} and {@link Iterator} entities are written as array, element by element
+     * while the source is iterated; streams are closed afterwards. Null values are omitted.
+     */
+    void write(JsonGenerator generator, SerializableString status, String message, String messageDetails, Object entity,
+            String userId) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(STATUS);
+        generator.writeString(status);
+        if (message != null) {
+            generator.writeFieldName(MESSAGE);
+            generator.writeString(message);
+        }
+        if (messageDetails != null) {
+            generator.writeFieldName(MESSAGE_DETAILS);
+            generator.writeString(messageDetails);
+        }
+        if (entity instanceof PagedResult) {
+            generator.writeFieldName(ENTITY);
+            String nextCursor = writePage(generator, (PagedResult<?>) entity);
+            if (nextCursor != null) {
+                generator.writeFieldName(NEXT_CURSOR);
+                generator.writeString(nextCursor);
+            }
+        } else if (entity != null) {
+            generator.writeFieldName(ENTITY);
+            writeEntity(generator, entity);
+        }
+        generator.writeFieldName(AUTH_CONTEXT);
+        generator.writeStartObject();
+        generator.writeFieldName(USER_ID);
+        generator.writeString(userId);
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    /**
+     * @return true if entity is written element by element, as {@link Stream} or {@link Iterator} is consumed
+     */
+    static boolean isStreamed(Object entity) {
+        return entity instanceof Stream || entity instanceof Iterator;
+    }
+
+    /**
+     * Reads entity into tree of JSON nodes, written later like any other entity. {@link Stream} and {@link Iterator}
+     * entities are consumed into array.
+     */
+    JsonNode toTree(Object entity) throws IOException {
+        TokenBuffer buffer = new TokenBuffer(mapper);
+        writeEntity(buffer, entity);
+        buffer.close();
+        return mapper.readTree(buffer.asParser());
+    }
+
+    /**
+     * Writes envelope without entity as the first line of newline delimited JSON, then elements of {@link Stream} or
+     * {@link Iterator} entity, one per line, and {@code {"complete":true}} as the last line, so client can tell
+     * the whole entity from truncated one. Generator is flushed after the envelope and the first element, then after
+     * every {@code flushSize} elements, so client can process elements while the rest is written. If iteration fails,
+     * error envelope is written as the last line instead (the first line is already sent) and exception is rethrown.
+     */
+    void writeLines(JsonGenerator generator, SerializableString status, String message, String messageDetails,
+            Object entity, String userId, int flushSize) throws IOException {
+        generator.setRootValueSeparator(LINE_SEPARATOR);
+        write(generator, status, message, messageDetails, null, userId);
+        generator.flush();
+        try {
+            if (entity instanceof Stream) {
+                try (Stream<?> elements = (Stream<?>) entity) {
+                    writeLines(generator, elements.iterator(), flushSize);
+                }
+            } else {
+                writeLines(generator, (Iterator<?>) entity, flushSize);
+            }
+        } catch (RuntimeException e) {
+            writeErrorLine(generator, e, userId);
+            throw e;
+        }
+        generator.writeStartObject();
+        generator.writeFieldName(COMPLETE);
+        generator.writeBoolean(true);
+        generator.writeEndObject();
+        generator.writeRaw(LINE_SEPARATOR.getValue());
+    }
+
+    /**
+     * Error envelope is serialized separately and written raw, since failed element could be written partially.
+     */
+    private void writeErrorLine(JsonGenerator generator, RuntimeException e, String userId) throws IOException {
+        StringWriter line = new StringWriter();
+        try (JsonGenerator lineGenerator = mapper.getFactory().createGenerator(line)) {
+            write(lineGenerator, ERROR_STATUS, "Unexpected server error", e.getMessage(), null, userId);
+        }
+        generator.writeRaw(LINE_SEPARATOR.getValue() + line + LINE_SEPARATOR.getValue());
+        generator.flush();
+    }
+
+    private void writeLines(JsonGenerator generator, Iterator<?> elements, int flushSize) throws IOException {
+        int count = 0;
+        while (elements.hasNext()) {
+            Object element = elements.next();
+            if (element != null) {
+                writeValue(generator, element);
+            } else {
+                generator.writeNull();
+            }
+            count++;
+            if (count == 1 || count % flushSize == 0) {
+                generator.flush();
+            }
+        }
+    }
+
+    private void writeEntity(JsonGenerator generator, Object entity) throws IOException {
+        if (entity instanceof Stream) {
+            try (Stream<?> elements = (Stream<?>) entity) {
+                writeElements(generator, elements.iterator());
+            }
+        } else if (entity instanceof Iterator) {
+            writeElements(generator, (Iterator<?>) entity);
+        } else {
+            writeValue(generator, entity);
+        }
+    }
+
+    /**
+     * Writes items of the page as array, pulling at most one item more than page size from the iterator.
+     *
+     * @return cursor of the next page, null if it is the last page
+     */
+    private <E> String writePage(JsonGenerator generator, PagedResult<E> page) throws IOException {
+        Iterator<? extends E> items = page.getItems();
+        int limit = page.getLimit();
+        int count = 0;
+        E last = null;
+        generator.writeStartArray();
+        while (count < limit && items.hasNext()) {
+            last = items.next();
+            if (last != null) {
+                writeValue(generator, last);
+            } else {
+                generator.writeNull();
+            }
+            count++;
+        }
+        generator.writeEndArray();
+        return items.hasNext() ? page.nextCursor(count, last) : null;
+    }
+
+    private void writeElements(JsonGenerator generator, Iterator<?> elements) throws IOException {
+        generator.writeStartArray();
+        while (elements.hasNext()) {
+            Object element = elements.next();
+            if (element != null) {
+                writeValue(generator, element);
+            } else {
+                generator.writeNull();
+            }
+        }
+        generator.writeEndArray();
+    }
+
+    private void writeValue(JsonGenerator generator, Object value) throws IOException {
+        entityWriters.get(value.getClass()).writeValue(generator, value);
+    }
+}
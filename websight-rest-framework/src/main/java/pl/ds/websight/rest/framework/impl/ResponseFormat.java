@@ -0,0 +1,150 @@
+package pl.ds.websight.rest.framework.impl;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.google.common.net.HttpHeaders;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Formats of response envelope, negotiated by {@code Accept} header of request. JSON is the default, binary formats
+ * are available only if their Jackson data format module is installed.
+ */
+enum ResponseFormat {
+
+    JSON("application/json", null),
+    SMILE("application/x-jackson-smile", "com.fasterxml.jackson.dataformat.smile.SmileFactory"),
+    CBOR("application/cbor", "com.fasterxml.jackson.dataformat.cbor.CBORFactory");
+
+    /**
+     * Media type of newline delimited JSON, layout of streamed entities (not a format of whole envelope).
+     */
+    static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResponseFormat.class);
+
+    private static final Set<ResponseFormat> AVAILABLE = available();
+
+    private final String mediaType;
+    private final String factoryClassName;
+
+    ResponseFormat(String mediaType, String factoryClassName) {
+        this.mediaType = mediaType;
+        this.factoryClassName = factoryClassName;
+    }
+
+    String getMediaType() {
+        return mediaType;
+    }
+
+    boolean isBinary() {
+        return factoryClassName != null;
+    }
+
+    /**
+     * @return new factory of generators of this format, null if data format module is not available
+     */
+    JsonFactory createFactory() {
+        if (!isBinary()) {
+            return new JsonFactory();
+        }
+        try {
+            return (JsonFactory) Class.forName(factoryClassName, true, ResponseFormat.class.getClassLoader())
+                    .getConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            LOG.debug("Response format {} not available", this, e);
+            return null;
+        }
+    }
+
+    static Set<ResponseFormat> getAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * @return true if other formats than JSON are available, so response depends on {@code Accept} header
+     */
+    static boolean isNegotiable() {
+        return AVAILABLE.size() > 1;
+    }
+
+    static ResponseFormat of(SlingHttpServletRequest request) {
+        return negotiate(request.getHeader(HttpHeaders.ACCEPT));
+    }
+
+    /**
+     * Chooses available format of highest quality accepted by client. Wildcards match JSON only, binary format is
+     * chosen over JSON of the same quality, as it has to be listed explicitly.
+     */
+    static ResponseFormat negotiate(String accept) {
+        if (accept == null || !isNegotiable()) {
+            return JSON;
+        }
+        ResponseFormat result = JSON;
+        float resultQuality = 0;
+        for (String element : accept.split(",")) {
+            String[] parts = element.split(";");
+            ResponseFormat format = ofMediaType(parts[0].trim().toLowerCase(Locale.ROOT));
+            if (format == null) {
+                continue;
+            }
+            float quality = QualityValues.of(parts);
+            if (quality > resultQuality
+                    || (quality == resultQuality && quality > 0 && format.isBinary() && !result.isBinary())) {
+                result = format;
+                resultQuality = quality;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true if client accepts newline delimited JSON explicitly, with quality not lower than any other media
+     * type
+     */
+    static boolean acceptsNdjson(SlingHttpServletRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (!StringUtils.containsIgnoreCase(accept, NDJSON_MEDIA_TYPE)) {
+            return false;
+        }
+        float ndjsonQuality = 0;
+        float otherQuality = 0;
+        for (String element : accept.split(",")) {
+            String[] parts = element.split(";");
+            if (NDJSON_MEDIA_TYPE.equalsIgnoreCase(parts[0].trim())) {
+                ndjsonQuality = QualityValues.of(parts);
+            } else {
+                otherQuality = Math.max(otherQuality, QualityValues.of(parts));
+            }
+        }
+        return ndjsonQuality > 0 && ndjsonQuality >= otherQuality;
+    }
+
+    private static ResponseFormat ofMediaType(String mediaType) {
+        if ("*/*".equals(mediaType) || "application/*".equals(mediaType)) {
+            return JSON;
+        }
+        for (ResponseFormat format : AVAILABLE) {
+            if (format.mediaType.equals(mediaType)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    private static Set<ResponseFormat> available() {
+        Set<ResponseFormat> available = EnumSet.noneOf(ResponseFormat.class);
+        for (ResponseFormat format : values()) {
+            if (format.createFactory() != null) {
+                available.add(format);
+            }
+        }
+        return Collections.unmodifiableSet(available);
+    }
+}
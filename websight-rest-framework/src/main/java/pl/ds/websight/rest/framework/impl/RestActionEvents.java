@@ -0,0 +1,71 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Emits flight recorder events of rest actions, if {@code jdk.jfr} is available (it is optional import of the bundle).
+ * Events are created only while flight recording with them enabled is running, so otherwise their cost is a check of
+ * static flag and of event type state. Events shorter than thresholds configured by {@link RequestTracing} are not
+ * committed.
+ */
+final class RestActionEvents {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RestActionEvents.class);
+
+    private static final boolean AVAILABLE = isFlightRecorderAvailable();
+
+    private static volatile boolean enabled = AVAILABLE;
+    private static volatile long executionThresholdNanos;
+    private static volatile long serializationThresholdNanos;
+
+    private RestActionEvents() {
+        // no instances
+    }
+
+    private static boolean isFlightRecorderAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, RestActionEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            LOG.debug("Flight recorder is not available, rest action events disabled");
+            return false;
+        }
+    }
+
+    static void configure(boolean eventsEnabled, long executionThresholdMillis, long serializationThresholdMillis) {
+        enabled = AVAILABLE && eventsEnabled;
+        executionThresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, executionThresholdMillis));
+        serializationThresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, serializationThresholdMillis));
+    }
+
+    /**
+     * @return started execution event, null if it is not recorded
+     */
+    static Object beginExecution() {
+        return enabled ? FlightRecorderEvents.beginExecution() : null;
+    }
+
+    static void commitExecution(Object event, long durationNanos, Class<?> actionClass, String method, String status,
+            Class<?> modelClass, long[] phaseDurations) {
+        if (event != null && durationNanos >= executionThresholdNanos) {
+            FlightRecorderEvents.commitExecution(event, actionClass, method, status, modelClass, phaseDurations);
+        }
+    }
+
+    /**
+     * @return started serialization event, null if it is not recorded
+     */
+    static Object beginSerialization() {
+        return enabled ? FlightRecorderEvents.beginSerialization() : null;
+    }
+
+    static void commitSerialization(Object event, long durationNanos, String status, Object entity, long responseBytes) {
+        if (event != null && durationNanos >= serializationThresholdNanos) {
+            FlightRecorderEvents.commitSerialization(event, status, entity != null ? entity.getClass() : null,
+                    responseBytes);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package pl.ds.websight.rest.framework.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event of rest action request, from binding of model to writing of response.
+ */
+@Name("pl.ds.websight.rest.RestActionExecution")
+@Label("Rest Action Execution")
+@Category({"WebSight", "Rest Framework"})
+@Description("Rest action request handled by framework servlet")
+@StackTrace(false)
+final class RestActionExecutionEvent extends Event {
+
+    @Label("Action Class")
+    Class<?> actionClass;
+
+    @Label("HTTP Method")
+    String method;
+
+    @Label("Result Status")
+    String status;
+
+    @Label("Model Class")
+    Class<?> modelClass;
+
+    @Label("Bind Duration")
+    @Timespan
+    long bindDuration;
+
+    @Label("Validate Duration")
+    @Timespan
+    long validateDuration;
+
+    @Label("Validatable Duration")
+    @Timespan
+    long validatableDuration;
+
+    @Label("Perform Duration")
+    @Timespan
+    long performDuration;
+
+    @Label("Write Duration")
+    @Timespan
+    long writeDuration;
+}
@@ -0,0 +1,135 @@
+package pl.ds.websight.rest.framework.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.ds.websight.rest.framework.AsyncRestAction;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor passed to {@link AsyncRestAction}s. Number of accepted tasks is bounded, tasks over the limit are rejected
+ * with {@link RejectedExecutionException}. Tasks are run by virtual threads, if they are enabled and supported by JVM,
+ * otherwise by pool of platform threads with bounded queue.
+ */
+@Component(service = RestActionExecutor.class)
+@Designate(ocd = RestActionExecutor.Config.class)
+public class RestActionExecutor implements Executor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RestActionExecutor.class);
+
+    private ExecutorService executor;
+    private Semaphore virtualThreadsLimit;
+    private long timeoutMillis;
+
+    @Activate
+    @SuppressWarnings("unused")
+    private void activate(Config config) {
+        int threads = Math.max(1, config.threads());
+        int queueSize = Math.max(1, config.queue_size());
+        this.timeoutMillis = config.timeout_millis();
+        ExecutorService virtualThreads = config.virtual_threads_enabled() ? newVirtualThreadPerTaskExecutor() : null;
+        if (virtualThreads != null) {
+            this.executor = virtualThreads;
+            this.virtualThreadsLimit = new Semaphore(threads + queueSize);
+            LOG.info("Asynchronous rest actions executed by virtual threads");
+        } else {
+            ThreadPoolExecutor threadPool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueSize),
+                    new ThreadFactoryBuilder().setNameFormat("websight-rest-async-%d").setDaemon(true).build());
+            threadPool.allowCoreThreadTimeOut(true);
+            this.executor = threadPool;
+        }
+    }
+
+    @Deactivate
+    @SuppressWarnings("unused")
+    private void deactivate() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return time in milliseconds after which asynchronous action is responded with error, 0 for no timeout
+     */
+    long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (virtualThreadsLimit == null) {
+            executor.execute(task);
+            return;
+        }
+        if (!virtualThreadsLimit.tryAcquire()) {
+            throw new RejectedExecutionException("Limit of asynchronous rest action tasks reached");
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    virtualThreadsLimit.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            virtualThreadsLimit.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Virtual threads executor (Java 21+) is looked up by reflection, as framework is compiled for Java 8.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOG.warn("Cannot create virtual threads executor, platform threads will be used", e);
+            return null;
+        }
+    }
+
+    @ObjectClassDefinition(name = "WebSight Rest Framework Asynchronous Actions Executor")
+    public @interface Config {
+
+        @AttributeDefinition(
+                name = "Threads",
+                description = "Number of platform threads executing tasks of asynchronous rest actions.")
+        int threads() default 16;
+
+        @AttributeDefinition(
+                name = "Queue size",
+                description = "Number of tasks waiting for thread, tasks over the limit are rejected. With virtual " +
+                        "threads, number of tasks executed at the same time is limited to threads plus queue size.")
+        int queue_size() default 256;
+
+        @AttributeDefinition(
+                name = "Virtual threads",
+                description = "Execute tasks by virtual threads, if supported by JVM (Java 21+).")
+        boolean virtual_threads_enabled() default true;
+
+        @AttributeDefinition(
+                name = "Timeout",
+                description = "Time in milliseconds after which asynchronous rest action is responded with error. " +
+                        "Set 0 for no timeout.")
+        long timeout_millis() default 30000;
+    }
+}
@@ -0,0 +1,120 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.osgi.framework.Bundle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Rest actions index of bundle, generated at compile time by {@code websight-rest-annotation-processor} into
+ * {@value #INDEX_RESOURCE}. Contains name, model class, HTTP method, primary types and resource types of every
+ * action class of the bundle, so they do not have to be read by reflection when actions are registered.
+ */
+final class RestActionIndex {
+
+    static final String INDEX_RESOURCE = "META-INF/websight-rest/actions.properties";
+
+    private static final Logger LOG = LoggerFactory.getLogger(RestActionIndex.class);
+
+    private final Map<String, Entry> entries;
+    private final long bundleLastModified;
+
+    private RestActionIndex(Map<String, Entry> entries, long bundleLastModified) {
+        this.entries = entries;
+        this.bundleLastModified = bundleLastModified;
+    }
+
+    static RestActionIndex load(Bundle bundle) {
+        URL indexUrl = bundle.getEntry(INDEX_RESOURCE);
+        if (indexUrl == null) {
+            return new RestActionIndex(Collections.emptyMap(), bundle.getLastModified());
+        }
+        Properties properties = new Properties();
+        try (InputStream input = indexUrl.openStream()) {
+            properties.load(input);
+        } catch (IOException e) {
+            LOG.warn("Cannot read rest actions index of bundle {}, actions will be analyzed by reflection",
+                    bundle.getSymbolicName(), e);
+            return new RestActionIndex(Collections.emptyMap(), bundle.getLastModified());
+        }
+        Map<String, Entry> entries = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.endsWith(".name")) {
+                String actionClass = StringUtils.removeEnd(key, ".name");
+                entries.put(actionClass, new Entry(
+                        properties.getProperty(key),
+                        properties.getProperty(actionClass + ".model"),
+                        properties.getProperty(actionClass + ".method"),
+                        split(properties.getProperty(actionClass + ".primaryTypes")),
+                        split(properties.getProperty(actionClass + ".resourceTypes"))));
+            }
+        }
+        return new RestActionIndex(entries, bundle.getLastModified());
+    }
+
+    private static String[] split(String values) {
+        return StringUtils.isEmpty(values) ? ArrayUtils.EMPTY_STRING_ARRAY : values.split(",");
+    }
+
+    boolean isCurrent(Bundle bundle) {
+        return bundleLastModified == bundle.getLastModified();
+    }
+
+    /**
+     * @return index entry of given action class or {@code null} if class is not indexed
+     */
+    Entry get(Class<?> actionClass) {
+        Entry entry = entries.get(actionClass.getName());
+        return entry != null && entry.isComplete() ? entry : null;
+    }
+
+    static final class Entry {
+
+        private final String name;
+        private final String modelClass;
+        private final String method;
+        private final String[] primaryTypes;
+        private final String[] resourceTypes;
+
+        Entry(String name, String modelClass, String method, String[] primaryTypes, String[] resourceTypes) {
+            this.name = name;
+            this.modelClass = modelClass;
+            this.method = method;
+            this.primaryTypes = primaryTypes;
+            this.resourceTypes = resourceTypes;
+        }
+
+        private boolean isComplete() {
+            return StringUtils.isNoneEmpty(name, modelClass, method);
+        }
+
+        String getName() {
+            return name;
+        }
+
+        String getModelClass() {
+            return modelClass;
+        }
+
+        String getMethod() {
+            return method;
+        }
+
+        String[] getPrimaryTypes() {
+            return primaryTypes;
+        }
+
+        String[] getResourceTypes() {
+            return resourceTypes;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import pl.ds.websight.rest.framework.JobContext;
+import pl.ds.websight.rest.framework.JobRestAction;
+import pl.ds.websight.rest.framework.RestActionResult;
+import pl.ds.websight.rest.framework.impl.JobStatus.State;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
+
+/**
+ * Job of {@link JobRestAction}, executed by {@link RestActionJobManager}. Resource resolver of the job is closed when
+ * job is run, also if it was cancelled before start. Result is detached (see {@link RestResponseHandler#detach}) in job
+ * thread before resolver is closed, so it can be returned to every poll of job result. Cancellation is cooperative,
+ * thread running the job is not interrupted, as interrupted repository I/O can break the repository.
+ */
+public final class RestActionJob implements JobContext, Runnable {
+
+    private final String id;
+    private final String userId;
+    private final ResourceResolver resourceResolver;
+    private final long submitted;
+    private final FutureTask<RestActionResult<?>> task;
+    private volatile boolean started;
+    private volatile Progress progress = new Progress(0, 0, null);
+    private volatile Long finished;
+
+    RestActionJob(String id, String userId, JobRestAction<Object, ?> action, Object model,
+            ResourceResolver resourceResolver, Consumer<RestActionJob> onFinish) {
+        this.id = id;
+        this.userId = userId;
+        this.resourceResolver = resourceResolver;
+        this.submitted = System.currentTimeMillis();
+        this.task = new FutureTask<RestActionResult<?>>(
+                () -> RestResponseHandler.detach(action.perform(model, this))) {
+            @Override
+            protected void done() {
+                finished = System.currentTimeMillis();
+                onFinish.accept(RestActionJob.this);
+            }
+        };
+    }
+
+    @Override
+    public void run() {
+        started = true;
+        try {
+            task.run();
+        } finally {
+            close();
+        }
+    }
+
+    void close() {
+        if (resourceResolver.isLive()) {
+            resourceResolver.close();
+        }
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    String getUserId() {
+        return userId;
+    }
+
+    @Override
+    public ResourceResolver getResourceResolver() {
+        return resourceResolver;
+    }
+
+    @Override
+    public void setProgress(long completed, long total, String message) {
+        progress = new Progress(completed, total, message);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return task.isCancelled();
+    }
+
+    /**
+     * Cancels the job. Started job is expected to check {@link #isCancelled()} and stop, its result is discarded.
+     *
+     * @return false if job was already finished
+     */
+    public boolean cancel() {
+        return task.cancel(false);
+    }
+
+    public JobStatus getStatus() {
+        Progress currentProgress = progress;
+        return new JobStatus(id, getState(), currentProgress.completed, currentProgress.total, currentProgress.message,
+                submitted, finished);
+    }
+
+    private State getState() {
+        if (task.isCancelled()) {
+            return State.CANCELLED;
+        }
+        if (task.isDone()) {
+            return getFailure() == null ? State.SUCCEEDED : State.FAILED;
+        }
+        return started ? State.RUNNING : State.QUEUED;
+    }
+
+    /**
+     * @return result of succeeded job, null if job is not finished, failed or was cancelled
+     */
+    public RestActionResult<?> getResult() {
+        if (!task.isDone() || task.isCancelled()) {
+            return null;
+        }
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while getting result of finished job", e);
+        }
+    }
+
+    /**
+     * @return exception thrown by failed job, null otherwise
+     */
+    public Throwable getFailure() {
+        if (!task.isDone() || task.isCancelled()) {
+            return null;
+        }
+        try {
+            task.get();
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while getting result of finished job", e);
+        }
+    }
+
+    long getFinished() {
+        return finished != null ? finished : Long.MAX_VALUE;
+    }
+
+    private static final class Progress {
+
+        private final long completed;
+        private final long total;
+        private final String message;
+
+        private Progress(long completed, long total, String message) {
+            this.completed = completed;
+            this.total = total;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package pl.ds.websight.rest.framework.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import pl.ds.websight.rest.framework.JobRestAction;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes jobs of {@link JobRestAction}s by bounded thread pool and keeps them until their results expire. Finished
+ * jobs are removed after configured time or when limit of finished jobs is exceeded (the oldest first). Every job
+ * uses clone of resource resolver of request which submitted it.
+ */
+@Component(service = RestActionJobManager.class)
+@Designate(ocd = RestActionJobManager.Config.class)
+public class RestActionJobManager {
+
+    private final Map<String, RestActionJob> jobs = new ConcurrentHashMap<>();
+    private final Deque<RestActionJob> finishedJobs = new ArrayDeque<>();
+    private ThreadPoolExecutor executor;
+    private int maxFinishedJobs;
+    private long resultTtlMillis;
+
+    @Activate
+    void activate(Config config) {
+        int threads = Math.max(1, config.threads());
+        this.maxFinishedJobs = Math.max(1, config.max_finished_jobs());
+        this.resultTtlMillis = TimeUnit.MINUTES.toMillis(config.result_ttl_minutes());
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.queue_size())),
+                new ThreadFactoryBuilder().setNameFormat("websight-rest-job-%d").setDaemon(true).build());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Deactivate
+    void deactivate() {
+        for (Runnable notStartedJob : executor.shutdownNow()) {
+            ((RestActionJob) notStartedJob).close();
+        }
+        jobs.clear();
+    }
+
+    /**
+     * @throws RejectedExecutionException if all threads are busy and queue of jobs is full
+     */
+    JobStatus submit(JobRestAction<Object, ?> action, Object model, SlingHttpServletRequest request) {
+        ResourceResolver resourceResolver;
+        try {
+            resourceResolver = request.getResourceResolver().clone(null);
+        } catch (LoginException e) {
+            throw new IllegalStateException("Cannot clone resource resolver for job of " + action.getClass(), e);
+        }
+        RestActionJob job = new RestActionJob(UUID.randomUUID().toString(), RestResponseHandler.getUserId(request),
+                action, model, resourceResolver, this::finished);
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(job);
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            job.close();
+            throw e;
+        }
+        return job.getStatus();
+    }
+
+    /**
+     * @return job with given id submitted by user of given request, null if there is no such job or it expired
+     */
+    public RestActionJob getJob(String id, SlingHttpServletRequest request) {
+        evictFinishedJobs();
+        RestActionJob job = jobs.get(id);
+        return job != null && job.getUserId().equals(RestResponseHandler.getUserId(request)) ? job : null;
+    }
+
+    private void finished(RestActionJob job) {
+        synchronized (finishedJobs) {
+            finishedJobs.add(job);
+        }
+        evictFinishedJobs();
+    }
+
+    private void evictFinishedJobs() {
+        long expiredBefore = System.currentTimeMillis() - resultTtlMillis;
+        synchronized (finishedJobs) {
+            while (!finishedJobs.isEmpty() && (finishedJobs.size() > maxFinishedJobs
+                    || finishedJobs.peek().getFinished() <= expiredBefore)) {
+                jobs.remove(finishedJobs.poll().getId());
+            }
+        }
+    }
+
+    @ObjectClassDefinition(name = "WebSight Rest Framework Jobs Manager")
+    public @interface Config {
+
+        @AttributeDefinition(
+                name = "Threads",
+                description = "Number of threads executing jobs of job rest actions.")
+        int threads() default 2;
+
+        @AttributeDefinition(
+                name = "Queue size",
+                description = "Number of jobs waiting for thread, jobs over the limit are rejected.")
+        int queue_size() default 100;
+
+        @AttributeDefinition(
+                name = "Max finished jobs",
+                description = "Number of finished jobs kept with results, the oldest are removed over the limit.")
+        int max_finished_jobs() default 1000;
+
+        @AttributeDefinition(
+                name = "Result TTL",
+                description = "Time in minutes after which finished job is removed with its result.")
+        long result_ttl_minutes() default 60;
+    }
+}
@@ -0,0 +1,100 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps {@link ActionMetrics} of rest actions, keyed by action class name (the {@code websight.action.class} property
+ * of action servlet), and registers them as MBeans in platform MBean server.
+ */
+@Component(service = RestActionMetrics.class)
+public class RestActionMetrics {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RestActionMetrics.class);
+
+    private static final String OBJECT_NAME_PREFIX = "pl.ds.websight.rest:type=ActionMetrics,name=";
+
+    private final Map<String, ActionMetrics> metricsByAction = new ConcurrentHashMap<>();
+    private MBeanServer mBeanServer;
+
+    @Activate
+    @SuppressWarnings("unused")
+    private void activate() {
+        this.mBeanServer = ManagementFactory.getPlatformMBeanServer();
+    }
+
+    @Deactivate
+    @SuppressWarnings("unused")
+    private void deactivate() {
+        for (String action : metricsByAction.keySet()) {
+            unregisterMBean(action);
+        }
+        metricsByAction.clear();
+    }
+
+    ActionMetrics forAction(String actionClass) {
+        return metricsByAction.computeIfAbsent(actionClass, action -> {
+            ActionMetrics metrics = new ActionMetrics(action);
+            registerMBean(metrics);
+            return metrics;
+        });
+    }
+
+    /**
+     * @return metrics of all actions requested since activation, sorted by action class name
+     */
+    public List<ActionMetrics> getAll() {
+        List<ActionMetrics> metrics = new ArrayList<>(metricsByAction.values());
+        metrics.sort(Comparator.comparing(ActionMetrics::getAction));
+        return metrics;
+    }
+
+    private void registerMBean(ActionMetrics metrics) {
+        if (mBeanServer == null) {
+            return;
+        }
+        try {
+            ObjectName name = objectName(metrics.getAction());
+            StandardMBean mBean = new StandardMBean(metrics, ActionMetricsMBean.class);
+            try {
+                mBeanServer.registerMBean(mBean, name);
+            } catch (InstanceAlreadyExistsException e) {
+                // left by previous instance of component
+                mBeanServer.unregisterMBean(name);
+                mBeanServer.registerMBean(mBean, name);
+            }
+        } catch (JMException e) {
+            LOG.warn("Cannot register metrics MBean of rest action {}", metrics.getAction(), e);
+        }
+    }
+
+    private void unregisterMBean(String action) {
+        try {
+            ObjectName name = objectName(action);
+            if (mBeanServer.isRegistered(name)) {
+                mBeanServer.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            LOG.warn("Cannot unregister metrics MBean of rest action {}", action, e);
+        }
+    }
+
+    private static ObjectName objectName(String action) throws JMException {
+        return new ObjectName(OBJECT_NAME_PREFIX + ObjectName.quote(action));
+    }
+}
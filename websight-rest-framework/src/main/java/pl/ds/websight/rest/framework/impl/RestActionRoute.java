@@ -0,0 +1,76 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+
+/**
+ * Address of rest action used by front controller dispatch: action key ({@code /apps/<bundle>/bin/<action>} path
+ * or {@code <bundle>.<action>} selectors, same as in servlet registered per action), HTTP method and servlet family
+ * the action belongs to.
+ */
+public final class RestActionRoute {
+
+    public enum Family {
+        PATHS, RESOURCE_TYPES, PRIMARY_TYPES
+    }
+
+    private static final String[] NO_RESOURCE_TYPES = new String[0];
+
+    private final Family family;
+    private final String actionKey;
+    private final String method;
+    private final String[] resourceTypes;
+
+    private RestActionRoute(Family family, String actionKey, String method, String[] resourceTypes) {
+        this.family = family;
+        this.actionKey = actionKey;
+        this.method = method;
+        this.resourceTypes = resourceTypes;
+    }
+
+    static RestActionRoute forPath(String path, String method) {
+        return new RestActionRoute(Family.PATHS, path, method, NO_RESOURCE_TYPES);
+    }
+
+    static RestActionRoute forResourceTypes(String selectors, String method, String[] resourceTypes) {
+        return new RestActionRoute(Family.RESOURCE_TYPES, selectors, method, resourceTypes.clone());
+    }
+
+    static RestActionRoute forPrimaryTypes(String selectors, String method) {
+        return new RestActionRoute(Family.PRIMARY_TYPES, selectors, method, NO_RESOURCE_TYPES);
+    }
+
+    public Family getFamily() {
+        return family;
+    }
+
+    public String getActionKey() {
+        return actionKey;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String[] getResourceTypes() {
+        return resourceTypes.clone();
+    }
+
+    /**
+     * @return true if resource is of (or inherits from) any of route resource types, as in Sling servlet resolution
+     */
+    boolean matchesResourceType(Resource resource) {
+        ResourceResolver resourceResolver = resource.getResourceResolver();
+        for (String resourceType : resourceTypes) {
+            if (resourceResolver.isResourceType(resource, resourceType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return family + " " + method + " " + actionKey;
+    }
+}
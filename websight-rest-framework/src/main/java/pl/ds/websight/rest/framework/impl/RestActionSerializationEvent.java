@@ -0,0 +1,31 @@
+package pl.ds.websight.rest.framework.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of JSON response written by {@link RestResponseHandler}.
+ */
+@Name("pl.ds.websight.rest.RestActionSerialization")
+@Label("Rest Action Serialization")
+@Category({"WebSight", "Rest Framework"})
+@Description("JSON response of rest action written by framework")
+@StackTrace(false)
+final class RestActionSerializationEvent extends Event {
+
+    @Label("Result Status")
+    String status;
+
+    @Label("Entity Class")
+    Class<?> entityClass;
+
+    @Label("Response Size")
+    @Description("Size of whole response envelope, before compression")
+    @DataAmount
+    long responseBytes;
+}
@@ -17,10 +17,15 @@ import pl.ds.websight.rest.framework.annotations.SlingAction;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Hashtable;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 @Component(service = RestActionSetupService.class)
 public class RestActionSetupService {
@@ -31,6 +36,8 @@ public class RestActionSetupService {
     @Reference
     private FrameworkUtilService frameworkUtil;
 
+    private final ConcurrentMap<Long, RestActionIndex> bundleIndexes = new ConcurrentHashMap<>();
+
     /**
      *  Get model type from action class definition.
      *
@@ -39,6 +46,10 @@ public class RestActionSetupService {
      * @return model Class
      */
     public Class<?> getModelClass(RestAction<?, ?> restAction) {
+        RestActionIndex.Entry indexEntry = getIndexEntry(restAction);
+        if (indexEntry != null) {
+            return loadModelClass(restAction, indexEntry.getModelClass());
+        }
         Class<?> modelClass = getRestActionGenericType(restAction);
         if (Void.class.equals(modelClass)) {
             return modelClass;
@@ -50,6 +61,18 @@ public class RestActionSetupService {
                 String.format("Model type of action %s is not Sling model adaptable from request.", restAction.getClass()));
     }
 
+    private static Class<?> loadModelClass(RestAction<?, ?> restAction, String modelClassName) {
+        if (Void.class.getName().equals(modelClassName)) {
+            return Void.class;
+        }
+        try {
+            return restAction.getClass().getClassLoader().loadClass(modelClassName);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(String.format("Cannot load indexed model type %s of action %s",
+                    modelClassName, restAction.getClass()), e);
+        }
+    }
+
     private Class<?> getRestActionGenericType(RestAction<?, ?> restAction) {
         Class<?> analyzedClass = restAction.getClass();
         // we can't use getInterfaces(), since it returns parameterized interfaces in raw form
@@ -61,7 +84,7 @@ public class RestActionSetupService {
         for (Type genericInterface : genericInterfaces) {
             if (genericInterface instanceof ParameterizedType) {
                 Class<?> rawType = (Class<?>) ((ParameterizedType) genericInterface).getRawType();
-                if (rawType.isAssignableFrom(RestAction.class)) {
+                if (RestAction.class.isAssignableFrom(rawType)) {
                     Type[] genericTypes = ((ParameterizedType) genericInterface).getActualTypeArguments();
                     if (genericTypes.length > 0) {
                         return (Class<?>) genericTypes[0];
@@ -89,43 +112,131 @@ public class RestActionSetupService {
      * @return model Class
      */
     public Dictionary<String, Object> buildActionServletProperties(RestAction<?, ?> restAction) {
-        SlingAction slingAction = restAction.getClass().getAnnotation(SlingAction.class);
-        if (slingAction == null) {
-            throw new IllegalStateException(String.format("No %s annotation at %s",
-                    SlingAction.class.getSimpleName(), restAction.getClass()));
-        }
-        ResourceTypes resourceTypes = restAction.getClass().getAnnotation(ResourceTypes.class);
-        PrimaryTypes primaryTypes = restAction.getClass().getAnnotation(PrimaryTypes.class);
-
-        if (resourceTypes != null && primaryTypes != null) {
-            throw new IllegalStateException("RestAction cannot be annotated with both PrimaryTypes " +
-                    "and ResourceTypes annotations");
-        }
+        ActionBinding binding = getActionBinding(restAction);
         Dictionary<String, Object> properties = new Hashtable<>(); // NOSONAR
-        if (primaryTypes != null && ArrayUtils.isNotEmpty(primaryTypes.value())) {
+        if (ArrayUtils.isNotEmpty(binding.primaryTypes)) {
             properties.put(ServletResolverConstants.SLING_SERVLET_RESOURCE_TYPES, ServletResolverConstants.DEFAULT_RESOURCE_TYPE);
-            properties.put(ServletResolverConstants.SLING_SERVLET_SELECTORS, buildSelectors(restAction));
-        } else if (resourceTypes != null && ArrayUtils.isNotEmpty(resourceTypes.value())) {
-            properties.put(ServletResolverConstants.SLING_SERVLET_RESOURCE_TYPES, resourceTypes.value());
-            properties.put(ServletResolverConstants.SLING_SERVLET_SELECTORS, buildSelectors(restAction));
+            properties.put(ServletResolverConstants.SLING_SERVLET_SELECTORS, buildSelectors(restAction, binding));
+        } else if (ArrayUtils.isNotEmpty(binding.resourceTypes)) {
+            properties.put(ServletResolverConstants.SLING_SERVLET_RESOURCE_TYPES, binding.resourceTypes);
+            properties.put(ServletResolverConstants.SLING_SERVLET_SELECTORS, buildSelectors(restAction, binding));
         } else {
-            properties.put(ServletResolverConstants.SLING_SERVLET_PATHS, buildActionPath(restAction));
+            properties.put(ServletResolverConstants.SLING_SERVLET_PATHS, buildActionPath(restAction, binding));
             properties.put("sling.servlet.paths.strict", Boolean.TRUE);
         }
         properties.put(ServletResolverConstants.SLING_SERVLET_EXTENSIONS, ACTION_EXTENSION);
-        properties.put(ServletResolverConstants.SLING_SERVLET_METHODS, slingAction.value().toString());
+        properties.put(ServletResolverConstants.SLING_SERVLET_METHODS, binding.method);
         properties.put("websight.action.class", restAction.getClass().getName());
         return properties;
     }
 
-    private String buildSelectors(RestAction<?, ?> restAction) {
-        return StringUtils.joinWith(".", getBundleNameSymbolicName(restAction), buildActionName(restAction));
+    /**
+     * Builds route of action for front controller dispatch. Route addresses action by the same path or selectors
+     * as {@link #buildActionServletProperties(RestAction)}.
+     *
+     * @throws IllegalStateException if class definition is not correct
+     * @param restAction rest action to build route for
+     * @return action route
+     */
+    public RestActionRoute buildActionRoute(RestAction<?, ?> restAction) {
+        ActionBinding binding = getActionBinding(restAction);
+        if (ArrayUtils.isNotEmpty(binding.primaryTypes)) {
+            return RestActionRoute.forPrimaryTypes(buildSelectors(restAction, binding), binding.method);
+        } else if (ArrayUtils.isNotEmpty(binding.resourceTypes)) {
+            return RestActionRoute.forResourceTypes(buildSelectors(restAction, binding), binding.method,
+                    binding.resourceTypes);
+        }
+        return RestActionRoute.forPath(buildActionPath(restAction, binding), binding.method);
     }
 
-    private String buildActionPath(RestAction<?, ?> restAction) {
+    /**
+     * Builds properties for front controller servlet dispatching to actions of given routes. Servlet is bound to union
+     * of paths or selectors, resource types and methods of the routes.
+     *
+     * @param family family of all given routes
+     * @param routes routes to dispatch, not empty
+     * @return dispatcher servlet properties
+     */
+    public Dictionary<String, Object> buildDispatcherServletProperties(RestActionRoute.Family family,
+            Collection<RestActionRoute> routes) {
+        Set<String> actionKeys = new TreeSet<>();
+        Set<String> resourceTypes = new TreeSet<>();
+        Set<String> methods = new TreeSet<>();
+        for (RestActionRoute route : routes) {
+            actionKeys.add(route.getActionKey());
+            resourceTypes.addAll(Arrays.asList(route.getResourceTypes()));
+            methods.add(route.getMethod());
+        }
+        Dictionary<String, Object> properties = new Hashtable<>(); // NOSONAR
+        switch (family) {
+            case PRIMARY_TYPES:
+                properties.put(ServletResolverConstants.SLING_SERVLET_RESOURCE_TYPES, ServletResolverConstants.DEFAULT_RESOURCE_TYPE);
+                properties.put(ServletResolverConstants.SLING_SERVLET_SELECTORS, actionKeys.toArray(new String[0]));
+                break;
+            case RESOURCE_TYPES:
+                properties.put(ServletResolverConstants.SLING_SERVLET_RESOURCE_TYPES, resourceTypes.toArray(new String[0]));
+                properties.put(ServletResolverConstants.SLING_SERVLET_SELECTORS, actionKeys.toArray(new String[0]));
+                break;
+            default:
+                properties.put(ServletResolverConstants.SLING_SERVLET_PATHS, actionKeys.toArray(new String[0]));
+                properties.put("sling.servlet.paths.strict", Boolean.TRUE);
+        }
+        properties.put(ServletResolverConstants.SLING_SERVLET_EXTENSIONS, ACTION_EXTENSION);
+        properties.put(ServletResolverConstants.SLING_SERVLET_METHODS, methods.toArray(new String[0]));
+        properties.put("websight.action.dispatcher", family.toString());
+        return properties;
+    }
+
+    /**
+     * Binding of action from index generated at compile time, if action bundle has one, or from action class
+     * annotations otherwise.
+     */
+    private ActionBinding getActionBinding(RestAction<?, ?> restAction) {
+        RestActionIndex.Entry indexEntry = getIndexEntry(restAction);
+        if (indexEntry != null) {
+            return new ActionBinding(indexEntry.getName(), indexEntry.getMethod(), indexEntry.getPrimaryTypes(),
+                    indexEntry.getResourceTypes());
+        }
+        Class<?> actionClass = restAction.getClass();
+        SlingAction slingAction = getSlingAction(restAction);
+        PrimaryTypes primaryTypes = actionClass.getAnnotation(PrimaryTypes.class);
+        ResourceTypes resourceTypes = actionClass.getAnnotation(ResourceTypes.class);
+        return new ActionBinding(buildActionName(restAction), slingAction.value().toString(),
+                primaryTypes != null ? primaryTypes.value() : null,
+                resourceTypes != null ? resourceTypes.value() : null);
+    }
+
+    private RestActionIndex.Entry getIndexEntry(RestAction<?, ?> restAction) {
+        Bundle bundle = frameworkUtil.getBundle(restAction.getClass());
+        if (bundle == null) {
+            return null;
+        }
+        RestActionIndex index = bundleIndexes.compute(bundle.getBundleId(),
+                (bundleId, loaded) -> loaded != null && loaded.isCurrent(bundle) ? loaded : RestActionIndex.load(bundle));
+        return index.get(restAction.getClass());
+    }
+
+    private SlingAction getSlingAction(RestAction<?, ?> restAction) {
+        SlingAction slingAction = restAction.getClass().getAnnotation(SlingAction.class);
+        if (slingAction == null) {
+            throw new IllegalStateException(String.format("No %s annotation at %s",
+                    SlingAction.class.getSimpleName(), restAction.getClass()));
+        }
+        if (restAction.getClass().isAnnotationPresent(ResourceTypes.class)
+                && restAction.getClass().isAnnotationPresent(PrimaryTypes.class)) {
+            throw new IllegalStateException("RestAction cannot be annotated with both PrimaryTypes " +
+                    "and ResourceTypes annotations");
+        }
+        return slingAction;
+    }
+
+    private String buildSelectors(RestAction<?, ?> restAction, ActionBinding binding) {
+        return StringUtils.joinWith(".", getBundleNameSymbolicName(restAction), binding.name);
+    }
+
+    private String buildActionPath(RestAction<?, ?> restAction, ActionBinding binding) {
         String bundleSymbolicName = getBundleNameSymbolicName(restAction);
-        String actionName = buildActionName(restAction);
-        return String.format("/apps/%s/bin/%s", bundleSymbolicName, actionName);
+        return String.format("/apps/%s/bin/%s", bundleSymbolicName, binding.name);
     }
 
     private String getBundleNameSymbolicName(RestAction<?, ?> restAction) {
@@ -149,4 +260,19 @@ public class RestActionSetupService {
         }
         return CaseFormat.UPPER_CAMEL.to(CaseFormat.LOWER_HYPHEN, actionName);
     }
+
+    private static final class ActionBinding {
+
+        private final String name;
+        private final String method;
+        private final String[] primaryTypes;
+        private final String[] resourceTypes;
+
+        private ActionBinding(String name, String method, String[] primaryTypes, String[] resourceTypes) {
+            this.name = name;
+            this.method = method;
+            this.primaryTypes = primaryTypes;
+            this.resourceTypes = resourceTypes;
+        }
+    }
 }
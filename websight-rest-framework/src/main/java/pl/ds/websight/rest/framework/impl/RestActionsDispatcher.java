@@ -0,0 +1,125 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.ds.websight.rest.framework.impl.RestActionRoute.Family;
+
+import javax.servlet.Servlet;
+import java.util.Dictionary;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Front controller dispatch of rest actions: keeps {@link RoutingTable} of action servlets (which are not registered
+ * as services) and registers one {@link RestActionsDispatcherServlet} per non-empty {@link Family}. Routing table
+ * is replaced as a whole on every change. Dispatcher servlet registrations are updated by {@link #publish()} only
+ * when their paths, selectors, resource types or methods change, so number of servlet resolver updates does not
+ * depend on number of actions. Not thread safe, access has to be synchronized by the caller.
+ */
+final class RestActionsDispatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RestActionsDispatcher.class);
+
+    private final BundleContext bundleContext;
+    private final RestActionSetupService restActionSetupService;
+    private final Map<Family, ServiceRegistration<Servlet>> dispatcherRegistrations = new EnumMap<>(Family.class);
+    private final Map<Family, Dictionary<String, Object>> dispatcherProperties = new EnumMap<>(Family.class);
+    private final Set<Family> changedFamilies = EnumSet.noneOf(Family.class);
+    private volatile RoutingTable routingTable = RoutingTable.EMPTY;
+
+    RestActionsDispatcher(BundleContext bundleContext, RestActionSetupService restActionSetupService) {
+        this.bundleContext = bundleContext;
+        this.restActionSetupService = restActionSetupService;
+    }
+
+    boolean contains(Long restActionServiceId) {
+        return routingTable.contains(restActionServiceId);
+    }
+
+    void register(Long restActionServiceId, RestActionRoute route, RestActionsServlet servlet) {
+        routingTable = routingTable.with(restActionServiceId, route, servlet);
+        changedFamilies.add(route.getFamily());
+    }
+
+    boolean unregister(Long restActionServiceId) {
+        RestActionRoute route = routingTable.getRoute(restActionServiceId);
+        if (route == null) {
+            return false;
+        }
+        changedFamilies.add(route.getFamily());
+        routingTable = routingTable.without(restActionServiceId);
+        return true;
+    }
+
+    /**
+     * Registers, updates or unregisters dispatcher servlets of families changed since last call.
+     */
+    void publish() {
+        for (Family family : changedFamilies) {
+            List<RestActionRoute> routes = routingTable.getRoutes(family);
+            ServiceRegistration<Servlet> registration = dispatcherRegistrations.get(family);
+            if (routes.isEmpty()) {
+                if (registration != null) {
+                    unregister(family, registration);
+                }
+                continue;
+            }
+            Dictionary<String, Object> properties = restActionSetupService.buildDispatcherServletProperties(family, routes);
+            if (registration == null) {
+                RestActionsDispatcherServlet servlet = new RestActionsDispatcherServlet(family, () -> routingTable);
+                dispatcherRegistrations.put(family, bundleContext.registerService(Servlet.class, servlet, properties));
+                LOG.info("Rest actions dispatcher servlet for {} registered.", family);
+            } else if (!sameProperties(properties, dispatcherProperties.get(family))) {
+                registration.setProperties(properties);
+                LOG.debug("Rest actions dispatcher servlet for {} updated.", family);
+            }
+            dispatcherProperties.put(family, properties);
+        }
+        changedFamilies.clear();
+    }
+
+    void close() {
+        for (Map.Entry<Family, ServiceRegistration<Servlet>> familyRegistration : dispatcherRegistrations.entrySet()) {
+            try {
+                familyRegistration.getValue().unregister();
+            } catch (IllegalStateException e) {
+                LOG.warn("Rest actions dispatcher servlet for {} already unregistered.", familyRegistration.getKey());
+            }
+        }
+        dispatcherRegistrations.clear();
+        dispatcherProperties.clear();
+        routingTable = RoutingTable.EMPTY;
+    }
+
+    private void unregister(Family family, ServiceRegistration<Servlet> registration) {
+        try {
+            registration.unregister();
+            LOG.info("Rest actions dispatcher servlet for {} unregistered.", family);
+        } catch (IllegalStateException e) {
+            LOG.warn("Rest actions dispatcher servlet for {} already unregistered.", family);
+        }
+        dispatcherRegistrations.remove(family);
+        dispatcherProperties.remove(family);
+    }
+
+    private static boolean sameProperties(Dictionary<String, Object> properties, Dictionary<String, Object> other) {
+        if (other == null || properties.size() != other.size()) {
+            return false;
+        }
+        Enumeration<String> keys = properties.keys();
+        while (keys.hasMoreElements()) {
+            String key = keys.nextElement();
+            if (!Objects.deepEquals(properties.get(key), other.get(key))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
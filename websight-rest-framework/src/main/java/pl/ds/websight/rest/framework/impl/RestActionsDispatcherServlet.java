@@ -0,0 +1,70 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.servlets.OptingServlet;
+import org.apache.sling.api.servlets.SlingAllMethodsServlet;
+import org.jetbrains.annotations.NotNull;
+import pl.ds.websight.rest.framework.impl.RestActionRoute.Family;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * Front controller servlet registered once per {@link Family}, instead of servlet per rest action. Target action is
+ * looked up in current {@link RoutingTable} by request path (for path actions) or selectors, and request method.
+ * Requests without matching route are not accepted, so Sling falls back to other servlets, as without dispatch.
+ */
+public class RestActionsDispatcherServlet extends SlingAllMethodsServlet implements OptingServlet {
+
+    private final transient Family family;
+    private final transient Supplier<RoutingTable> routingTable;
+
+    RestActionsDispatcherServlet(Family family, Supplier<RoutingTable> routingTable) {
+        this.family = family;
+        this.routingTable = routingTable;
+    }
+
+    @Override
+    public boolean accepts(@NotNull SlingHttpServletRequest request) {
+        RoutingTable.Entry entry = findEntry(request);
+        if (entry == null) {
+            return false;
+        }
+        switch (family) {
+            case RESOURCE_TYPES:
+                return entry.getRoute().matchesResourceType(request.getResource());
+            case PRIMARY_TYPES:
+                return entry.getServlet().accepts(request);
+            default:
+                return true;
+        }
+    }
+
+    @Override
+    protected void doGet(@NotNull SlingHttpServletRequest request, @NotNull SlingHttpServletResponse response) throws IOException {
+        dispatch(request, response);
+    }
+
+    @Override
+    protected void doPost(@NotNull SlingHttpServletRequest request, @NotNull SlingHttpServletResponse response) throws IOException {
+        dispatch(request, response);
+    }
+
+    private void dispatch(SlingHttpServletRequest request, SlingHttpServletResponse response) throws IOException {
+        RoutingTable.Entry entry = findEntry(request);
+        if (entry != null) {
+            entry.getServlet().handle(request, response);
+        } else {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+        }
+    }
+
+    private RoutingTable.Entry findEntry(SlingHttpServletRequest request) {
+        String actionKey = family == Family.PATHS
+                ? request.getRequestPathInfo().getResourcePath()
+                : request.getRequestPathInfo().getSelectorString();
+        return routingTable.get().find(family, actionKey, request.getMethod());
+    }
+}
@@ -3,25 +3,39 @@ package pl.ds.websight.rest.framework.impl;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.SlingHttpServletResponse;
-import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.servlets.OptingServlet;
 import org.apache.sling.api.servlets.SlingAllMethodsServlet;
-import org.apache.sling.models.factory.ModelFactory;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import pl.ds.websight.rest.framework.AsyncRestAction;
 import pl.ds.websight.rest.framework.Errors;
-import pl.ds.websight.rest.framework.Errors.Error;
+import pl.ds.websight.rest.framework.JobRestAction;
+import pl.ds.websight.rest.framework.RequestBinder;
 import pl.ds.websight.rest.framework.RestAction;
 import pl.ds.websight.rest.framework.RestActionResult;
-import pl.ds.websight.rest.framework.Validatable;
+import pl.ds.websight.rest.framework.Versioned;
+import pl.ds.websight.rest.framework.annotations.Cacheable;
+import pl.ds.websight.rest.framework.annotations.ConditionalGet;
+import pl.ds.websight.rest.framework.annotations.MaxConcurrency;
 import pl.ds.websight.rest.framework.annotations.PrimaryTypes;
+import pl.ds.websight.rest.framework.annotations.Uncompressed;
+import pl.ds.websight.rest.framework.impl.ActionMetrics.Outcome;
+import pl.ds.websight.rest.framework.impl.RequestTrace.Phase;
 
-import javax.jcr.Node;
-import javax.jcr.RepositoryException;
-import javax.validation.ConstraintViolation;
-import javax.validation.Validator;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class RestActionsServlet extends SlingAllMethodsServlet implements OptingServlet {
 
@@ -29,18 +43,49 @@ public class RestActionsServlet extends SlingAllMethodsServlet implements Opting
 
     private final transient RestAction restAction;
     private final transient Class<?> restActionModelType;
-    private final transient ModelFactory modelFactory;
-    private final transient Validator validator;
+    private final transient RequestBinder<?> requestBinder;
+    private final transient ValidationPlan validationPlan;
     private final transient RestResponseHandler restResponseHandler;
+    private final transient NodeTypeMatcher nodeTypeMatcher;
+    private final transient RestActionExecutor actionExecutor;
+    private final transient RestActionJobManager jobManager;
+    private final transient ActionMetrics actionMetrics;
+    private final transient RequestTracing requestTracing;
+    private final transient ConcurrencyLimiter concurrencyLimiter;
+    private final transient Semaphore actionPermits;
+    private final transient RateLimiter rateLimiter;
+    private final transient RateLimiter.Limit rateLimit;
+    private final transient ResponseCache responseCache;
+    private final transient Cacheable cacheable;
+    private final transient boolean conditionalGet;
+    private final transient boolean uncompressed;
     private transient String[] primaryTypes;
 
-    public RestActionsServlet(RestAction<?, ?> restAction, Class<?> restActionModelType, ModelFactory modelFactory,
-            Validator validator, RestResponseHandler restResponseHandler) {
+    public RestActionsServlet(RestAction<?, ?> restAction, Class<?> restActionModelType, RequestBinder<?> requestBinder,
+            ValidationPlan validationPlan, RestResponseHandler restResponseHandler, NodeTypeMatcher nodeTypeMatcher,
+            RestActionExecutor actionExecutor, RestActionJobManager jobManager, ActionMetrics actionMetrics,
+            RequestTracing requestTracing, ConcurrencyLimiter concurrencyLimiter, RateLimiter rateLimiter,
+            ResponseCache responseCache) {
         this.restAction = restAction;
         this.restActionModelType = restActionModelType;
-        this.modelFactory = modelFactory;
-        this.validator = validator;
+        this.requestBinder = requestBinder;
+        this.validationPlan = validationPlan;
         this.restResponseHandler = restResponseHandler;
+        this.nodeTypeMatcher = nodeTypeMatcher;
+        this.actionExecutor = actionExecutor;
+        this.jobManager = jobManager;
+        this.actionMetrics = actionMetrics;
+        this.requestTracing = requestTracing;
+        this.concurrencyLimiter = concurrencyLimiter;
+        MaxConcurrency maxConcurrency = restAction.getClass().getAnnotation(MaxConcurrency.class);
+        this.actionPermits = maxConcurrency != null ? new Semaphore(Math.max(1, maxConcurrency.value())) : null;
+        this.rateLimiter = rateLimiter;
+        this.rateLimit = RateLimiter.Limit.of(restAction.getClass());
+        this.responseCache = responseCache;
+        boolean synchronous = !(restAction instanceof AsyncRestAction) && !(restAction instanceof JobRestAction);
+        this.cacheable = synchronous ? restAction.getClass().getAnnotation(Cacheable.class) : null;
+        this.conditionalGet = synchronous && restAction.getClass().isAnnotationPresent(ConditionalGet.class);
+        this.uncompressed = restAction.getClass().isAnnotationPresent(Uncompressed.class);
         PrimaryTypes primaryTypesAnnotation = restAction.getClass().getAnnotation(PrimaryTypes.class);
         if (primaryTypesAnnotation != null) {
             this.primaryTypes = primaryTypesAnnotation.value();
@@ -49,7 +94,7 @@ public class RestActionsServlet extends SlingAllMethodsServlet implements Opting
 
     @Override
     public boolean accepts(@NotNull SlingHttpServletRequest request) {
-        return matchesPrimaryTypes(request.getResource());
+        return ArrayUtils.isEmpty(primaryTypes) || nodeTypeMatcher.matchesAny(request, primaryTypes);
     }
 
     @Override
@@ -62,60 +107,324 @@ public class RestActionsServlet extends SlingAllMethodsServlet implements Opting
         handle(request, response);
     }
 
-    private void handle(SlingHttpServletRequest request, SlingHttpServletResponse response) throws IOException {
+    /**
+     * Request over rate or concurrency limit is rejected before it is bound. Handled request is recorded in action metrics and
+     * trace (and its concurrency permit is released) when response is written, asynchronous actions record it on
+     * completion. Cached response of {@link Cacheable} action is written before request is bound.
+     * Response of {@link ConditionalGet} action has entity tag, either of its {@link Versioned} result (checked
+     * before action is performed) or of serialized response.
+     */
+    void handle(SlingHttpServletRequest request, SlingHttpServletResponse response) throws IOException {
+        if (uncompressed) {
+            request.setAttribute(RestResponseHandler.UNCOMPRESSED_ATTRIBUTE, Boolean.TRUE);
+        }
+        actionMetrics.countFormat(ResponseFormat.of(request));
+        long retryAfterSeconds = rateLimiter.tryAcquire(restAction.getClass(), rateLimit,
+                RestResponseHandler.getUserId(request));
+        if (retryAfterSeconds > 0) {
+            actionMetrics.reject();
+            restResponseHandler.handleRateLimited(request, response, retryAfterSeconds);
+            return;
+        }
+        ConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire(actionPermits);
+        if (permit == null) {
+            actionMetrics.reject();
+            restResponseHandler.handleOverloaded(request, response, concurrencyLimiter.getRetryAfterSeconds());
+            return;
+        }
+        RequestTrace trace = requestTracing.start(request, response);
+        Completion completion = new Completion(actionMetrics.start(), trace, permit);
+        String previousCorrelationId = trace.attach();
+        Outcome outcome = Outcome.ERROR;
         try {
+            boolean conditional = conditionalGet && isGet(request);
+            ResponseCache.Lookup cacheLookup = lookupCache(request);
+            if (cacheLookup != null && cacheLookup.getCached() != null) {
+                trace.startWrite(response);
+                restResponseHandler.handleSerialized(request, response, cacheLookup.getCached(),
+                        conditional ? cacheLookup.getCachedETag() : null);
+                outcome = Outcome.SUCCESS;
+                return;
+            }
             Object model = null;
             Errors errors = null;
             if (!Void.class.equals(restActionModelType)) {
-                model = modelFactory.createModel(request, restActionModelType);
-                errors = getValidationErrors(model);
-                if (errors.isEmpty() && model instanceof Validatable) {
-                    errors = ((Validatable) model).validate();
-                }
+                model = requestBinder.bind(request);
+                trace.mark(Phase.BIND);
+                errors = validationPlan.validate(model, trace);
             }
-            if (errors == null || errors.isEmpty()) {
-                RestActionResult result = restAction.perform(model);
-                restResponseHandler.handle(request, response, result);
-            } else {
+            if (errors != null && !errors.isEmpty()) {
+                trace.startWrite(response);
                 restResponseHandler.handleModelValidationError(request, response, errors);
+                outcome = Outcome.VALIDATION_FAILURE;
+            } else if (restAction instanceof JobRestAction) {
+                outcome = submitJob((JobRestAction) restAction, model, request, response, trace);
+            } else if (restAction instanceof AsyncRestAction) {
+                outcome = performAsync((AsyncRestAction) restAction, model, request, response, completion);
+            } else {
+                outcome = perform(model, request, response, trace, cacheLookup, conditional);
             }
+        } catch (InvalidRequestBodyException e) {
+            LOG.debug("Invalid request body of rest action {}", restAction.getClass().getName(), e);
+            trace.mark(Phase.BIND);
+            trace.startWrite(response);
+            restResponseHandler.handleModelValidationError(request, response, e.getErrors());
+            outcome = Outcome.VALIDATION_FAILURE;
         } catch (RuntimeException e) {
             LOG.error("Unable to perform rest action {}", restAction.getClass().getName(), e);
+            outcome = Outcome.ERROR;
+            trace.startWrite(response);
             restResponseHandler.handleRuntimeException(request, response, e);
+        } finally {
+            if (outcome != null) {
+                completion.complete(outcome);
+            }
+            trace.detach(previousCorrelationId);
         }
     }
 
-    private boolean matchesPrimaryTypes(Resource resource) {
-        if (ArrayUtils.isEmpty(primaryTypes)) {
-            return true;
+    private Outcome perform(Object model, SlingHttpServletRequest request, SlingHttpServletResponse response,
+            RequestTrace trace, ResponseCache.Lookup cacheLookup, boolean conditional) throws IOException {
+        String etag = conditional ? versionTag(model, request) : null;
+        if (etag != null && restResponseHandler.handleNotModified(request, response, etag)) {
+            trace.startWrite(response);
+            return Outcome.SUCCESS;
+        }
+        RestActionResult result = restAction.perform(model);
+        trace.mark(Phase.PERFORM);
+        trace.startWrite(response);
+        if ((cacheLookup != null || conditional) && result.getStatus() == RestActionResult.Status.SUCCESS) {
+            byte[] body = restResponseHandler.serialize(request, result);
+            if (conditional && etag == null) {
+                etag = ETags.of(body);
+            }
+            if (cacheLookup != null) {
+                cacheLookup.store(body, etag, cacheable.ttlSeconds());
+            }
+            restResponseHandler.handleSerialized(request, response, body, etag);
         } else {
-            Node node = resource.adaptTo(Node.class);
-            if (node != null) {
-                for (String primaryType : primaryTypes) {
-                    try {
-                        if (node.isNodeType(primaryType)) {
-                            return true;
-                        }
-                    } catch (RepositoryException e) {
-                        LOG.warn("Failed to check node's primaryType", e);
-                        return false;
-                    }
+            restResponseHandler.handle(request, response, result);
+        }
+        return Outcome.of(result.getStatus());
+    }
+
+    private String versionTag(Object model, SlingHttpServletRequest request) {
+        if (!(restAction instanceof Versioned)) {
+            return null;
+        }
+        String version = ((Versioned<Object>) restAction).getVersion(model);
+        return version != null
+                ? ETags.ofVersion(RestResponseHandler.getUserId(request), version, ResponseFormat.of(request))
+                : null;
+    }
+
+    private ResponseCache.Lookup lookupCache(SlingHttpServletRequest request) {
+        if (cacheable == null || !isGet(request)) {
+            return null;
+        }
+        return responseCache.lookup(restAction.getClass(), request);
+    }
+
+    private static boolean isGet(SlingHttpServletRequest request) {
+        return "GET".equals(request.getMethod());
+    }
+
+    private Outcome submitJob(JobRestAction<Object, ?> jobAction, Object model, SlingHttpServletRequest request,
+            SlingHttpServletResponse response, RequestTrace trace) throws IOException {
+        JobStatus jobStatus;
+        try {
+            jobStatus = jobManager.submit(jobAction, model, request);
+        } catch (RejectedExecutionException e) {
+            LOG.warn("Job of rest action {} rejected", restAction.getClass().getName());
+            trace.mark(Phase.PERFORM);
+            trace.startWrite(response);
+            restResponseHandler.handle(request, response, RestActionResult.failure("Job rejected",
+                    "Too many jobs waiting for execution, try again later"));
+            return Outcome.FAILURE;
+        }
+        trace.mark(Phase.PERFORM);
+        trace.startWrite(response);
+        restResponseHandler.handleJobAccepted(request, response, jobStatus);
+        return Outcome.SUCCESS;
+    }
+
+    /**
+     * Response is written by thread completing the stage. If request does not support asynchronous processing
+     * (or stage is already completed), request thread waits for the result.
+     *
+     * @return outcome of request, null if it is recorded by thread completing the stage
+     */
+    private Outcome performAsync(AsyncRestAction<Object, ?> asyncAction, Object model, SlingHttpServletRequest request,
+            SlingHttpServletResponse response, Completion completion) throws IOException {
+        RequestTrace trace = completion.trace;
+        CompletableFuture<? extends RestActionResult<?>> result =
+                asyncAction.performAsync(model, actionExecutor).toCompletableFuture();
+        if (result.isDone() || !request.isAsyncSupported()) {
+            return awaitResult(result, request, response, trace);
+        }
+        AsyncContext asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(actionExecutor.getTimeoutMillis());
+        AtomicBoolean responded = new AtomicBoolean();
+        asyncContext.addListener(new TimeoutListener(request, response, responded, completion));
+        result.whenComplete((actionResult, error) -> {
+            if (!responded.compareAndSet(false, true)) {
+                LOG.warn("Result of rest action {} completed after timeout", restAction.getClass().getName());
+                return;
+            }
+            String previousCorrelationId = trace.attach();
+            Outcome outcome = Outcome.ERROR;
+            try {
+                trace.mark(Phase.PERFORM);
+                trace.startWrite(response);
+                if (error == null) {
+                    restResponseHandler.handle(request, response, requireResult(actionResult));
+                    outcome = Outcome.of(actionResult.getStatus());
+                } else {
+                    handleAsyncError(request, response, error);
                 }
-            } else {
-                LOG.warn("Cannot adapt resource {} to JCR node", resource.getPath());
+            } catch (IOException | RuntimeException e) {
+                handleAsyncWriteError(request, response, e);
+            } finally {
+                completion.complete(outcome);
+                trace.detach(previousCorrelationId);
+                asyncContext.complete();
             }
+        });
+        return null;
+    }
+
+    private Outcome awaitResult(CompletableFuture<? extends RestActionResult<?>> result,
+            SlingHttpServletRequest request, SlingHttpServletResponse response, RequestTrace trace)
+            throws IOException {
+        long timeoutMillis = actionExecutor.getTimeoutMillis();
+        try {
+            RestActionResult<?> actionResult = timeoutMillis > 0
+                    ? result.get(timeoutMillis, TimeUnit.MILLISECONDS)
+                    : result.get();
+            trace.mark(Phase.PERFORM);
+            trace.startWrite(response);
+            restResponseHandler.handle(request, response, requireResult(actionResult));
+            return Outcome.of(actionResult.getStatus());
+        } catch (ExecutionException e) {
+            trace.mark(Phase.PERFORM);
+            trace.startWrite(response);
+            handleAsyncError(request, response, e.getCause());
+            return Outcome.ERROR;
+        } catch (TimeoutException e) {
+            LOG.warn("Rest action {} timed out", restAction.getClass().getName());
+            trace.mark(Phase.PERFORM);
+            trace.startWrite(response);
+            restResponseHandler.handleTimeout(request, response);
+            return Outcome.ERROR;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for rest action result", e);
+        }
+    }
+
+    private RestActionResult<?> requireResult(RestActionResult<?> actionResult) {
+        if (actionResult == null) {
+            throw new IllegalStateException("Rest action " + restAction.getClass().getName()
+                    + " completed with null result");
         }
-        return false;
+        return actionResult;
     }
 
-    private Errors getValidationErrors(Object model) {
-        return Errors.of(validator.validate(model).stream().map(this::errorOf).toArray(Error[]::new));
+    /**
+     * Exception thrown while response is written by thread completing the stage is handled like exception of
+     * synchronous action: error response is sent, unless response is already committed.
+     */
+    private void handleAsyncWriteError(SlingHttpServletRequest request, SlingHttpServletResponse response,
+            Exception error) {
+        LOG.error("Unable to write response of rest action {}", restAction.getClass().getName(), error);
+        try {
+            restResponseHandler.handleRuntimeException(request, response, error instanceof RuntimeException
+                    ? (RuntimeException) error : new UncheckedIOException((IOException) error));
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Cannot write error response of rest action {}", restAction.getClass().getName(), e);
+        }
+    }
+
+    private void handleAsyncError(SlingHttpServletRequest request, SlingHttpServletResponse response, Throwable error)
+            throws IOException {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        LOG.error("Unable to perform rest action {}", restAction.getClass().getName(), cause);
+        restResponseHandler.handleRuntimeException(request, response,
+                cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause));
+    }
+
+    /**
+     * Bookkeeping done once request is handled: metrics recording, trace and concurrency permit.
+     */
+    private final class Completion {
+
+        private final ActionMetrics.Recording recording;
+        private final RequestTrace trace;
+        private final ConcurrencyLimiter.Permit permit;
+
+        private Completion(ActionMetrics.Recording recording, RequestTrace trace, ConcurrencyLimiter.Permit permit) {
+            this.recording = recording;
+            this.trace = trace;
+            this.permit = permit;
+        }
+
+        private void complete(Outcome outcome) {
+            permit.release();
+            recording.stop(outcome);
+            trace.finish(restAction.getClass(), restActionModelType, outcome);
+        }
     }
 
-    private Error errorOf(ConstraintViolation<Object> violation) {
-        return Error.of(
-                violation.getPropertyPath().toString(),
-                violation.getInvalidValue(),
-                violation.getMessage());
+    private final class TimeoutListener implements AsyncListener {
+
+        private final SlingHttpServletRequest request;
+        private final SlingHttpServletResponse response;
+        private final AtomicBoolean responded;
+        private final Completion completion;
+
+        private TimeoutListener(SlingHttpServletRequest request, SlingHttpServletResponse response,
+                AtomicBoolean responded, Completion completion) {
+            this.request = request;
+            this.response = response;
+            this.responded = responded;
+            this.completion = completion;
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+            if (responded.compareAndSet(false, true)) {
+                RequestTrace trace = completion.trace;
+                String previousCorrelationId = trace.attach();
+                LOG.warn("Rest action {} timed out", restAction.getClass().getName());
+                try {
+                    trace.mark(Phase.PERFORM);
+                    trace.startWrite(response);
+                    restResponseHandler.handleTimeout(request, response);
+                } finally {
+                    completion.complete(Outcome.ERROR);
+                    trace.detach(previousCorrelationId);
+                    event.getAsyncContext().complete();
+                }
+            }
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            if (!responded.getAndSet(true)) {
+                completion.complete(Outcome.ERROR);
+            }
+            LOG.warn("Asynchronous processing of rest action {} failed", restAction.getClass().getName(),
+                    event.getThrowable());
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            // response already written
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // listener is added after start
+        }
     }
 }
@@ -1,138 +1,374 @@
 package pl.ds.websight.rest.framework.impl;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.io.CountingOutputStream;
 import com.google.common.net.HttpHeaders;
 import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.SlingHttpServletResponse;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import pl.ds.websight.rest.framework.Errors;
+import pl.ds.websight.rest.framework.PagedResult;
 import pl.ds.websight.rest.framework.RestActionResult;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.Map;
 
 import static pl.ds.websight.rest.framework.RestActionResult.Status;
 
 @Component(service = RestResponseHandler.class)
+@Designate(ocd = RestResponseHandler.Config.class)
 public class RestResponseHandler {
 
+    /**
+     * Request attribute disabling compression of response, set for actions annotated with
+     * {@link pl.ds.websight.rest.framework.annotations.Uncompressed}.
+     */
+    static final String UNCOMPRESSED_ATTRIBUTE = RestResponseHandler.class.getName() + ".uncompressed";
+
     private static final Logger LOG = LoggerFactory.getLogger(RestResponseHandler.class);
 
-    private static final String ERROR_STATUS_CODE = "ERROR";
-    private static final String VALIDATION_FAILURE_STATUS_CODE = "VALIDATION_FAILURE";
+    private static final String ANONYMOUS_USER_ID = "anonymous";
+
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+
+    private static final Map<ResponseFormat, ResponseEnvelopeWriter> ENVELOPE_WRITERS = envelopeWriters();
 
-    private static final ObjectWriter JSON_WRITER = new ObjectMapper()
-            .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false)
-            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
-            .writer();
+    private ResponseBufferPool bufferPool =
+            new ResponseBufferPool(Config.DEFAULT_BUFFER_SIZE, Config.DEFAULT_BUFFER_POOL_SIZE);
+    private boolean compressionEnabled;
+    private int compressionMinSize;
+    private int compressionLevel;
+    private int ndjsonFlushSize = Config.DEFAULT_NDJSON_FLUSH_SIZE;
+
+    @Activate
+    @Modified
+    void activate(Config config) {
+        this.bufferPool = new ResponseBufferPool(config.buffer_size(), config.buffer_pool_size());
+        this.compressionEnabled = config.compression_enabled();
+        this.compressionMinSize = Math.max(0, config.compression_min_size());
+        this.compressionLevel = Math.min(Math.max(config.compression_level(), 1), 9);
+        this.ndjsonFlushSize = Math.max(1, config.ndjson_flush_size());
+    }
 
     public void handle(SlingHttpServletRequest request, SlingHttpServletResponse response, RestActionResult restActionResult) throws IOException {
         if (Status.FREE_FORM_RESPONSE.equals(restActionResult.getStatus())) {
             handle(restActionResult.getResponseHandler(), response);
         } else {
-            handle(request, response, new ResultJsonModel(restActionResult), HttpServletResponse.SC_OK);
+            handle(request, response, HttpServletResponse.SC_OK, ResponseEnvelopeWriter.status(restActionResult.getStatus()),
+                    restActionResult.getMessage(), restActionResult.getMessageDetails(), restActionResult.getEntity());
         }
     }
 
     public void handleRuntimeException(SlingHttpServletRequest request, SlingHttpServletResponse response, RuntimeException ex) throws IOException {
-        ResultJsonModel result = new ResultJsonModel(ERROR_STATUS_CODE, "Unexpected server error", ex.getMessage(), null);
-        handle(request, response, result, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-    }
-
-    public void handleModelValidationError(SlingHttpServletRequest request, SlingHttpServletResponse response, Errors errors) throws IOException {
-        ResultJsonModel result = new ResultJsonModel(VALIDATION_FAILURE_STATUS_CODE, "Validation failed", null, errors.asList());
-        handle(request, response, result, HttpServletResponse.SC_BAD_REQUEST);
+        if (response.isCommitted()) {
+            LOG.warn("Response already committed, cannot send error response");
+            return;
+        }
+        response.resetBuffer();
+        handle(request, response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ResponseEnvelopeWriter.ERROR_STATUS,
+                "Unexpected server error", ex.getMessage(), null);
     }
 
-    private void handle(SlingHttpServletRequest request, SlingHttpServletResponse response, ResultJsonModel result, int status)
+    public void handleJobAccepted(SlingHttpServletRequest request, SlingHttpServletResponse response, JobStatus jobStatus)
             throws IOException {
-        response.setStatus(status);
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
-        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
-        result.setAuthContext(createAuthContext(request));
-        JSON_WRITER.writeValue(response.getWriter(), result);
+        handle(request, response, HttpServletResponse.SC_ACCEPTED, ResponseEnvelopeWriter.status(Status.SUCCESS),
+                "Job accepted", null, jobStatus);
     }
 
-    private AuthContext createAuthContext(SlingHttpServletRequest request) {
-        boolean authenticated = request.getAuthType() != null;
-        String userId = "anonymous";
-        if (authenticated && request.getUserPrincipal() != null) {
-            userId = request.getUserPrincipal().getName();
+    public void handleTimeout(SlingHttpServletRequest request, SlingHttpServletResponse response) throws IOException {
+        if (response.isCommitted()) {
+            LOG.warn("Response already committed, cannot send timeout response");
+            return;
         }
-        return new AuthContext(userId);
+        response.resetBuffer();
+        handle(request, response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, ResponseEnvelopeWriter.ERROR_STATUS,
+                "Rest action timed out", null, null);
     }
 
-    private void handle(RestActionResult.ResponseHandler responseHandler, SlingHttpServletResponse response) throws IOException {
-        if (responseHandler != null) {
-            responseHandler.handle(response);
-        } else {
-            LOG.error("No response handler");
-            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-        }
+    public void handleOverloaded(SlingHttpServletRequest request, SlingHttpServletResponse response,
+            int retryAfterSeconds) throws IOException {
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        handle(request, response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, ResponseEnvelopeWriter.ERROR_STATUS,
+                "Server overloaded", "Too many requests handled at the same time, try again later", null);
     }
 
-    private static class ResultJsonModel {
+    public void handleRateLimited(SlingHttpServletRequest request, SlingHttpServletResponse response,
+            long retryAfterSeconds) throws IOException {
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        handle(request, response, SC_TOO_MANY_REQUESTS, ResponseEnvelopeWriter.RATE_LIMITED_STATUS,
+                "Too many requests", "Rate limit of the action exceeded, try again later", null);
+    }
 
-        private final String status;
-        private final String message;
-        private final String messageDetails;
-        private final Object entity;
-        private AuthContext authContext;
+    public void handleModelValidationError(SlingHttpServletRequest request, SlingHttpServletResponse response, Errors errors) throws IOException {
+        handle(request, response, HttpServletResponse.SC_BAD_REQUEST, ResponseEnvelopeWriter.VALIDATION_FAILURE_STATUS,
+                "Validation failed", null, errors.asList());
+    }
 
-        ResultJsonModel(RestActionResult restActionResult) {
-            status = restActionResult.getStatus().toString();
-            message = restActionResult.getMessage();
-            messageDetails = restActionResult.getMessageDetails();
-            entity = restActionResult.getEntity();
+    /**
+     * Serializes response envelope of result (other than free form response) in format negotiated with client,
+     * written by {@link #handleSerialized}.
+     */
+    byte[] serialize(SlingHttpServletRequest request, RestActionResult<?> restActionResult) throws IOException {
+        SerializableString resultStatus = ResponseEnvelopeWriter.status(restActionResult.getStatus());
+        Object serializationEvent = RestActionEvents.beginSerialization();
+        long start = serializationEvent != null ? System.nanoTime() : 0;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ResponseEnvelopeWriter envelopeWriter = ENVELOPE_WRITERS.get(ResponseFormat.of(request));
+        JsonGenerator generator = envelopeWriter.createGenerator(output);
+        envelopeWriter.write(generator, resultStatus, restActionResult.getMessage(),
+                restActionResult.getMessageDetails(), restActionResult.getEntity(), getUserId(request));
+        generator.close();
+        byte[] body = output.toByteArray();
+        if (serializationEvent != null) {
+            RestActionEvents.commitSerialization(serializationEvent, System.nanoTime() - start,
+                    resultStatus.getValue(), restActionResult.getEntity(), body.length);
         }
+        return body;
+    }
 
-        ResultJsonModel(String status, String message, String messageDetails, Object entity) {
-            this.status = status;
-            this.message = message;
-            this.messageDetails = messageDetails;
-            this.entity = entity;
+    /**
+     * Detaches result from resources used to compute it (e.g. resource resolver of job), so it can be written later
+     * and more than once. Entity is read into tree of JSON nodes, consuming streamed entity.
+     *
+     * @throws IllegalArgumentException if result is paged, as cursor of the next page is bound to request
+     */
+    static RestActionResult<?> detach(RestActionResult<?> restActionResult) throws IOException {
+        Object entity = restActionResult.getEntity();
+        if (entity == null) {
+            return restActionResult;
+        }
+        if (entity instanceof PagedResult) {
+            throw new IllegalArgumentException("Paged result cannot be detached from request");
         }
+        JsonNode tree = ENVELOPE_WRITERS.get(ResponseFormat.JSON).toTree(entity);
+        return restActionResult.getStatus() == Status.SUCCESS
+                ? RestActionResult.success(restActionResult.getMessage(), restActionResult.getMessageDetails(), tree)
+                : RestActionResult.failure(restActionResult.getMessage(), restActionResult.getMessageDetails(), tree);
+    }
 
-        public String getStatus() {
-            return status;
+    /**
+     * Writes serialized response body. With entity tag given, response to request with matching {@code If-None-Match}
+     * header is {@code 304 Not Modified}, and response is allowed to be stored by client for revalidation. Tag of
+     * compressed response has encoding appended, as it is different representation.
+     */
+    void handleSerialized(SlingHttpServletRequest request, SlingHttpServletResponse response, byte[] body,
+            String etag) throws IOException {
+        CompressingOutputStream compressed = compressingStream(request, response, false);
+        if (etag != null && compressed != null && compressed.compresses(body.length)) {
+            etag = ETags.encoded(etag, compressed.getEncoding().getToken());
+        }
+        if (etag != null && handleNotModified(request, response, etag)) {
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        setContentType(request, response, false);
+        if (etag != null) {
+            response.setHeader(HttpHeaders.ETAG, etag);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        } else {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
         }
+        if (compressed != null) {
+            compressed.write(body);
+            compressed.close();
+        } else {
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+        }
+    }
 
-        public String getMessage() {
-            return message;
+    /**
+     * Responds with {@code 304 Not Modified} if entity tag matches {@code If-None-Match} header of request.
+     *
+     * @return true if response was written
+     */
+    boolean handleNotModified(SlingHttpServletRequest request, SlingHttpServletResponse response, String etag) {
+        if (!ETags.matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            return false;
         }
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        return true;
+    }
 
-        public String getMessageDetails() {
-            return messageDetails;
+    /**
+     * Envelope is serialized in format negotiated with client (JSON as UTF-8 by default) into pooled buffer and sent
+     * with {@code Content-Length}, unless it is larger than the buffer, then it is streamed. Generator is closed (and
+     * response flushed) only on success, so in case of exception thrown while entity is written, not yet committed
+     * output can still be replaced by error response. Size of response is counted only when serialization event is
+     * recorded. Compressed response is streamed, only its first bytes (up to minimal size of compressed response) are
+     * buffered. Streamed entity is written as newline delimited JSON, if client accepts it, directly to response
+     * and flushed in batches of elements.
+     */
+    private void handle(SlingHttpServletRequest request, SlingHttpServletResponse response, int status,
+            SerializableString resultStatus, String message, String messageDetails, Object entity) throws IOException {
+        response.setStatus(status);
+        boolean streamed = ResponseEnvelopeWriter.isStreamed(entity);
+        boolean delimited = streamed && ResponseFormat.acceptsNdjson(request);
+        ResponseEnvelopeWriter envelopeWriter;
+        if (delimited) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            response.setContentType(ResponseFormat.NDJSON_MEDIA_TYPE);
+            response.setCharacterEncoding("UTF-8");
+            envelopeWriter = ENVELOPE_WRITERS.get(ResponseFormat.JSON);
+        } else {
+            envelopeWriter = ENVELOPE_WRITERS.get(setContentType(request, response, streamed));
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+        Object serializationEvent = RestActionEvents.beginSerialization();
+        long start = serializationEvent != null ? System.nanoTime() : 0;
+        CompressingOutputStream compressed = compressingStream(request, response, delimited);
+        OutputStream out = compressed != null ? compressed
+                : delimited ? response.getOutputStream() : new BufferedResponseOutputStream(response, bufferPool);
+        CountingOutputStream counter = serializationEvent != null ? new CountingOutputStream(out) : null;
+        JsonGenerator generator = envelopeWriter.createGenerator(counter != null ? counter : out);
+        String userId = getUserId(request);
+        if (delimited) {
+            envelopeWriter.writeLines(generator, resultStatus, message, messageDetails, entity, userId,
+                    ndjsonFlushSize);
+        } else {
+            envelopeWriter.write(generator, resultStatus, message, messageDetails, entity, userId);
+        }
+        generator.close();
+        if (counter != null) {
+            RestActionEvents.commitSerialization(serializationEvent, System.nanoTime() - start,
+                    resultStatus.getValue(), entity, counter.getCount());
         }
+    }
 
-        public Object getEntity() {
-            return entity;
+    /**
+     * Sets content type of format negotiated with client. Responses vary by {@code Accept} header if binary formats
+     * are available or if entity is streamed (it could be written as newline delimited JSON).
+     *
+     * @return negotiated format
+     */
+    private static ResponseFormat setContentType(SlingHttpServletRequest request, SlingHttpServletResponse response,
+            boolean streamed) {
+        if (streamed || ResponseFormat.isNegotiable()) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        ResponseFormat format = ResponseFormat.isNegotiable() ? ResponseFormat.of(request) : ResponseFormat.JSON;
+        response.setContentType(format.getMediaType());
+        if (!format.isBinary()) {
+            response.setCharacterEncoding("UTF-8");
         }
+        return format;
+    }
 
-        public AuthContext getAuthContext() {
-            return authContext;
+    /**
+     * @param syncFlush compress response read by client while it is written, so flushed data is sent
+     * @return stream compressing response body with encoding accepted by client, null if response is not compressed
+     */
+    private CompressingOutputStream compressingStream(SlingHttpServletRequest request,
+            SlingHttpServletResponse response, boolean syncFlush) {
+        if (!compressionEnabled || request.getAttribute(UNCOMPRESSED_ATTRIBUTE) != null) {
+            return null;
+        }
+        // error response replacing not committed compressed response has to be compressed as well
+        CompressingOutputStream.Encoding current =
+                CompressingOutputStream.Encoding.of(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        if (current != null) {
+            return new CompressingOutputStream(response, current, compressionLevel, 0, syncFlush);
         }
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        CompressingOutputStream.Encoding encoding =
+                CompressingOutputStream.Encoding.negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        return encoding != null
+                ? new CompressingOutputStream(response, encoding, compressionLevel, compressionMinSize, syncFlush)
+                : null;
+    }
 
-        public void setAuthContext(AuthContext authContext) {
-            this.authContext = authContext;
+    private static Map<ResponseFormat, ResponseEnvelopeWriter> envelopeWriters() {
+        Map<ResponseFormat, ResponseEnvelopeWriter> envelopeWriters = new EnumMap<>(ResponseFormat.class);
+        for (ResponseFormat format : ResponseFormat.getAvailable()) {
+            envelopeWriters.put(format, new ResponseEnvelopeWriter(mapper(format.createFactory())));
         }
+        return envelopeWriters;
     }
 
-    private static class AuthContext {
-        private final String userId;
+    private static ObjectMapper mapper(JsonFactory factory) {
+        return new ObjectMapper(factory)
+                .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false)
+                .configure(SerializationFeature.FLUSH_AFTER_WRITE_VALUE, false)
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    }
 
-        AuthContext(String userId) {
-            this.userId = userId;
+    static String getUserId(SlingHttpServletRequest request) {
+        boolean authenticated = request.getAuthType() != null;
+        if (authenticated && request.getUserPrincipal() != null) {
+            return request.getUserPrincipal().getName();
         }
+        return ANONYMOUS_USER_ID;
+    }
 
-        public String getUserId() {
-            return userId;
+    private void handle(RestActionResult.ResponseHandler responseHandler, SlingHttpServletResponse response) throws IOException {
+        if (responseHandler != null) {
+            responseHandler.handle(response);
+        } else {
+            LOG.error("No response handler");
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
         }
     }
+
+    @ObjectClassDefinition(name = "WebSight Rest Framework Response Handler")
+    public @interface Config {
+
+        int DEFAULT_BUFFER_SIZE = 8192;
+
+        int DEFAULT_BUFFER_POOL_SIZE = 64;
+
+        int DEFAULT_NDJSON_FLUSH_SIZE = 100;
+
+        @AttributeDefinition(
+                name = "Buffer size",
+                description = "Size in bytes of pooled buffers of responses. Responses up to this size are sent at " +
+                        "once with Content-Length, larger responses are streamed.")
+        int buffer_size() default DEFAULT_BUFFER_SIZE;
+
+        @AttributeDefinition(
+                name = "Buffer pool size",
+                description = "Maximal number of response buffers kept for reuse.")
+        int buffer_pool_size() default DEFAULT_BUFFER_POOL_SIZE;
+
+        @AttributeDefinition(
+                name = "Compression",
+                description = "Compress responses with gzip or deflate, if client accepts it. Actions annotated " +
+                        "with @Uncompressed are never compressed.")
+        boolean compression_enabled() default false;
+
+        @AttributeDefinition(
+                name = "Compression minimal size",
+                description = "Size in bytes which response has to exceed to be compressed. Responses are buffered " +
+                        "up to this size.")
+        int compression_min_size() default 2048;
+
+        @AttributeDefinition(
+                name = "Compression level",
+                description = "Compression level, from 1 (fastest) to 9 (smallest response).")
+        int compression_level() default 1;
+
+        @AttributeDefinition(
+                name = "NDJSON flush size",
+                description = "Number of streamed entity elements written as newline delimited JSON between " +
+                        "flushes of response. The first element is flushed immediately.")
+        int ndjson_flush_size() default DEFAULT_NDJSON_FLUSH_SIZE;
+    }
 }
@@ -0,0 +1,101 @@
+package pl.ds.websight.rest.framework.impl;
+
+import pl.ds.websight.rest.framework.impl.RestActionRoute.Family;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable routing table of front controller dispatch: rest action servlets by family, action key and HTTP method.
+ * Every change creates new table, so dispatcher servlets can read it without locking.
+ */
+final class RoutingTable {
+
+    static final RoutingTable EMPTY = new RoutingTable(Collections.emptyMap());
+
+    private final Map<Long, Entry> entriesByServiceId;
+    private final Map<Family, Map<String, Map<String, Entry>>> entriesByFamily = new EnumMap<>(Family.class);
+
+    private RoutingTable(Map<Long, Entry> entriesByServiceId) {
+        this.entriesByServiceId = entriesByServiceId;
+        for (Family family : Family.values()) {
+            entriesByFamily.put(family, new HashMap<>());
+        }
+        for (Map.Entry<Long, Entry> idAndEntry : entriesByServiceId.entrySet()) {
+            RestActionRoute route = idAndEntry.getValue().getRoute();
+            Map<String, Entry> entriesByMethod = entriesByFamily.get(route.getFamily())
+                    .computeIfAbsent(route.getActionKey(), key -> new HashMap<>(2));
+            Entry registered = entriesByMethod.putIfAbsent(route.getMethod(), idAndEntry.getValue());
+            if (registered != null) {
+                throw new IllegalStateException(String.format("Route %s of rest action service id %s is already used",
+                        route, idAndEntry.getKey()));
+            }
+        }
+    }
+
+    Entry find(Family family, String actionKey, String method) {
+        if (actionKey == null) {
+            return null;
+        }
+        Map<String, Entry> entriesByMethod = entriesByFamily.get(family).get(actionKey);
+        return entriesByMethod != null ? entriesByMethod.get(method) : null;
+    }
+
+    boolean contains(Long serviceId) {
+        return entriesByServiceId.containsKey(serviceId);
+    }
+
+    RestActionRoute getRoute(Long serviceId) {
+        Entry entry = entriesByServiceId.get(serviceId);
+        return entry != null ? entry.getRoute() : null;
+    }
+
+    List<RestActionRoute> getRoutes(Family family) {
+        List<RestActionRoute> routes = new ArrayList<>();
+        for (Map<String, Entry> entriesByMethod : entriesByFamily.get(family).values()) {
+            for (Entry entry : entriesByMethod.values()) {
+                routes.add(entry.getRoute());
+            }
+        }
+        return routes;
+    }
+
+    /**
+     * @throws IllegalStateException if route is already used by other rest action
+     */
+    RoutingTable with(Long serviceId, RestActionRoute route, RestActionsServlet servlet) {
+        Map<Long, Entry> entries = new LinkedHashMap<>(entriesByServiceId);
+        entries.put(serviceId, new Entry(route, servlet));
+        return new RoutingTable(entries);
+    }
+
+    RoutingTable without(Long serviceId) {
+        Map<Long, Entry> entries = new LinkedHashMap<>(entriesByServiceId);
+        entries.remove(serviceId);
+        return new RoutingTable(entries);
+    }
+
+    static final class Entry {
+
+        private final RestActionRoute route;
+        private final RestActionsServlet servlet;
+
+        private Entry(RestActionRoute route, RestActionsServlet servlet) {
+            this.route = route;
+            this.servlet = servlet;
+        }
+
+        RestActionRoute getRoute() {
+            return route;
+        }
+
+        RestActionsServlet getServlet() {
+            return servlet;
+        }
+    }
+}
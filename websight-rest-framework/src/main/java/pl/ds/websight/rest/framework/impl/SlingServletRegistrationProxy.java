@@ -11,21 +11,31 @@ import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import pl.ds.websight.rest.framework.AsyncRestAction;
+import pl.ds.websight.rest.framework.JobRestAction;
+import pl.ds.websight.rest.framework.RequestBinder;
 import pl.ds.websight.rest.framework.RestAction;
 
 import javax.servlet.Servlet;
 import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import static pl.ds.websight.rest.framework.impl.BundleContextUtil.getAllServiceReferences;
 
 @Component(immediate = true)
+@Designate(ocd = SlingServletRegistrationProxy.Config.class)
 public class SlingServletRegistrationProxy {
 
     private static final Logger LOG = LoggerFactory.getLogger(SlingServletRegistrationProxy.class);
@@ -42,14 +52,50 @@ public class SlingServletRegistrationProxy {
     @Reference
     private RestResponseHandler restResponseHandler;
 
+    @Reference
+    private NodeTypeMatcher nodeTypeMatcher;
+
+    @Reference
+    private RestActionExecutor restActionExecutor;
+
+    @Reference
+    private RestActionJobManager restActionJobManager;
+
+    @Reference
+    private RestActionMetrics restActionMetrics;
+
+    @Reference
+    private RequestTracing requestTracing;
+
+    @Reference
+    private ConcurrencyLimiter concurrencyLimiter;
+
+    @Reference
+    private RateLimiter rateLimiter;
+
+    @Reference
+    private ResponseCache responseCache;
+
     private BundleContext bundleContext;
+    private RestActionsDispatcher dispatcher;
     private final Map<Long, ServiceRegistration<Servlet>> actionServletRegistrationByActionServiceId = new HashMap<>();
 
     @Activate
     @SuppressWarnings("unused")
-    private synchronized void activate(BundleContext bundleContext) {
+    private synchronized void activate(BundleContext bundleContext, Config config) {
         this.bundleContext = bundleContext;
-        ServiceReference<?>[] actionsReferences = getAllServiceReferences(bundleContext, RestAction.class);
+        if (config.front_controller_enabled()) {
+            dispatcher = new RestActionsDispatcher(bundleContext, restActionSetupService);
+        }
+        List<ServiceReference<?>> actionsReferences = new ArrayList<>(
+                Arrays.asList(getAllServiceReferences(bundleContext, RestAction.class)));
+        for (Class<?> actionInterface : Arrays.asList(AsyncRestAction.class, JobRestAction.class)) {
+            for (ServiceReference<?> actionReference : getAllServiceReferences(bundleContext, actionInterface)) {
+                if (!isRestActionService(actionReference.getProperty(Constants.OBJECTCLASS))) {
+                    actionsReferences.add(actionReference);
+                }
+            }
+        }
         for (ServiceReference<?> actionReference : actionsReferences) {
             try {
                 RestAction<?, ?> restAction = (RestAction<?, ?>) bundleContext.getService(actionReference);
@@ -58,12 +104,19 @@ public class SlingServletRegistrationProxy {
                 LOG.error("Cannot register rest action servlet.", e);
             }
         }
+        if (dispatcher != null) {
+            dispatcher.publish();
+        }
     }
 
     @Deactivate
     @SuppressWarnings("unused")
     private synchronized void deactivate() {
         this.bundleContext = null;
+        if (dispatcher != null) {
+            dispatcher.close();
+            dispatcher = null;
+        }
         // copy keys to avoid concurrent map modification
         Set<Long> actionServiceIds = new HashSet<>(actionServletRegistrationByActionServiceId.keySet());
         for (Long id : actionServiceIds) {
@@ -79,6 +132,9 @@ public class SlingServletRegistrationProxy {
     private synchronized void bindRestAction(RestAction<?, ?> restAction, Map<String, ?> properties) {
         if (bundleContext != null) {
             registerActionServlet(restAction, (Long) properties.get(Constants.SERVICE_ID));
+            if (dispatcher != null) {
+                dispatcher.publish();
+            }
         } else {
             LOG.info("Delegating action {} registration to activate method. Bundle context not ready yet.", restAction.getClass());
         }
@@ -86,22 +142,94 @@ public class SlingServletRegistrationProxy {
 
     @SuppressWarnings("unused")
     private synchronized void unbindRestAction(RestAction<?, ?> restAction, Map<String, ?> properties) {
-        unregisterActionServlet((Long) properties.get(Constants.SERVICE_ID));
+        Long restActionServiceId = (Long) properties.get(Constants.SERVICE_ID);
+        if (dispatcher != null) {
+            if (dispatcher.unregister(restActionServiceId)) {
+                dispatcher.publish();
+                LOG.info("Route of rest action with id {} removed.", restActionServiceId);
+            } else {
+                LOG.warn("Cannot find route of rest action with id {} for removal.", restActionServiceId);
+            }
+        } else {
+            unregisterActionServlet(restActionServiceId);
+        }
+    }
+
+    /**
+     * Asynchronous and job actions registered only as {@link AsyncRestAction} or {@link JobRestAction} services
+     * (default for components implementing them) are handled the same way as {@link RestAction} services. Services
+     * registered also as {@link RestAction} are handled once, as {@link RestAction}.
+     */
+    @Reference(
+            service = AsyncRestAction.class,
+            cardinality = ReferenceCardinality.MULTIPLE,
+            policy = ReferencePolicy.DYNAMIC)
+    @SuppressWarnings("unused")
+    private synchronized void bindAsyncRestAction(AsyncRestAction<?, ?> restAction, Map<String, ?> properties) {
+        if (!isRestActionService(properties.get(Constants.OBJECTCLASS))) {
+            bindRestAction(restAction, properties);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private synchronized void unbindAsyncRestAction(AsyncRestAction<?, ?> restAction, Map<String, ?> properties) {
+        if (!isRestActionService(properties.get(Constants.OBJECTCLASS))) {
+            unbindRestAction(restAction, properties);
+        }
+    }
+
+    @Reference(
+            service = JobRestAction.class,
+            cardinality = ReferenceCardinality.MULTIPLE,
+            policy = ReferencePolicy.DYNAMIC)
+    @SuppressWarnings("unused")
+    private synchronized void bindJobRestAction(JobRestAction<?, ?> restAction, Map<String, ?> properties) {
+        if (!isRestActionService(properties.get(Constants.OBJECTCLASS))) {
+            bindRestAction(restAction, properties);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private synchronized void unbindJobRestAction(JobRestAction<?, ?> restAction, Map<String, ?> properties) {
+        if (!isRestActionService(properties.get(Constants.OBJECTCLASS))) {
+            unbindRestAction(restAction, properties);
+        }
+    }
+
+    private static boolean isRestActionService(Object objectClass) {
+        return objectClass instanceof String[] && Arrays.asList((String[]) objectClass).contains(RestAction.class.getName());
     }
 
     private void registerActionServlet(RestAction<?, ?> restAction, Long restActionServiceId) {
-        if (actionServletRegistrationByActionServiceId.containsKey(restActionServiceId)) {
+        if (actionServletRegistrationByActionServiceId.containsKey(restActionServiceId)
+                || (dispatcher != null && dispatcher.contains(restActionServiceId))) {
             throw new IllegalStateException("Service already registered for rest action service id " + restActionServiceId);
         }
+        if (dispatcher != null) {
+            RestActionRoute route = restActionSetupService.buildActionRoute(restAction);
+            dispatcher.register(restActionServiceId, route, createActionServlet(restAction));
+            LOG.info("Rest action class {} and rest action service id {} routed as {}.",
+                    restAction.getClass(), restActionServiceId, route);
+            return;
+        }
         Dictionary<String, Object> servletProperties = restActionSetupService.buildActionServletProperties(restAction);
-        Class<?> restActionModelType = restActionSetupService.getModelClass(restAction);
-        RestActionsServlet servlet = new RestActionsServlet(restAction, restActionModelType, modelFactory, validator, restResponseHandler);
+        RestActionsServlet servlet = createActionServlet(restAction);
         ServiceRegistration<Servlet> service = bundleContext.registerService(Servlet.class, servlet, servletProperties);
         actionServletRegistrationByActionServiceId.put(restActionServiceId, service);
         LOG.info("Rest action servlet for action class {} and rest action service id {} registered.",
                 restAction.getClass(), restActionServiceId);
     }
 
+    private RestActionsServlet createActionServlet(RestAction<?, ?> restAction) {
+        Class<?> restActionModelType = restActionSetupService.getModelClass(restAction);
+        RequestBinder<?> requestBinder = RequestBinders.forModel(restActionModelType, modelFactory);
+        ValidationPlan validationPlan = ValidationPlan.of(restActionModelType, validator);
+        return new RestActionsServlet(restAction, restActionModelType, requestBinder, validationPlan, restResponseHandler,
+                nodeTypeMatcher, restActionExecutor, restActionJobManager,
+                restActionMetrics.forAction(restAction.getClass().getName()), requestTracing, concurrencyLimiter,
+                rateLimiter, responseCache);
+    }
+
     private void unregisterActionServlet(Long id) {
         ServiceRegistration<?> service = actionServletRegistrationByActionServiceId.get(id);
         if (service != null) {
@@ -116,4 +244,15 @@ public class SlingServletRegistrationProxy {
             LOG.warn("Cannot find servlet service for rest action with id {} for unregister.", id);
         }
     }
+
+    @ObjectClassDefinition(name = "WebSight Rest Framework Servlet Registration")
+    public @interface Config {
+
+        @AttributeDefinition(
+                name = "Front controller",
+                description = "Dispatch rest actions by one servlet per paths, resource types and primary types " +
+                        "actions, using routing table, instead of registering servlet per rest action. " +
+                        "Action URLs are the same in both modes.")
+        boolean front_controller_enabled() default false;
+    }
 }
@@ -0,0 +1,78 @@
+package pl.ds.websight.rest.framework.impl;
+
+import pl.ds.websight.rest.framework.Errors;
+import pl.ds.websight.rest.framework.Errors.Error;
+import pl.ds.websight.rest.framework.Validatable;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import javax.validation.metadata.BeanDescriptor;
+import java.util.Set;
+
+/**
+ * Model validation prepared once per rest action, when its servlet is registered. Bean validation is skipped
+ * for model types without any constraints (on the class, its properties or cascaded properties). Instances of
+ * model subtypes (e.g. adapter implementations) are always validated, as they may declare own constraints.
+ */
+final class ValidationPlan {
+
+    private final Class<?> modelType;
+    private final Validator validator;
+    private final boolean beanConstrained;
+
+    private ValidationPlan(Class<?> modelType, Validator validator, boolean beanConstrained) {
+        this.modelType = modelType;
+        this.validator = validator;
+        this.beanConstrained = beanConstrained;
+    }
+
+    static ValidationPlan of(Class<?> modelType, Validator validator) {
+        BeanDescriptor beanDescriptor = validator.getConstraintsForClass(modelType);
+        return new ValidationPlan(modelType, validator, beanDescriptor.isBeanConstrained());
+    }
+
+    boolean isBeanConstrained() {
+        return beanConstrained;
+    }
+
+    /**
+     * Runs bean validation and, if it passes, {@link Validatable#validate()} of the model.
+     * @return errors found, {@link Errors#empty()} if bean validation found nothing and model is not
+     * {@link Validatable}
+     */
+    Errors validate(Object model) {
+        return validate(model, RequestTrace.NONE);
+    }
+
+    /**
+     * Validates model like {@link #validate(Object)}, marking bean validation and {@link Validatable#validate()}
+     * phases of request trace.
+     */
+    Errors validate(Object model, RequestTrace trace) {
+        Errors errors = validateBean(model);
+        trace.mark(RequestTrace.Phase.VALIDATE);
+        if (errors.isEmpty() && model instanceof Validatable) {
+            errors = ((Validatable) model).validate();
+            trace.mark(RequestTrace.Phase.VALIDATABLE);
+        }
+        return errors;
+    }
+
+    private Errors validateBean(Object model) {
+        if (!beanConstrained && model.getClass() == modelType) {
+            return Errors.empty();
+        }
+        Set<ConstraintViolation<Object>> violations = validator.validate(model);
+        if (violations.isEmpty()) {
+            return Errors.empty();
+        }
+        Errors errors = Errors.createErrors();
+        for (ConstraintViolation<Object> violation : violations) {
+            errors.add(Error.of(
+                    violation.getPropertyPath().toString(),
+                    violation.getInvalidValue(),
+                    violation.getMessage()));
+        }
+        return errors;
+    }
+}
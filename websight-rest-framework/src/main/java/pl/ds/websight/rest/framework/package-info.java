@@ -1,4 +1,4 @@
-@Version("1.0.0")
+@Version("1.3.0")
 package pl.ds.websight.rest.framework;
 
 import org.osgi.annotation.versioning.Version;
\ No newline at end of file
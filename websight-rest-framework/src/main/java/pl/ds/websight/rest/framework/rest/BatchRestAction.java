@@ -0,0 +1,340 @@
+package pl.ds.websight.rest.framework.rest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.engine.SlingRequestProcessor;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.ds.websight.rest.framework.RestAction;
+import pl.ds.websight.rest.framework.RestActionResult;
+import pl.ds.websight.rest.framework.annotations.SlingAction;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Executes list of actions requests in one HTTP request. Every request is processed by Sling as if it was sent
+ * separately (with the same user), so it goes through servlet resolution and the whole rest action pipeline. Result
+ * entity is array with response envelope of every request, in order of requests. Element is {@code null} for request
+ * skipped after failure (see {@code stopOnFailure}) and object with {@code httpStatus} only for response which is not
+ * JSON. Requests are executed one by one with resource resolver of batch request, or, with {@code parallel} option,
+ * by bounded thread pool, each with own clone of that resource resolver. Batch is failed if its requests do not fit
+ * in the pool queue, and requests not finished within configured timeout get {@code httpStatus} 504. Batch sent as
+ * request of another batch is failed, so batches cannot fan out recursively.
+ */
+@Component
+@Designate(ocd = BatchRestAction.Config.class)
+@SlingAction
+public class BatchRestAction implements RestAction<BatchRestModel, List<JsonNode>> {
+
+    static final String PATH = "/apps/websight-rest-framework/bin/batch.action";
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchRestAction.class);
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    private static final String SUCCESS_STATUS = "SUCCESS";
+
+    @Reference
+    private SlingRequestProcessor slingRequestProcessor;
+
+    private int maxRequests;
+    private long timeoutMillis;
+    private ThreadPoolExecutor executor;
+
+    @Activate
+    void activate(Config config) {
+        int threads = Math.max(1, config.parallel_threads());
+        this.maxRequests = config.max_requests();
+        this.timeoutMillis = TimeUnit.SECONDS.toMillis(Math.max(1, config.parallel_timeout_seconds()));
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.parallel_queue_size())),
+                new ThreadFactoryBuilder().setNameFormat("websight-rest-batch-%d").setDaemon(true).build());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Deactivate
+    void deactivate() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public RestActionResult<List<JsonNode>> perform(BatchRestModel model) {
+        if (isBatchSubRequest(model.getRequest())) {
+            return RestActionResult.failure("Nested batch", "Batch cannot be sent as request of another batch");
+        }
+        int requestsCount = model.getRequests().size();
+        if (requestsCount > maxRequests) {
+            return RestActionResult.failure("Too many requests in batch",
+                    String.format("Batch can contain up to %d requests, got %d", maxRequests, requestsCount));
+        }
+        if (!model.isParallel() || requestsCount == 1) {
+            return RestActionResult.success(performSequential(model));
+        }
+        List<JsonNode> results = performParallel(model);
+        return results != null
+                ? RestActionResult.success(results)
+                : RestActionResult.failure("Batch rejected",
+                        "Too many batch requests waiting for execution, try again later");
+    }
+
+    /**
+     * Sling wraps processed request (also in request filters), so sub request is found in chain of wrapped requests.
+     */
+    private static boolean isBatchSubRequest(ServletRequest request) {
+        while (request instanceof ServletRequestWrapper) {
+            if (request instanceof BatchSubRequest) {
+                return true;
+            }
+            request = ((ServletRequestWrapper) request).getRequest();
+        }
+        return false;
+    }
+
+    private List<JsonNode> performSequential(BatchRestModel model) {
+        List<JsonNode> results = Arrays.asList(new JsonNode[model.getRequests().size()]);
+        ResourceResolver resourceResolver = model.getRequest().getResourceResolver();
+        for (int i = 0; i < results.size(); i++) {
+            JsonNode result = process(model.getRequest(), model.getRequests().get(i), resourceResolver);
+            results.set(i, result);
+            if (model.isStopOnFailure() && !isSuccess(result)) {
+                break;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Resource resolvers are cloned in request thread, as batch request resolver is not thread safe. Clone is closed by
+     * task using it, or by request thread if task did not start (was rejected, cancelled or timed out in queue).
+     *
+     * @return results of requests, null if requests were rejected by thread pool
+     */
+    private List<JsonNode> performParallel(BatchRestModel model) {
+        AtomicBoolean failed = new AtomicBoolean();
+        List<JsonNode> results = Arrays.asList(new JsonNode[model.getRequests().size()]);
+        List<ParallelRequest> parallelRequests = new ArrayList<>(results.size());
+        try {
+            for (int i = 0; i < results.size(); i++) {
+                BatchRestModel.SubRequest subRequest = model.getRequests().get(i);
+                ResourceResolver resourceResolver = cloneResourceResolver(model.getRequest(), subRequest);
+                if (resourceResolver == null) {
+                    results.set(i, nonJsonResult(HttpServletResponse.SC_INTERNAL_SERVER_ERROR));
+                    continue;
+                }
+                ParallelRequest parallelRequest = new ParallelRequest(i, resourceResolver);
+                parallelRequests.add(parallelRequest);
+                parallelRequest.future = executor.submit(() -> {
+                    if (!parallelRequest.start()) {
+                        return null;
+                    }
+                    try {
+                        if (model.isStopOnFailure() && failed.get()) {
+                            return null;
+                        }
+                        JsonNode result = process(model.getRequest(), subRequest, resourceResolver);
+                        if (!isSuccess(result)) {
+                            failed.set(true);
+                        }
+                        return result;
+                    } finally {
+                        resourceResolver.close();
+                    }
+                });
+            }
+            awaitResults(parallelRequests, results);
+        } catch (RejectedExecutionException e) {
+            LOG.warn("Parallel requests of batch rejected");
+            return null;
+        } finally {
+            parallelRequests.forEach(ParallelRequest::release);
+        }
+        return results;
+    }
+
+    private void awaitResults(List<ParallelRequest> parallelRequests, List<JsonNode> results) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        try {
+            for (ParallelRequest parallelRequest : parallelRequests) {
+                long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                try {
+                    results.set(parallelRequest.index, parallelRequest.future.get(remaining, TimeUnit.MILLISECONDS));
+                } catch (TimeoutException e) {
+                    results.set(parallelRequest.index, nonJsonResult(HttpServletResponse.SC_GATEWAY_TIMEOUT));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for batch requests", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cannot execute batch request", e.getCause());
+        }
+    }
+
+    private static ResourceResolver cloneResourceResolver(SlingHttpServletRequest batchRequest,
+            BatchRestModel.SubRequest subRequest) {
+        try {
+            return batchRequest.getResourceResolver().clone(null);
+        } catch (LoginException e) {
+            LOG.warn("Cannot clone resource resolver for batch request {}", subRequest.getPath(), e);
+            return null;
+        }
+    }
+
+    private JsonNode process(SlingHttpServletRequest batchRequest, BatchRestModel.SubRequest subRequest,
+            ResourceResolver resourceResolver) {
+        BatchSubRequest request = new BatchSubRequest(batchRequest, subRequest.getMethod(), subRequest.getPath(),
+                toParameters(subRequest.getParameters()), toBody(subRequest.getJson()));
+        BatchSubResponse response = new BatchSubResponse(batchRequest.getLocale());
+        try {
+            slingRequestProcessor.processRequest(request, response, resourceResolver);
+        } catch (ServletException | IOException e) {
+            LOG.warn("Cannot process batch request {} {}", subRequest.getMethod(), subRequest.getPath(), e);
+            return nonJsonResult(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+        return toResult(response);
+    }
+
+    /**
+     * Converts parameter values the same way as {@code RestClient} does for form data: arrays to multiple values,
+     * other values to strings, skipping nulls.
+     */
+    private static Map<String, String[]> toParameters(Map<String, Object> parameters) {
+        Map<String, String[]> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+            Object value = parameter.getValue();
+            if (value instanceof List) {
+                result.put(parameter.getKey(), ((List<?>) value).stream()
+                        .filter(Objects::nonNull)
+                        .map(String::valueOf)
+                        .toArray(String[]::new));
+            } else if (value != null) {
+                result.put(parameter.getKey(), new String[]{ String.valueOf(value) });
+            }
+        }
+        return result;
+    }
+
+    private static byte[] toBody(JsonNode json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return JSON_MAPPER.writeValueAsBytes(json);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot write JSON body of batch request", e);
+        }
+    }
+
+    private static JsonNode toResult(BatchSubResponse response) {
+        if (StringUtils.startsWithIgnoreCase(response.getContentType(), "application/json")) {
+            try {
+                JsonNode envelope = JSON_MAPPER.readTree(new InputStreamReader(
+                        new ByteArrayInputStream(response.getBody()), response.getBodyCharset()));
+                if (envelope != null) {
+                    return envelope;
+                }
+            } catch (IOException e) {
+                LOG.debug("Invalid JSON response of batch request", e);
+            }
+        }
+        return nonJsonResult(response.getStatusCode());
+    }
+
+    private static JsonNode nonJsonResult(int httpStatus) {
+        return JSON_MAPPER.createObjectNode().put("httpStatus", httpStatus);
+    }
+
+    private static boolean isSuccess(JsonNode result) {
+        return result != null && SUCCESS_STATUS.equals(result.path("status").asText());
+    }
+
+    /**
+     * Request of batch executed by thread pool. Either task or request thread starts it, the other one does not use
+     * its resource resolver then. Not started request is cancelled without interrupting, as interrupted repository I/O
+     * can break the repository.
+     */
+    private static final class ParallelRequest {
+
+        private final int index;
+        private final ResourceResolver resourceResolver;
+        private final AtomicBoolean started = new AtomicBoolean();
+        private Future<JsonNode> future;
+
+        private ParallelRequest(int index, ResourceResolver resourceResolver) {
+            this.index = index;
+            this.resourceResolver = resourceResolver;
+        }
+
+        private boolean start() {
+            return started.compareAndSet(false, true);
+        }
+
+        private void release() {
+            if (start()) {
+                if (future != null) {
+                    future.cancel(false);
+                }
+                resourceResolver.close();
+            }
+        }
+    }
+
+    @ObjectClassDefinition(name = "WebSight Rest Framework Batch Action")
+    public @interface Config {
+
+        @AttributeDefinition(
+                name = "Max requests",
+                description = "Maximum number of requests in one batch.")
+        int max_requests() default 50;
+
+        @AttributeDefinition(
+                name = "Parallel threads",
+                description = "Number of threads executing requests of batches sent with parallel option. " +
+                        "Every request executed in parallel uses own clone of batch request resource resolver.")
+        int parallel_threads() default 4;
+
+        @AttributeDefinition(
+                name = "Parallel queue size",
+                description = "Number of parallel requests waiting for thread, batch with requests over the limit " +
+                        "is rejected.")
+        int parallel_queue_size() default 200;
+
+        @AttributeDefinition(
+                name = "Parallel timeout",
+                description = "Time (in seconds) batch request waits for its parallel requests. Requests not " +
+                        "finished in time are reported with 504 HTTP status.")
+        int parallel_timeout_seconds() default 60;
+    }
+}
@@ -0,0 +1,123 @@
+package pl.ds.websight.rest.framework.rest;
+
+import com.fasterxml.jackson.annotation.JacksonInject;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.models.annotations.Model;
+import pl.ds.websight.rest.framework.Errors;
+import pl.ds.websight.rest.framework.Validatable;
+import pl.ds.websight.rest.framework.annotations.JsonRequestBody;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+@JsonRequestBody
+@Model(adaptables = SlingHttpServletRequest.class)
+public class BatchRestModel implements Validatable {
+
+    private static final String ACTION_EXTENSION = ".action";
+
+    @JacksonInject
+    private SlingHttpServletRequest request;
+
+    @JsonProperty
+    private List<SubRequest> requests;
+
+    @JsonProperty
+    private boolean parallel;
+
+    @JsonProperty
+    private boolean stopOnFailure;
+
+    public SlingHttpServletRequest getRequest() {
+        return request;
+    }
+
+    public List<SubRequest> getRequests() {
+        return requests != null ? requests : Collections.emptyList();
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public boolean isStopOnFailure() {
+        return stopOnFailure;
+    }
+
+    @Override
+    public Errors validate() {
+        Errors errors = Errors.createErrors();
+        if (request == null) {
+            errors.add("", null, "Batch has to be sent as application/json request body");
+        }
+        List<SubRequest> subRequests = getRequests();
+        if (subRequests.isEmpty()) {
+            errors.add("requests", null, "No requests in batch");
+        }
+        for (int i = 0; i < subRequests.size(); i++) {
+            SubRequest subRequest = subRequests.get(i);
+            String path = String.format("requests[%d]", i);
+            if (subRequest == null) {
+                errors.add(path, null, "Request cannot be null");
+                continue;
+            }
+            if (!StringUtils.startsWith(subRequest.getPath(), "/")
+                    || !StringUtils.endsWith(subRequest.getPath(), ACTION_EXTENSION)) {
+                errors.add(path + ".path", subRequest.getPath(), "Path has to be absolute path of action");
+            } else if (subRequest.getPath().equals(BatchRestAction.PATH)) {
+                errors.add(path + ".path", subRequest.getPath(), "Batch cannot contain batch requests");
+            }
+            if (!"GET".equals(subRequest.getMethod()) && !"POST".equals(subRequest.getMethod())) {
+                errors.add(path + ".method", subRequest.getMethod(), "Method has to be GET or POST");
+            } else if (subRequest.getJson() != null && !"POST".equals(subRequest.getMethod())) {
+                errors.add(path + ".json", null, "JSON body can be sent only by POST request");
+            }
+        }
+        return errors;
+    }
+
+    public static class SubRequest {
+
+        @JsonProperty
+        private String path;
+
+        @JsonProperty
+        private String method = "GET";
+
+        @JsonProperty
+        private Map<String, Object> parameters;
+
+        @JsonProperty
+        private JsonNode json;
+
+        /**
+         * @return path of action URL, e.g. {@code /apps/my-bundle/bin/my-action.action} or
+         * {@code /content/page.my-bundle.my-action.action}
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        /**
+         * @return request parameters, with string, number or boolean values or arrays of them
+         */
+        public Map<String, Object> getParameters() {
+            return parameters != null ? parameters : Collections.emptyMap();
+        }
+
+        /**
+         * @return JSON request body, {@code null} if parameters are sent as form
+         */
+        public JsonNode getJson() {
+            return json;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package pl.ds.websight.rest.framework.rest;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Request of single batch action, processed by Sling as if it was sent by client. Method, path, parameters and body
+ * are the ones of batch entry, other data (headers, user, locale) is taken from batch request. Attributes are not
+ * shared with batch request, so Sling creates new request data (e.g. parsed parameters) for sub request. GET
+ * parameters are sent in query string, POST parameters as form, unless JSON body is sent.
+ */
+class BatchSubRequest extends HttpServletRequestWrapper {
+
+    private static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded";
+    private static final String JSON_CONTENT_TYPE = "application/json";
+    private static final Set<String> BODY_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    // responses of sub requests are read by batch action, so they are not negotiated with client
+    private static final Set<String> NEGOTIATION_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        BODY_HEADERS.addAll(Arrays.asList("Content-Type", "Content-Length", "Transfer-Encoding", "Content-Encoding"));
+        NEGOTIATION_HEADERS.addAll(Arrays.asList("Accept", "Accept-Encoding", "If-None-Match"));
+    }
+
+    private final String method;
+    private final String path;
+    private final Map<String, String[]> parameters;
+    private final String queryString;
+    private final String contentType;
+    private final byte[] body;
+    private final Map<String, Object> attributes = new HashMap<>();
+    private ServletInputStream inputStream;
+    private BufferedReader reader;
+
+    BatchSubRequest(HttpServletRequest batchRequest, String method, String path, Map<String, String[]> parameters,
+            byte[] jsonBody) {
+        super(batchRequest);
+        this.method = method;
+        this.path = path;
+        this.parameters = Collections.unmodifiableMap(new LinkedHashMap<>(parameters));
+        String encodedParameters = encode(parameters);
+        boolean formBody = "POST".equals(method) && jsonBody == null;
+        this.queryString = formBody || encodedParameters.isEmpty() ? null : encodedParameters;
+        if (jsonBody != null) {
+            this.contentType = JSON_CONTENT_TYPE;
+            this.body = jsonBody;
+        } else if (formBody) {
+            this.contentType = FORM_CONTENT_TYPE;
+            this.body = encodedParameters.getBytes(StandardCharsets.UTF_8);
+        } else {
+            this.contentType = null;
+            this.body = new byte[0];
+        }
+    }
+
+    private static String encode(Map<String, String[]> parameters) {
+        return parameters.entrySet().stream()
+                .flatMap(parameter -> Arrays.stream(parameter.getValue())
+                        .map(value -> encode(parameter.getKey()) + '=' + encode(value)))
+                .collect(Collectors.joining("&"));
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getPathInfo() {
+        return path;
+    }
+
+    @Override
+    public String getServletPath() {
+        return "";
+    }
+
+    @Override
+    public String getRequestURI() {
+        return getContextPath() + path;
+    }
+
+    @Override
+    public StringBuffer getRequestURL() {
+        StringBuffer batchUrl = super.getRequestURL();
+        String batchUri = super.getRequestURI();
+        return new StringBuffer(batchUrl.substring(0, batchUrl.length() - batchUri.length())).append(getRequestURI());
+    }
+
+    /**
+     * Sub request is processed in batch action thread, asynchronous rest actions wait for result in that thread.
+     */
+    @Override
+    public boolean isAsyncSupported() {
+        return false;
+    }
+
+    @Override
+    public AsyncContext startAsync() {
+        throw new IllegalStateException("Batch request does not support asynchronous processing");
+    }
+
+    @Override
+    public AsyncContext startAsync(ServletRequest request, ServletResponse response) {
+        throw new IllegalStateException("Batch request does not support asynchronous processing");
+    }
+
+    @Override
+    public String getQueryString() {
+        return queryString;
+    }
+
+    @Override
+    public String getParameter(String name) {
+        String[] values = parameters.get(name);
+        return values != null && values.length > 0 ? values[0] : null;
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        return parameters;
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(parameters.keySet());
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        return parameters.get(name);
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return contentType != null ? StandardCharsets.UTF_8.name() : null;
+    }
+
+    @Override
+    public void setCharacterEncoding(String encoding) {
+        // body is always UTF-8
+    }
+
+    @Override
+    public int getContentLength() {
+        return body.length;
+    }
+
+    @Override
+    public long getContentLengthLong() {
+        return body.length;
+    }
+
+    @Override
+    public String getHeader(String name) {
+        if (NEGOTIATION_HEADERS.contains(name)) {
+            return null;
+        }
+        if (!BODY_HEADERS.contains(name)) {
+            return super.getHeader(name);
+        }
+        if ("Content-Type".equalsIgnoreCase(name)) {
+            return contentType;
+        }
+        if ("Content-Length".equalsIgnoreCase(name) && body.length > 0) {
+            return String.valueOf(body.length);
+        }
+        return null;
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+        if (BODY_HEADERS.contains(name) || NEGOTIATION_HEADERS.contains(name)) {
+            String value = getHeader(name);
+            return Collections.enumeration(value != null ? Collections.singleton(value) : Collections.emptySet());
+        }
+        return super.getHeaders(name);
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+        if (reader != null) {
+            throw new IllegalStateException("Reader already obtained");
+        }
+        if (inputStream == null) {
+            inputStream = createInputStream();
+        }
+        return inputStream;
+    }
+
+    private ServletInputStream createInputStream() {
+        ByteArrayInputStream input = new ByteArrayInputStream(body);
+        return new ServletInputStream() {
+
+            @Override
+            public int read() {
+                return input.read();
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                return input.read(buffer, offset, length);
+            }
+
+            @Override
+            public boolean isFinished() {
+                return input.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                throw new UnsupportedOperationException("Batch request body is read synchronously");
+            }
+        };
+    }
+
+    @Override
+    public BufferedReader getReader() {
+        if (reader == null) {
+            if (inputStream != null) {
+                throw new IllegalStateException("Input stream already obtained");
+            }
+            reader = new BufferedReader(new InputStreamReader(createInputStream(), StandardCharsets.UTF_8));
+        }
+        return reader;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        return Collections.enumeration(attributes.keySet());
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (value == null) {
+            attributes.remove(name);
+        } else {
+            attributes.put(name, value);
+        }
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+}
@@ -0,0 +1,310 @@
+package pl.ds.websight.rest.framework.rest;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+
+/**
+ * Response of single batch action, buffered in memory, without underlying servlet response. Only status, content type and body are kept for batch result;
+ * headers and cookies set by action are dropped, so they do not affect batch response.
+ */
+class BatchSubResponse implements HttpServletResponse {
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final Locale locale;
+    private int status = HttpServletResponse.SC_OK;
+    private String contentType;
+    private String characterEncoding;
+    private final ServletOutputStream bodyOutput = new ServletOutputStream() {
+
+        @Override
+        public void write(int b) {
+            if (!committed) {
+                body.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            if (!committed) {
+                body.write(bytes, offset, length);
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            throw new UnsupportedOperationException("Batch response body is written synchronously");
+        }
+    };
+    private boolean outputStreamObtained;
+    private PrintWriter writer;
+    private boolean committed;
+
+    BatchSubResponse(Locale locale) {
+        this.locale = locale;
+    }
+
+    int getStatusCode() {
+        return status;
+    }
+
+    /**
+     * @return body bytes, with pending writer output flushed
+     */
+    byte[] getBody() {
+        if (writer != null) {
+            writer.flush();
+        }
+        return body.toByteArray();
+    }
+
+    Charset getBodyCharset() {
+        return characterEncoding != null && Charset.isSupported(characterEncoding)
+                ? Charset.forName(characterEncoding)
+                : StandardCharsets.UTF_8;
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public void setStatus(int status) {
+        if (!committed) {
+            this.status = status;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void setStatus(int status, String message) {
+        setStatus(status);
+    }
+
+    @Override
+    public void sendError(int status) {
+        sendError(status, null);
+    }
+
+    @Override
+    public void sendError(int status, String message) {
+        resetBuffer();
+        setStatus(status);
+        committed = true;
+    }
+
+    @Override
+    public void sendRedirect(String location) {
+        resetBuffer();
+        setStatus(HttpServletResponse.SC_FOUND);
+        committed = true;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public void setContentType(String contentType) {
+        if (committed) {
+            return;
+        }
+        this.contentType = contentType;
+        if (contentType != null) {
+            int charsetStart = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+            if (charsetStart >= 0) {
+                characterEncoding = contentType.substring(charsetStart + "charset=".length()).trim();
+            }
+        }
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return characterEncoding != null ? characterEncoding : StandardCharsets.ISO_8859_1.name();
+    }
+
+    @Override
+    public void setCharacterEncoding(String characterEncoding) {
+        if (!committed && writer == null) {
+            this.characterEncoding = characterEncoding;
+        }
+    }
+
+    @Override
+    public void setContentLength(int length) {
+        // length of buffered body is known
+    }
+
+    @Override
+    public void setContentLengthLong(long length) {
+        // length of buffered body is known
+    }
+
+    @Override
+    public void setLocale(Locale locale) {
+        // locale of batch response is not changed
+    }
+
+    @Override
+    public Locale getLocale() {
+        return locale;
+    }
+
+    @Override
+    public String encodeURL(String url) {
+        return url;
+    }
+
+    @Override
+    public String encodeRedirectURL(String url) {
+        return url;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public String encodeUrl(String url) {
+        return url;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public String encodeRedirectUrl(String url) {
+        return url;
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+        // dropped
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+        return false;
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return null;
+    }
+
+    @Override
+    public Collection<String> getHeaders(String name) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Collection<String> getHeaderNames() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if ("Content-Type".equalsIgnoreCase(name)) {
+            setContentType(value);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        setHeader(name, value);
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        // dropped
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        // dropped
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        // dropped
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        // dropped
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        if (writer != null) {
+            throw new IllegalStateException("Writer already obtained");
+        }
+        outputStreamObtained = true;
+        return bodyOutput;
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+        if (writer == null) {
+            if (outputStreamObtained) {
+                throw new IllegalStateException("Output stream already obtained");
+            }
+            writer = new PrintWriter(new OutputStreamWriter(bodyOutput, getBodyCharset()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    @Override
+    public int getBufferSize() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void setBufferSize(int size) {
+        // whole body is buffered
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    @Override
+    public void reset() {
+        resetBuffer();
+        status = HttpServletResponse.SC_OK;
+        contentType = null;
+        if (writer == null) {
+            characterEncoding = null;
+        }
+    }
+
+    @Override
+    public void resetBuffer() {
+        if (committed) {
+            throw new IllegalStateException("Response already committed");
+        }
+        if (writer != null) {
+            writer.flush();
+        }
+        body.reset();
+    }
+}
@@ -0,0 +1,35 @@
+package pl.ds.websight.rest.framework.rest;
+
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import pl.ds.websight.rest.framework.RestAction;
+import pl.ds.websight.rest.framework.RestActionResult;
+import pl.ds.websight.rest.framework.annotations.SlingAction;
+import pl.ds.websight.rest.framework.impl.JobStatus;
+import pl.ds.websight.rest.framework.impl.RestActionJob;
+import pl.ds.websight.rest.framework.impl.RestActionJobManager;
+
+/**
+ * Cancels job submitted by {@link pl.ds.websight.rest.framework.JobRestAction}. Job not started yet is not executed,
+ * started job is expected to stop (see {@link pl.ds.websight.rest.framework.JobContext#isCancelled()}), its thread is
+ * not interrupted.
+ */
+@Component
+@SlingAction
+public class CancelJobRestAction implements RestAction<JobRestModel, JobStatus> {
+
+    @Reference
+    private RestActionJobManager jobManager;
+
+    @Override
+    public RestActionResult<JobStatus> perform(JobRestModel model) {
+        RestActionJob job = jobManager.getJob(model.getId(), model.getRequest());
+        if (job == null) {
+            return JobResultRestAction.jobNotFound(model.getId());
+        }
+        if (!job.cancel()) {
+            return RestActionResult.failure("Job already finished", null, job.getStatus());
+        }
+        return RestActionResult.success("Job cancelled", null, job.getStatus());
+    }
+}
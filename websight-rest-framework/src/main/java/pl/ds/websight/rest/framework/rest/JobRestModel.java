@@ -0,0 +1,34 @@
+package pl.ds.websight.rest.framework.rest;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.models.annotations.Model;
+import org.apache.sling.models.annotations.injectorspecific.Self;
+import pl.ds.websight.rest.framework.Errors;
+import pl.ds.websight.rest.framework.Validatable;
+
+@Model(adaptables = SlingHttpServletRequest.class)
+public class JobRestModel implements Validatable {
+
+    private static final String ID_PARAMETER = "id";
+
+    @Self
+    private SlingHttpServletRequest request;
+
+    public SlingHttpServletRequest getRequest() {
+        return request;
+    }
+
+    public String getId() {
+        return request.getParameter(ID_PARAMETER);
+    }
+
+    @Override
+    public Errors validate() {
+        Errors errors = Errors.createErrors();
+        if (StringUtils.isBlank(getId())) {
+            errors.add(ID_PARAMETER, getId(), "Job id is required");
+        }
+        return errors;
+    }
+}
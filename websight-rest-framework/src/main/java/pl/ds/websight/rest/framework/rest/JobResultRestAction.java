@@ -0,0 +1,48 @@
+package pl.ds.websight.rest.framework.rest;
+
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import pl.ds.websight.rest.framework.RestAction;
+import pl.ds.websight.rest.framework.RestActionResult;
+import pl.ds.websight.rest.framework.annotations.SlingAction;
+import pl.ds.websight.rest.framework.impl.JobStatus;
+import pl.ds.websight.rest.framework.impl.RestActionJob;
+import pl.ds.websight.rest.framework.impl.RestActionJobManager;
+
+/**
+ * Returns result of job submitted by {@link pl.ds.websight.rest.framework.JobRestAction}, the same way as it would be
+ * returned by action performed synchronously. FAILURE result with job status entity is returned if job did not
+ * succeed (yet).
+ */
+@Component
+@SlingAction(SlingAction.HttpMethod.GET)
+public class JobResultRestAction implements RestAction<JobRestModel, Object> {
+
+    @Reference
+    private RestActionJobManager jobManager;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public RestActionResult<Object> perform(JobRestModel model) {
+        RestActionJob job = jobManager.getJob(model.getId(), model.getRequest());
+        if (job == null) {
+            return jobNotFound(model.getId());
+        }
+        JobStatus status = job.getStatus();
+        switch (status.getState()) {
+            case SUCCEEDED:
+                return (RestActionResult<Object>) job.getResult();
+            case FAILED:
+                return RestActionResult.failure("Job failed", job.getFailure().getMessage(), status);
+            case CANCELLED:
+                return RestActionResult.failure("Job cancelled", null, status);
+            default:
+                return RestActionResult.failure("Job not finished", null, status);
+        }
+    }
+
+    static <R> RestActionResult<R> jobNotFound(String id) {
+        return RestActionResult.failure("Job not found",
+                String.format("Job %s does not exist, was submitted by other user or its result expired", id));
+    }
+}
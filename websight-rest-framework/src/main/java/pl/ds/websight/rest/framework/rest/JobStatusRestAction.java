@@ -0,0 +1,30 @@
+package pl.ds.websight.rest.framework.rest;
+
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import pl.ds.websight.rest.framework.RestAction;
+import pl.ds.websight.rest.framework.RestActionResult;
+import pl.ds.websight.rest.framework.annotations.SlingAction;
+import pl.ds.websight.rest.framework.impl.JobStatus;
+import pl.ds.websight.rest.framework.impl.RestActionJob;
+import pl.ds.websight.rest.framework.impl.RestActionJobManager;
+
+/**
+ * Returns state and progress of job submitted by {@link pl.ds.websight.rest.framework.JobRestAction}.
+ */
+@Component
+@SlingAction(SlingAction.HttpMethod.GET)
+public class JobStatusRestAction implements RestAction<JobRestModel, JobStatus> {
+
+    @Reference
+    private RestActionJobManager jobManager;
+
+    @Override
+    public RestActionResult<JobStatus> perform(JobRestModel model) {
+        RestActionJob job = jobManager.getJob(model.getId(), model.getRequest());
+        if (job == null) {
+            return JobResultRestAction.jobNotFound(model.getId());
+        }
+        return RestActionResult.success(job.getStatus());
+    }
+}
@@ -0,0 +1,29 @@
+package pl.ds.websight.rest.framework.rest;
+
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import pl.ds.websight.rest.framework.RestAction;
+import pl.ds.websight.rest.framework.RestActionResult;
+import pl.ds.websight.rest.framework.annotations.SlingAction;
+import pl.ds.websight.rest.framework.impl.ActionMetrics;
+import pl.ds.websight.rest.framework.impl.RestActionMetrics;
+
+import java.util.List;
+
+/**
+ * Returns metrics of rest actions requested since framework start: request counts by result status and by response
+ * format, in-flight requests and latency percentiles (in milliseconds), keyed by action class ({@code action} field).
+ * The same metrics are available as {@code pl.ds.websight.rest:type=ActionMetrics} MBeans.
+ */
+@Component
+@SlingAction(SlingAction.HttpMethod.GET)
+public class MetricsRestAction implements RestAction<Void, List<ActionMetrics>> {
+
+    @Reference
+    private RestActionMetrics restActionMetrics;
+
+    @Override
+    public RestActionResult<List<ActionMetrics>> perform(Void model) {
+        return RestActionResult.success(restActionMetrics.getAll());
+    }
+}
@@ -0,0 +1,46 @@
+package pl.ds.websight.rest.framework.rest;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import pl.ds.websight.rest.framework.RestAction;
+import pl.ds.websight.rest.framework.RestActionResult;
+import pl.ds.websight.rest.framework.annotations.SlingAction;
+import pl.ds.websight.rest.framework.impl.ResourceWatcher;
+import pl.ds.websight.rest.framework.impl.RestResponseHandler;
+
+/**
+ * Opens stream of server-sent events ({@code text/event-stream}) notifying about changes of resources at given paths
+ * ({@code path} parameters) and under given subtrees ({@code prefix} parameters), instead of polling them. Every
+ * {@code change} event lists watched paths and prefixes which changed, coalesced for short time. Reconnecting client
+ * sends id of the last received event in {@code Last-Event-ID} header (or {@code lastEventId} parameter) to get changes
+ * it missed. Watched resources have to be readable by the user. Requests over the limit of open connections are
+ * responded with {@code 503} status.
+ *
+ * @see ResourceWatcher
+ */
+@Component
+@SlingAction(SlingAction.HttpMethod.GET)
+public class WatchRestAction implements RestAction<WatchRestModel, Void> {
+
+    @Reference
+    private ResourceWatcher resourceWatcher;
+
+    @Reference
+    private RestResponseHandler restResponseHandler;
+
+    @Override
+    public RestActionResult<Void> perform(WatchRestModel model) {
+        SlingHttpServletRequest request = model.getRequest();
+        if (!request.isAsyncSupported()) {
+            return RestActionResult.failure("Watch not supported",
+                    "Request does not support asynchronous processing");
+        }
+        return RestActionResult.freeFormResponse(response -> {
+            if (!resourceWatcher.watch(request, response, model.getPaths(), model.getPrefixes(),
+                    model.getLastEventId())) {
+                restResponseHandler.handleOverloaded(request, response, resourceWatcher.getRetryAfterSeconds());
+            }
+        });
+    }
+}
@@ -0,0 +1,80 @@
+package pl.ds.websight.rest.framework.rest;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.models.annotations.Model;
+import org.apache.sling.models.annotations.injectorspecific.Self;
+import pl.ds.websight.rest.framework.Errors;
+import pl.ds.websight.rest.framework.Validatable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@Model(adaptables = SlingHttpServletRequest.class)
+public class WatchRestModel implements Validatable {
+
+    private static final String PATH_PARAMETER = "path";
+    private static final String PREFIX_PARAMETER = "prefix";
+    private static final String LAST_EVENT_ID_PARAMETER = "lastEventId";
+    private static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
+    @Self
+    private SlingHttpServletRequest request;
+
+    public SlingHttpServletRequest getRequest() {
+        return request;
+    }
+
+    public List<String> getPaths() {
+        return getValues(PATH_PARAMETER);
+    }
+
+    public List<String> getPrefixes() {
+        return getValues(PREFIX_PARAMETER);
+    }
+
+    /**
+     * @return id of the last event received by reconnecting client, sent in header (by browser's {@code EventSource})
+     * or parameter
+     */
+    public String getLastEventId() {
+        String lastEventId = request.getHeader(LAST_EVENT_ID_HEADER);
+        return StringUtils.isNotBlank(lastEventId) ? lastEventId : request.getParameter(LAST_EVENT_ID_PARAMETER);
+    }
+
+    private List<String> getValues(String parameter) {
+        String[] values = request.getParameterValues(parameter);
+        if (values == null) {
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<>(values.length);
+        for (String value : values) {
+            result.add(value.length() > 1 ? StringUtils.removeEnd(value, "/") : value);
+        }
+        return result;
+    }
+
+    @Override
+    public Errors validate() {
+        Errors errors = Errors.createErrors();
+        if (getPaths().isEmpty() && getPrefixes().isEmpty()) {
+            errors.add(PATH_PARAMETER, null, "At least one path or prefix has to be watched");
+        }
+        validateReadable(errors, PATH_PARAMETER, getPaths());
+        validateReadable(errors, PREFIX_PARAMETER, getPrefixes());
+        return errors;
+    }
+
+    private void validateReadable(Errors errors, String parameter, List<String> paths) {
+        ResourceResolver resourceResolver = request.getResourceResolver();
+        for (String path : paths) {
+            if (!StringUtils.startsWith(path, "/")) {
+                errors.add(parameter, path, "Path has to be absolute");
+            } else if (resourceResolver.getResource(path) == null) {
+                errors.add(parameter, path, "Resource not found");
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.junit.jupiter.api.Test;
+import pl.ds.websight.rest.framework.RestActionResult;
+import pl.ds.websight.rest.framework.impl.ActionMetrics.Outcome;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ActionMetricsTest {
+
+    @Test
+    void shouldCountRequestsByOutcome() {
+        ActionMetrics cut = new ActionMetrics("test.HelloRestAction");
+
+        cut.start().stop(Outcome.SUCCESS);
+        cut.start().stop(Outcome.of(RestActionResult.Status.FAILURE));
+        cut.start().stop(Outcome.VALIDATION_FAILURE);
+        ActionMetrics.Recording inFlight = cut.start();
+
+        assertEquals(1, cut.getSuccessCount());
+        assertEquals(1, cut.getFailureCount());
+        assertEquals(1, cut.getValidationFailureCount());
+        assertEquals(0, cut.getErrorCount());
+        assertEquals(3, cut.getRequestCount());
+        assertEquals(1, cut.getInFlight());
+
+        inFlight.stop(Outcome.ERROR);
+        inFlight.stop(Outcome.ERROR);
+
+        assertEquals(1, cut.getErrorCount());
+        assertEquals(0, cut.getInFlight());
+    }
+
+    @Test
+    void shouldCountRequestsByResponseFormat() {
+        ActionMetrics cut = new ActionMetrics("test.HelloRestAction");
+
+        cut.countFormat(ResponseFormat.JSON);
+        cut.countFormat(ResponseFormat.SMILE);
+        cut.countFormat(ResponseFormat.SMILE);
+
+        assertEquals(1, cut.getJsonResponseCount());
+        assertEquals(2, cut.getSmileResponseCount());
+        assertEquals(0, cut.getCborResponseCount());
+    }
+
+    @Test
+    void shouldReportLatencyPercentilesWithBoundedError() {
+        LatencyHistogram cut = new LatencyHistogram();
+        for (long millis = 1; millis <= 100; millis++) {
+            cut.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        assertWithinBucketError(50_000, cut.getPercentile(0.5));
+        assertWithinBucketError(90_000, cut.getPercentile(0.9));
+        assertWithinBucketError(99_000, cut.getPercentile(0.99));
+        assertEquals(100_000, cut.getMax());
+    }
+
+    @Test
+    void shouldMapEveryValueToBucketContainingIt() {
+        for (long micros = 0; micros < 100_000; micros++) {
+            int bucket = LatencyHistogram.bucket(micros);
+            assertTrue(LatencyHistogram.upperBound(bucket) >= micros);
+            assertTrue(bucket == 0 || LatencyHistogram.upperBound(bucket - 1) < micros);
+        }
+    }
+
+    private static void assertWithinBucketError(long expectedMicros, long actualMicros) {
+        assertTrue(actualMicros >= expectedMicros && actualMicros <= expectedMicros * 1.125,
+                "Expected about " + expectedMicros + " but was " + actualMicros);
+    }
+}
@@ -0,0 +1,38 @@
+package pl.ds.websight.rest.framework.impl;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Servlet output stream of mocked responses, keeping written body.
+ */
+class CapturingServletOutputStream extends ServletOutputStream {
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    byte[] toByteArray() {
+        return body.toByteArray();
+    }
+
+    @Override
+    public String toString() {
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void write(int b) {
+        body.write(b);
+    }
+
+    @Override
+    public boolean isReady() {
+        return true;
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+        // blocking stream
+    }
+}
@@ -0,0 +1,117 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.Annotation;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrencyLimiterTest {
+
+    private static final long LATENCY_NANOS = 10_000_000;
+
+    private final ConcurrencyLimiter cut = new ConcurrencyLimiter();
+
+    @Test
+    void shouldRejectRequestsOverLimit() {
+        cut.activate(config(true, 2));
+
+        ConcurrencyLimiter.Permit first = cut.tryAcquire(null);
+        ConcurrencyLimiter.Permit second = cut.tryAcquire(null);
+
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(cut.tryAcquire(null));
+        first.release();
+        first.release();
+        assertNotNull(cut.tryAcquire(null));
+        assertNull(cut.tryAcquire(null));
+    }
+
+    @Test
+    void shouldLimitActionWhenLimiterIsDisabled() {
+        cut.activate(config(false, 2));
+        Semaphore actionPermits = new Semaphore(1);
+
+        ConcurrencyLimiter.Permit permit = cut.tryAcquire(actionPermits);
+
+        assertNotNull(permit);
+        assertNull(cut.tryAcquire(actionPermits));
+        permit.release();
+        assertNotNull(cut.tryAcquire(actionPermits));
+    }
+
+    @Test
+    void shouldReturnActionPermitWhenLimitIsReached() {
+        cut.activate(config(true, 1));
+        Semaphore actionPermits = new Semaphore(5);
+        cut.tryAcquire(null);
+
+        assertNull(cut.tryAcquire(actionPermits));
+        assertEquals(5, actionPermits.availablePermits());
+    }
+
+    @Test
+    void shouldIncreaseLimitWhileLatencyIsStable() {
+        cut.activate(config(true, 4));
+
+        for (int i = 0; i < 20; i++) {
+            cut.onSample(LATENCY_NANOS, cut.getLimit());
+        }
+
+        assertTrue(cut.getLimit() > 4, "Limit: " + cut.getLimit());
+    }
+
+    @Test
+    void shouldDecreaseLimitWhenLatencyRises() {
+        cut.activate(config(true, 50));
+        for (int i = 0; i < 20; i++) {
+            cut.onSample(LATENCY_NANOS, 0);
+        }
+
+        for (int i = 0; i < 20; i++) {
+            cut.onSample(LATENCY_NANOS * 10, cut.getLimit());
+        }
+
+        assertTrue(cut.getLimit() < 50, "Limit: " + cut.getLimit());
+    }
+
+    static ConcurrencyLimiter.Config config(boolean enabled, int initialLimit) {
+        return new ConcurrencyLimiter.Config() {
+
+            @Override
+            public boolean enabled() {
+                return enabled;
+            }
+
+            @Override
+            public int initial_limit() {
+                return initialLimit;
+            }
+
+            @Override
+            public int min_limit() {
+                return 1;
+            }
+
+            @Override
+            public int max_limit() {
+                return 100;
+            }
+
+            @Override
+            public int retry_after_seconds() {
+                return 3;
+            }
+
+            @Override
+            public Class<? extends Annotation> annotationType() {
+                return ConcurrencyLimiter.Config.class;
+            }
+        };
+    }
+}
@@ -0,0 +1,18 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.models.annotations.Model;
+import pl.ds.websight.request.parameters.support.annotations.RequestParameter;
+import pl.ds.websight.rest.framework.annotations.GeneratedBinder;
+
+@GeneratedBinder
+@Model(adaptables = SlingHttpServletRequest.class)
+public class HelloBinderModel {
+
+    @RequestParameter
+    String name;
+
+    public String getName() {
+        return name;
+    }
+}
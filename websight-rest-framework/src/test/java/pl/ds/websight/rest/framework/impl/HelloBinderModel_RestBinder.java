@@ -0,0 +1,17 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import pl.ds.websight.rest.framework.RequestBinder;
+
+/**
+ * Binder as generated by websight-rest-annotation-processor for {@link HelloBinderModel}.
+ */
+public final class HelloBinderModel_RestBinder implements RequestBinder<HelloBinderModel> {
+
+    @Override
+    public HelloBinderModel bind(SlingHttpServletRequest request) {
+        HelloBinderModel model = new HelloBinderModel();
+        model.name = request.getParameter("name");
+        return model;
+    }
+}
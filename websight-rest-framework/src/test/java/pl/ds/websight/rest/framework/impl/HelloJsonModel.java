@@ -0,0 +1,58 @@
+package pl.ds.websight.rest.framework.impl;
+
+import com.fasterxml.jackson.annotation.JacksonInject;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.models.annotations.Model;
+import pl.ds.websight.rest.framework.annotations.JsonRequestBody;
+
+import java.util.List;
+
+@JsonRequestBody
+@Model(adaptables = SlingHttpServletRequest.class)
+public class HelloJsonModel {
+
+    @JacksonInject
+    private SlingHttpServletRequest request;
+
+    @JsonProperty
+    private String name;
+
+    @JsonProperty
+    private List<Property> properties;
+
+    private String notBound;
+
+    public SlingHttpServletRequest getRequest() {
+        return request;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<Property> getProperties() {
+        return properties;
+    }
+
+    public String getNotBound() {
+        return notBound;
+    }
+
+    public static class Property {
+
+        @JsonProperty
+        private String name;
+
+        @JsonProperty
+        private Long value;
+
+        public String getName() {
+            return name;
+        }
+
+        public Long getValue() {
+            return value;
+        }
+    }
+}
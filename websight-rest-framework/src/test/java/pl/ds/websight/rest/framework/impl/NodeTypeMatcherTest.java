@@ -0,0 +1,149 @@
+package pl.ds.websight.rest.framework.impl;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Workspace;
+import javax.jcr.nodetype.NodeType;
+import javax.jcr.nodetype.NodeTypeManager;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class NodeTypeMatcherTest {
+
+    private static final String[] FOLDER_TYPES = { "nt:folder" };
+
+    @Mock
+    private SlingHttpServletRequest request;
+
+    @Mock
+    private Resource resource;
+
+    @Mock
+    private ResourceResolver resourceResolver;
+
+    @Mock
+    private Session session;
+
+    @Mock
+    private Workspace workspace;
+
+    @Mock
+    private NodeTypeManager nodeTypeManager;
+
+    private final Map<String, Object> requestAttributes = new HashMap<>();
+
+    private final NodeTypeMatcher cut = new NodeTypeMatcher();
+
+    @BeforeEach
+    void setUp() throws RepositoryException {
+        lenient().when(request.getResource()).thenReturn(resource);
+        lenient().when(request.getAttribute(anyString()))
+                .thenAnswer(invocation -> requestAttributes.get(invocation.<String>getArgument(0)));
+        lenient().doAnswer(invocation -> requestAttributes.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(request).setAttribute(anyString(), any());
+        lenient().when(resource.getResourceResolver()).thenReturn(resourceResolver);
+        lenient().when(resourceResolver.adaptTo(Session.class)).thenReturn(session);
+        lenient().when(session.getWorkspace()).thenReturn(workspace);
+        lenient().when(workspace.getNodeTypeManager()).thenReturn(nodeTypeManager);
+        NodeType slingFolder = nodeType("sling:Folder", "nt:folder");
+        NodeType unstructured = nodeType("nt:unstructured");
+        NodeType versionable = nodeType("mix:versionable", "mix:referenceable");
+        lenient().when(nodeTypeManager.getNodeType("sling:Folder")).thenReturn(slingFolder);
+        lenient().when(nodeTypeManager.getNodeType("nt:unstructured")).thenReturn(unstructured);
+        lenient().when(nodeTypeManager.getNodeType("mix:versionable")).thenReturn(versionable);
+    }
+
+    @Test
+    void shouldMatchSupertypeOfPrimaryType() {
+        givenResource(ImmutableMap.of("jcr:primaryType", "sling:Folder"));
+
+        assertTrue(cut.matchesAny(request, FOLDER_TYPES));
+        assertFalse(cut.matchesAny(request, new String[] { "nt:unstructured" }));
+    }
+
+    @Test
+    void shouldMatchMixinType() {
+        givenResource(ImmutableMap.of("jcr:primaryType", "nt:unstructured", "jcr:mixinTypes",
+                new String[] { "mix:versionable" }));
+
+        assertTrue(cut.matchesAny(request, new String[] { "nt:folder", "mix:referenceable" }));
+    }
+
+    @Test
+    void shouldQueryNodeTypeManagerOnceForSameEffectiveType() throws RepositoryException {
+        givenResource(ImmutableMap.of("jcr:primaryType", "sling:Folder"));
+
+        assertTrue(cut.matchesAny(request, FOLDER_TYPES));
+        requestAttributes.clear();
+        assertTrue(cut.matchesAny(request, FOLDER_TYPES));
+
+        verify(nodeTypeManager, times(1)).getNodeType(anyString());
+    }
+
+    @Test
+    void shouldReadResourceNodeTypesOncePerRequest() {
+        givenResource(ImmutableMap.of("jcr:primaryType", "sling:Folder"));
+
+        assertFalse(cut.matchesAny(request, new String[] { "nt:unstructured" }));
+        assertTrue(cut.matchesAny(request, FOLDER_TYPES));
+
+        verify(resource, times(1)).getValueMap();
+    }
+
+    @Test
+    void shouldQueryNodeTypeManagerAgainAfterNodeTypesChange() throws RepositoryException {
+        givenResource(ImmutableMap.of("jcr:primaryType", "sling:Folder"));
+
+        cut.matchesAny(request, FOLDER_TYPES);
+        cut.onChange(Collections.emptyList());
+        requestAttributes.clear();
+        cut.matchesAny(request, FOLDER_TYPES);
+
+        verify(nodeTypeManager, times(2)).getNodeType("sling:Folder");
+    }
+
+    @Test
+    void shouldNotMatchResourceWithoutPrimaryType() {
+        givenResource(Collections.emptyMap());
+
+        assertFalse(cut.matchesAny(request, FOLDER_TYPES));
+    }
+
+    private void givenResource(Map<String, Object> properties) {
+        when(resource.getValueMap()).thenReturn(new ValueMapDecorator(properties));
+    }
+
+    private static NodeType nodeType(String name, String... supertypes) {
+        NodeType nodeType = mock(NodeType.class);
+        lenient().when(nodeType.isNodeType(anyString())).thenReturn(false);
+        lenient().when(nodeType.isNodeType(name)).thenReturn(true);
+        for (String supertype : supertypes) {
+            lenient().when(nodeType.isNodeType(supertype)).thenReturn(true);
+        }
+        return nodeType;
+    }
+}
@@ -0,0 +1,193 @@
+package pl.ds.websight.rest.framework.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pl.ds.websight.rest.framework.Errors;
+import pl.ds.websight.rest.framework.PageRequest;
+import pl.ds.websight.rest.framework.RestActionResult;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class PagedResultTest {
+
+    private static final String ACTION_URI = "/apps/test/bin/list.action";
+
+    @Mock
+    private SlingHttpServletRequest request;
+
+    @Mock
+    private SlingHttpServletResponse response;
+
+    private final Map<String, String> parameters = new HashMap<>();
+
+    private CapturingServletOutputStream output;
+
+    private final PageCursors pageCursors = new PageCursors();
+
+    private final RestResponseHandler cut = new RestResponseHandler();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        lenient().when(response.getOutputStream()).thenAnswer(invocation -> output);
+        lenient().when(request.getHeader("Accept")).thenReturn(null);
+        lenient().when(request.getRequestURI()).thenReturn(ACTION_URI);
+        lenient().when(request.getParameter(anyString()))
+                .thenAnswer(invocation -> parameters.get(invocation.<String>getArgument(0)));
+        lenient().when(request.adaptTo(PageRequest.class))
+                .thenAnswer(invocation -> new PageRequestModel(request, pageCursors));
+    }
+
+    @Test
+    void shouldPullOnlyItemsOfRequestedPage() throws IOException {
+        parameters.put(PageRequest.LIMIT_PARAMETER, "2");
+        CountingIterator items = new CountingIterator(5);
+
+        JsonNode page = handle(RestActionResult.page(items, PageRequest.of(request)));
+
+        assertEquals("[0,1]", page.get("entity").toString());
+        assertTrue(page.hasNonNull("nextCursor"));
+        assertEquals(2, items.pulled.get());
+    }
+
+    @Test
+    void shouldSkipItemsOfPreviousPagesByCursor() throws IOException {
+        parameters.put(PageRequest.LIMIT_PARAMETER, "2");
+        String cursor = handle(RestActionResult.page(new CountingIterator(5), PageRequest.of(request)))
+                .get("nextCursor").asText();
+        parameters.put(PageRequest.CURSOR_PARAMETER, cursor);
+        JsonNode second = handle(RestActionResult.page(new CountingIterator(5), PageRequest.of(request)));
+        parameters.put(PageRequest.CURSOR_PARAMETER, second.get("nextCursor").asText());
+        JsonNode last = handle(RestActionResult.page(new CountingIterator(5), PageRequest.of(request)));
+
+        assertEquals("[2,3]", second.get("entity").toString());
+        assertEquals("[4]", last.get("entity").toString());
+        assertFalse(last.has("nextCursor"));
+    }
+
+    @Test
+    void shouldContinueAfterKeyOfLastItem() throws IOException {
+        parameters.put(PageRequest.LIMIT_PARAMETER, "3");
+        handle(RestActionResult.page(new CountingIterator(10), PageRequest.of(request), item -> "/content/" + item));
+        parameters.put(PageRequest.CURSOR_PARAMETER, parse().get("nextCursor").asText());
+
+        PageRequest next = PageRequest.of(request);
+
+        assertEquals("/content/2", next.getAfter());
+        assertEquals(3, next.getOffset());
+        assertTrue(next.validate().isEmpty());
+    }
+
+    @Test
+    void shouldRejectForgedAndForeignCursors() throws IOException {
+        handle(RestActionResult.page(new CountingIterator(30), PageRequest.of(request)));
+        String cursor = parse().get("nextCursor").asText();
+        String forged = "MA" + cursor.substring(cursor.indexOf('.'));
+
+        parameters.put(PageRequest.CURSOR_PARAMETER, forged);
+        Errors forgedErrors = PageRequest.of(request).validate();
+        lenient().when(request.getRequestURI()).thenReturn("/apps/test/bin/other.action");
+        parameters.put(PageRequest.CURSOR_PARAMETER, cursor);
+        Errors foreignErrors = PageRequest.of(request).validate();
+
+        assertEquals(PageRequest.CURSOR_PARAMETER, forgedErrors.asList().get(0).getPath());
+        assertEquals(PageRequest.CURSOR_PARAMETER, foreignErrors.asList().get(0).getPath());
+        assertEquals(0, PageRequest.of(request).getOffset());
+    }
+
+    @Test
+    void shouldAcceptCursorsOfInstancesWithSameSecret() {
+        PageCursors issuer = new PageCursors();
+        issuer.activate(config("shared"));
+        PageCursors sameSecret = new PageCursors();
+        sameSecret.activate(config("shared"));
+        PageCursors otherSecret = new PageCursors();
+        otherSecret.activate(config("other"));
+
+        String cursor = issuer.encode(request, 40, "/content/a");
+
+        assertEquals("/content/a", sameSecret.decode(request, cursor).getAfter());
+        assertNull(otherSecret.decode(request, cursor));
+    }
+
+    @Test
+    void shouldValidateLimit() {
+        parameters.put(PageRequest.LIMIT_PARAMETER, "0");
+        Errors errors = PageRequest.of(request).validate();
+        parameters.put(PageRequest.LIMIT_PARAMETER, "many");
+
+        assertEquals(PageRequest.LIMIT_PARAMETER, errors.asList().get(0).getPath());
+        assertEquals(PageRequest.DEFAULT_LIMIT, PageRequest.of(request).getLimit());
+        assertNotNull(PageRequest.of(request).validate().asList().get(0));
+        assertNull(PageRequest.of(request).getAfter());
+    }
+
+    private JsonNode handle(RestActionResult<?> result) throws IOException {
+        output = new CapturingServletOutputStream();
+        cut.handle(request, response, result);
+        return parse();
+    }
+
+    private JsonNode parse() throws IOException {
+        return new ObjectMapper().readTree(output.toString());
+    }
+
+    private static PageCursors.Config config(String secret) {
+        return new PageCursors.Config() {
+
+            @Override
+            public String secret() {
+                return secret;
+            }
+
+            @Override
+            public Class<? extends Annotation> annotationType() {
+                return PageCursors.Config.class;
+            }
+        };
+    }
+
+    private static class CountingIterator implements Iterator<Integer> {
+
+        private final int size;
+        private final AtomicInteger pulled = new AtomicInteger();
+
+        CountingIterator(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pulled.get() < size;
+        }
+
+        @Override
+        public Integer next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return pulled.getAndIncrement();
+        }
+    }
+}
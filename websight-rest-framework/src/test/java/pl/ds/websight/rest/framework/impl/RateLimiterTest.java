@@ -0,0 +1,88 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.junit.jupiter.api.Test;
+import pl.ds.websight.rest.framework.annotations.RateLimit;
+
+import java.lang.annotation.Annotation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterTest {
+
+    private final RateLimiter cut = new RateLimiter();
+
+    @Test
+    void shouldLimitRequestsOfUserToAnnotatedAction() {
+        cut.activate(config(0, 10000));
+        RateLimiter.Limit limit = RateLimiter.Limit.of(LimitedAction.class);
+
+        assertEquals(0, cut.tryAcquire(LimitedAction.class, limit, "admin"));
+        assertEquals(0, cut.tryAcquire(LimitedAction.class, limit, "admin"));
+        long retryAfter = cut.tryAcquire(LimitedAction.class, limit, "admin");
+
+        assertTrue(retryAfter > 0 && retryAfter <= 30, "Retry after: " + retryAfter);
+        assertEquals(0, cut.tryAcquire(LimitedAction.class, limit, "editor"));
+    }
+
+    @Test
+    void shouldApplyDefaultLimitToNotAnnotatedAction() {
+        cut.activate(config(1, 10000));
+
+        assertNull(RateLimiter.Limit.of(Object.class));
+        assertEquals(0, cut.tryAcquire(Object.class, null, "admin"));
+        assertTrue(cut.tryAcquire(Object.class, null, "admin") > 0);
+        assertEquals(0, cut.tryAcquire(String.class, null, "admin"));
+    }
+
+    @Test
+    void shouldNotLimitWithoutDefaultLimit() {
+        cut.activate(config(0, 10000));
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, cut.tryAcquire(Object.class, null, "admin"));
+        }
+    }
+
+    @Test
+    void shouldForgetLeastRecentlyUsedBucketsOverLimit() {
+        cut.activate(config(1, 16));
+        cut.tryAcquire(Object.class, null, "admin");
+
+        for (int i = 0; i < 1000; i++) {
+            cut.tryAcquire(Object.class, null, "user-" + i);
+        }
+
+        assertEquals(0, cut.tryAcquire(Object.class, null, "admin"));
+    }
+
+    @RateLimit(requests = 2, seconds = 60)
+    private static class LimitedAction {
+    }
+
+    private static RateLimiter.Config config(int defaultRequests, int maxBuckets) {
+        return new RateLimiter.Config() {
+
+            @Override
+            public int default_requests() {
+                return defaultRequests;
+            }
+
+            @Override
+            public int default_seconds() {
+                return 60;
+            }
+
+            @Override
+            public int max_buckets() {
+                return maxBuckets;
+            }
+
+            @Override
+            public Class<? extends Annotation> annotationType() {
+                return RateLimiter.Config.class;
+            }
+        };
+    }
+}
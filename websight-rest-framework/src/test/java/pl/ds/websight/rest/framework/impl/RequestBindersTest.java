@@ -0,0 +1,158 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.models.factory.ModelFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pl.ds.websight.rest.framework.Errors;
+import pl.ds.websight.rest.framework.RequestBinder;
+import pl.ds.websight.rest.framework.annotations.GeneratedBinder;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RequestBindersTest {
+
+    @Mock
+    private ModelFactory modelFactory;
+
+    @Mock
+    private SlingHttpServletRequest request;
+
+    @Test
+    void shouldUseGeneratedBinder() {
+        when(request.getParameter("name")).thenReturn("World");
+
+        RequestBinder<?> binder = RequestBinders.forModel(HelloBinderModel.class, modelFactory);
+
+        assertEquals("World", ((HelloBinderModel) binder.bind(request)).getName());
+        verifyNoInteractions(modelFactory);
+    }
+
+    @Test
+    void shouldUseModelFactoryForModelWithoutGeneratedBinderAnnotation() {
+        HelloPathModel model = new HelloPathModel();
+        when(modelFactory.createModel(request, HelloPathModel.class)).thenReturn(model);
+
+        RequestBinder<?> binder = RequestBinders.forModel(HelloPathModel.class, modelFactory);
+
+        assertSame(model, binder.bind(request));
+    }
+
+    @Test
+    void shouldUseModelFactoryWhenBinderWasNotGenerated() {
+        NotGeneratedBinderModel model = new NotGeneratedBinderModel();
+        when(modelFactory.createModel(request, NotGeneratedBinderModel.class)).thenReturn(model);
+
+        RequestBinder<?> binder = RequestBinders.forModel(NotGeneratedBinderModel.class, modelFactory);
+
+        assertSame(model, binder.bind(request));
+    }
+
+    @Test
+    void shouldNameBinderOfNestedModel() {
+        assertEquals("pl.ds.websight.rest.framework.impl.RequestBindersTest_NotGeneratedBinderModel_RestBinder",
+                RequestBinders.getBinderClassName(NotGeneratedBinderModel.class));
+    }
+
+    @Test
+    void shouldBindJsonBodyToPropertiesOnly() throws IOException {
+        mockJsonRequest("{\"name\":\"World\",\"notBound\":\"x\",\"unknown\":1," +
+                "\"properties\":[{\"name\":\"jcr:title\",\"value\":42}]}");
+
+        HelloJsonModel model = (HelloJsonModel) RequestBinders.forModel(HelloJsonModel.class, modelFactory).bind(request);
+
+        assertSame(request, model.getRequest());
+        assertEquals("World", model.getName());
+        assertNull(model.getNotBound());
+        assertEquals(1, model.getProperties().size());
+        assertEquals("jcr:title", model.getProperties().get(0).getName());
+        assertEquals(42L, model.getProperties().get(0).getValue());
+        verifyNoInteractions(modelFactory);
+    }
+
+    @Test
+    void shouldUseParametersBinderForFormRequestOfJsonModel() {
+        HelloJsonModel model = new HelloJsonModel();
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getContentType()).thenReturn("multipart/form-data; boundary=x");
+        when(modelFactory.createModel(request, HelloJsonModel.class)).thenReturn(model);
+
+        assertSame(model, RequestBinders.forModel(HelloJsonModel.class, modelFactory).bind(request));
+    }
+
+    @Test
+    void shouldReportPathOfInvalidJsonValue() throws IOException {
+        mockJsonRequest("{\"properties\":[{\"name\":\"a\"},{\"value\":\"not a number\"}]}");
+        RequestBinder<?> binder = RequestBinders.forModel(HelloJsonModel.class, modelFactory);
+
+        Errors errors = assertThrows(InvalidRequestBodyException.class, () -> binder.bind(request)).getErrors();
+
+        // element index is part of path since Jackson 2.4
+        assertTrue(errors.asList().get(0).getPath().matches("properties(\\[1])?\\.value"));
+    }
+
+    @Test
+    void shouldReportMalformedJson() throws IOException {
+        mockJsonRequest("{\"name\":");
+        RequestBinder<?> binder = RequestBinders.forModel(HelloJsonModel.class, modelFactory);
+
+        Errors errors = assertThrows(InvalidRequestBodyException.class, () -> binder.bind(request)).getErrors();
+
+        assertEquals(1, errors.asList().size());
+    }
+
+    private void mockJsonRequest(String body) throws IOException {
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getContentType()).thenReturn("application/json");
+        when(request.getInputStream()).thenReturn(new BodyInputStream(body));
+    }
+
+    private static class BodyInputStream extends ServletInputStream {
+
+        private final InputStream body;
+
+        BodyInputStream(String body) {
+            this.body = new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public int read() throws IOException {
+            return body.read();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return false;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @GeneratedBinder
+    static class NotGeneratedBinderModel {
+    }
+}
@@ -0,0 +1,121 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pl.ds.websight.rest.framework.impl.RequestTrace.Phase;
+
+import javax.servlet.http.HttpServletResponse;
+import java.lang.annotation.Annotation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RequestTracingTest {
+
+    private static final String HEADER = "X-Correlation-ID";
+
+    @Mock
+    private SlingHttpServletRequest request;
+
+    @Mock
+    private HttpServletResponse response;
+
+    @Test
+    void shouldEchoValidCorrelationId() {
+        when(request.getHeader(HEADER)).thenReturn("client-id.1");
+
+        RequestTrace trace = tracing(config(HEADER, false, 1.0)).start(request, response);
+
+        assertEquals("client-id.1", trace.getCorrelationId());
+        verify(response).setHeader(HEADER, "client-id.1");
+        assertFalse(trace.isSampled());
+    }
+
+    @Test
+    void shouldGenerateCorrelationIdWhenHeaderIsInvalid() {
+        when(request.getHeader(HEADER)).thenReturn("id with\r\nnew line");
+
+        RequestTrace trace = tracing(config(HEADER, false, 1.0)).start(request, response);
+
+        assertNotEquals("id with\r\nnew line", trace.getCorrelationId());
+        verify(response).setHeader(HEADER, trace.getCorrelationId());
+    }
+
+    @Test
+    void shouldNotTraceWhenCorrelationIdAndServerTimingAreDisabled() {
+        assertSame(RequestTrace.NONE, tracing(config("", true, 0.0)).start(request, response));
+        verify(response, never()).setHeader(anyString(), anyString());
+    }
+
+    @Test
+    void shouldSendServerTimingOfMeasuredPhases() {
+        RequestTrace trace = tracing(config("", true, 1.0)).start(request, response);
+        trace.mark(Phase.BIND);
+        trace.mark(Phase.PERFORM);
+
+        trace.startWrite(response);
+
+        verify(response).setHeader(eq("Server-Timing"), anyString());
+        String serverTiming = trace.format(Phase.PERFORM);
+        assertTrue(serverTiming.matches("bind;dur=\\d+\\.\\d{3}, perform;dur=\\d+\\.\\d{3}, total;dur=\\d+\\.\\d{3}"),
+                serverTiming);
+    }
+
+    private static RequestTracing tracing(RequestTracing.Config config) {
+        RequestTracing tracing = new RequestTracing();
+        tracing.activate(config);
+        return tracing;
+    }
+
+    static RequestTracing.Config config(String header, boolean serverTimingEnabled, double sampleRate) {
+        return new RequestTracing.Config() {
+
+            @Override
+            public String correlation_id_header() {
+                return header;
+            }
+
+            @Override
+            public boolean server_timing_enabled() {
+                return serverTimingEnabled;
+            }
+
+            @Override
+            public double sample_rate() {
+                return sampleRate;
+            }
+
+            @Override
+            public boolean flight_recorder_events_enabled() {
+                return true;
+            }
+
+            @Override
+            public long execution_event_threshold_millis() {
+                return 0;
+            }
+
+            @Override
+            public long serialization_event_threshold_millis() {
+                return 0;
+            }
+
+            @Override
+            public Class<? extends Annotation> annotationType() {
+                return RequestTracing.Config.class;
+            }
+        };
+    }
+}
@@ -0,0 +1,267 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ResourceWatcherTest {
+
+    private static final Pattern EVENT_ID = Pattern.compile("id: (\\S+)");
+
+    @Mock
+    private SlingHttpServletRequest request;
+
+    @Mock
+    private SlingHttpServletResponse response;
+
+    @Mock
+    private AsyncContext asyncContext;
+
+    private final CapturingServletOutputStream output = new CapturingServletOutputStream();
+
+    private final ResourceWatcher cut = new ResourceWatcher();
+
+    @AfterEach
+    void tearDown() {
+        cut.deactivate();
+    }
+
+    @Test
+    void shouldPushCoalescedChangesOfWatchedPaths() throws IOException {
+        cut.activate(config(10, 50));
+        watch(null);
+
+        cut.onChange(Arrays.asList(change("/content/site/page"), change("/content/other")));
+        cut.onChange(Arrays.asList(change("/content/a"), change("/content/site/page/jcr:content")));
+
+        String event = awaitEvent("change");
+        assertEquals("{\"paths\":[\"/content/a\"],\"prefixes\":[\"/content/site\"]}", data(event));
+        verify(response).setContentType(ResourceWatcher.EVENT_STREAM_MEDIA_TYPE);
+        verify(asyncContext).setTimeout(600_000);
+    }
+
+    @Test
+    void shouldNotPushChangesOfNotWatchedPaths() throws IOException, InterruptedException {
+        cut.activate(config(10, 0));
+        watch(null);
+
+        cut.onChange(Arrays.asList(change("/content/ab"), change("/content/sitemap"), change("/content")));
+        Thread.sleep(50);
+
+        assertFalse(output.toString().contains("event: change"));
+    }
+
+    @Test
+    void shouldPushChangesMissedSinceLastEventId() throws IOException {
+        cut.activate(config(10, 0));
+        cut.onChange(Collections.singletonList(change("/content/a")));
+        String lastEventId = eventId(watch(null));
+        disconnect();
+        cut.onChange(Collections.singletonList(change("/content/site/page")));
+        cut.onChange(Collections.singletonList(change("/content/other")));
+
+        CapturingServletOutputStream reconnected = new CapturingServletOutputStream();
+        watch(lastEventId, reconnected);
+
+        String event = awaitEvent("change", reconnected);
+        assertEquals("{\"paths\":[],\"prefixes\":[\"/content/site\"]}", data(event));
+    }
+
+    @Test
+    void shouldPushAllWatchedPathsWhenLastEventIdIsUnknown() throws IOException {
+        cut.activate(config(10, 0));
+        watch("unknown-1");
+
+        String event = awaitEvent("change");
+        assertEquals("{\"paths\":[\"/content/a\"],\"prefixes\":[\"/content/site\"]}", data(event));
+    }
+
+    @Test
+    void shouldRejectConnectionsOverLimit() throws IOException {
+        cut.activate(config(1, 0));
+        assertTrue(watch(null).contains("event: open"));
+
+        assertFalse(cut.watch(request, response, Collections.singletonList("/content/a"), Collections.emptyList(),
+                null));
+        assertEquals(1, cut.getConnections());
+    }
+
+    @Test
+    void shouldReleaseConnectionWhenCompleted() throws IOException {
+        cut.activate(config(1, 0));
+        watch(null);
+
+        disconnect();
+
+        assertEquals(0, cut.getConnections());
+        assertTrue(watch(null).contains("event: open"));
+    }
+
+    @Test
+    void shouldWriteQueuedEventsWhenOutputIsReady() throws IOException {
+        cut.activate(config(10, 0));
+        SlowServletOutputStream slow = new SlowServletOutputStream();
+        assertEquals("", watch(null, slow));
+
+        cut.onChange(Collections.singletonList(change("/content/a")));
+        slow.resume();
+
+        awaitEvent("change", slow);
+        assertTrue(slow.toString().startsWith("retry: "));
+    }
+
+    @Test
+    void shouldCloseSubscriberWhenEventsQueueOverflows() throws IOException, InterruptedException {
+        cut.activate(config(10, 0));
+        watch(null, new SlowServletOutputStream());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cut.getConnections() > 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "Subscriber not closed in time");
+            cut.onChange(Collections.singletonList(change("/content/a")));
+            Thread.sleep(10);
+        }
+
+        verify(asyncContext).complete();
+    }
+
+    private String watch(String lastEventId) throws IOException {
+        return watch(lastEventId, output);
+    }
+
+    private String watch(String lastEventId, CapturingServletOutputStream stream) throws IOException {
+        when(response.getOutputStream()).thenReturn(stream);
+        when(request.startAsync(request, response)).thenReturn(asyncContext);
+        assertTrue(cut.watch(request, response, Collections.singletonList("/content/a"),
+                Collections.singletonList("/content/site"), lastEventId));
+        return stream.toString();
+    }
+
+    private void disconnect() throws IOException {
+        ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(asyncContext, atLeastOnce()).addListener(listener.capture());
+        listener.getValue().onComplete(new AsyncEvent(asyncContext));
+    }
+
+    private String awaitEvent(String type) {
+        return awaitEvent(type, output);
+    }
+
+    private static String awaitEvent(String type, CapturingServletOutputStream output) {
+        long deadline = System.currentTimeMillis() + 5000;
+        String marker = "event: " + type + "\n";
+        while (!output.toString().contains(marker)) {
+            assertTrue(System.currentTimeMillis() < deadline, "Event not pushed in time");
+            Thread.yield();
+        }
+        String stream = output.toString();
+        int start = stream.lastIndexOf("\n\n", stream.indexOf(marker)) + 2;
+        String event = stream.substring(start, stream.indexOf("\n\n", start));
+        assertEquals(stream.indexOf(marker), stream.lastIndexOf(marker), "Changes not coalesced into one event");
+        return event;
+    }
+
+    private static String eventId(String event) {
+        Matcher matcher = EVENT_ID.matcher(event);
+        assertTrue(matcher.find());
+        return matcher.group(1);
+    }
+
+    private static String data(String event) {
+        return event.substring(event.indexOf("data: ") + "data: ".length());
+    }
+
+    /**
+     * Output of client which does not read events until it is resumed.
+     */
+    private static final class SlowServletOutputStream extends CapturingServletOutputStream {
+
+        private volatile boolean ready;
+        private volatile WriteListener writeListener;
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            this.writeListener = writeListener;
+        }
+
+        void resume() throws IOException {
+            ready = true;
+            writeListener.onWritePossible();
+        }
+    }
+
+    private static ResourceChange change(String path) {
+        return new ResourceChange(ChangeType.CHANGED, path, false);
+    }
+
+    private static ResourceWatcher.Config config(int maxConnections, long debounceMillis) {
+        return new ResourceWatcher.Config() {
+
+            @Override
+            public String[] resource_paths() {
+                return new String[] { "/content" };
+            }
+
+            @Override
+            public int max_connections() {
+                return maxConnections;
+            }
+
+            @Override
+            public long debounce_millis() {
+                return debounceMillis;
+            }
+
+            @Override
+            public int keep_alive_seconds() {
+                return 30;
+            }
+
+            @Override
+            public int timeout_seconds() {
+                return 600;
+            }
+
+            @Override
+            public int history_size() {
+                return 100;
+            }
+
+            @Override
+            public Class<? extends Annotation> annotationType() {
+                return ResourceWatcher.Config.class;
+            }
+        };
+    }
+}
@@ -0,0 +1,110 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.resource.Resource;
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.Annotation;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ResponseCacheTest {
+
+    private final ResponseCache cut = new ResponseCache();
+
+    @Test
+    void shouldKeyRequestsByResourceUserAndSortedParameters() {
+        Map<String, String[]> parameters = new LinkedHashMap<>();
+        parameters.put("b", new String[] { "2" });
+        parameters.put("a", new String[] { "1", "x&y" });
+        Map<String, String[]> reordered = new LinkedHashMap<>();
+        reordered.put("a", new String[] { "1", "x&y" });
+        reordered.put("b", new String[] { "2" });
+
+        String key = ResponseCache.key(Object.class, request("/content/page", parameters, null));
+
+        assertEquals(key, ResponseCache.key(Object.class, request("/content/page", reordered, null)));
+        assertNotEquals(key, ResponseCache.key(Object.class, request("/content/other", parameters, null)));
+        assertNotEquals(key, ResponseCache.key(String.class, request("/content/page", parameters, null)));
+        assertNotEquals(key, ResponseCache.key(Object.class, request("/content/page", parameters, "admin")));
+    }
+
+    @Test
+    void shouldStoreResponseUntilResourceChanges() {
+        cut.activate(config(1024));
+        SlingHttpServletRequest request = request("/content/page", Collections.emptyMap(), null);
+        byte[] body = "{}".getBytes();
+
+        assertNull(cut.lookup(Object.class, request).getCached());
+        cut.lookup(Object.class, request).store(body, null, 60);
+        assertArrayEquals(body, cut.lookup(Object.class, request).getCached());
+        assertNull(cut.lookup(Object.class, request).getCachedETag());
+
+        cut.onChange(Collections.emptyList());
+
+        assertNull(cut.lookup(Object.class, request).getCached());
+    }
+
+    @Test
+    void shouldNotStoreResponseComputedBeforeResourceChange() {
+        cut.activate(config(1024));
+        SlingHttpServletRequest request = request("/content/page", Collections.emptyMap(), null);
+        ResponseCache.Lookup lookup = cut.lookup(Object.class, request);
+
+        cut.onChange(Collections.emptyList());
+        lookup.store("{}".getBytes(), null, 60);
+
+        assertNull(cut.lookup(Object.class, request).getCached());
+    }
+
+    @Test
+    void shouldEvictResponsesOverMaximalSize() {
+        cut.activate(config(1));
+        SlingHttpServletRequest request = request("/content/page", Collections.emptyMap(), null);
+
+        cut.lookup(Object.class, request).store(new byte[2048], null, 60);
+
+        assertNull(cut.lookup(Object.class, request).getCached());
+    }
+
+    private static SlingHttpServletRequest request(String path, Map<String, String[]> parameters, String user) {
+        SlingHttpServletRequest request = mock(SlingHttpServletRequest.class);
+        Resource resource = mock(Resource.class);
+        when(request.getResource()).thenReturn(resource);
+        when(resource.getPath()).thenReturn(path);
+        when(request.getParameterMap()).thenReturn(parameters);
+        if (user != null) {
+            when(request.getAuthType()).thenReturn("BASIC");
+            when(request.getUserPrincipal()).thenReturn(() -> user);
+        }
+        return request;
+    }
+
+    private static ResponseCache.Config config(long maxSizeKb) {
+        return new ResponseCache.Config() {
+
+            @Override
+            public long max_size_kb() {
+                return maxSizeKb;
+            }
+
+            @Override
+            public String[] resource_paths() {
+                return new String[] { "/content" };
+            }
+
+            @Override
+            public Class<? extends Annotation> annotationType() {
+                return ResponseCache.Config.class;
+            }
+        };
+    }
+}
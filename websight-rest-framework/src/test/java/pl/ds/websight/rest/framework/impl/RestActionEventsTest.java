@@ -0,0 +1,131 @@
+package pl.ds.websight.rest.framework.impl;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pl.ds.websight.rest.framework.RestAction;
+import pl.ds.websight.rest.framework.RestActionResult;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RestActionEventsTest {
+
+    private static final String EXECUTION_EVENT = "pl.ds.websight.rest.RestActionExecution";
+    private static final String SERIALIZATION_EVENT = "pl.ds.websight.rest.RestActionSerialization";
+
+    @Mock
+    private SlingHttpServletRequest request;
+
+    @Mock
+    private SlingHttpServletResponse response;
+
+    @TempDir
+    Path tempDir;
+
+    private final CapturingServletOutputStream output = new CapturingServletOutputStream();
+
+    @AfterEach
+    void tearDown() {
+        RestActionEvents.configure(true, 0, 0);
+    }
+
+    @Test
+    void shouldRecordSerializedResponseSize() throws IOException {
+        when(response.getOutputStream()).thenReturn(output);
+
+        List<RecordedEvent> events = record(SERIALIZATION_EVENT, () -> new RestResponseHandler()
+                .handle(request, response, RestActionResult.success("Zażółć", null)));
+
+        assertEquals(1, events.size());
+        RecordedEvent event = events.get(0);
+        assertEquals("SUCCESS", event.getString("status"));
+        assertEquals(output.toByteArray().length, event.getLong("responseBytes"));
+    }
+
+    @Test
+    void shouldRecordActionExecutionPhases() throws IOException {
+        when(response.getOutputStream()).thenReturn(output);
+        when(request.getMethod()).thenReturn("GET");
+
+        List<RecordedEvent> events = record(EXECUTION_EVENT, () -> createServlet().handle(request, response));
+
+        assertEquals(1, events.size());
+        RecordedEvent event = events.get(0);
+        assertEquals(TestRestAction.class.getName(), event.getClass("actionClass").getName());
+        assertEquals("GET", event.getString("method"));
+        assertEquals("SUCCESS", event.getString("status"));
+        assertTrue(event.getDuration("performDuration").toNanos() > 0);
+    }
+
+    @Test
+    void shouldNotCreateEventsWithoutRecording() {
+        assertNull(RestActionEvents.beginExecution());
+        assertNull(RestActionEvents.beginSerialization());
+    }
+
+    @Test
+    void shouldNotRecordEventsBelowThreshold() throws IOException {
+        when(response.getOutputStream()).thenReturn(output);
+        RestActionsServlet servlet = createServlet();
+        RestActionEvents.configure(true, 60_000, 60_000);
+
+        List<RecordedEvent> events = record(null, () -> servlet.handle(request, response));
+
+        assertTrue(events.isEmpty());
+    }
+
+    private RestActionsServlet createServlet() {
+        RequestTracing requestTracing = new RequestTracing();
+        requestTracing.activate(RequestTracingTest.config("", false, 1.0));
+        return new RestActionsServlet(new TestRestAction(), Void.class, null, null, new RestResponseHandler(),
+                new NodeTypeMatcher(), null, null, new ActionMetrics(TestRestAction.class.getName()), requestTracing,
+                new ConcurrencyLimiter(), new RateLimiter(), new ResponseCache());
+    }
+
+    private List<RecordedEvent> record(String eventName, RecordedAction action) throws IOException {
+        Path file = tempDir.resolve("recording.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(EXECUTION_EVENT);
+            recording.enable(SERIALIZATION_EVENT);
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().startsWith("pl.ds.websight.rest."))
+                .filter(event -> eventName == null || eventName.equals(event.getEventType().getName()))
+                .collect(Collectors.toList());
+    }
+
+    @FunctionalInterface
+    private interface RecordedAction {
+
+        void run() throws IOException;
+    }
+
+    private static class TestRestAction implements RestAction<Void, Void> {
+
+        @Override
+        public RestActionResult<Void> perform(Void model) {
+            return RestActionResult.success();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pl.ds.websight.rest.framework.JobRestAction;
+import pl.ds.websight.rest.framework.RestActionResult;
+import pl.ds.websight.rest.framework.impl.JobStatus.State;
+
+import java.lang.annotation.Annotation;
+import java.security.Principal;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RestActionJobManagerTest {
+
+    @Mock
+    private SlingHttpServletRequest request;
+
+    @Mock
+    private ResourceResolver requestResourceResolver;
+
+    @Mock
+    private ResourceResolver jobResourceResolver;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final RestActionJobManager cut = new RestActionJobManager();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(request.getResourceResolver()).thenReturn(requestResourceResolver);
+        when(requestResourceResolver.clone(null)).thenReturn(jobResourceResolver);
+        lenient().when(jobResourceResolver.isLive()).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        cut.deactivate();
+    }
+
+    @Test
+    void shouldKeepResultAndProgressOfFinishedJob() {
+        cut.activate(config(1, 1, 10));
+        RestActionResult<String> result = RestActionResult.success("Done", null);
+        JobRestAction<Object, String> action = (model, context) -> {
+            assertSame(jobResourceResolver, context.getResourceResolver());
+            context.setProgress(2, 2, "Moved");
+            return result;
+        };
+
+        JobStatus submitted = cut.submit(action, null, request);
+        RestActionJob job = awaitFinished(submitted.getId());
+
+        JobStatus status = job.getStatus();
+        assertEquals(State.SUCCEEDED, status.getState());
+        assertEquals(2, status.getCompleted());
+        assertEquals("Moved", status.getMessage());
+        assertSame(result, job.getResult());
+        verify(jobResourceResolver, timeout(1000)).close();
+    }
+
+    @Test
+    void shouldDetachStreamedResultBeforeClosingResourceResolver() {
+        cut.activate(config(1, 1, 10));
+        AtomicBoolean closed = new AtomicBoolean();
+        doAnswer(invocation -> {
+            closed.set(true);
+            return null;
+        }).when(jobResourceResolver).close();
+        JobRestAction<Object, Iterator<String>> action = (model, context) -> RestActionResult.successStream(
+                Stream.of("first", "second").peek(item -> assertFalse(closed.get())).iterator());
+
+        RestActionJob job = awaitFinished(cut.submit(action, null, request).getId());
+
+        assertEquals(State.SUCCEEDED, job.getStatus().getState());
+        assertEquals("[\"first\",\"second\"]", job.getResult().getEntity().toString());
+        assertEquals("[\"first\",\"second\"]", job.getResult().getEntity().toString());
+        verify(jobResourceResolver, timeout(1000)).close();
+    }
+
+    @Test
+    void shouldCancelRunningJobWithoutInterruptingThread() throws InterruptedException {
+        cut.activate(config(1, 1, 10));
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        JobRestAction<Object, String> action = (model, context) -> {
+            started.countDown();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!context.isCancelled() && System.currentTimeMillis() < deadline) {
+                Thread.yield();
+            }
+            interrupted.set(Thread.currentThread().isInterrupted());
+            return RestActionResult.success();
+        };
+        RestActionJob job = cut.getJob(cut.submit(action, null, request).getId(), request);
+        started.await(5, TimeUnit.SECONDS);
+
+        assertTrue(job.cancel());
+
+        assertEquals(State.CANCELLED, job.getStatus().getState());
+        verify(jobResourceResolver, timeout(5000)).close();
+        assertFalse(interrupted.get());
+    }
+
+    @Test
+    void shouldKeepFailureOfFailedJob() {
+        cut.activate(config(1, 1, 10));
+        JobRestAction<Object, String> action = (model, context) -> {
+            throw new IllegalStateException("Cannot move");
+        };
+
+        RestActionJob job = awaitFinished(cut.submit(action, null, request).getId());
+
+        assertEquals(State.FAILED, job.getStatus().getState());
+        assertEquals("Cannot move", job.getFailure().getMessage());
+        assertNull(job.getResult());
+    }
+
+    @Test
+    void shouldNotRunJobCancelledBeforeStart() {
+        cut.activate(config(1, 1, 10));
+        cut.submit(blockingAction(), null, request);
+        AtomicBoolean performed = new AtomicBoolean();
+        JobRestAction<Object, String> action = (model, context) -> {
+            performed.set(true);
+            return RestActionResult.success();
+        };
+        RestActionJob queuedJob = cut.getJob(cut.submit(action, null, request).getId(), request);
+        assertEquals(State.QUEUED, queuedJob.getStatus().getState());
+
+        assertTrue(queuedJob.cancel());
+        release.countDown();
+
+        assertEquals(State.CANCELLED, queuedJob.getStatus().getState());
+        verify(jobResourceResolver, timeout(5000).times(2)).close();
+        assertFalse(performed.get());
+    }
+
+    @Test
+    void shouldRejectJobWhenQueueIsFull() {
+        cut.activate(config(1, 1, 10));
+        cut.submit(blockingAction(), null, request);
+        cut.submit(blockingAction(), null, request);
+
+        assertThrows(RejectedExecutionException.class, () -> cut.submit(blockingAction(), null, request));
+        verify(jobResourceResolver).close();
+    }
+
+    @Test
+    void shouldNotReturnJobOfOtherUser() {
+        cut.activate(config(1, 1, 10));
+        String id = cut.submit(blockingAction(), null, request).getId();
+        SlingHttpServletRequest otherUserRequest = mock(SlingHttpServletRequest.class);
+        Principal principal = mock(Principal.class);
+        when(otherUserRequest.getAuthType()).thenReturn("BASIC");
+        when(otherUserRequest.getUserPrincipal()).thenReturn(principal);
+        when(principal.getName()).thenReturn("other");
+
+        assertNull(cut.getJob(id, otherUserRequest));
+        assertNotNull(cut.getJob(id, request));
+    }
+
+    @Test
+    void shouldRemoveOldestFinishedJobsOverLimit() {
+        cut.activate(config(1, 1, 1));
+        JobRestAction<Object, String> action = (model, context) -> RestActionResult.success();
+        String firstId = cut.submit(action, null, request).getId();
+        awaitFinished(firstId);
+
+        String secondId = cut.submit(action, null, request).getId();
+        awaitFinished(secondId);
+
+        assertNull(cut.getJob(firstId, request));
+    }
+
+    private JobRestAction<Object, String> blockingAction() {
+        return (model, context) -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return RestActionResult.success();
+        };
+    }
+
+    private RestActionJob awaitFinished(String id) {
+        long deadline = System.currentTimeMillis() + 5000;
+        RestActionJob job = cut.getJob(id, request);
+        while (job.getStatus().getFinished() == null) {
+            assertTrue(System.currentTimeMillis() < deadline, "Job not finished in time");
+            Thread.yield();
+        }
+        return job;
+    }
+
+    private static RestActionJobManager.Config config(int threads, int queueSize, int maxFinishedJobs) {
+        return new RestActionJobManager.Config() {
+
+            @Override
+            public int threads() {
+                return threads;
+            }
+
+            @Override
+            public int queue_size() {
+                return queueSize;
+            }
+
+            @Override
+            public int max_finished_jobs() {
+                return maxFinishedJobs;
+            }
+
+            @Override
+            public long result_ttl_minutes() {
+                return 60;
+            }
+
+            @Override
+            public Class<? extends Annotation> annotationType() {
+                return RestActionJobManager.Config.class;
+            }
+        };
+    }
+}
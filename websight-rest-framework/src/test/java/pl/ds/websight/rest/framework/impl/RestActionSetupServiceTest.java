@@ -6,16 +6,25 @@ import org.apache.sling.api.servlets.ServletResolverConstants;
 import org.apache.sling.models.annotations.Model;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.osgi.framework.Bundle;
+import pl.ds.websight.rest.framework.JobContext;
+import pl.ds.websight.rest.framework.JobRestAction;
 import pl.ds.websight.rest.framework.RestAction;
 import pl.ds.websight.rest.framework.RestActionResult;
 import pl.ds.websight.rest.framework.annotations.PrimaryTypes;
 import pl.ds.websight.rest.framework.annotations.ResourceTypes;
 import pl.ds.websight.rest.framework.annotations.SlingAction;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Dictionary;
 
 import static org.apache.sling.api.servlets.ServletResolverConstants.SLING_SERVLET_EXTENSIONS;
@@ -123,6 +132,68 @@ class RestActionSetupServiceTest {
                         "and ResourceTypes annotations" + InvalidMultipleAnnotationsRestAction.class.getName());
     }
 
+    @Test
+    void shouldBuildRouteForPathAction() {
+        mockBundleFor(HelloPathRestAction.class);
+
+        RestActionRoute route = cut.buildActionRoute(new HelloPathRestAction());
+
+        assertEquals(RestActionRoute.Family.PATHS, route.getFamily());
+        assertEquals("/apps/websight-rest-framework/bin/hello-path", route.getActionKey());
+        assertEquals("GET", route.getMethod());
+    }
+
+    @Test
+    void shouldBuildRouteForPrimaryTypeAction() {
+        mockBundleFor(HelloPrimaryTypeRestAction.class);
+
+        RestActionRoute route = cut.buildActionRoute(new HelloPrimaryTypeRestAction());
+
+        assertEquals(RestActionRoute.Family.PRIMARY_TYPES, route.getFamily());
+        assertEquals("websight-rest-framework.hello-primary-type", route.getActionKey());
+        assertEquals("POST", route.getMethod());
+    }
+
+    @Test
+    void shouldBuildRouteForResourceTypeAction() {
+        mockBundleFor(HelloResourceTypePostRestAction.class);
+
+        RestActionRoute route = cut.buildActionRoute(new HelloResourceTypePostRestAction());
+
+        assertEquals(RestActionRoute.Family.RESOURCE_TYPES, route.getFamily());
+        assertEquals("websight-rest-framework.hello-resource-type-post", route.getActionKey());
+        assertArrayEquals(new String[] { "some/example/resource/type" }, route.getResourceTypes());
+    }
+
+    @Test
+    void shouldFailRouteIfMultipleAnnotations() {
+        RestAction<?, ?> restAction = new InvalidMultipleAnnotationsRestAction();
+
+        assertThrows(IllegalStateException.class, () -> cut.buildActionRoute(restAction));
+    }
+
+    @Test
+    void shouldSetUnionOfRoutesInDispatcherProperties() {
+        Dictionary<String, Object> properties = cut.buildDispatcherServletProperties(RestActionRoute.Family.RESOURCE_TYPES,
+                Arrays.asList(
+                        RestActionRoute.forResourceTypes("bundle.first", "POST", new String[] { "type/b", "type/a" }),
+                        RestActionRoute.forResourceTypes("bundle.second", "GET", new String[] { "type/a" })));
+
+        assertArrayEquals(new String[] { "type/a", "type/b" }, (String[]) properties.get(SLING_SERVLET_RESOURCE_TYPES));
+        assertArrayEquals(new String[] { "bundle.first", "bundle.second" }, (String[]) properties.get(SLING_SERVLET_SELECTORS));
+        assertArrayEquals(new String[] { "GET", "POST" }, (String[]) properties.get(SLING_SERVLET_METHODS));
+        assertEquals("action", properties.get(SLING_SERVLET_EXTENSIONS));
+    }
+
+    @Test
+    void shouldSetStrictPathsInDispatcherProperties() {
+        Dictionary<String, Object> properties = cut.buildDispatcherServletProperties(RestActionRoute.Family.PATHS,
+                Collections.singletonList(RestActionRoute.forPath("/apps/bundle/bin/first", "GET")));
+
+        assertArrayEquals(new String[] { "/apps/bundle/bin/first" }, (String[]) properties.get(SLING_SERVLET_PATHS));
+        assertEquals(true, properties.get("sling.servlet.paths.strict"));
+    }
+
     @Test
     void shouldReturnRestActionModelType() {
         RestAction<?, ?> restAction = new HelloPathRestAction();
@@ -174,6 +245,53 @@ class RestActionSetupServiceTest {
         assertEquals(ValidModel.class, modelClass);
     }
 
+    @Test
+    void shouldReturnModelTypeOfJobRestAction() {
+        RestAction<?, ?> restAction = new ValidJobRestAction();
+
+        Class<?> modelClass = cut.getModelClass(restAction);
+
+        assertEquals(ValidModel.class, modelClass);
+    }
+
+    @Test
+    void shouldUseIndexedActionBinding(@TempDir Path tempDir) throws IOException {
+        String actionClass = HelloPathRestAction.class.getName();
+        mockBundleWithIndexFor(HelloPathRestAction.class, tempDir,
+                actionClass + ".name=indexed-hello\n" +
+                actionClass + ".model=" + ValidModel.class.getName() + "\n" +
+                actionClass + ".method=PUT\n" +
+                actionClass + ".primaryTypes=\n" +
+                actionClass + ".resourceTypes=some/indexed/type\n");
+        RestAction<?, ?> restAction = new HelloPathRestAction();
+
+        Dictionary<String, Object> properties = cut.buildActionServletProperties(restAction);
+
+        assertArrayEquals(new String[] { "some/indexed/type" }, (String[]) properties.get(SLING_SERVLET_RESOURCE_TYPES));
+        assertEquals("websight-rest-framework.indexed-hello", properties.get(SLING_SERVLET_SELECTORS));
+        assertEquals("PUT", properties.get(SLING_SERVLET_METHODS));
+        assertEquals(ValidModel.class, cut.getModelClass(restAction));
+    }
+
+    @Test
+    void shouldUseReflectionForActionMissingInIndex(@TempDir Path tempDir) throws IOException {
+        mockBundleWithIndexFor(HelloPathRestAction.class, tempDir, "other.SomeRestAction.name=some\n");
+        RestAction<?, ?> restAction = new HelloPathRestAction();
+
+        Dictionary<String, Object> properties = cut.buildActionServletProperties(restAction);
+
+        assertEquals("/apps/websight-rest-framework/bin/hello-path", properties.get(SLING_SERVLET_PATHS));
+        assertEquals(HelloPathModel.class, cut.getModelClass(restAction));
+    }
+
+    private void mockBundleWithIndexFor(Class<?> clazz, Path tempDir, String index) throws IOException {
+        Path indexFile = Files.write(tempDir.resolve("actions.properties"), index.getBytes(StandardCharsets.ISO_8859_1));
+        Bundle bundle = mock(Bundle.class);
+        when(bundle.getSymbolicName()).thenReturn("websight-rest-framework");
+        when(bundle.getEntry(RestActionIndex.INDEX_RESOURCE)).thenReturn(indexFile.toUri().toURL());
+        when(frameworkUtilService.getBundle(clazz)).thenReturn(bundle);
+    }
+
     private void mockBundleFor(Class<?> clazz) {
         Bundle bundle = mock(Bundle.class);
         when(bundle.getSymbolicName()).thenReturn("websight-rest-framework");
@@ -198,6 +316,13 @@ class RestActionSetupServiceTest {
         }
     }
 
+    static class ValidJobRestAction implements JobRestAction<ValidModel, Void> {
+        @Override
+        public RestActionResult<Void> perform(ValidModel model, JobContext context) {
+            return null;
+        }
+    }
+
     @Model(adaptables = Resource.class)
     static class InvalidResourceModel {
     }
@@ -0,0 +1,98 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.request.RequestPathInfo;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pl.ds.websight.rest.framework.impl.RestActionRoute.Family;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RestActionsDispatcherServletTest {
+
+    @Mock
+    private SlingHttpServletRequest request;
+
+    @Mock
+    private SlingHttpServletResponse response;
+
+    @Mock
+    private RequestPathInfo requestPathInfo;
+
+    @Mock
+    private RestActionsServlet actionServlet;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(request.getRequestPathInfo()).thenReturn(requestPathInfo);
+    }
+
+    @Test
+    void shouldDispatchPathActionByResourcePathAndMethod() throws IOException {
+        RoutingTable table = RoutingTable.EMPTY
+                .with(1L, RestActionRoute.forPath("/apps/bundle/bin/hello", "POST"), actionServlet);
+        RestActionsDispatcherServlet cut = new RestActionsDispatcherServlet(Family.PATHS, () -> table);
+        when(requestPathInfo.getResourcePath()).thenReturn("/apps/bundle/bin/hello");
+        when(request.getMethod()).thenReturn("POST");
+
+        assertTrue(cut.accepts(request));
+        cut.doPost(request, response);
+
+        verify(actionServlet).handle(request, response);
+    }
+
+    @Test
+    void shouldNotAcceptRequestWithoutRoute() {
+        RoutingTable table = RoutingTable.EMPTY
+                .with(1L, RestActionRoute.forPath("/apps/bundle/bin/hello", "POST"), actionServlet);
+        RestActionsDispatcherServlet cut = new RestActionsDispatcherServlet(Family.PATHS, () -> table);
+        when(requestPathInfo.getResourcePath()).thenReturn("/apps/bundle/bin/hello");
+        when(request.getMethod()).thenReturn("GET");
+
+        assertFalse(cut.accepts(request));
+    }
+
+    @Test
+    void shouldAcceptResourceTypeActionOnlyForMatchingResource() {
+        RoutingTable table = RoutingTable.EMPTY.with(1L,
+                RestActionRoute.forResourceTypes("bundle.hello", "GET", new String[] { "some/type" }), actionServlet);
+        RestActionsDispatcherServlet cut = new RestActionsDispatcherServlet(Family.RESOURCE_TYPES, () -> table);
+        Resource resource = mock(Resource.class);
+        ResourceResolver resourceResolver = mock(ResourceResolver.class);
+        when(resource.getResourceResolver()).thenReturn(resourceResolver);
+        when(request.getResource()).thenReturn(resource);
+        when(requestPathInfo.getSelectorString()).thenReturn("bundle.hello");
+        when(request.getMethod()).thenReturn("GET");
+
+        when(resourceResolver.isResourceType(resource, "some/type")).thenReturn(true);
+        assertTrue(cut.accepts(request));
+        when(resourceResolver.isResourceType(resource, "some/type")).thenReturn(false);
+        assertFalse(cut.accepts(request));
+    }
+
+    @Test
+    void shouldDelegatePrimaryTypeCheckToActionServlet() {
+        RoutingTable table = RoutingTable.EMPTY
+                .with(1L, RestActionRoute.forPrimaryTypes("bundle.hello", "GET"), actionServlet);
+        RestActionsDispatcherServlet cut = new RestActionsDispatcherServlet(Family.PRIMARY_TYPES, () -> table);
+        when(requestPathInfo.getSelectorString()).thenReturn("bundle.hello");
+        when(request.getMethod()).thenReturn("GET");
+        when(actionServlet.accepts(request)).thenReturn(false);
+
+        assertFalse(cut.accepts(request));
+    }
+}
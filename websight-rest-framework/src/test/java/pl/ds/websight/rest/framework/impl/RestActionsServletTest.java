@@ -0,0 +1,405 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.resource.Resource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pl.ds.websight.rest.framework.AsyncRestAction;
+import pl.ds.websight.rest.framework.JobRestAction;
+import pl.ds.websight.rest.framework.RestAction;
+import pl.ds.websight.rest.framework.RestActionResult;
+import pl.ds.websight.rest.framework.Versioned;
+import pl.ds.websight.rest.framework.annotations.Cacheable;
+import pl.ds.websight.rest.framework.annotations.ConditionalGet;
+import pl.ds.websight.rest.framework.annotations.MaxConcurrency;
+import pl.ds.websight.rest.framework.annotations.RateLimit;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RestActionsServletTest {
+
+    @Mock
+    private SlingHttpServletRequest request;
+
+    @Mock
+    private SlingHttpServletResponse response;
+
+    @Mock
+    private RestResponseHandler restResponseHandler;
+
+    @Mock
+    private RestActionExecutor actionExecutor;
+
+    @Mock
+    private RestActionJobManager jobManager;
+
+    @Mock
+    private AsyncContext asyncContext;
+
+    private final CompletableFuture<RestActionResult<Void>> result = new CompletableFuture<>();
+
+    private final ActionMetrics actionMetrics = new ActionMetrics(TestAsyncRestAction.class.getName());
+
+    private final RequestTracing requestTracing = new RequestTracing();
+
+    private final ResponseCache responseCache = new ResponseCache();
+
+    @BeforeEach
+    void setUp() {
+        requestTracing.activate(RequestTracingTest.config("X-Correlation-ID", true, 1.0));
+        lenient().when(request.getHeader("Accept")).thenReturn(null);
+    }
+
+    @Test
+    void shouldWaitForAsyncActionResultWhenAsyncIsNotSupported() throws IOException {
+        RestActionResult<Void> actionResult = RestActionResult.success("Done", null);
+        result.complete(actionResult);
+
+        createServlet().handle(request, response);
+
+        verify(restResponseHandler).handle(request, response, actionResult);
+        verify(request, never()).startAsync(any(), any());
+    }
+
+    @Test
+    void shouldRespondWithTimeoutWhenWaitedResultIsNotCompleted() throws IOException {
+        when(request.isAsyncSupported()).thenReturn(false);
+        when(actionExecutor.getTimeoutMillis()).thenReturn(10L);
+
+        createServlet().handle(request, response);
+
+        verify(restResponseHandler).handleTimeout(request, response);
+    }
+
+    @Test
+    void shouldWriteResponseWhenAsyncActionResultCompletes() throws IOException {
+        when(request.isAsyncSupported()).thenReturn(true);
+        when(request.startAsync(request, response)).thenReturn(asyncContext);
+
+        createServlet().handle(request, response);
+        verify(restResponseHandler, never()).handle(any(), any(), any());
+        assertEquals(1, actionMetrics.getInFlight());
+
+        RestActionResult<Void> actionResult = RestActionResult.success("Done", null);
+        result.complete(actionResult);
+
+        verify(restResponseHandler).handle(request, response, actionResult);
+        verify(asyncContext).complete();
+        assertEquals(1, actionMetrics.getSuccessCount());
+        assertEquals(0, actionMetrics.getInFlight());
+    }
+
+    @Test
+    void shouldRespondWithErrorWhenAsyncActionResultIsNull() throws IOException {
+        when(request.isAsyncSupported()).thenReturn(true);
+        when(request.startAsync(request, response)).thenReturn(asyncContext);
+
+        createServlet().handle(request, response);
+        result.complete(null);
+
+        verify(restResponseHandler).handleRuntimeException(eq(request), eq(response), any(IllegalStateException.class));
+        verify(restResponseHandler, never()).handle(any(), any(), any());
+        verify(asyncContext).complete();
+        assertEquals(1, actionMetrics.getErrorCount());
+    }
+
+    @Test
+    void shouldRespondWithErrorWhenAsyncResponseCannotBeWritten() throws IOException {
+        when(request.isAsyncSupported()).thenReturn(true);
+        when(request.startAsync(request, response)).thenReturn(asyncContext);
+        RestActionResult<Void> actionResult = RestActionResult.success("Done", null);
+        IllegalStateException writeError = new IllegalStateException("Cannot serialize");
+        doThrow(writeError).when(restResponseHandler).handle(request, response, actionResult);
+
+        createServlet().handle(request, response);
+        result.complete(actionResult);
+
+        verify(restResponseHandler).handleRuntimeException(request, response, writeError);
+        verify(asyncContext).complete();
+        assertEquals(1, actionMetrics.getErrorCount());
+        assertEquals(0, actionMetrics.getSuccessCount());
+    }
+
+    @Test
+    void shouldRespondWithErrorWhenWaitedResultIsNull() throws IOException {
+        result.complete(null);
+
+        createServlet().handle(request, response);
+
+        verify(restResponseHandler).handleRuntimeException(eq(request), eq(response), any(IllegalStateException.class));
+        assertEquals(1, actionMetrics.getErrorCount());
+    }
+
+    @Test
+    void shouldRespondWithTimeoutWhenAsyncContextTimesOut() throws IOException {
+        when(request.isAsyncSupported()).thenReturn(true);
+        when(request.startAsync(request, response)).thenReturn(asyncContext);
+        when(actionExecutor.getTimeoutMillis()).thenReturn(1000L);
+
+        createServlet().handle(request, response);
+        verify(asyncContext).setTimeout(1000L);
+        ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(asyncContext).addListener(listener.capture());
+        listener.getValue().onTimeout(new AsyncEvent(asyncContext, request, response));
+        result.complete(RestActionResult.success("Too late", null));
+
+        verify(restResponseHandler).handleTimeout(request, response);
+        verify(restResponseHandler, never()).handle(any(), any(), any());
+        verify(asyncContext).complete();
+        assertEquals(1, actionMetrics.getErrorCount());
+        assertEquals(0, actionMetrics.getSuccessCount());
+    }
+
+    @Test
+    void shouldRespondWithAcceptedJob() throws IOException {
+        JobRestAction<Void, Void> jobAction = (model, context) -> RestActionResult.success();
+        JobStatus jobStatus = new JobStatus("job-id", JobStatus.State.QUEUED, 0, 0, null, 0, null);
+        when(jobManager.submit(any(), any(), eq(request))).thenReturn(jobStatus);
+
+        createServlet(jobAction).handle(request, response);
+
+        verify(restResponseHandler).handleJobAccepted(request, response, jobStatus);
+    }
+
+    @Test
+    void shouldRespondWithFailureWhenJobIsRejected() throws IOException {
+        JobRestAction<Void, Void> jobAction = (model, context) -> RestActionResult.success();
+        when(jobManager.submit(any(), any(), eq(request))).thenThrow(new RejectedExecutionException());
+
+        createServlet(jobAction).handle(request, response);
+
+        ArgumentCaptor<RestActionResult> result = ArgumentCaptor.forClass(RestActionResult.class);
+        verify(restResponseHandler).handle(eq(request), eq(response), result.capture());
+        assertEquals(RestActionResult.Status.FAILURE, result.getValue().getStatus());
+        assertEquals("Job rejected", result.getValue().getMessage());
+    }
+
+    @Test
+    void shouldSendServerTimingAndCorrelationIdBeforeResponseIsWritten() throws IOException {
+        when(request.getHeader("X-Correlation-ID")).thenReturn("abc-123");
+        RestAction<Void, Void> restAction = model -> RestActionResult.success();
+
+        createServlet(restAction).handle(request, response);
+
+        verify(response).setHeader("X-Correlation-ID", "abc-123");
+        ArgumentCaptor<String> serverTiming = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("Server-Timing"), serverTiming.capture());
+        assertTrue(serverTiming.getValue().startsWith("perform;dur="), serverTiming.getValue());
+    }
+
+    @Test
+    void shouldRejectRequestOverActionConcurrencyLimit() throws IOException {
+        ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter();
+        concurrencyLimiter.activate(ConcurrencyLimiterTest.config(false, 10));
+        when(request.isAsyncSupported()).thenReturn(true);
+        when(request.startAsync(request, response)).thenReturn(asyncContext);
+        RestActionsServlet servlet = new RestActionsServlet(new LimitedAsyncRestAction(), Void.class, null, null,
+                restResponseHandler, new NodeTypeMatcher(), actionExecutor, jobManager, actionMetrics, requestTracing,
+                concurrencyLimiter, new RateLimiter(), new ResponseCache());
+
+        servlet.handle(request, response);
+        servlet.handle(request, response);
+
+        verify(restResponseHandler).handleOverloaded(request, response, 3);
+        assertEquals(1, actionMetrics.getRejectedCount());
+        result.complete(RestActionResult.success());
+        servlet.handle(request, response);
+        verify(restResponseHandler).handleOverloaded(request, response, 3);
+    }
+
+    @Test
+    void shouldRejectRequestOverActionRateLimit() throws IOException {
+        RestActionsServlet servlet = createServlet(new RateLimitedRestAction());
+
+        servlet.handle(request, response);
+        servlet.handle(request, response);
+
+        verify(restResponseHandler).handle(eq(request), eq(response), any(RestActionResult.class));
+        verify(restResponseHandler).handleRateLimited(eq(request), eq(response), longThat(seconds -> seconds > 0));
+        assertEquals(1, actionMetrics.getRejectedCount());
+    }
+
+    @Test
+    void shouldServeCachedResponseOfCacheableGetAction() throws IOException {
+        CacheableRestAction restAction = new CacheableRestAction();
+        RestActionsServlet servlet = createServlet(restAction);
+        Resource resource = mock(Resource.class);
+        byte[] body = "{}".getBytes();
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getResource()).thenReturn(resource);
+        when(resource.getPath()).thenReturn("/content/page");
+        when(request.getParameterMap()).thenReturn(Collections.emptyMap());
+        when(restResponseHandler.serialize(eq(request), any(RestActionResult.class))).thenReturn(body);
+
+        servlet.handle(request, response);
+        servlet.handle(request, response);
+
+        assertEquals(1, restAction.performed.get());
+        verify(restResponseHandler, times(2)).handleSerialized(request, response, body, null);
+        assertEquals(2, actionMetrics.getSuccessCount());
+
+        responseCache.onChange(Collections.emptyList());
+        servlet.handle(request, response);
+
+        assertEquals(2, restAction.performed.get());
+    }
+
+    @Test
+    void shouldTagCachedResponseOfVersionedActionWithVersion() throws IOException {
+        CacheableVersionedRestAction restAction = new CacheableVersionedRestAction();
+        RestActionsServlet servlet = createServlet(restAction);
+        Resource resource = mock(Resource.class);
+        byte[] body = "{}".getBytes();
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getResource()).thenReturn(resource);
+        when(resource.getPath()).thenReturn("/content/page");
+        when(request.getParameterMap()).thenReturn(Collections.emptyMap());
+        when(restResponseHandler.serialize(eq(request), any(RestActionResult.class))).thenReturn(body);
+
+        servlet.handle(request, response);
+        servlet.handle(request, response);
+
+        assertEquals(1, restAction.performed.get());
+        verify(restResponseHandler, times(2)).handleSerialized(request, response, body,
+                ETags.ofVersion("anonymous", "1", ResponseFormat.JSON));
+    }
+
+    @Test
+    void shouldNotPerformVersionedActionWhenNotModified() throws IOException {
+        VersionedRestAction restAction = new VersionedRestAction();
+        when(request.getMethod()).thenReturn("GET");
+        String etag = ETags.ofVersion("anonymous", "1", ResponseFormat.JSON);
+        when(restResponseHandler.handleNotModified(request, response, etag)).thenReturn(true);
+
+        createServlet(restAction).handle(request, response);
+
+        assertEquals(0, restAction.performed.get());
+        assertEquals(1, actionMetrics.getSuccessCount());
+    }
+
+    @Test
+    void shouldTagResponseOfConditionalAction() throws IOException {
+        byte[] body = "{}".getBytes();
+        when(request.getMethod()).thenReturn("GET");
+        when(restResponseHandler.serialize(eq(request), any(RestActionResult.class))).thenReturn(body);
+
+        createServlet(new ConditionalRestAction()).handle(request, response);
+
+        verify(restResponseHandler).handleSerialized(request, response, body, ETags.of(body));
+    }
+
+    private RestActionsServlet createServlet() {
+        return createServlet(new TestAsyncRestAction());
+    }
+
+    private RestActionsServlet createServlet(RestAction<Void, Void> restAction) {
+        return new RestActionsServlet(restAction, Void.class, null, null, restResponseHandler, new NodeTypeMatcher(),
+                actionExecutor, jobManager, actionMetrics, requestTracing, new ConcurrencyLimiter(), new RateLimiter(),
+                responseCache);
+    }
+
+    private class TestAsyncRestAction implements AsyncRestAction<Void, Void> {
+
+        @Override
+        public CompletionStage<RestActionResult<Void>> performAsync(Void model, Executor executor) {
+            return result;
+        }
+    }
+
+    @ConditionalGet
+    private static class ConditionalRestAction implements RestAction<Void, Void> {
+
+        @Override
+        public RestActionResult<Void> perform(Void model) {
+            return RestActionResult.success();
+        }
+    }
+
+    @ConditionalGet
+    private static class VersionedRestAction implements RestAction<Void, Void>, Versioned<Void> {
+
+        private final AtomicInteger performed = new AtomicInteger();
+
+        @Override
+        public String getVersion(Void model) {
+            return "1";
+        }
+
+        @Override
+        public RestActionResult<Void> perform(Void model) {
+            performed.incrementAndGet();
+            return RestActionResult.success();
+        }
+    }
+
+    @Cacheable(ttlSeconds = 60)
+    private static class CacheableRestAction implements RestAction<Void, Void> {
+
+        private final AtomicInteger performed = new AtomicInteger();
+
+        @Override
+        public RestActionResult<Void> perform(Void model) {
+            performed.incrementAndGet();
+            return RestActionResult.success();
+        }
+    }
+
+    @Cacheable(ttlSeconds = 60)
+    @ConditionalGet
+    private static class CacheableVersionedRestAction implements RestAction<Void, Void>, Versioned<Void> {
+
+        private final AtomicInteger performed = new AtomicInteger();
+
+        @Override
+        public String getVersion(Void model) {
+            return "1";
+        }
+
+        @Override
+        public RestActionResult<Void> perform(Void model) {
+            performed.incrementAndGet();
+            return RestActionResult.success();
+        }
+    }
+
+    @RateLimit(requests = 1, seconds = 60)
+    private static class RateLimitedRestAction implements RestAction<Void, Void> {
+
+        @Override
+        public RestActionResult<Void> perform(Void model) {
+            return RestActionResult.success();
+        }
+    }
+
+    @MaxConcurrency(1)
+    private class LimitedAsyncRestAction extends TestAsyncRestAction {
+    }
+}
@@ -0,0 +1,355 @@
+package pl.ds.websight.rest.framework.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.common.io.ByteStreams;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pl.ds.websight.rest.framework.Errors;
+import pl.ds.websight.rest.framework.RestActionResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RestResponseHandlerTest {
+
+    @Mock
+    private SlingHttpServletRequest request;
+
+    @Mock
+    private SlingHttpServletResponse response;
+
+    private final CapturingServletOutputStream output = new CapturingServletOutputStream();
+
+    private final RestResponseHandler cut = new RestResponseHandler();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        lenient().when(response.getOutputStream()).thenReturn(output);
+        lenient().when(request.getHeader("Accept")).thenReturn(null);
+    }
+
+    @Test
+    void shouldWriteEntity() throws IOException {
+        cut.handle(request, response, RestActionResult.success("Done", null, new SimpleDto("first")));
+
+        assertEquals("{\"status\":\"SUCCESS\",\"message\":\"Done\",\"entity\":{\"name\":\"first\"}," +
+                "\"authContext\":{\"userId\":\"anonymous\"}}", output.toString());
+        verify(response).setStatus(200);
+        verify(response).setContentType("application/json");
+        verify(response).setContentLength(output.toByteArray().length);
+    }
+
+    @Test
+    void shouldStreamResponseLargerThanBuffer() throws IOException {
+        cut.activate(config(16, false, 0));
+
+        cut.handle(request, response, RestActionResult.success("Done", null, new SimpleDto("first")));
+        cut.handle(request, response, RestActionResult.success("Done", null, new SimpleDto("second")));
+
+        assertEquals("{\"status\":\"SUCCESS\",\"message\":\"Done\",\"entity\":{\"name\":\"first\"}," +
+                "\"authContext\":{\"userId\":\"anonymous\"}}" +
+                "{\"status\":\"SUCCESS\",\"message\":\"Done\",\"entity\":{\"name\":\"second\"}," +
+                "\"authContext\":{\"userId\":\"anonymous\"}}", output.toString());
+        verify(response, never()).setContentLength(anyInt());
+    }
+
+    @Test
+    void shouldWriteStreamedEntityAsArrayAndCloseStream() throws IOException {
+        AtomicBoolean closed = new AtomicBoolean();
+        Stream<SimpleDto> entities = Stream.of(new SimpleDto("first"), new SimpleDto("second")).onClose(() -> closed.set(true));
+
+        cut.handle(request, response, RestActionResult.successStream(entities));
+
+        assertEquals("{\"status\":\"SUCCESS\",\"entity\":[{\"name\":\"first\"},{\"name\":\"second\"}]," +
+                "\"authContext\":{\"userId\":\"anonymous\"}}", output.toString());
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void shouldWriteIteratedEntityAsArray() throws IOException {
+        cut.handle(request, response, RestActionResult.successStream(Arrays.asList("a", "b").iterator()));
+
+        assertEquals("{\"status\":\"SUCCESS\",\"entity\":[\"a\",\"b\"],\"authContext\":{\"userId\":\"anonymous\"}}",
+                output.toString());
+    }
+
+    @Test
+    void shouldWriteValidationErrors() throws IOException {
+        cut.handleModelValidationError(request, response, Errors.of("name", null, "Required"));
+
+        assertEquals("{\"status\":\"VALIDATION_FAILURE\",\"message\":\"Validation failed\"," +
+                "\"entity\":[{\"path\":\"name\",\"message\":\"Required\"}],\"authContext\":{\"userId\":\"anonymous\"}}",
+                output.toString());
+        verify(response).setStatus(400);
+    }
+
+    @Test
+    void shouldRespondNotModifiedWhenTagMatches() throws IOException {
+        byte[] body = cut.serialize(request, RestActionResult.success("Done", null));
+        String etag = ETags.of(body);
+        when(request.getHeader("If-None-Match")).thenReturn("\"other\", W/" + etag);
+
+        cut.handleSerialized(request, response, body, etag);
+
+        verify(response).setStatus(304);
+        verify(response).setHeader("ETag", etag);
+        verify(response).setHeader("Cache-Control", "no-cache");
+        verify(response, never()).setContentLength(anyInt());
+    }
+
+    @Test
+    void shouldRespondNotModifiedToRevalidationOfCompressedResponse() throws IOException {
+        cut.activate(config(8192, true, 0));
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+        byte[] body = cut.serialize(request, RestActionResult.success("Done", null));
+        String etag = ETags.of(body);
+        String compressedTag = ETags.encoded(etag, "gzip");
+        cut.handleSerialized(request, response, body, etag);
+        when(request.getHeader("If-None-Match")).thenReturn(compressedTag);
+
+        cut.handleSerialized(request, response, body, etag);
+
+        verify(response).setHeader("Content-Encoding", "gzip");
+        verify(response).setStatus(304);
+        verify(response, times(2)).setHeader("ETag", compressedTag);
+    }
+
+    @Test
+    void shouldMatchTagsOfIfNoneMatchHeader() {
+        String etag = ETags.ofVersion("admin", "1", ResponseFormat.JSON);
+
+        assertTrue(ETags.matches(etag, etag));
+        assertTrue(ETags.matches("*", etag));
+        assertFalse(ETags.matches(ETags.ofVersion("editor", "1", ResponseFormat.JSON), etag));
+        assertFalse(ETags.matches(ETags.ofVersion("admin", "2", ResponseFormat.JSON), etag));
+        assertFalse(ETags.matches(null, etag));
+    }
+
+    @Test
+    void shouldStreamCompressedResponseOverMinimalSize() throws IOException {
+        cut.activate(config(8192, true, 64));
+        when(request.getHeader("Accept-Encoding")).thenReturn("deflate, gzip");
+        Stream<String> entities = Collections.nCopies(100, "entity").stream();
+
+        cut.handle(request, response, RestActionResult.successStream(entities));
+
+        verify(response).setHeader("Content-Encoding", "gzip");
+        verify(response).addHeader("Vary", "Accept-Encoding");
+        verify(response, never()).getWriter();
+        String json = new String(ByteStreams.toByteArray(new GZIPInputStream(
+                new ByteArrayInputStream(output.toByteArray()))), StandardCharsets.UTF_8);
+        assertTrue(json.startsWith("{\"status\":\"SUCCESS\",\"entity\":[\"entity\",\"entity\""), json);
+    }
+
+    @Test
+    void shouldNotCompressResponseUpToMinimalSize() throws IOException {
+        cut.activate(config(8192, true, 1024));
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+
+        cut.handle(request, response, RestActionResult.success("Done", null));
+
+        verify(response, never()).setHeader(eq("Content-Encoding"), any());
+        verify(response).setContentLength(output.toByteArray().length);
+        assertEquals("{\"status\":\"SUCCESS\",\"message\":\"Done\",\"authContext\":{\"userId\":\"anonymous\"}}",
+                output.toString());
+    }
+
+    @Test
+    void shouldNotCompressResponseOfUncompressedAction() throws IOException {
+        cut.activate(config(8192, true, 0));
+        when(request.getAttribute(RestResponseHandler.UNCOMPRESSED_ATTRIBUTE)).thenReturn(Boolean.TRUE);
+
+        cut.handle(request, response, RestActionResult.success("Done", null));
+
+        verify(response, never()).setHeader(eq("Content-Encoding"), any());
+        assertTrue(output.toString().startsWith("{\"status\":\"SUCCESS\""));
+    }
+
+    @Test
+    void shouldNegotiateAcceptedEncoding() {
+        assertEquals(CompressingOutputStream.Encoding.GZIP, CompressingOutputStream.Encoding.negotiate("gzip, deflate"));
+        assertEquals(CompressingOutputStream.Encoding.DEFLATE,
+                CompressingOutputStream.Encoding.negotiate("gzip;q=0.5, deflate"));
+        assertEquals(CompressingOutputStream.Encoding.GZIP, CompressingOutputStream.Encoding.negotiate("br, *"));
+        assertNull(CompressingOutputStream.Encoding.negotiate("gzip;q=0, br"));
+        assertNull(CompressingOutputStream.Encoding.negotiate(null));
+    }
+
+    @Test
+    void shouldWriteSmileEnvelopeWhenAccepted() throws IOException {
+        when(request.getHeader("Accept")).thenReturn("application/x-jackson-smile, application/json;q=0.9");
+
+        cut.handle(request, response, RestActionResult.success("Done", null, new SimpleDto("first")));
+
+        verify(response).setContentType("application/x-jackson-smile");
+        verify(response, never()).setCharacterEncoding(anyString());
+        verify(response).addHeader("Vary", "Accept");
+        verify(response).setContentLength(output.toByteArray().length);
+        assertEquals(new ObjectMapper().readTree("{\"status\":\"SUCCESS\",\"message\":\"Done\"," +
+                        "\"entity\":{\"name\":\"first\"},\"authContext\":{\"userId\":\"anonymous\"}}"),
+                new ObjectMapper(new SmileFactory()).readTree(output.toByteArray()));
+    }
+
+    @Test
+    void shouldWriteStreamedEntityAsNdjsonWhenAccepted() throws IOException {
+        when(request.getHeader("Accept")).thenReturn("application/x-ndjson, application/json;q=0.9");
+        AtomicReference<String> writtenBeforeSecond = new AtomicReference<>();
+        Iterator<String> entities = new Iterator<String>() {
+
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < 2;
+            }
+
+            @Override
+            public String next() {
+                if (index == 1) {
+                    writtenBeforeSecond.set(output.toString());
+                }
+                return "entity-" + index++;
+            }
+        };
+
+        cut.handle(request, response, RestActionResult.successStream(entities));
+
+        String envelope = "{\"status\":\"SUCCESS\",\"authContext\":{\"userId\":\"anonymous\"}}";
+        assertEquals(envelope + "\n\"entity-0\"", writtenBeforeSecond.get());
+        assertEquals(envelope + "\n\"entity-0\"\n\"entity-1\"\n{\"complete\":true}\n", output.toString());
+        verify(response).setContentType("application/x-ndjson");
+        verify(response, never()).setContentLength(anyInt());
+    }
+
+    @Test
+    void shouldEndNdjsonWithErrorEnvelopeWhenStreamFails() throws IOException {
+        when(request.getHeader("Accept")).thenReturn("application/x-ndjson");
+        Stream<String> entities = Stream.of("first", "second").map(entity -> {
+            if ("second".equals(entity)) {
+                throw new IllegalStateException("Query failed");
+            }
+            return entity;
+        });
+
+        assertThrows(IllegalStateException.class,
+                () -> cut.handle(request, response, RestActionResult.successStream(entities)));
+
+        assertEquals("{\"status\":\"SUCCESS\",\"authContext\":{\"userId\":\"anonymous\"}}\n\"first\"\n" +
+                "{\"status\":\"ERROR\",\"message\":\"Unexpected server error\",\"messageDetails\":\"Query failed\"," +
+                "\"authContext\":{\"userId\":\"anonymous\"}}\n", output.toString());
+    }
+
+    @Test
+    void shouldWriteNotStreamedEntityAsJsonWhenNdjsonAccepted() throws IOException {
+        when(request.getHeader("Accept")).thenReturn("application/x-ndjson");
+
+        cut.handle(request, response, RestActionResult.success("Done", null, Arrays.asList("first", "second")));
+
+        verify(response).setContentType("application/json");
+        assertEquals("{\"status\":\"SUCCESS\",\"message\":\"Done\",\"entity\":[\"first\",\"second\"]," +
+                "\"authContext\":{\"userId\":\"anonymous\"}}", output.toString());
+    }
+
+    @Test
+    void shouldNegotiateAcceptedFormat() {
+        assertEquals(ResponseFormat.JSON, ResponseFormat.negotiate(null));
+        assertEquals(ResponseFormat.JSON, ResponseFormat.negotiate("text/html, */*;q=0.8"));
+        assertEquals(ResponseFormat.SMILE, ResponseFormat.negotiate("*/*, application/x-jackson-smile"));
+        assertEquals(ResponseFormat.JSON,
+                ResponseFormat.negotiate("application/json, application/x-jackson-smile;q=0.5"));
+        assertEquals(ResponseFormat.JSON, ResponseFormat.negotiate("application/x-jackson-smile;q=0"));
+        // CBOR module requires newer Jackson than tests run with
+        assertEquals(ResponseFormat.JSON, ResponseFormat.negotiate("application/cbor"));
+    }
+
+    @Test
+    void shouldTagVersionPerResponseFormat() {
+        assertFalse(ETags.matches(ETags.ofVersion("admin", "1", ResponseFormat.SMILE),
+                ETags.ofVersion("admin", "1", ResponseFormat.JSON)));
+    }
+
+    private static RestResponseHandler.Config config(int bufferSize, boolean compressionEnabled,
+            int compressionMinSize) {
+        return new RestResponseHandler.Config() {
+
+            @Override
+            public int buffer_size() {
+                return bufferSize;
+            }
+
+            @Override
+            public int buffer_pool_size() {
+                return 1;
+            }
+
+            @Override
+            public boolean compression_enabled() {
+                return compressionEnabled;
+            }
+
+            @Override
+            public int compression_min_size() {
+                return compressionMinSize;
+            }
+
+            @Override
+            public int compression_level() {
+                return 1;
+            }
+
+            @Override
+            public int ndjson_flush_size() {
+                return DEFAULT_NDJSON_FLUSH_SIZE;
+            }
+
+            @Override
+            public Class<? extends Annotation> annotationType() {
+                return RestResponseHandler.Config.class;
+            }
+        };
+    }
+
+    static class SimpleDto {
+
+        private final String name;
+
+        SimpleDto(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.junit.jupiter.api.Test;
+import pl.ds.websight.rest.framework.impl.RestActionRoute.Family;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class RoutingTableTest {
+
+    private static final String PATH = "/apps/bundle/bin/first";
+    private static final String SELECTORS = "bundle.second";
+
+    private final RestActionsServlet firstServlet = mock(RestActionsServlet.class);
+    private final RestActionsServlet secondServlet = mock(RestActionsServlet.class);
+
+    @Test
+    void shouldFindServletByFamilyActionKeyAndMethod() {
+        RoutingTable table = RoutingTable.EMPTY
+                .with(1L, RestActionRoute.forPath(PATH, "GET"), firstServlet)
+                .with(2L, RestActionRoute.forPrimaryTypes(SELECTORS, "POST"), secondServlet);
+
+        assertSame(firstServlet, table.find(Family.PATHS, PATH, "GET").getServlet());
+        assertSame(secondServlet, table.find(Family.PRIMARY_TYPES, SELECTORS, "POST").getServlet());
+        assertNull(table.find(Family.PATHS, PATH, "POST"));
+        assertNull(table.find(Family.RESOURCE_TYPES, SELECTORS, "POST"));
+        assertNull(table.find(Family.PATHS, null, "GET"));
+    }
+
+    @Test
+    void shouldNotModifyTableWhenRouteAdded() {
+        RoutingTable table = RoutingTable.EMPTY.with(1L, RestActionRoute.forPath(PATH, "GET"), firstServlet);
+
+        table.with(2L, RestActionRoute.forPrimaryTypes(SELECTORS, "POST"), secondServlet);
+
+        assertNull(table.find(Family.PRIMARY_TYPES, SELECTORS, "POST"));
+        assertEquals(1, table.getRoutes(Family.PATHS).size());
+    }
+
+    @Test
+    void shouldRemoveRouteOfService() {
+        RoutingTable table = RoutingTable.EMPTY
+                .with(1L, RestActionRoute.forPath(PATH, "GET"), firstServlet)
+                .with(2L, RestActionRoute.forPrimaryTypes(SELECTORS, "POST"), secondServlet)
+                .without(1L);
+
+        assertNull(table.find(Family.PATHS, PATH, "GET"));
+        assertTrue(table.getRoutes(Family.PATHS).isEmpty());
+        assertSame(secondServlet, table.find(Family.PRIMARY_TYPES, SELECTORS, "POST").getServlet());
+    }
+
+    @Test
+    void shouldFailIfRouteAlreadyUsed() {
+        RoutingTable table = RoutingTable.EMPTY.with(1L, RestActionRoute.forPath(PATH, "GET"), firstServlet);
+        RestActionRoute sameRoute = RestActionRoute.forPath(PATH, "GET");
+
+        assertThrows(IllegalStateException.class, () -> table.with(2L, sameRoute, secondServlet));
+    }
+}
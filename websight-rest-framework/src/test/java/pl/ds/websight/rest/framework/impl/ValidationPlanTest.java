@@ -0,0 +1,106 @@
+package pl.ds.websight.rest.framework.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pl.ds.websight.rest.framework.Errors;
+import pl.ds.websight.rest.framework.Validatable;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Path;
+import javax.validation.Validator;
+import javax.validation.metadata.BeanDescriptor;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ValidationPlanTest {
+
+    @Mock
+    private Validator validator;
+
+    @Mock
+    private BeanDescriptor beanDescriptor;
+
+    @Test
+    void shouldSkipBeanValidationOfUnconstrainedModel() {
+        when(validator.getConstraintsForClass(SimpleModel.class)).thenReturn(beanDescriptor);
+
+        ValidationPlan plan = ValidationPlan.of(SimpleModel.class, validator);
+
+        assertSame(Errors.empty(), plan.validate(new SimpleModel()));
+        verify(validator, never()).validate(any());
+    }
+
+    @Test
+    void shouldValidateSubtypeOfUnconstrainedModel() {
+        when(validator.getConstraintsForClass(SimpleModel.class)).thenReturn(beanDescriptor);
+
+        ValidationPlan plan = ValidationPlan.of(SimpleModel.class, validator);
+        SimpleModel model = new SimpleModel() {
+        };
+
+        assertSame(Errors.empty(), plan.validate(model));
+        verify(validator).validate(model);
+    }
+
+    @Test
+    void shouldReturnViolationsOfConstrainedModel() {
+        when(beanDescriptor.isBeanConstrained()).thenReturn(true);
+        when(validator.getConstraintsForClass(SimpleModel.class)).thenReturn(beanDescriptor);
+        Object model = new SimpleModel();
+        ConstraintViolation<Object> violation = violation("name", "Required");
+        when(validator.validate(model)).thenReturn(Collections.singleton(violation));
+
+        Errors errors = ValidationPlan.of(SimpleModel.class, validator).validate(model);
+
+        assertEquals(1, errors.asList().size());
+        assertEquals("name", errors.asList().get(0).getPath());
+        assertEquals("Required", errors.asList().get(0).getMessage());
+    }
+
+    @Test
+    void shouldValidateValidatableModelWhenBeanIsValid() {
+        when(validator.getConstraintsForClass(ValidatableModel.class)).thenReturn(beanDescriptor);
+
+        Errors errors = ValidationPlan.of(ValidatableModel.class, validator).validate(new ValidatableModel());
+
+        assertEquals("custom", errors.asList().get(0).getPath());
+    }
+
+    @Test
+    void shouldNotModifySharedEmptyErrors() {
+        assertThrows(UnsupportedOperationException.class, () -> Errors.empty().add("path", null, "message"));
+        assertEquals(0, Errors.empty().asList().size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ConstraintViolation<Object> violation(String path, String message) {
+        ConstraintViolation<Object> violation = mock(ConstraintViolation.class);
+        Path propertyPath = mock(Path.class);
+        when(propertyPath.toString()).thenReturn(path);
+        when(violation.getPropertyPath()).thenReturn(propertyPath);
+        when(violation.getMessage()).thenReturn(message);
+        return violation;
+    }
+
+    static class SimpleModel {
+    }
+
+    static class ValidatableModel implements Validatable {
+
+        @Override
+        public Errors validate() {
+            return Errors.of("custom", null, "Invalid");
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package pl.ds.websight.rest.framework.rest;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.InjectableValues;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.engine.SlingRequestProcessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pl.ds.websight.rest.framework.Errors;
+import pl.ds.websight.rest.framework.RestActionResult;
+
+import javax.servlet.ServletRequestWrapper;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+@ExtendWith(MockitoExtension.class)
+class BatchRestActionTest {
+
+    private static final ObjectMapper MODEL_MAPPER = new ObjectMapper()
+            .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE);
+
+    @Mock
+    private SlingRequestProcessor slingRequestProcessor;
+
+    @Mock
+    private SlingHttpServletRequest request;
+
+    @Mock
+    private ResourceResolver resourceResolver;
+
+    @InjectMocks
+    private BatchRestAction cut;
+
+    @BeforeEach
+    void setUp() {
+        cut.activate(config(3));
+    }
+
+    @AfterEach
+    void tearDown() {
+        cut.deactivate();
+    }
+
+    @Test
+    void shouldReturnEnvelopesInOrderOfRequests() throws Exception {
+        mockProcessing();
+
+        List<JsonNode> results = perform("{\"requests\":[" +
+                "{\"path\":\"/apps/test/bin/first.action\",\"parameters\":{\"name\":\"a b\",\"tags\":[\"x\",\"y\"]}}," +
+                "{\"path\":\"/apps/test/bin/second.action\",\"method\":\"POST\",\"parameters\":{\"flag\":true}}," +
+                "{\"path\":\"/apps/test/bin/third.action\",\"method\":\"POST\",\"json\":{\"items\":[1,2]}}]}")
+                .getEntity();
+
+        assertEquals(3, results.size());
+        assertEquals("GET /apps/test/bin/first.action name=a+b&tags=x&tags=y", results.get(0).get("entity").asText());
+        assertEquals("POST /apps/test/bin/second.action application/x-www-form-urlencoded flag=true",
+                results.get(1).get("entity").asText());
+        assertEquals("POST /apps/test/bin/third.action application/json {\"items\":[1,2]}",
+                results.get(2).get("entity").asText());
+    }
+
+    @Test
+    void shouldStopOnFailure() throws Exception {
+        mockProcessing();
+
+        List<JsonNode> results = perform("{\"stopOnFailure\":true,\"requests\":[" +
+                "{\"path\":\"/apps/test/bin/fail.action\"},{\"path\":\"/apps/test/bin/second.action\"}]}").getEntity();
+
+        assertEquals("FAILURE", results.get(0).get("status").asText());
+        assertNull(results.get(1));
+    }
+
+    @Test
+    void shouldReturnHttpStatusOfNonJsonResponse() throws Exception {
+        mockProcessing();
+
+        List<JsonNode> results = perform("{\"requests\":[{\"path\":\"/apps/test/bin/missing.action\"}]}").getEntity();
+
+        assertEquals(404, results.get(0).get("httpStatus").asInt());
+        assertTrue(results.get(0).path("status").isMissingNode());
+    }
+
+    @Test
+    void shouldExecuteParallelRequestsWithClonedResourceResolvers() throws Exception {
+        ResourceResolver clonedResourceResolver = mock(ResourceResolver.class);
+        mockProcessing();
+        when(resourceResolver.clone(isNull())).thenReturn(clonedResourceResolver);
+
+        List<JsonNode> results = perform("{\"parallel\":true,\"requests\":[" +
+                "{\"path\":\"/apps/test/bin/first.action\"},{\"path\":\"/apps/test/bin/second.action\"}," +
+                "{\"path\":\"/apps/test/bin/third.action\"}]}").getEntity();
+
+        assertEquals("GET /apps/test/bin/first.action null", results.get(0).get("entity").asText());
+        assertEquals("GET /apps/test/bin/third.action null", results.get(2).get("entity").asText());
+        verify(slingRequestProcessor, times(3)).processRequest(any(), any(), any());
+        verify(clonedResourceResolver, times(3)).close();
+    }
+
+    @Test
+    void shouldRejectParallelRequestsOverQueueSize() throws Exception {
+        cut.deactivate();
+        cut.activate(config(3, 1, 1, 60));
+        CountDownLatch processing = new CountDownLatch(1);
+        List<ResourceResolver> clonedResourceResolvers = mockBlockedProcessing(processing);
+
+        RestActionResult<List<JsonNode>> result = perform("{\"parallel\":true,\"requests\":[" +
+                "{\"path\":\"/apps/test/bin/first.action\"},{\"path\":\"/apps/test/bin/second.action\"}," +
+                "{\"path\":\"/apps/test/bin/third.action\"}]}");
+        processing.countDown();
+
+        assertEquals(RestActionResult.Status.FAILURE, result.getStatus());
+        assertEquals("Batch rejected", result.getMessage());
+        for (ResourceResolver clonedResourceResolver : clonedResourceResolvers) {
+            verify(clonedResourceResolver, timeout(5000)).close();
+        }
+    }
+
+    @Test
+    void shouldReportParallelRequestsNotFinishedInTime() throws Exception {
+        cut.deactivate();
+        cut.activate(config(3, 1, 5, 1));
+        CountDownLatch processing = new CountDownLatch(1);
+        List<ResourceResolver> clonedResourceResolvers = mockBlockedProcessing(processing);
+
+        List<JsonNode> results = perform("{\"parallel\":true,\"requests\":[" +
+                "{\"path\":\"/apps/test/bin/first.action\"},{\"path\":\"/apps/test/bin/second.action\"}]}")
+                .getEntity();
+        processing.countDown();
+
+        assertEquals(504, results.get(0).get("httpStatus").asInt());
+        assertEquals(504, results.get(1).get("httpStatus").asInt());
+        verify(clonedResourceResolvers.get(0), timeout(5000)).close();
+        verify(clonedResourceResolvers.get(1)).close();
+        verify(slingRequestProcessor, timeout(5000).times(1)).processRequest(any(), any(), any());
+    }
+
+    @Test
+    void shouldFailBatchSentByAnotherBatch() throws Exception {
+        // Sling processes sub request of batch wrapped into own request
+        ServletRequestWrapper nestedRequest = mock(ServletRequestWrapper.class,
+                withSettings().extraInterfaces(SlingHttpServletRequest.class));
+        when(nestedRequest.getRequest()).thenReturn(new BatchSubRequest(request, "POST", BatchRestAction.PATH,
+                Collections.emptyMap(), null));
+        BatchRestModel model = MODEL_MAPPER.reader(BatchRestModel.class)
+                .with(new InjectableValues.Std().addValue(SlingHttpServletRequest.class, nestedRequest))
+                .readValue("{\"requests\":[{\"path\":\"/apps/test/bin/a.action\"}]}");
+
+        RestActionResult<List<JsonNode>> result = cut.perform(model);
+
+        assertEquals(RestActionResult.Status.FAILURE, result.getStatus());
+        assertEquals("Nested batch", result.getMessage());
+        verify(slingRequestProcessor, never()).processRequest(any(), any(), any());
+    }
+
+    @Test
+    void shouldFailOnTooManyRequests() throws IOException {
+        RestActionResult<List<JsonNode>> result = perform("{\"requests\":[{\"path\":\"/apps/test/bin/a.action\"}," +
+                "{\"path\":\"/apps/test/bin/b.action\"},{\"path\":\"/apps/test/bin/c.action\"}," +
+                "{\"path\":\"/apps/test/bin/d.action\"}]}");
+
+        assertEquals(RestActionResult.Status.FAILURE, result.getStatus());
+    }
+
+    @Test
+    void shouldValidateRequests() throws IOException {
+        Errors errors = readModel("{\"requests\":[{\"path\":\"/content/page.html\"}," +
+                "{\"path\":\"" + BatchRestAction.PATH + "\"},{\"path\":\"/apps/test/bin/a.action\",\"method\":\"PUT\"}," +
+                "{\"path\":\"/apps/test/bin/a.action\",\"json\":{}}]}").validate();
+
+        assertEquals("requests[0].path,requests[1].path,requests[2].method,requests[3].json", errors.asList().stream()
+                .map(Errors.Error::getPath)
+                .collect(Collectors.joining(",")));
+    }
+
+    private void mockProcessing() throws Exception {
+        when(request.getResourceResolver()).thenReturn(resourceResolver);
+        doAnswer(invocation -> {
+            respond(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(slingRequestProcessor).processRequest(any(), any(), any());
+    }
+
+    /**
+     * @return resource resolvers cloned for requests, processing of which waits for latch
+     */
+    private List<ResourceResolver> mockBlockedProcessing(CountDownLatch processing) throws Exception {
+        List<ResourceResolver> clonedResourceResolvers = new CopyOnWriteArrayList<>();
+        when(request.getResourceResolver()).thenReturn(resourceResolver);
+        when(resourceResolver.clone(isNull())).thenAnswer(invocation -> {
+            ResourceResolver clonedResourceResolver = mock(ResourceResolver.class);
+            clonedResourceResolvers.add(clonedResourceResolver);
+            return clonedResourceResolver;
+        });
+        lenient().doAnswer(invocation -> {
+            processing.await();
+            respond(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(slingRequestProcessor).processRequest(any(), any(), any());
+        return clonedResourceResolvers;
+    }
+
+    private RestActionResult<List<JsonNode>> perform(String batch) throws IOException {
+        BatchRestModel model = readModel(batch);
+        assertTrue(model.validate().isEmpty());
+        return cut.perform(model);
+    }
+
+    private BatchRestModel readModel(String batch) throws IOException {
+        return MODEL_MAPPER.reader(BatchRestModel.class)
+                .with(new InjectableValues.Std().addValue(SlingHttpServletRequest.class, request))
+                .readValue(batch);
+    }
+
+    private static void respond(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (request.getPathInfo().contains("missing")) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            response.setContentType("text/html");
+            response.getWriter().write("<html>Not found</html>");
+            return;
+        }
+        String received = request.getMethod() + " " + request.getPathInfo() + " " + ("GET".equals(request.getMethod())
+                ? request.getQueryString()
+                : request.getContentType() + " " + request.getReader().lines().collect(Collectors.joining()));
+        String status = request.getPathInfo().contains("fail") ? "FAILURE" : "SUCCESS";
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        new ObjectMapper().writeValue(response.getWriter(), new ObjectMapper().createObjectNode()
+                .put("status", status)
+                .put("entity", received));
+    }
+
+    private static BatchRestAction.Config config(int maxRequests) {
+        return config(maxRequests, 2, 10, 60);
+    }
+
+    private static BatchRestAction.Config config(int maxRequests, int parallelThreads, int parallelQueueSize,
+            int parallelTimeoutSeconds) {
+        return new BatchRestAction.Config() {
+
+            @Override
+            public int max_requests() {
+                return maxRequests;
+            }
+
+            @Override
+            public int parallel_threads() {
+                return parallelThreads;
+            }
+
+            @Override
+            public int parallel_queue_size() {
+                return parallelQueueSize;
+            }
+
+            @Override
+            public int parallel_timeout_seconds() {
+                return parallelTimeoutSeconds;
+            }
+
+            @Override
+            public Class<? extends Annotation> annotationType() {
+                return BatchRestAction.Config.class;
+            }
+        };
+    }
+}